@@ -0,0 +1,34 @@
+package proyecto.orgmedi.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Configuración de respuestas CBOR (RFC 8949, JSON binario)
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - En móviles con mala conexión, descargar y parsear JSON es lo más lento
+ * - CBOR lleva los mismos datos (mismos nombres de campo) en binario:
+ *   menos bytes y sin parsear texto
+ *
+ * CÓMO:
+ * - Con Accept: application/cbor, Spring responde en CBOR con este converter
+ *   (cualquier endpoint que devuelva DTOs, p. ej. /api/notifications)
+ * - /por-fecha y /consumos escriben bytes ya serializados (ResponseByteCache),
+ *   que usa el ObjectMapper de este mismo converter
+ * - Esquema publicado en src/main/resources/schemas/orgmedi.cddl
+ *
+ * Mismo Jackson2ObjectMapperBuilder que el JSON (spring.jackson.*): fechas y
+ * formatos iguales en los dos.
+ */
+@Configuration
+public class CborConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
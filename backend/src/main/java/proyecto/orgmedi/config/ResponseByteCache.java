@@ -0,0 +1,239 @@
+package proyecto.orgmedi.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ResponseByteCache - CACHÉ DE RESPUESTAS YA SERIALIZADAS (bytes JSON o CBOR, opcionalmente gzip)
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - El horario (/por-fecha) y los consumos del día se piden en cada carga del panel
+ * - Aunque los datos no cambien, Jackson vuelve a recorrer y codificar todo el árbol de DTOs
+ *
+ * CÓMO:
+ * - Clave = (usuario, endpoint, parámetros, formato, ETag de DataVersionService)
+ * - Acierto: los bytes se escriben tal cual en la respuesta (sin Jackson ni DTOs)
+ * - Fallo: se construye el cuerpo, se serializa UNA vez y, si supera
+ *   response-cache.gzip-min-bytes, también se guarda comprimido con gzip
+ * - Con Accept-Encoding: gzip se envía la versión comprimida (Content-Encoding: gzip)
+ * - negociar(): JSON o CBOR según Accept (ver CborConfig); cada formato es otra entrada
+ *
+ * INVALIDACIÓN: no hace falta. Una escritura cambia la versión del usuario, así que
+ * la clave vieja deja de pedirse y sale por tamaño o por inactividad.
+ *
+ * LÍMITES (application.properties):
+ * - response-cache.max-bytes: memoria total (peso = bytes sin comprimir + bytes gzip)
+ * - response-cache.max-entry-bytes: respuestas más grandes se envían sin guardar
+ * - response-cache.expire-after-access: entradas sin leer se liberan
+ *
+ * MÉTRICAS: cache.gets{cache=response-bytes,result=hit|miss}, cache.evictions...
+ */
+@Component
+public class ResponseByteCache implements MeterBinder {
+
+    /**
+     * Formato - Codificación del cuerpo (Content-Type)
+     */
+    public enum Formato {
+        JSON(MediaType.APPLICATION_JSON),
+        CBOR(MediaType.APPLICATION_CBOR);
+
+        private final MediaType mediaType;
+
+        Formato(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public MediaType getMediaType() {
+            return mediaType;
+        }
+    }
+
+    /**
+     * Clave - Respuesta de un endpoint para un usuario en una versión de sus datos y un formato
+     */
+    public record Clave(Long usuarioId, String endpoint, String parametros, Formato formato, String etag) {
+    }
+
+    /**
+     * Cuerpo - Bytes serializados y, si compensa, su versión gzip (null si no se comprimió)
+     */
+    public record Cuerpo(Formato formato, byte[] bytes, byte[] gzip) {
+        int peso() {
+            return bytes.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    private static final String NOMBRE_CACHE = "response-bytes";
+    private static final String CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper cborMapper;
+    private final Cache<Clave, Cuerpo> cache;
+    private final long maxEntryBytes;
+    private final int gzipMinBytes;
+
+    public ResponseByteCache(ObjectMapper objectMapper,
+                             MappingJackson2CborHttpMessageConverter cborConverter,
+                             @Value("${response-cache.max-bytes:16777216}") long maxBytes,
+                             @Value("${response-cache.max-entry-bytes:1048576}") long maxEntryBytes,
+                             @Value("${response-cache.gzip-min-bytes:1024}") int gzipMinBytes,
+                             @Value("${response-cache.expire-after-access:PT10M}") Duration expireAfterAccess) {
+        this.objectMapper = objectMapper;
+        this.cborMapper = cborConverter.getObjectMapper();
+        this.maxEntryBytes = maxEntryBytes;
+        this.gzipMinBytes = gzipMinBytes;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Clave clave, Cuerpo cuerpo) -> cuerpo.peso())
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * get - Bytes de la respuesta: de la caché o construyendo y serializando el cuerpo
+     *
+     * Las excepciones de construirCuerpo se propagan tal cual (no se guarda nada).
+     */
+    public Cuerpo get(Clave clave, Supplier<?> construirCuerpo) {
+        Cuerpo cuerpo = cache.getIfPresent(clave);
+        if (cuerpo != null) {
+            return cuerpo;
+        }
+        cuerpo = serializar(construirCuerpo.get(), clave.formato());
+        if (cuerpo.peso() <= maxEntryBytes) {
+            cache.put(clave, cuerpo);
+        }
+        return cuerpo;
+    }
+
+    /**
+     * write - Escribe una respuesta 200 con los bytes, el ETag y Cache-Control
+     * (mismas cabeceras que un ResponseEntity con ETag en el controlador)
+     */
+    public void write(Cuerpo cuerpo, String etag, ServletWebRequest webRequest) throws IOException {
+        HttpServletResponse response = webRequest.getResponse();
+        boolean gzip = cuerpo.gzip() != null && aceptaGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        byte[] bytes = gzip ? cuerpo.gzip() : cuerpo.bytes();
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cuerpo.formato().getMediaType().toString());
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (cuerpo.gzip() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+        response.flushBuffer();
+    }
+
+    private Cuerpo serializar(Object body, Formato formato) {
+        try {
+            byte[] bytes = (formato == Formato.CBOR ? cborMapper : objectMapper).writeValueAsBytes(body);
+            return new Cuerpo(formato, bytes, bytes.length >= gzipMinBytes ? comprimir(bytes) : null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error serializando la respuesta", e);
+        }
+    }
+
+    private static byte[] comprimir(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * negociar - Formato de respuesta según la cabecera Accept
+     *
+     * CBOR solo si el cliente lo prefiere (mayor q, o igual q y antes en la lista);
+     * sin Accept, con comodines o con cualquier otra cosa → JSON, como hasta ahora.
+     */
+    public static Formato negociar(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return Formato.JSON;
+        }
+        List<MediaType> mediaTypes;
+        try {
+            mediaTypes = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException e) {
+            return Formato.JSON;
+        }
+        Formato mejor = Formato.JSON;
+        double mejorCalidad = -1;
+        for (MediaType mediaType : mediaTypes) {
+            Formato formato;
+            if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)) {
+                formato = Formato.CBOR;
+            } else if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                formato = Formato.JSON;
+            } else {
+                continue;
+            }
+            double calidad = mediaType.getQualityValue();
+            if (calidad > mejorCalidad) {
+                mejor = formato;
+                mejorCalidad = calidad;
+            }
+        }
+        return mejorCalidad > 0 ? mejor : Formato.JSON;
+    }
+
+    /**
+     * aceptaGzip - ¿Accept-Encoding incluye gzip (o *) sin q=0?
+     */
+    static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String codificacion : acceptEncoding.split(",")) {
+            String[] partes = codificacion.split(";");
+            String nombre = partes[0].trim();
+            if (!nombre.equalsIgnoreCase("gzip") && !nombre.equals("*")) {
+                continue;
+            }
+            boolean rechazado = false;
+            for (int i = 1; i < partes.length; i++) {
+                String parametro = partes[i].trim().replace(" ", "");
+                if (parametro.matches("(?i)q=0(\\.0{0,3})?")) {
+                    rechazado = true;
+                }
+            }
+            return !rechazado;
+        }
+        return false;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, NOMBRE_CACHE);
+    }
+}
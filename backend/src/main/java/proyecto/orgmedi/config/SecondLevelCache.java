@@ -0,0 +1,99 @@
+package proyecto.orgmedi.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import proyecto.orgmedi.dominio.GestorMedicamentos;
+
+import java.util.List;
+
+/**
+ * SecondLevelCache - CACHÉ DE SEGUNDO NIVEL DE HIBERNATE (JCache + Caffeine)
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - Usuario, GestorMedicamentos y Medicamento se leen en casi todos los requests
+ * - Cada lectura es un viaje de red a PostgreSQL (Neon), con latencia alta
+ *
+ * REGIONES (tamaño y TTL en src/main/resources/application.conf):
+ * - usuarios, gestores, medicamentos: entidades por ID
+ * - gestores-medicamentos: IDs de la lista GestorMedicamentos.medicamentos
+ * Estrategia READ_WRITE: las escrituras a través de Hibernate actualizan o invalidan
+ * la entrada en la misma transacción.
+ *
+ * INVALIDACIÓN (lo que Hibernate NO hace solo):
+ * - UPDATE/DELETE en JPQL (@Modifying): Hibernate vacía las regiones afectadas
+ * - INSERT de un medicamento con gestorId (sin pasar por la colección):
+ *   evictMedicamentosDeGestor() tras guardar
+ * - SQL directo por DataSource (endpoint debug): evictAll()
+ *
+ * MÉTRICAS (/actuator/prometheus):
+ * - hibernate_second_level_cache_requests{region,result=hit|miss} (hibernate-micrometer)
+ * - hibernate_second_level_cache_hit_ratio{region}: aciertos / (aciertos + fallos)
+ */
+@Component
+public class SecondLevelCache implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(SecondLevelCache.class);
+
+    public static final String REGION_USUARIOS = "usuarios";
+    public static final String REGION_GESTORES = "gestores";
+    public static final String REGION_MEDICAMENTOS_DE_GESTOR = "gestores-medicamentos";
+    public static final String REGION_MEDICAMENTOS = "medicamentos";
+
+    private static final List<String> REGIONES = List.of(
+            REGION_USUARIOS, REGION_GESTORES, REGION_MEDICAMENTOS_DE_GESTOR, REGION_MEDICAMENTOS);
+    private static final String ROL_MEDICAMENTOS_DE_GESTOR = GestorMedicamentos.class.getName() + ".medicamentos";
+
+    private final SessionFactory sessionFactory;
+
+    public SecondLevelCache(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    /**
+     * evictMedicamentosDeGestor - Invalida la lista cacheada de un gestor
+     *
+     * Llamar DESPUÉS de confirmar un INSERT que asigna gestorId directamente.
+     */
+    public void evictMedicamentosDeGestor(Long gestorId) {
+        if (gestorId != null) {
+            sessionFactory.getCache().evictCollectionData(ROL_MEDICAMENTOS_DE_GESTOR, gestorId);
+        }
+    }
+
+    /**
+     * evictAll - Vacía todas las regiones (tras modificar la BD por fuera de Hibernate)
+     */
+    public void evictAll() {
+        sessionFactory.getCache().evictAllRegions();
+        logger.info("[SecondLevelCache] All regions evicted");
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        Statistics statistics = sessionFactory.getStatistics();
+        for (String region : REGIONES) {
+            Gauge.builder("hibernate.second.level.cache.hit.ratio", statistics, s -> hitRatio(s, region))
+                    .description("Proporción de lecturas servidas por la caché de segundo nivel")
+                    .tag("region", region)
+                    .register(registry);
+        }
+    }
+
+    private static double hitRatio(Statistics statistics, String region) {
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        if (regionStatistics == null) {
+            return Double.NaN;
+        }
+        long hits = regionStatistics.getHitCount();
+        long total = hits + regionStatistics.getMissCount();
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+}
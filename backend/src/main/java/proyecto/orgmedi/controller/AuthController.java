@@ -5,12 +5,19 @@ import proyecto.orgmedi.dto.auth.AuthRequest;
 import proyecto.orgmedi.dto.auth.AuthResponse;
 import proyecto.orgmedi.dto.auth.RegisterRequest;
 import proyecto.orgmedi.dto.auth.ChangePasswordRequest;
+import proyecto.orgmedi.dto.auth.CredencialesUsuario;
 import proyecto.orgmedi.dto.auth.UserDTO;
 import proyecto.orgmedi.dominio.Usuario;
 import proyecto.orgmedi.dominio.GestorMedicamentos;
 import proyecto.orgmedi.repo.UsuarioRepository;
 import proyecto.orgmedi.repo.GestorMedicamentosRepository;
+import proyecto.orgmedi.dto.auth.RefreshTokenRequest;
+import proyecto.orgmedi.security.AuthRateLimiter;
+import proyecto.orgmedi.security.AuthenticatedUser;
 import proyecto.orgmedi.security.JwtUtil;
+import proyecto.orgmedi.security.PasswordHashingService;
+import proyecto.orgmedi.security.TokenRevocationStore;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
@@ -42,12 +49,15 @@ import java.util.Optional;
  * 
  * ENDPOINTS PRINCIPALES:
  * - POST /api/auth/register       → Crear nueva cuenta
- * - POST /api/auth/login          → Obtener token JWT
- * - POST /api/auth/change-password → Cambiar contraseña
+ * - POST /api/auth/login          → Obtener token JWT (access + refresh)
+ * - POST /api/auth/refresh        → Nuevo par de tokens con el refresh token
+ * - POST /api/auth/logout         → Revocar el refresh token
+ * - POST /api/auth/change-password → Cambiar contraseña (revoca los tokens anteriores)
  * - GET /api/auth/me              → Obtener datos del usuario actual
  * 
  * SEGURIDAD:
  * - Las contraseñas se guardan HASHEADAS con BCrypt (no en texto plano)
+ * - Límite de intentos por IP (AuthRateLimitFilter) y por cuenta (AuthRateLimiter) → 429
  * - Los tokens JWT autentican peticiones futuras
  * - Se valida que correos sean únicos
  * 
@@ -73,6 +83,12 @@ public class AuthController {
     private JwtUtil jwtUtil; // Generación y validación de tokens JWT
     @Autowired
     private PasswordEncoder passwordEncoder; // Hash/validación de contraseñas con BCrypt
+    @Autowired
+    private PasswordHashingService passwordHashingService; // BCrypt del login en un pool acotado
+    @Autowired
+    private TokenRevocationStore tokenRevocationStore; // Revocación de tokens (logout, cambio de contraseña)
+    @Autowired
+    private AuthRateLimiter authRateLimiter; // Límite de intentos por cuenta (el de IP va en AuthRateLimitFilter)
 
     // ============ ENDPOINT: LOGIN =============
     
@@ -88,23 +104,29 @@ public class AuthController {
      * }
      * 
      * PROCEDIMIENTO:
-     * 1. Busca el usuario por nombre
-     * 2. Valida que la contraseña sea correcta (con BCrypt)
+     * 1. Lee las credenciales del usuario por nombre (consulta corta de solo lectura)
+     * 2. Valida que la contraseña sea correcta (BCrypt en PasswordHashingService)
      * 3. Si es correcta, genera un token JWT
      * 4. Retorna el token en JSON
      * 
      * RESPUESTA EXITOSA (200 OK):
      * {
-     *   "token": "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9..."
+     *   "token": "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9...",   // access token (15 min)
+     *   "refreshToken": "eyJhbGciOiJIUzI1NiJ9...",           // refresh token (14 días)
+     *   "expiresIn": 900
      * }
      * 
      * ERRORES:
      * - 401 Unauthorized: Usuario no existe o contraseña incorrecta
      * - 400 Bad Request: Datos inválidos
+     * - 429 Too Many Requests: Demasiados intentos (por IP o por cuenta), ver Retry-After
+     * - 503 Service Unavailable: Demasiados logins a la vez (cola de hashing llena)
      * 
      * FLUJO DE SEGURIDAD:
      * - Contraseña se compara sin revelar el hash
      * - Si está en texto plano (legacy), se rehashea automáticamente a BCrypt
+     *   con un UPDATE condicional en su propia transacción
+     * - Si es BCrypt con un coste menor que el calibrado, se actualiza en segundo plano
      * - Token JWT se crea con el correo del usuario para identificar peticiones futuras
      * 
      * NOTA TÉCNICA:
@@ -112,24 +134,30 @@ public class AuthController {
      * - Detecta si está hasheado comprobando prefijo "$2a$" (BCrypt)
      */
     @PostMapping(value = "/login", produces = "application/json")
-    @Transactional // La transacción asegura que cambios se guarden atomáticamente
+    // SIN @Transactional: la lectura de credenciales es una consulta corta de solo lectura y
+    // BCrypt se calcula en PasswordHashingService sin retener ninguna conexión JDBC
     @Operation(summary = "Login de usuario", description = "Autentica un usuario y retorna un token JWT")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Login exitoso", 
             content = @Content(schema = @Schema(implementation = AuthResponse.class))),
         @ApiResponse(responseCode = "401", description = "Credenciales inválidas"),
-        @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos")
+        @ApiResponse(responseCode = "400", description = "Datos de entrada inválidos"),
+        @ApiResponse(responseCode = "429", description = "Demasiados intentos"),
+        @ApiResponse(responseCode = "503", description = "Servidor ocupado (cola de hashing llena)")
     })
     public ResponseEntity<java.util.Map<String, Object>> login(@Valid @RequestBody AuthRequest request) {
-        // 1. Buscar usuario por nombre
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByUsuario(request.getUsuario());
-        if (usuarioOpt.isEmpty()) {
+        // 0. Límite de intentos por cuenta (429 antes de tocar la BD o hashear)
+        authRateLimiter.checkAccount(request.getUsuario());
+
+        // 1. Leer credenciales (proyección: id, correo, hash, gestorId)
+        Optional<CredencialesUsuario> credencialesOpt = usuarioRepository.findCredencialesByUsuario(request.getUsuario());
+        if (credencialesOpt.isEmpty()) {
             logger.warn("Login failed for usuario={}", request.getUsuario());
             throw new UnauthorizedException("Credenciales inválidas");
         }
 
-        Usuario usuario = usuarioOpt.get();
-        String stored = usuario.getContrasena(); // Hash guardado en BD
+        CredencialesUsuario credenciales = credencialesOpt.get();
+        String stored = credenciales.getContrasena(); // Hash guardado en BD
 
         // 2. Validar que ambas contraseñas existan
         if (stored == null || request.getContrasena() == null) {
@@ -138,18 +166,20 @@ public class AuthController {
         }
 
         boolean matches;
-        // 3. Detectar si stored está hasheado con BCrypt ($2a$, $2b$, $2y$ = prefijos de BCrypt)
-        if (stored.startsWith("$2a$") || stored.startsWith("$2b$") || stored.startsWith("$2y$")) {
-            // Hash BCrypt: comparar usando passwordEncoder (valida sin revelar hash)
-            matches = passwordEncoder.matches(request.getContrasena(), stored);
+        // 3. Detectar si stored está hasheado con BCrypt
+        if (isBCrypt(stored)) {
+            // Hash BCrypt: comparar en el pool de hashing (sin conexión abierta)
+            matches = passwordHashingService.matches(request.getContrasena(), stored);
+            if (matches && passwordHashingService.needsUpgrade(stored)) {
+                // Hash con un coste menor que el calibrado: actualizarlo en segundo plano
+                rehashPasswordInBackground(credenciales.getId(), stored, request.getContrasena());
+            }
         } else {
             // Hash legacy en texto plano: comparar directamente
             matches = Objects.equals(stored, request.getContrasena());
             if (matches) {
                 // Oportunidad de seguridad: rehashear y guardar como BCrypt
-                String hashed = passwordEncoder.encode(request.getContrasena());
-                usuario.setContrasena(hashed);
-                usuarioRepository.save(usuario);
+                rehashStoredPassword(credenciales.getId(), stored, request.getContrasena());
             }
         }
 
@@ -160,15 +190,13 @@ public class AuthController {
         }
 
         logger.info("=== LOGIN V2 (2026-01-22 19:50) ===");
-        // 5. Generar token JWT con el correo del usuario
-        String token = jwtUtil.generateToken(usuario.getCorreo());
+        // 5. Generar token JWT con el correo y los IDs del usuario (uid/gid)
+        java.util.Map<String, Object> responseMap = buildTokenResponse(credenciales.getCorreo(), credenciales.getId(),
+                credenciales.getGestorId());
         logger.info("Login success for usuario={}", request.getUsuario());
         
-        // 6. Retornar token como Map (para asegurar serialización a JSON)
-        java.util.Map<String, Object> responseMap = new java.util.HashMap<>();
-        responseMap.put("token", token);
-        
-        logger.info("✓ MAP RESPONSE: {}", responseMap);
+        // 6. Retornar tokens como Map (para asegurar serialización a JSON)
+        String token = (String) responseMap.get("token");
         logger.info("✓ ENVIANDO RESPUESTA LOGIN: {}", token.substring(0, Math.min(20, token.length())));
         
         return ResponseEntity.ok()
@@ -228,13 +256,13 @@ public class AuthController {
     })
     public ResponseEntity<java.util.Map<String, Object>> register(@Valid @RequestBody RegisterRequest request) {
         // 1. Validar que correo sea único
-        if (usuarioRepository.findByCorreo(request.getCorreo()).isPresent()) {
+        if (usuarioRepository.existsByCorreo(request.getCorreo())) {
             logger.warn("Register failed: email already exists for correo={}", request.getCorreo());
             throw new ConflictException("El correo ya está registrado");
         }
 
         // 2. Validar que usuario sea único
-        if (usuarioRepository.findByUsuario(request.getUsuario()).isPresent()) {
+        if (usuarioRepository.existsByUsuario(request.getUsuario())) {
             logger.warn("Register failed: username already exists for usuario={}", request.getUsuario());
             throw new ConflictException("El usuario ya está registrado");
         }
@@ -264,15 +292,13 @@ public class AuthController {
         logger.info("=== REGISTER V2 (2026-01-22 19:50) ===");
         logger.info("Register success for correo={}", request.getCorreo());
 
-        // 8. Generar token JWT con el correo
-        String token = jwtUtil.generateToken(request.getCorreo());
+        // 8. Generar token JWT con el correo y los IDs recién creados (uid/gid)
+        java.util.Map<String, Object> responseMap =
+                buildTokenResponse(request.getCorreo(), savedUsuario.getId(), savedGestor.getId());
+        String token = (String) responseMap.get("token");
         logger.info("✓ TOKEN GENERADO EN REGISTER: {}", token.substring(0, Math.min(20, token.length())));
         
-        // 9. Retornar 201 CREATED con el token
-        java.util.Map<String, Object> responseMap = new java.util.HashMap<>();
-        responseMap.put("token", token);
-        
-        logger.info("✓ MAP RESPONSE CREATED: {}", responseMap);
+        // 9. Retornar 201 CREATED con los tokens
         
         return ResponseEntity.status(HttpStatus.CREATED)
                 .header("Content-Type", "application/json")
@@ -285,41 +311,81 @@ public class AuthController {
      * ENDPOINT: POST /api/auth/rehash
      * 
      * PROPÓSITO: Rehashear una contraseña en texto plano a BCrypt
-     * (para migración de datos legacy)
+     * (para migración de datos legacy) o un hash BCrypt con coste antiguo
      */
     @PostMapping("/rehash")
     public ResponseEntity<?> rehashPassword(@Valid @RequestBody AuthRequest request) {
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByUsuario(request.getUsuario());
-        if (usuarioOpt.isEmpty()) {
+        authRateLimiter.checkAccount(request.getUsuario());
+        Optional<CredencialesUsuario> credencialesOpt = usuarioRepository.findCredencialesByUsuario(request.getUsuario());
+        if (credencialesOpt.isEmpty()) {
             logger.warn("Rehash failed for usuario={}", request.getUsuario());
             throw new UnauthorizedException("Credenciales inválidas");
         }
-        Usuario usuario = usuarioOpt.get();
-        String stored = usuario.getContrasena();
+        CredencialesUsuario credenciales = credencialesOpt.get();
+        String stored = credenciales.getContrasena();
         String raw = request.getContrasena();
         if (stored == null || raw == null) {
             logger.warn("Rehash failed (null password) for usuario={}", request.getUsuario());
             throw new UnauthorizedException("Credenciales inválidas");
         }
-        boolean isBCrypt = stored.startsWith("$2a$") || stored.startsWith("$2b$") || stored.startsWith("$2y$");
-        boolean matches = isBCrypt ? passwordEncoder.matches(raw, stored) : Objects.equals(stored, raw);
+        boolean isBCrypt = isBCrypt(stored);
+        boolean matches = isBCrypt ? passwordHashingService.matches(raw, stored) : Objects.equals(stored, raw);
         if (!matches) {
             logger.warn("Rehash failed for usuario={} (bad credentials)", request.getUsuario());
             throw new UnauthorizedException("Credenciales inválidas");
         }
-        // Si la contraseña ya está hasheada, simplemente responde OK
-        if (isBCrypt) {
+        // Si la contraseña ya está hasheada con el coste actual, simplemente responde OK
+        if (isBCrypt && !passwordHashingService.needsUpgrade(stored)) {
             logger.info("Rehash skipped (already hashed) for usuario={}", request.getUsuario());
             return ResponseEntity.ok().build();
         }
-        // Si no está hasheada, la hasheamos y guardamos
-        String hashed = passwordEncoder.encode(raw);
-        usuario.setContrasena(hashed);
-        usuarioRepository.save(usuario);
+        // Si no está hasheada (o su coste es antiguo), la hasheamos y guardamos
+        rehashStoredPassword(credenciales.getId(), stored, raw);
         logger.info("Rehash success for usuario={}", request.getUsuario());
         return ResponseEntity.ok().build();
     }
 
+    // ============ REHASH DE CONTRASEÑAS (compartido) =============
+
+    private static boolean isBCrypt(String stored) {
+        // $2a$, $2b$, $2y$ = prefijos de BCrypt
+        return stored.startsWith("$2a$") || stored.startsWith("$2b$") || stored.startsWith("$2y$");
+    }
+
+    /**
+     * rehashStoredPassword - Sustituye la contraseña guardada por un hash BCrypt nuevo
+     * 
+     * - El hash se calcula en PasswordHashingService (sin conexión abierta)
+     * - La escritura es un UPDATE condicional en su propia transacción corta:
+     *   si la contraseña cambió entretanto (otro request), no se pisa
+     */
+    private void rehashStoredPassword(Long usuarioId, String stored, String raw) {
+        String hashed = passwordHashingService.encode(raw);
+        if (usuarioRepository.updateContrasena(usuarioId, stored, hashed) == 0) {
+            logger.info("Password rehash skipped for usuarioId={} (changed concurrently)", usuarioId);
+        }
+    }
+
+    /**
+     * rehashPasswordInBackground - Igual que rehashStoredPassword, pero fuera del request
+     * 
+     * Para hashes BCrypt válidos con un coste menor que el calibrado (BCryptCostCalibrator):
+     * el login responde ya y el hash nuevo se calcula y guarda en el pool de hashing.
+     * Si el pool está ocupado se omite; se reintentará en el siguiente login.
+     */
+    private void rehashPasswordInBackground(Long usuarioId, String stored, String raw) {
+        passwordHashingService.encodeInBackground(raw)
+                .thenAccept(hashed -> hashed.ifPresent(hash -> {
+                    if (usuarioRepository.updateContrasena(usuarioId, stored, hash) > 0) {
+                        logger.info("Password hash upgraded for usuarioId={}", usuarioId);
+                    }
+                }))
+                .exceptionally(e -> {
+                    logger.warn("Background password rehash failed for usuarioId={}: {}", usuarioId, e.getMessage());
+                    return null;
+                });
+    }
+
     /**
      * ENDPOINT: POST /api/auth/change-password
      * 
@@ -339,9 +405,11 @@ public class AuthController {
      * 4. Retorna 200 OK
      * 
      * CÓDIGOS RESPUESTA:
-     * - 200 OK: Contraseña cambiada exitosamente
+     * - 200 OK: Contraseña cambiada exitosamente, con un par de tokens nuevo
+     *   (los tokens emitidos antes quedan revocados)
      * - 401 Unauthorized: Contraseña actual incorrecta
      * - 404 Not Found: Usuario no existe
+     * - 409 Conflict: La contraseña cambió durante la operación (otro request)
      * 
      * SEGURIDAD:
      * - Valida la contraseña actual antes de permitir cambio
@@ -349,17 +417,19 @@ public class AuthController {
      * - Se usa contraseña anterior para autenticar, no token JWT
      */
     @PostMapping("/change-password")
-    @Transactional
+    // SIN @Transactional: igual que login, BCrypt no retiene ninguna conexión;
+    // la escritura es un UPDATE condicional en su propia transacción
     public ResponseEntity<?> changePassword(@Valid @RequestBody ChangePasswordRequest request) {
-        // 1. Buscar usuario por correo
-        Optional<Usuario> usuarioOpt = usuarioRepository.findByCorreo(request.getCorreoActual());
-        if (usuarioOpt.isEmpty()) {
+        authRateLimiter.checkAccount(request.getCorreoActual());
+        // 1. Leer credenciales por correo (proyección, sin cargar la entidad)
+        Optional<CredencialesUsuario> credencialesOpt = usuarioRepository.findCredencialesByCorreo(request.getCorreoActual());
+        if (credencialesOpt.isEmpty()) {
             logger.warn("Change password failed: user not found for correo={}", request.getCorreoActual());
             throw new UnauthorizedException("Usuario no encontrado");
         }
 
-        Usuario usuario = usuarioOpt.get();
-        String stored = usuario.getContrasena();
+        CredencialesUsuario credenciales = credencialesOpt.get();
+        String stored = credenciales.getContrasena();
 
         // 2. Validar que ambas contraseñas existan
         if (stored == null || request.getContrasenaActual() == null) {
@@ -368,9 +438,8 @@ public class AuthController {
         }
 
         // 3. Validar contraseña actual (soportar legacy y BCrypt)
-        boolean isBCrypt = stored.startsWith("$2a$") || stored.startsWith("$2b$") || stored.startsWith("$2y$");
-        boolean matches = isBCrypt ? 
-            passwordEncoder.matches(request.getContrasenaActual(), stored) : 
+        boolean matches = isBCrypt(stored) ? 
+            passwordHashingService.matches(request.getContrasenaActual(), stored) : 
             Objects.equals(stored, request.getContrasenaActual());
 
         if (!matches) {
@@ -378,13 +447,95 @@ public class AuthController {
             throw new UnauthorizedException("Contraseña actual incorrecta");
         }
 
-        // 4. Hash de la nueva contraseña
-        String hashedNewPassword = passwordEncoder.encode(request.getContrasenanueva());
-        usuario.setContrasena(hashedNewPassword);
-        usuarioRepository.save(usuario);
+        // 4. Hash de la nueva contraseña (solo si nadie la cambió entretanto)
+        String hashedNewPassword = passwordHashingService.encode(request.getContrasenanueva());
+        if (usuarioRepository.updateContrasena(credenciales.getId(), stored, hashedNewPassword) == 0) {
+            logger.warn("Change password failed (changed concurrently) for correo={}", request.getCorreoActual());
+            throw new ConflictException("La contraseña se ha modificado mientras tanto, inténtalo de nuevo");
+        }
+
+        // 5. Revocar todos los tokens emitidos con la contraseña anterior
+        //    y devolver un par nuevo para que esta sesión siga funcionando
+        tokenRevocationStore.revokeAllForUser(credenciales.getId(), credenciales.getCorreo());
 
         logger.info("Password changed successfully for correo={}", request.getCorreoActual());
-        return ResponseEntity.ok().build();
+        return ResponseEntity.ok(buildTokenResponse(credenciales.getCorreo(), credenciales.getId(),
+                credenciales.getGestorId()));
+    }
+
+    /**
+     * ENDPOINT: POST /api/auth/refresh
+     * 
+     * PROPÓSITO: Obtener un nuevo access token sin volver a pedir la contraseña
+     * 
+     * CUERPO JSON:
+     * {
+     *   "refreshToken": "eyJhbGciOiJIUzI1NiJ9..."
+     * }
+     * 
+     * PROCEDIMIENTO:
+     * 1. Verifica firma/expiración y que sea un refresh token (typ=refresh)
+     * 2. Comprueba que no se hayan revocado los tokens del usuario
+     * 3. Consume su jti (un solo uso). Si ya estaba usado → posible robo:
+     *    se revocan TODOS los tokens del usuario
+     * 4. Relee id/gestorId del usuario (proyección ligera) y emite un par nuevo
+     * 
+     * RESPUESTA (200 OK): { "token", "refreshToken", "expiresIn" }
+     * ERRORES: 401 si el refresh token es inválido, expiró, fue revocado o reutilizado
+     */
+    @PostMapping(value = "/refresh", produces = "application/json")
+    @Operation(summary = "Refrescar sesión", description = "Cambia un refresh token por un nuevo par de tokens (rotación)")
+    public ResponseEntity<java.util.Map<String, Object>> refresh(@Valid @RequestBody RefreshTokenRequest request) {
+        Claims claims = jwtUtil.verify(request.getRefreshToken())
+                .filter(JwtUtil::isRefreshToken)
+                .orElseThrow(() -> new UnauthorizedException("Refresh token inválido"));
+
+        if (tokenRevocationStore.isRevokedForUser(claims)) {
+            logger.warn("Refresh rejected: tokens revoked for correo={}", claims.getSubject());
+            throw new UnauthorizedException("Refresh token revocado");
+        }
+        if (!tokenRevocationStore.consume(claims)) {
+            // Reutilización de un refresh token ya rotado: se corta la sesión entera
+            tokenRevocationStore.revokeAllForUser(JwtUtil.getUsuarioId(claims), claims.getSubject());
+            logger.warn("Refresh token reuse detected for correo={}", claims.getSubject());
+            throw new UnauthorizedException("Refresh token reutilizado");
+        }
+
+        AuthenticatedUser usuario = usuarioRepository.findAuthenticatedUserByCorreo(claims.getSubject())
+                .orElseThrow(() -> new UnauthorizedException("Usuario no encontrado"));
+
+        logger.info("Refresh success for correo={}", usuario.getCorreo());
+        return ResponseEntity.ok(buildTokenResponse(usuario.getCorreo(), usuario.getId(), usuario.getGestorId()));
+    }
+
+    /**
+     * ENDPOINT: POST /api/auth/logout
+     * 
+     * PROPÓSITO: Cerrar la sesión revocando su refresh token
+     * (el access token, de vida corta, expira por sí solo)
+     * 
+     * RESPUESTA: 204 No Content siempre (también si el token ya no era válido)
+     */
+    @PostMapping("/logout")
+    @Operation(summary = "Cerrar sesión", description = "Revoca el refresh token de la sesión")
+    public ResponseEntity<Void> logout(@Valid @RequestBody RefreshTokenRequest request) {
+        jwtUtil.verify(request.getRefreshToken())
+                .filter(JwtUtil::isRefreshToken)
+                .ifPresent(tokenRevocationStore::consume);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * buildTokenResponse - Emite un par access + refresh token
+     * 
+     * @return Map con "token" (access), "refreshToken" y "expiresIn" (segundos)
+     */
+    private java.util.Map<String, Object> buildTokenResponse(String correo, Long usuarioId, Long gestorId) {
+        java.util.Map<String, Object> responseMap = new java.util.HashMap<>();
+        responseMap.put("token", jwtUtil.generateToken(correo, usuarioId, gestorId));
+        responseMap.put("refreshToken", jwtUtil.generateRefreshToken(correo, usuarioId, gestorId));
+        responseMap.put("expiresIn", jwtUtil.getExpirationMs() / 1000);
+        return responseMap;
     }
 
     /**
@@ -426,8 +577,11 @@ public class AuthController {
         // 2. Extraer token sin el prefijo "Bearer "
         String token = authHeader.substring(7);
         
-        // 3. Extraer correo del token JWT
-        String correo = jwtUtil.extractCorreo(token);
+        // 3. Verificar el token y extraer el correo (una sola verificación)
+        String correo = jwtUtil.verify(token)
+                .filter(claims -> !JwtUtil.isRefreshToken(claims) && !tokenRevocationStore.isRevoked(claims))
+                .map(Claims::getSubject)
+                .orElse(null);
         
         if (correo == null) {
             logger.warn("Get current user failed: invalid token");
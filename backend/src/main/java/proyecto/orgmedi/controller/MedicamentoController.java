@@ -2,19 +2,27 @@ package proyecto.orgmedi.controller;
 
 import jakarta.validation.Valid;
 import proyecto.orgmedi.dominio.Medicamento;
-import proyecto.orgmedi.dominio.Usuario;
 import proyecto.orgmedi.dominio.GestorMedicamentos;
 import proyecto.orgmedi.service.MedicamentoService;
 import proyecto.orgmedi.service.GestorMedicamentosService;
 import proyecto.orgmedi.service.ConsumoRegistroService;
+import proyecto.orgmedi.service.DataVersionService;
 import proyecto.orgmedi.dto.medicamento.MedicamentoDTO;
 import proyecto.orgmedi.dto.medicamento.MedicamentosPorFechaDTO;
 import proyecto.orgmedi.dto.medicamento.ConsumoRegistroDTO;
-import proyecto.orgmedi.repo.UsuarioRepository;
-import proyecto.orgmedi.security.SecurityUtil;
+import proyecto.orgmedi.security.AuthenticatedUser;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.config.ResponseByteCache;
+import proyecto.orgmedi.config.SecondLevelCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.beans.factory.annotation.Autowired;
 import io.swagger.v3.oas.annotations.Operation;
@@ -22,6 +30,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -38,36 +47,130 @@ import java.sql.Statement;
 public class MedicamentoController {
     private final MedicamentoService medicamentoService;
     private final GestorMedicamentosService gestorMedicamentosService;
-    private final UsuarioRepository usuarioRepository;
+    private final CurrentUserResolver currentUserResolver;
     private final ConsumoRegistroService consumoRegistroService;
+    private final DataVersionService dataVersionService;
+    private final ResponseByteCache responseByteCache;
+
+    /** Valores de ?formato= en GET /por-fecha */
+    private static final String FORMATO_COMPLETO = "completo";
+    private static final String FORMATO_COMPACTO = "compacto";
 
     @Autowired
     public MedicamentoController(MedicamentoService medicamentoService, 
                                 GestorMedicamentosService gestorMedicamentosService,
-                                UsuarioRepository usuarioRepository,
-                                ConsumoRegistroService consumoRegistroService) {
+                                CurrentUserResolver currentUserResolver,
+                                ConsumoRegistroService consumoRegistroService,
+                                DataVersionService dataVersionService,
+                                ResponseByteCache responseByteCache) {
         this.medicamentoService = medicamentoService;
         this.gestorMedicamentosService = gestorMedicamentosService;
-        this.usuarioRepository = usuarioRepository;
+        this.currentUserResolver = currentUserResolver;
         this.consumoRegistroService = consumoRegistroService;
+        this.dataVersionService = dataVersionService;
+        this.responseByteCache = responseByteCache;
     }
 
     @Autowired
     private DataSource dataSource;
 
+    @Autowired
+    private SecondLevelCache secondLevelCache;
+
+    /**
+     * Obtiene el gestor del usuario autenticado a partir de su gestorId cacheado
+     * (sin cargar la entidad Usuario). Devuelve null si el usuario no tiene gestor.
+     * 
+     * Plan de carga: gestor + medicamentos en un solo SELECT (entity graph),
+     * porque todos los que lo usan recorren gestor.getMedicamentos().
+     */
+    private GestorMedicamentos getGestorActual() {
+        AuthenticatedUser actual = currentUserResolver.getCurrentUser();
+        if (actual.getGestorId() == null) {
+            return null;
+        }
+        return gestorMedicamentosService.findWithMedicamentosById(actual.getGestorId()).orElse(null);
+    }
+
+    /**
+     * GET CONDICIONAL (ETag de DataVersionService)
+     * 
+     * Devuelve el ETag de la versión actual de los datos del usuario, o null si el
+     * cliente ya tiene esa versión (If-None-Match): en ese caso Spring responde 304
+     * y el endpoint debe devolver null SIN hacer consultas ni calcular nada.
+     * 
+     * La versión se lee ANTES de consultar: si hay una escritura a la vez, como
+     * mucho se envían datos nuevos con el ETag viejo (y el siguiente GET da 200).
+     */
+    private String etagSiModificado(WebRequest webRequest, Long usuarioId) {
+        String etag = dataVersionService.etag(usuarioId);
+        return webRequest.checkNotModified(etag) ? null : etag;
+    }
+
+    /**
+     * Igual que etagSiModificado, para otra representación del mismo recurso
+     * (horario compacto, CBOR): cada representación tiene su propio ETag.
+     * variante null = representación por defecto (JSON completo).
+     */
+    private String etagSiModificado(WebRequest webRequest, Long usuarioId, String variante) {
+        if (variante == null) {
+            return etagSiModificado(webRequest, usuarioId);
+        }
+        String etag = dataVersionService.etag(usuarioId, variante);
+        return webRequest.checkNotModified(etag) ? null : etag;
+    }
+
+    /**
+     * Variante del ETag para una forma (null = completa) y un formato de respuesta:
+     * null, "compacto", "cbor" o "compacto-cbor"
+     */
+    private static String variante(String forma, ResponseByteCache.Formato formatoRespuesta) {
+        if (formatoRespuesta == ResponseByteCache.Formato.JSON) {
+            return forma;
+        }
+        String codificacion = formatoRespuesta.name().toLowerCase();
+        return forma == null ? codificacion : forma + "-" + codificacion;
+    }
+
+    /**
+     * Respuesta 200 con ETag. "private, no-cache": el navegador la guarda pero
+     * revalida siempre (If-None-Match), así un cambio se ve en el siguiente GET.
+     */
+    private static ResponseEntity.BodyBuilder okConEtag(String etag) {
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate());
+    }
+
+    /**
+     * Busca un medicamento de la lista del usuario autenticado.
+     * Existencia y propiedad en UNA consulta (id + gestor), sin cargar la lista:
+     * el coste no depende de cuántos medicamentos tenga el usuario.
+     * Devuelve null si no existe o es de otro usuario.
+     */
+    private Medicamento findMedicamentoPropio(Long id) {
+        Long gestorId = currentUserResolver.getCurrentUser().getGestorId();
+        return medicamentoService.findByIdAndGestorId(id, gestorId).orElse(null);
+    }
+
     /**
      * Obtiene todos los medicamentos del usuario autenticado
+     * GET condicional: 304 si no ha cambiado nada desde el ETag del cliente
      */
     @GetMapping
     @Operation(summary = "Listar medicamentos", description = "Obtiene todos los medicamentos del usuario autenticado")
     @ApiResponse(responseCode = "200", description = "Lista de medicamentos obtenida correctamente")
-    public List<Medicamento> getAllMedicamentos() {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        GestorMedicamentos gestor = usuario.getGestorMedicamentos();
+    @ApiResponse(responseCode = "304", description = "Sin cambios desde el ETag enviado en If-None-Match")
+    public ResponseEntity<List<Medicamento>> getAllMedicamentos(WebRequest webRequest) {
+        String etag = etagSiModificado(webRequest, currentUserResolver.getCurrentUser().getId());
+        if (etag == null) {
+            return null; // 304 Not Modified
+        }
+        GestorMedicamentos gestor = getGestorActual();
         if (gestor == null) {
-            return List.of();
+            return okConEtag(etag).body(List.of());
         }
-        return gestor.getMedicamentos();
+        return okConEtag(etag).body(gestor.getMedicamentos());
     }
 
     /**
@@ -91,49 +194,72 @@ public class MedicamentoController {
      *   ],
      *   "totalMedicamentos": 5
      * }
+     * 
+     * Con ?formato=compacto devuelve HorarioCompactoDTO: cada medicamento una vez
+     * y las tomas como minuto del día + índices (mucho menor con tomas frecuentes)
+     * Con Accept: application/cbor, la misma respuesta en CBOR (ver CborConfig)
      */
     @GetMapping("/por-fecha")
     @Operation(summary = "Listar medicamentos por fecha agrupados por hora", 
                description = "Obtiene todos los medicamentos del usuario para una fecha específica, agrupados por hora de toma")
     @ApiResponse(responseCode = "200", description = "Medicamentos agrupados por hora obtenidos correctamente")
-    @ApiResponse(responseCode = "400", description = "Formato de fecha inválido")
+    @ApiResponse(responseCode = "304", description = "Sin cambios desde el ETag enviado en If-None-Match")
+    @ApiResponse(responseCode = "400", description = "Formato de fecha inválido o formato de respuesta desconocido")
     public ResponseEntity<MedicamentosPorFechaDTO> getMedicamentosPorFecha(
-            @RequestParam(name = "fecha") String fechaStr) {
+            @RequestParam(name = "fecha") String fechaStr,
+            @RequestParam(name = "formato", required = false) String formato,
+            ServletWebRequest webRequest) throws IOException {
+        boolean compacto = FORMATO_COMPACTO.equals(formato);
+        if (formato != null && !compacto && !FORMATO_COMPLETO.equals(formato)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String etag;
+        ResponseByteCache.Cuerpo cuerpo;
         try {
             // Parsear la fecha del parámetro (esperado formato yyyy-MM-dd)
             DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
             LocalDate fecha = LocalDate.parse(fechaStr, formatter);
 
-            // Obtener usuario autenticado
-            Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-            GestorMedicamentos gestor = usuario.getGestorMedicamentos();
-            
-            if (gestor == null) {
-                return ResponseEntity.ok(MedicamentosPorFechaDTO.builder()
-                        .fecha(fecha)
-                        .gruposPorHora(List.of())
-                        .totalMedicamentos(0)
-                        .build());
-            }
+            // Obtener usuario autenticado (solo su gestorId, sin cargar el gestor)
+            AuthenticatedUser actual = currentUserResolver.getCurrentUser();
 
-            // Obtener medicamentos del gestor y agruparlos por hora para la fecha
-            List<Medicamento> medicamentos = gestor.getMedicamentos();
-            System.out.println("[MedicamentoController - getMedicamentosPorFecha] Fecha solicitada: " + fecha);
-            System.out.println("[MedicamentoController - getMedicamentosPorFecha] Total medicamentos: " + medicamentos.size());
-            for (Medicamento m : medicamentos) {
-                System.out.println("[MedicamentoController - getMedicamentosPorFecha] - " + m.getNombre() + 
-                                 " | horaInicio: " + m.getHoraInicio() + 
-                                 " | frecuencia: " + m.getFrecuencia() +
-                                 " | fechaInicio: " + m.getFechaInicio() +
-                                 " | fechaFin: " + m.getFechaFin());
+            // Sin cambios desde el ETag del cliente → 304 antes de consultar o agrupar
+            // JSON o CBOR según Accept; cada combinación forma/formato tiene su ETag
+            ResponseByteCache.Formato formatoRespuesta = ResponseByteCache.negociar(webRequest.getHeader(HttpHeaders.ACCEPT));
+            etag = etagSiModificado(webRequest, actual.getId(),
+                    variante(compacto ? FORMATO_COMPACTO : null, formatoRespuesta));
+            if (etag == null) {
+                return null;
             }
-            MedicamentosPorFechaDTO resultado = medicamentoService.getMedicamentosPorFecha(medicamentos, fecha);
 
-            return ResponseEntity.ok(resultado);
+            // Bytes ya serializados para esta versión de los datos; si no están,
+            // cargar solo los medicamentos vigentes ese día y agruparlos por hora
+            if (compacto) {
+                ResponseByteCache.Clave clave = new ResponseByteCache.Clave(
+                        actual.getId(), "por-fecha-compacto", fecha.toString(), formatoRespuesta, etag);
+                cuerpo = responseByteCache.get(clave, () -> actual.getGestorId() == null
+                        ? medicamentoService.getHorarioCompacto(List.of(), fecha)
+                        : medicamentoService.getHorarioCompactoDeGestor(actual.getGestorId(), fecha));
+            } else {
+                ResponseByteCache.Clave clave = new ResponseByteCache.Clave(
+                        actual.getId(), "por-fecha", fecha.toString(), formatoRespuesta, etag);
+                cuerpo = responseByteCache.get(clave, () -> actual.getGestorId() == null
+                        ? MedicamentosPorFechaDTO.builder()
+                            .fecha(fecha)
+                            .gruposPorHora(List.of())
+                            .totalMedicamentos(0)
+                            .build()
+                        : medicamentoService.getMedicamentosPorFechaDeGestor(actual.getGestorId(), fecha));
+            }
         } catch (Exception e) {
             System.err.println("[MedicamentoController] Error parsing date or fetching medicines: " + e.getMessage());
             return ResponseEntity.badRequest().build();
         }
+
+        // Los bytes van directos a la respuesta (sin Jackson)
+        responseByteCache.write(cuerpo, etag, webRequest);
+        return null;
     }
 
 
@@ -142,17 +268,7 @@ public class MedicamentoController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<Medicamento> getMedicamentoById(@PathVariable Long id) {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        GestorMedicamentos gestor = usuario.getGestorMedicamentos();
-        
-        if (gestor == null) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        Medicamento medicamento = gestor.getMedicamentos().stream()
-                .filter(m -> m.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        Medicamento medicamento = findMedicamentoPropio(id);
         
         if (medicamento == null) {
             return ResponseEntity.notFound().build();
@@ -163,21 +279,26 @@ public class MedicamentoController {
 
     /**
      * Crea un medicamento para el usuario autenticado
+     * 
+     * Un único INSERT con gestor_id y usuario_id (referencia, sin SELECT):
+     * no se carga ni se guarda la lista del gestor. El nombre repetido se
+     * comprueba con una consulta indexada (409 si ya existe).
      */
     @PostMapping
     public ResponseEntity<MedicamentoDTO> createMedicamento(@Valid @RequestBody MedicamentoDTO dto) {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        GestorMedicamentos gestor = usuario.getGestorMedicamentos();
+        Long gestorId = currentUserResolver.getCurrentUser().getGestorId();
         
-        if (gestor == null) {
+        if (gestorId == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
         
         Medicamento medicamento = medicamentoService.fromDto(dto);
-        gestor.agregarMedicamento(medicamento);
-        gestorMedicamentosService.save(gestor);
+        medicamento.setGestorId(gestorId);
+        medicamento.setUsuario(currentUserResolver.getCurrentUsuarioReference());
+        Medicamento creado = medicamentoService.createMedicamentoDeGestor(medicamento);
+        dataVersionService.bump(currentUserResolver.getCurrentUser().getId());
         
-        return ResponseEntity.status(HttpStatus.CREATED).body(medicamentoService.toDto(medicamento));
+        return ResponseEntity.status(HttpStatus.CREATED).body(medicamentoService.toDto(creado));
     }
 
     /**
@@ -185,18 +306,8 @@ public class MedicamentoController {
      */
     @PutMapping("/{id}")
     public ResponseEntity<MedicamentoDTO> updateMedicamento(@PathVariable Long id, @Valid @RequestBody MedicamentoDTO dto) {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        GestorMedicamentos gestor = usuario.getGestorMedicamentos();
-        
-        if (gestor == null) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        // Buscar el medicamento en el gestor del usuario
-        Medicamento medicamento = gestor.getMedicamentos().stream()
-                .filter(m -> m.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        // Buscar el medicamento en el gestor del usuario (una consulta por ID + gestor)
+        Medicamento medicamento = findMedicamentoPropio(id);
         
         if (medicamento == null) {
             return ResponseEntity.notFound().build();
@@ -214,62 +325,32 @@ public class MedicamentoController {
             medicamento.setConsumed(dto.getConsumed());
         }
         
-        gestorMedicamentosService.save(gestor);
+        medicamentoService.save(medicamento);
+        dataVersionService.bump(currentUserResolver.getCurrentUser().getId());
         
         return ResponseEntity.ok(medicamentoService.toDto(medicamento));
     }
 
     /**
-     * Actualiza parcialmente un medicamento (PATCH)
-     * Solo actualiza los campos que se envíen (no null)
+     * Actualiza parcialmente un medicamento (PATCH, JSON Merge Patch - RFC 7396)
+     * 
+     * - Campo ausente: no cambia. Campo con valor: se asigna. Campo a null: 400
+     *   (todos los campos son obligatorios)
+     * - Acepta application/merge-patch+json y application/json
+     * - Escritura de una fila: UPDATE solo de las columnas que cambian (@DynamicUpdate)
      */
-    @PatchMapping("/{id}")
-    public ResponseEntity<MedicamentoDTO> patchMedicamento(@PathVariable Long id, @RequestBody MedicamentoDTO dto) {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        GestorMedicamentos gestor = usuario.getGestorMedicamentos();
-        
-        if (gestor == null) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        // Buscar el medicamento en el gestor del usuario
-        Medicamento medicamento = gestor.getMedicamentos().stream()
-                .filter(m -> m.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<MedicamentoDTO> patchMedicamento(@PathVariable Long id, @RequestBody JsonNode patch) {
+        // Buscar el medicamento en el gestor del usuario (una consulta por ID + gestor)
+        Medicamento medicamento = findMedicamentoPropio(id);
         
         if (medicamento == null) {
             return ResponseEntity.notFound().build();
         }
         
-        // Actualizar solo los campos que se envíen (no null)
-        if (dto.getNombre() != null && !dto.getNombre().isBlank()) {
-            medicamento.setNombre(dto.getNombre());
-        }
-        if (dto.getCantidadMg() != null) {
-            medicamento.setCantidadMg(dto.getCantidadMg());
-        }
-        if (dto.getHoraInicio() != null && !dto.getHoraInicio().isBlank()) {
-            medicamento.setHoraInicio(dto.getHoraInicio());
-        }
-        if (dto.getFechaInicio() != null) {
-            medicamento.setFechaInicio(dto.getFechaInicio());
-        }
-        if (dto.getFechaFin() != null) {
-            medicamento.setFechaFin(dto.getFechaFin());
-        }
-        if (dto.getColor() != null && !dto.getColor().isBlank()) {
-            medicamento.setColor(dto.getColor());
-        }
-        if (dto.getFrecuencia() != null) {
-            medicamento.setFrecuencia(dto.getFrecuencia());
-        }
-        // Consumido (estado de UI)
-        if (dto.getConsumed() != null) {
-            medicamento.setConsumed(dto.getConsumed());
-        }
-        
-        gestorMedicamentosService.save(gestor);
+        medicamentoService.aplicarMergePatch(medicamento, patch);
+        medicamentoService.save(medicamento);
+        dataVersionService.bump(currentUserResolver.getCurrentUser().getId());
         
         return ResponseEntity.ok(medicamentoService.toDto(medicamento));
     }
@@ -279,20 +360,14 @@ public class MedicamentoController {
      */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteMedicamento(@PathVariable Long id) {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        GestorMedicamentos gestor = usuario.getGestorMedicamentos();
+        // Un único DELETE con la condición de propietario (sin cargar la lista)
+        AuthenticatedUser actual = currentUserResolver.getCurrentUser();
         
-        if (gestor == null) {
-            return ResponseEntity.notFound().build();
-        }
-        
-        boolean removed = gestor.getMedicamentos().removeIf(m -> m.getId().equals(id));
-        
-        if (!removed) {
+        if (!medicamentoService.deleteByIdAndGestorId(id, actual.getGestorId())) {
             return ResponseEntity.notFound().build();
         }
         
-        gestorMedicamentosService.save(gestor);
+        dataVersionService.bump(actual.getId());
         return ResponseEntity.noContent().build();
     }
 
@@ -335,11 +410,16 @@ public class MedicamentoController {
     /**
      * Endpoint temporal para agregar la columna `consumed` en la tabla `medicamentos`.
      * Uso: POST /api/medicamentos/debug/add-consumed-column
+     * 
+     * Modifica la BD por fuera de Hibernate: vacía la caché de segundo nivel
+     * e invalida los ETags de todos los usuarios.
      */
     @PostMapping("/debug/add-consumed-column")
     public ResponseEntity<Map<String, String>> addConsumedColumn() {
         try (Connection conn = dataSource.getConnection(); Statement stmt = conn.createStatement()) {
             stmt.executeUpdate("ALTER TABLE medicamentos ADD COLUMN consumed BOOLEAN DEFAULT FALSE");
+            secondLevelCache.evictAll();
+            dataVersionService.bumpAll();
             return ResponseEntity.ok(Map.of("result", "column added"));
         } catch (Exception e) {
             System.err.println("[DB] Error adding column: " + e.getMessage());
@@ -377,21 +457,35 @@ public class MedicamentoController {
     /**
      * Obtiene todos los consumos registrados para un usuario en una fecha
      * GET /api/medicamentos/consumos?fecha=yyyy-MM-dd
+     * JSON o CBOR según Accept
      */
     @GetMapping("/consumos")
     @Operation(summary = "Obtener consumos del día", description = "Obtiene todos los registros de consumo para una fecha específica")
     @ApiResponse(responseCode = "200", description = "Consumos obtenidos correctamente")
+    @ApiResponse(responseCode = "304", description = "Sin cambios desde el ETag enviado en If-None-Match")
     public ResponseEntity<List<ConsumoRegistroDTO>> obtenerConsumosDelDia(
-        @RequestParam String fecha
-    ) {
+        @RequestParam String fecha,
+        ServletWebRequest webRequest
+    ) throws IOException {
+        String etag;
+        ResponseByteCache.Cuerpo cuerpo;
         try {
-            List<ConsumoRegistroDTO> consumos = consumoRegistroService.obtenerConsumosDelDia(fecha);
-            return ResponseEntity.ok(consumos);
+            Long usuarioId = currentUserResolver.getCurrentUser().getId();
+            ResponseByteCache.Formato formatoRespuesta = ResponseByteCache.negociar(webRequest.getHeader(HttpHeaders.ACCEPT));
+            etag = etagSiModificado(webRequest, usuarioId, variante(null, formatoRespuesta));
+            if (etag == null) {
+                return null; // 304 Not Modified
+            }
+            ResponseByteCache.Clave clave = new ResponseByteCache.Clave(usuarioId, "consumos", fecha, formatoRespuesta, etag);
+            cuerpo = responseByteCache.get(clave, () -> consumoRegistroService.obtenerConsumosDelDia(fecha));
         } catch (Exception e) {
             System.err.println("[MedicamentoController] Error al obtener consumos: " + e.getMessage());
             e.printStackTrace();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+
+        responseByteCache.write(cuerpo, etag, webRequest);
+        return null;
     }
 
     /**
@@ -5,9 +5,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
-import proyecto.orgmedi.dominio.Usuario;
 import proyecto.orgmedi.dto.NotificationDTO;
-import proyecto.orgmedi.repo.UsuarioRepository;
+import proyecto.orgmedi.security.AuthenticatedUser;
+import proyecto.orgmedi.security.CurrentUserResolver;
 import proyecto.orgmedi.service.NotificationService;
 
 import java.util.List;
@@ -19,7 +19,7 @@ public class NotificationController {
     @Autowired
     private NotificationService notificationService;
     @Autowired
-    private UsuarioRepository usuarioRepository;
+    private CurrentUserResolver currentUserResolver; // Identidad cacheada (sin consultar la BD por request)
     
     /**
      * GET /api/notifications - Obtener todas las notificaciones del usuario
@@ -30,10 +30,7 @@ public class NotificationController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(List.of());
         }
         
-        Usuario usuario = usuarioRepository.findByCorreo(authentication.getName()).orElse(null);
-        if (usuario == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(List.of());
-        }
+        AuthenticatedUser usuario = currentUserResolver.getCurrentUser();
         
         List<NotificationDTO> notifications = notificationService.getNotificationsByUser(usuario.getId());
         return ResponseEntity.ok(notifications);
@@ -48,10 +45,7 @@ public class NotificationController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(List.of());
         }
         
-        Usuario usuario = usuarioRepository.findByCorreo(authentication.getName()).orElse(null);
-        if (usuario == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(List.of());
-        }
+        AuthenticatedUser usuario = currentUserResolver.getCurrentUser();
         
         List<NotificationDTO> notifications = notificationService.getUnreadNotifications(usuario.getId());
         return ResponseEntity.ok(notifications);
@@ -66,10 +60,7 @@ public class NotificationController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(0L);
         }
         
-        Usuario usuario = usuarioRepository.findByCorreo(authentication.getName()).orElse(null);
-        if (usuario == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(0L);
-        }
+        AuthenticatedUser usuario = currentUserResolver.getCurrentUser();
         
         long count = notificationService.countUnreadNotifications(usuario.getId());
         return ResponseEntity.ok(count);
@@ -101,10 +92,7 @@ public class NotificationController {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
         
-        Usuario usuario = usuarioRepository.findByCorreo(authentication.getName()).orElse(null);
-        if (usuario == null) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-        }
+        AuthenticatedUser usuario = currentUserResolver.getCurrentUser();
         
         notificationService.markAllAsRead(usuario.getId());
         return ResponseEntity.ok().build();
@@ -0,0 +1,164 @@
+package proyecto.orgmedi.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import proyecto.orgmedi.dto.ocr.OcrJobDTO;
+import proyecto.orgmedi.dto.ocr.OcrPaginaDTO;
+import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+import proyecto.orgmedi.error.ApiException;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.service.ocr.OcrBatchService;
+import proyecto.orgmedi.service.ocr.OcrJobService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OcrController - OCR ASÍNCRONO de fotos de prospectos
+ * 
+ * FLUJO:
+ * 1. POST /api/ocr/jobs (multipart, campo "image") → 202 + ID del trabajo (sin esperar al OCR)
+ * 2. GET /api/ocr/jobs/{id} hasta que estado sea COMPLETADO (resultado) o ERROR
+ *    Mientras está PENDIENTE/PROCESANDO la respuesta lleva Retry-After (segundos)
+ * 
+ * 429 + Retry-After si la cola está llena o el usuario ya tiene demasiadas imágenes en proceso.
+ * 
+ * LOTES (POST /api/ocr/batch, campo "files": varias fotos o un PDF):
+ * respuesta text/event-stream con un evento "pagina" por página según terminan y, al final,
+ * "resultado" (campos del texto de todas las páginas en orden) o "error".
+ */
+@RestController
+@RequestMapping("/api/ocr")
+@Tag(name = "OCR", description = "Extracción de datos de medicamentos desde fotos")
+@SecurityRequirement(name = "Bearer Authentication")
+public class OcrController {
+    /** Cada cuánto conviene volver a preguntar por un trabajo sin terminar */
+    private static final String POLL_SECONDS = "1";
+
+    private static final Logger logger = LoggerFactory.getLogger(OcrController.class);
+
+    private final OcrJobService ocrJobService;
+    private final OcrBatchService ocrBatchService;
+    private final CurrentUserResolver currentUserResolver;
+    private final Duration batchTimeout;
+
+    @Autowired
+    public OcrController(OcrJobService ocrJobService, OcrBatchService ocrBatchService,
+                         CurrentUserResolver currentUserResolver,
+                         @Value("${ocr.batch.timeout:PT2M}") Duration batchTimeout) {
+        this.ocrJobService = ocrJobService;
+        this.ocrBatchService = ocrBatchService;
+        this.currentUserResolver = currentUserResolver;
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * Encola el OCR de una imagen y devuelve el trabajo al momento
+     * POST /api/ocr/jobs
+     */
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Crear trabajo OCR", description = "Encola la imagen y devuelve el ID del trabajo sin esperar al OCR")
+    @ApiResponse(responseCode = "202", description = "Trabajo encolado (Location: URL para consultar el estado)")
+    @ApiResponse(responseCode = "400", description = "El archivo no es una imagen válida")
+    @ApiResponse(responseCode = "429", description = "Cola llena o demasiados trabajos del usuario (ver Retry-After)")
+    public ResponseEntity<OcrJobDTO> crearTrabajo(@RequestParam("image") MultipartFile image) {
+        OcrJobDTO job = ocrJobService.submit(currentUserResolver.getCurrentUser().getId(), image);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(job.getId())
+                .toUri();
+        return ResponseEntity.accepted()
+                .location(location)
+                .header(HttpHeaders.RETRY_AFTER, POLL_SECONDS)
+                .body(job);
+    }
+
+    /**
+     * Estado y resultado de un trabajo del usuario autenticado
+     * GET /api/ocr/jobs/{id}
+     */
+    @GetMapping("/jobs/{id}")
+    @Operation(summary = "Consultar trabajo OCR", description = "Devuelve el estado del trabajo y, si ha terminado, el resultado")
+    @ApiResponse(responseCode = "200", description = "Estado del trabajo")
+    @ApiResponse(responseCode = "404", description = "El trabajo no existe, ha caducado o es de otro usuario")
+    public ResponseEntity<OcrJobDTO> obtenerTrabajo(@PathVariable String id) {
+        return ocrJobService.find(id, currentUserResolver.getCurrentUser().getId())
+                .map(job -> {
+                    boolean terminado = OcrJobService.COMPLETADO.equals(job.getEstado())
+                            || OcrJobService.ERROR.equals(job.getEstado());
+                    ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+                    if (!terminado) {
+                        respuesta.header(HttpHeaders.RETRY_AFTER, POLL_SECONDS);
+                    }
+                    return respuesta.body(job);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * OCR de un prospecto de varias páginas, con resultados parciales por SSE
+     * POST /api/ocr/batch
+     *
+     * Los errores de validación (400) y de capacidad (429) se devuelven como respuesta
+     * normal, antes de abrir el stream.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "OCR de varias páginas", description = "Varias imágenes o un PDF; eventos SSE: pagina (parcial), resultado o error")
+    @ApiResponse(responseCode = "200", description = "Stream text/event-stream con el progreso y el resultado")
+    @ApiResponse(responseCode = "400", description = "Archivos no válidos, PDF ilegible o demasiadas páginas")
+    @ApiResponse(responseCode = "429", description = "Cola llena o lote del usuario ya en proceso (ver Retry-After)")
+    public SseEmitter procesarLote(@RequestParam("files") List<MultipartFile> files) {
+        SseEmitter emitter = new SseEmitter(batchTimeout.toMillis());
+        OcrBatchService.Lote lote = ocrBatchService.submit(currentUserResolver.getCurrentUser().getId(), files,
+                new OcrBatchService.Oyente() {
+                    @Override
+                    public void pagina(OcrPaginaDTO pagina) {
+                        enviar(emitter, "pagina", pagina);
+                    }
+
+                    @Override
+                    public void resultado(OcrResponseDTO resultado) {
+                        enviar(emitter, "resultado", resultado);
+                        emitter.complete();
+                    }
+
+                    @Override
+                    public void error(ApiException error) {
+                        enviar(emitter, "error", Map.of("error", error.getMessage(), "status", error.getStatus().value()));
+                        emitter.complete();
+                    }
+                });
+        // Cliente desconectado o sin respuesta a tiempo: no seguir con las páginas pendientes
+        emitter.onTimeout(lote::cancelar);
+        emitter.onError(error -> lote.cancelar());
+        return emitter;
+    }
+
+    /**
+     * Envía un evento SSE; si el cliente ya no está, el error llega al lote (que se cancela)
+     */
+    private static void enviar(SseEmitter emitter, String evento, Object datos) {
+        try {
+            emitter.send(SseEmitter.event().name(evento).data(datos, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            logger.debug("[OcrController] SSE client gone: {}", e.toString());
+            throw new IllegalStateException("Cliente desconectado", e);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package proyecto.orgmedi.dominio;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import proyecto.orgmedi.error.BadRequestException;
 import proyecto.orgmedi.error.ConflictException;
 import proyecto.orgmedi.error.NotFoundException;
@@ -32,6 +34,8 @@ import proyecto.orgmedi.error.NotFoundException;
 @AllArgsConstructor // Constructor con todos los parámetros
 @Builder // Patrón Builder
 @Entity // Es una entidad de BD
+@Cacheable // Caché de segundo nivel (región "gestores", ver SecondLevelCache)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "gestores")
 @Table(name = "gestor_medicamentos") // Nombre de la tabla
 public class GestorMedicamentos {
     
@@ -64,11 +68,19 @@ public class GestorMedicamentos {
      * - cascade = CascadeType.ALL: si se elimina el gestor, se eliminan todos sus medicamentos
      * - orphanRemoval = true: si un medicamento se dedeja de la lista, se elimina de la BD
      * - JoinColumn "gestor_id": la relación se establece mediante la columna gestor_id en medicamentos
+     * - insertable/updatable = false: la columna la escribe Medicamento.gestorId, así añadir
+     *   un medicamento es un único INSERT y no hace falta guardar el gestor entero
+     *   (agregarMedicamento() rellena gestorId por el mismo motivo)
+     * 
+     * - @Cache: la lista de IDs se guarda en la caché de segundo nivel (región
+     *   "gestores-medicamentos"). Como la columna la escribe el medicamento, crear uno
+     *   directamente invalida la entrada a mano (SecondLevelCache.evictMedicamentosDeGestor)
      * 
      * LISTA VACÍA POR DEFECTO: Al crear un nuevo GestorMedicamentos, la lista está vacía
      */
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
-    @JoinColumn(name = "gestor_id")
+    @JoinColumn(name = "gestor_id", insertable = false, updatable = false)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "gestores-medicamentos")
     @Builder.Default
     private java.util.List<Medicamento> medicamentos = new java.util.ArrayList<>();
 
@@ -103,6 +115,10 @@ public class GestorMedicamentos {
      * 2. Comprueba que no exista otro medicamento con el mismo nombre (evita duplicados)
      * 3. Si pasa todas las validaciones, lo agrega a la lista
      * 
+     * NOTA: requiere la lista cargada. El endpoint POST /api/medicamentos usa
+     * MedicamentoService.createMedicamentoDeGestor(), que comprueba el nombre con una
+     * consulta indexada y hace un único INSERT sin cargar la lista.
+     * 
      * EXCEPCIONES:
      * - BadRequestException: si el medicamento es null
      * - ConflictException: si ya existe un medicamento con ese nombre
@@ -127,7 +143,8 @@ public class GestorMedicamentos {
             throw new ConflictException("Ya existe un medicamento con ese nombre");
         }
         
-        // Si pasó todas las validaciones, se agrega
+        // Si pasó todas las validaciones, se agrega (la columna gestor_id la escribe el medicamento)
+        medicamento.setGestorId(this.id);
         medicamentos.add(medicamento);
     }
 
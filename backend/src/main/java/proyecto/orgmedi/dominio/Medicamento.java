@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDate;
 
@@ -25,6 +29,12 @@ import java.time.LocalDate;
  * RELACIONES:
  * - N:1 con Usuario (varios medicamentos pertenecen a un usuario)
  * - N:1 con ConsumoRegistro (registro de cuándo se tomó)
+ * 
+ * ESCRITURAS DE UNA SOLA FILA:
+ * - @DynamicUpdate: el UPDATE solo incluye las columnas que han cambiado
+ *   (un PATCH de "consumed" no reescribe el resto de la fila)
+ * - gestorId: crear un medicamento es un único INSERT con gestor_id ya relleno,
+ *   sin cargar ni guardar el GestorMedicamentos
  */
 @Getter // Getters automáticos
 @Setter // Setters automáticos
@@ -32,7 +42,14 @@ import java.time.LocalDate;
 @AllArgsConstructor // Constructor con todos los parámetros
 @Builder // Patrón Builder
 @Entity // Es una entidad de BD
-@Table(name = "medicamentos") // Nombre de la tabla
+@DynamicUpdate // UPDATE solo de las columnas modificadas
+@Cacheable // Caché de segundo nivel (región "medicamentos", ver SecondLevelCache)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "medicamentos")
+@Table(name = "medicamentos", // Nombre de la tabla
+       indexes = { // Consultas por propietario
+           @Index(name = "idx_medicamentos_usuario_id", columnList = "usuario_id"),
+           @Index(name = "idx_medicamentos_gestor_id", columnList = "gestor_id")
+       })
 public class Medicamento {
     
     // ============ ATRIBUTOS =============
@@ -158,6 +175,19 @@ public class Medicamento {
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_id", nullable = false)
     private Usuario usuario;
+
+    /**
+     * ID del GestorMedicamentos al que pertenece (columna gestor_id)
+     * EXPLICACIÓN:
+     * - Es la misma columna que usa la lista GestorMedicamentos.medicamentos,
+     *   pero la escribe SOLO este campo (la lista es de solo lectura sobre ella)
+     * - Así crear un medicamento es un INSERT con gestor_id, sin tocar el gestor
+     * - Se indexa para las consultas por gestor (propietario, duplicados, horario)
+     * - No se expone en el JSON
+     */
+    @JsonIgnore
+    @Column(name = "gestor_id")
+    private Long gestorId;
     
     // ============ MÉTODOS ÚTILES =============
     
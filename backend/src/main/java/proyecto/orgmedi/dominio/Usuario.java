@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * Entidad Usuario - Representa un usuario del sistema
@@ -28,6 +30,8 @@ import lombok.*;
 @AllArgsConstructor // Constructor con todos los parámetros
 @Builder // Patrón Builder para crear objetos de forma más clara
 @Entity // Indica que es una entidad de BD (tabla)
+@Cacheable // Caché de segundo nivel (región "usuarios", ver SecondLevelCache)
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "usuarios")
 @Table(name = "usuarios") // Especifica el nombre de la tabla en BD
 public class Usuario {
     
@@ -87,13 +91,18 @@ public class Usuario {
      * EXPLICACIÓN: 
      * - Cada usuario tiene EXACTAMENTE UN gestor de medicamentos
      * - El gestor es el contenedor de todos los medicamentos del usuario
-     * - Se carga EAGER (ansiosamente) = cuando se carga un Usuario, se carga su GestorMedicamentos
+     * - Se carga LAZY = solo cuando se accede a él. Cada caso de uso pide lo que necesita:
+     *   - Autenticación: proyecciones (AuthenticatedUser, CredencialesUsuario), sin el gestor
+     *   - Listado: GestorMedicamentosRepository.findWithMedicamentosById (entity graph)
+     *   - Horario por fecha: MedicamentoRepository.findVigentesByGestorId
+     * - Al ser el lado inverso (mappedBy) de un 1:1, Hibernate solo puede retrasar la carga
+     *   con bytecode enhancement (hibernate-enhance-maven-plugin en el pom.xml)
      * - CASCADE.ALL = cuando se elimina un Usuario, se elimina automáticamente su GestorMedicamentos
      * - mappedBy = "usuario" significa que GestorMedicamentos tiene un atributo que apunta a este Usuario
      * 
      * FLUJO: Usuario -> posee -> GestorMedicamentos -> contiene -> Medicamentos
      */
-    @OneToOne(mappedBy = "usuario", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToOne(mappedBy = "usuario", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private GestorMedicamentos gestorMedicamentos;
 
     // ============ MÉTODOS ESPECIALES =============
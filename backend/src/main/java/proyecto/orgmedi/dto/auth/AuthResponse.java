@@ -66,5 +66,18 @@ public class AuthResponse {
      */
     @JsonProperty("token")
     private String token;
+
+    /**
+     * REFRESH TOKEN: de un solo uso, sirve para pedir un nuevo par de tokens
+     * en POST /api/auth/refresh cuando el access token (corto) expira
+     */
+    @JsonProperty("refreshToken")
+    private String refreshToken;
+
+    /**
+     * Segundos de vida del access token
+     */
+    @JsonProperty("expiresIn")
+    private Long expiresIn;
 }
 
@@ -0,0 +1,25 @@
+package proyecto.orgmedi.dto.auth;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * CredencialesUsuario - PROYECCIÓN con lo mínimo para verificar un login
+ *
+ * PROPÓSITO: Leer de BD solo lo que necesita AuthController.login, en una consulta
+ * corta de solo lectura, en vez de cargar la entidad Usuario.
+ *
+ * CONTENIDO:
+ * - id, correo, gestorId: para generar los tokens (claims uid/gid)
+ * - contrasena: hash guardado (BCrypt o texto plano legacy)
+ *
+ * NOTA: Nunca se devuelve al cliente; contiene el hash de la contraseña.
+ */
+@Getter
+@AllArgsConstructor
+public class CredencialesUsuario {
+    private final Long id;
+    private final String correo;
+    private final String contrasena;
+    private final Long gestorId;
+}
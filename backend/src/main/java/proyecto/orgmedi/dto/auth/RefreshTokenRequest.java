@@ -0,0 +1,26 @@
+package proyecto.orgmedi.dto.auth;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * RefreshTokenRequest - DTO para REFRESCAR o CERRAR una sesión
+ * 
+ * USO:
+ * - POST /api/auth/refresh → devuelve un nuevo access token + un nuevo refresh token
+ * - POST /api/auth/logout  → revoca el refresh token
+ * 
+ * JSON:
+ * {
+ *   "refreshToken": "eyJhbGciOiJIUzI1NiJ9..."
+ * }
+ * 
+ * ROTACIÓN: cada refresh token solo se puede usar UNA vez. Si se reutiliza uno
+ * ya usado (posible robo), se revocan todos los tokens del usuario.
+ */
+public class RefreshTokenRequest {
+    @NotBlank(message = "El refresh token es obligatorio")
+    private String refreshToken;
+
+    public String getRefreshToken() { return refreshToken; }
+    public void setRefreshToken(String refreshToken) { this.refreshToken = refreshToken; }
+}
@@ -0,0 +1,63 @@
+package proyecto.orgmedi.dto.medicamento;
+
+import lombok.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * HorarioCompactoDTO - Horario de un día SIN repetir los medicamentos
+ * 
+ * PROPÓSITO: Versión compacta de MedicamentosPorFechaDTO
+ * GET /api/medicamentos/por-fecha?fecha=2026-02-10&formato=compacto
+ * 
+ * PROBLEMA DEL FORMATO NORMAL:
+ * - Cada grupo por hora repite el MedicamentoConHoraDTO completo
+ * - Un medicamento cada hora aparece 24 veces con los mismos datos
+ * 
+ * FORMATO COMPACTO:
+ * - medicamentos: cada medicamento UNA vez (diccionario)
+ * - tomas: grupos por hora; la hora es el minuto del día (0-1439)
+ *   y los medicamentos son ÍNDICES de la lista anterior
+ * 
+ * EJEMPLO - Amoxicilina cada 8h + Ibuprofeno a las 08:00:
+ * {
+ *   "fecha": "2026-02-10",
+ *   "medicamentos": [ {id:1, nombre:"Amoxicilina", ...}, {id:2, nombre:"Ibuprofeno", ...} ],
+ *   "tomas": [
+ *     { "minuto": 0,   "medicamentos": [0] },      ← 00:00
+ *     { "minuto": 480, "medicamentos": [0, 1] },   ← 08:00
+ *     { "minuto": 960, "medicamentos": [0] }       ← 16:00
+ *   ],
+ *   "totalMedicamentos": 4
+ * }
+ * 
+ * EN FRONTEND: hora = minuto / 60, minutos = minuto % 60
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HorarioCompactoDTO {
+    /**
+     * Fecha del horario (yyyy-MM-dd)
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate fecha;
+
+    /**
+     * Medicamentos con alguna toma ese día, cada uno una sola vez
+     */
+    private List<MedicamentoDTO> medicamentos;
+
+    /**
+     * Tomas agrupadas por minuto del día (ordenadas de menor a mayor)
+     */
+    private List<TomaCompactaDTO> tomas;
+
+    /**
+     * Total de tomas del día (igual que en el formato normal)
+     */
+    private Integer totalMedicamentos;
+}
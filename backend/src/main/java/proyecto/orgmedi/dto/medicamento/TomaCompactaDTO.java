@@ -0,0 +1,19 @@
+package proyecto.orgmedi.dto.medicamento;
+
+import lombok.*;
+
+/**
+ * TomaCompactaDTO - Un grupo de tomas del HorarioCompactoDTO
+ * 
+ * - minuto: minuto del día de la toma (08:00 → 480)
+ * - medicamentos: índices en HorarioCompactoDTO.medicamentos
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TomaCompactaDTO {
+    private int minuto;
+    private int[] medicamentos;
+}
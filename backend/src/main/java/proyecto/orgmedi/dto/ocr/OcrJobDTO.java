@@ -0,0 +1,27 @@
+package proyecto.orgmedi.dto.ocr;
+
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * DTO con el estado de un trabajo OCR asíncrono (ver OcrJobService)
+ *
+ * estado: PENDIENTE → PROCESANDO → COMPLETADO | ERROR
+ * - resultado: solo cuando estado = COMPLETADO
+ * - error / errorStatus: mensaje y código HTTP equivalente cuando estado = ERROR
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OcrJobDTO {
+    private String id;  // Identificador del trabajo (UUID)
+    private String estado;  // PENDIENTE, PROCESANDO, COMPLETADO, ERROR
+    private OcrResponseDTO resultado;  // Datos extraídos (si COMPLETADO)
+    private String error;  // Mensaje de error (si ERROR)
+    private Integer errorStatus;  // Código HTTP del error (si ERROR)
+    private Instant creadoEn;  // Cuándo se encoló
+    private Instant finalizadoEn;  // Cuándo terminó (COMPLETADO o ERROR)
+}
@@ -0,0 +1,24 @@
+package proyecto.orgmedi.dto.ocr;
+
+import lombok.*;
+
+/**
+ * DTO con el resultado parcial de una página de un lote OCR (ver OcrBatchService)
+ *
+ * Se envía un evento por página según terminan (no en orden): el cliente la coloca por "pagina".
+ * - texto: solo si la página se reconoció
+ * - error / errorStatus: mensaje y código HTTP equivalente si la página falló
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OcrPaginaDTO {
+    private int pagina;  // Número de página (empieza en 1, orden de subida o del PDF)
+    private int total;  // Páginas del lote
+    private String texto;  // Texto reconocido (si no hubo error)
+    private String error;  // Mensaje de error (si falló)
+    private Integer errorStatus;  // Código HTTP del error (si falló)
+    private long duracionMs;  // Tiempo de preprocesado + OCR de la página
+}
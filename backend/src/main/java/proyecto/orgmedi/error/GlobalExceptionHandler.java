@@ -2,9 +2,12 @@ package proyecto.orgmedi.error;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import proyecto.orgmedi.dto.ApiErrorResponse;
 
 /**
@@ -69,6 +72,34 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(ex.getStatus()).body(body);
     }
 
+    /**
+     * handleTooManyRequests - 429 con la cabecera Retry-After
+     * 
+     * Igual que handleApiException, pero indica al cliente cuántos segundos esperar.
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    @SuppressWarnings("null")
+    public ResponseEntity<ApiErrorResponse> handleTooManyRequests(TooManyRequestsException ex) {
+        logger.warn("API exception: {} - {}", ex.getStatus(), ex.getMessage());
+        ApiErrorResponse body = new ApiErrorResponse(ex.getMessage(), "RATE_LIMITED");
+        return ResponseEntity.status(ex.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(body);
+    }
+
+    /**
+     * handleMaxUploadSize - 413 cuando el contenedor corta la subida
+     *
+     * Tomcat deja de leer en cuanto la petición supera spring.servlet.multipart.max-*-size
+     * (sin cargar el resto); sin este manejador acabaría como 500.
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ApiErrorResponse> handleMaxUploadSize(MaxUploadSizeExceededException ex) {
+        logger.warn("Upload rejected: {}", ex.getMessage());
+        ApiErrorResponse body = new ApiErrorResponse("El archivo excede el tamaño máximo permitido");
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(body);
+    }
+
     /**
      * handleUnexpected - MANEJADOR PARA EXCEPCIONES INESPERADAS
      * 
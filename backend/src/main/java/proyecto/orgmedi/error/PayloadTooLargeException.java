@@ -0,0 +1,30 @@
+package proyecto.orgmedi.error;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * PayloadTooLargeException - Error 413 (Payload Too Large)
+ *
+ * QUÉ SIGNIFICA: El archivo enviado supera el tamaño máximo permitido
+ * HTTP STATUS: 413 Payload Too Large
+ *
+ * CUÁNDO USARLA:
+ * - Una subida supera el límite mientras se está leyendo (se corta sin leer el resto)
+ *
+ * EJEMPLOS DE USO:
+ * if (leidos > maxSize) {
+ *     throw new PayloadTooLargeException("El archivo excede el tamaño máximo de 10MB");
+ * }
+ *
+ * RESPUESTA AL CLIENTE:
+ * HTTP 413
+ * {
+ *   "error": "El archivo excede el tamaño máximo de 10MB",
+ *   "status": 413
+ * }
+ */
+public class PayloadTooLargeException extends ApiException {
+    public PayloadTooLargeException(String message) {
+        super(message, HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+}
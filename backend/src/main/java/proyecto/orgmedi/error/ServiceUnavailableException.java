@@ -0,0 +1,35 @@
+package proyecto.orgmedi.error;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * ServiceUnavailableException - Error 503 (Service Unavailable)
+ * 
+ * QUÉ SIGNIFICA: El servidor está saturado temporalmente; el cliente puede reintentar
+ * HTTP STATUS: 503 Service Unavailable
+ * 
+ * CUÁNDO USARLA:
+ * - Un pool/cola de trabajo acotado está lleno (ej: hashing de contraseñas)
+ * - Un recurso limitado no queda libre a tiempo
+ * 
+ * EJEMPLOS DE USO:
+ * catch (RejectedExecutionException e) {
+ *     throw new ServiceUnavailableException("Servidor ocupado, inténtalo de nuevo");
+ * }
+ * 
+ * RESPUESTA AL CLIENTE:
+ * HTTP 503
+ * {
+ *   "error": "Servidor ocupado, inténtalo de nuevo",
+ *   "status": 503
+ * }
+ */
+public class ServiceUnavailableException extends ApiException {
+    public ServiceUnavailableException(String message) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    public ServiceUnavailableException(String message, Throwable cause) {
+        super(message, cause, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+}
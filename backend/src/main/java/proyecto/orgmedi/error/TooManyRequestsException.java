@@ -0,0 +1,42 @@
+package proyecto.orgmedi.error;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * TooManyRequestsException - Error 429 (Too Many Requests)
+ * 
+ * QUÉ SIGNIFICA: El cliente ha superado el límite de intentos permitido
+ * HTTP STATUS: 429 Too Many Requests
+ * 
+ * CUÁNDO USARLA:
+ * - Demasiados intentos de login/cambio de contraseña para una cuenta
+ * - Demasiadas peticiones de autenticación desde una IP
+ * 
+ * EJEMPLOS DE USO:
+ * authRateLimiter.checkAccount(request.getUsuario());
+ * // Si se agotó el cubo de la cuenta, lanza:
+ * // TooManyRequestsException("Demasiados intentos...", 30)
+ * 
+ * RESPUESTA AL CLIENTE:
+ * HTTP 429
+ * Retry-After: 30
+ * {
+ *   "error": "Demasiados intentos. Inténtalo de nuevo más tarde",
+ *   "code": "RATE_LIMITED"
+ * }
+ */
+public class TooManyRequestsException extends ApiException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message, HttpStatus.TOO_MANY_REQUESTS);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Segundos que el cliente debe esperar (cabecera Retry-After)
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -4,7 +4,11 @@ import proyecto.orgmedi.dominio.ConsumoRegistro;
 import proyecto.orgmedi.dominio.Usuario;
 import proyecto.orgmedi.dominio.Medicamento;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
@@ -81,9 +85,32 @@ public interface ConsumoRegistroRepository extends JpaRepository<ConsumoRegistro
      * Obtener todos los registros de consumo para un medicamento específico
      */
     List<ConsumoRegistro> findByMedicamentoId(Long medicamentoId);
+
+    /**
+     * Variantes por ID: filtran por la FK directamente, sin tener que cargar
+     * antes las entidades Usuario/Medicamento (los IDs vienen del JWT)
+     */
+    List<ConsumoRegistro> findByUsuarioIdAndFecha(Long usuarioId, LocalDate fecha);
+
+    Optional<ConsumoRegistro> findByUsuarioIdAndMedicamentoIdAndFechaAndHora(
+        Long usuarioId,
+        Long medicamentoId,
+        LocalDate fecha,
+        LocalTime hora
+    );
     
     /**
      * Contar consumos registrados para un usuario en una fecha
      */
     Long countByUsuarioAndFechaAndConsumidoTrue(Usuario usuario, LocalDate fecha);
+
+    Optional<ConsumoRegistro> findByIdAndUsuarioId(Long id, Long usuarioId);
+
+    boolean existsByIdAndUsuarioId(Long id, Long usuarioId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ConsumoRegistro c SET c.consumido = :consumido WHERE c.id = :id AND c.usuario.id = :usuarioId")
+    int updateConsumidoByIdAndUsuarioId(@Param("id") Long id, @Param("usuarioId") Long usuarioId,
+                                        @Param("consumido") boolean consumido);
 }
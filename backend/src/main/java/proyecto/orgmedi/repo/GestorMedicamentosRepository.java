@@ -1,5 +1,6 @@
 package proyecto.orgmedi.repo;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import proyecto.orgmedi.dominio.GestorMedicamentos;
 import java.util.Optional;
@@ -56,4 +57,19 @@ public interface GestorMedicamentosRepository extends JpaRepository<GestorMedica
      * @return Optional con el gestor si existe
      */
     Optional<GestorMedicamentos> findByUsuarioId(Long usuarioId);
+
+    /**
+     * Buscar un gestor JUNTO con sus medicamentos (plan de carga del listado)
+     * 
+     * @EntityGraph: un único SELECT con LEFT JOIN a medicamentos, en vez de
+     * cargar el gestor y después la colección LAZY en una segunda consulta.
+     * No carga el Usuario (LAZY).
+     * 
+     * USO: GET /api/medicamentos y las escrituras que recorren la lista del gestor
+     * 
+     * @param id ID del gestor
+     * @return Optional con el gestor y sus medicamentos inicializados
+     */
+    @EntityGraph(attributePaths = "medicamentos")
+    Optional<GestorMedicamentos> findWithMedicamentosById(Long id);
 }
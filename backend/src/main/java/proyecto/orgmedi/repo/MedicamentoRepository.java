@@ -1,9 +1,16 @@
 package proyecto.orgmedi.repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import proyecto.orgmedi.dominio.Medicamento;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * MedicamentoRepository - Repositorio para acceder a datos de Medicamentos
@@ -20,6 +27,14 @@ import java.util.List;
  * RELACIONES:
  * - Medicamento N:1 Usuario (muchos meds para un usuario)
  * - Medicamento 1:N ConsumoRegistro (1 med genera muchos registros)
+ * 
+ * CONSULTAS CON PROPIETARIO (...AndUsuarioId / ...AndGestorId):
+ * - Buscan el medicamento por su ID Y su propietario en UNA consulta indexada
+ * - Si no existe o es de otro usuario el resultado es el mismo (vacío / 0 filas):
+ *   no se cargan colecciones ni se filtra en memoria, y no se revela si el ID existe
+ * - ...AndUsuarioId: propietario por medicamentos.usuario_id (OrganizationFacade)
+ * - ...AndGestorId:  propietario por medicamentos.gestor_id (Medicamento.gestorId), la
+ *   lista del gestor del usuario autenticado (MedicamentoController)
  */
 public interface MedicamentoRepository extends JpaRepository<Medicamento, Long> {
     /**
@@ -47,4 +62,89 @@ public interface MedicamentoRepository extends JpaRepository<Medicamento, Long>
      * @return Lista de medicamentos del usuario
      */
     List<Medicamento> findByUsuarioId(Long usuarioId);
+
+    /**
+     * Medicamentos de un gestor VIGENTES en una fecha (plan de carga del horario)
+     * 
+     * SQL: SELECT * FROM medicamentos
+     *      WHERE gestor_id = ? AND fecha_inicio <= ? AND fecha_fin >= ?
+     * 
+     * - Una sola consulta por el índice de gestor_id: no carga el gestor ni el usuario
+     * - El filtro de fechas se hace en la BD: solo llegan los que toca tomar ese día
+     * 
+     * USO: GET /api/medicamentos/por-fecha
+     * 
+     * @param gestorId ID del gestor del usuario autenticado
+     * @param fecha Día del horario
+     * @return Medicamentos cuyo rango [fechaInicio, fechaFin] incluye la fecha
+     */
+    @Query("SELECT m FROM Medicamento m " +
+           "WHERE m.gestorId = :gestorId AND m.fechaInicio <= :fecha AND m.fechaFin >= :fecha")
+    List<Medicamento> findVigentesByGestorId(@Param("gestorId") Long gestorId, @Param("fecha") LocalDate fecha);
+
+    /**
+     * Medicamento por ID solo si pertenece al usuario
+     * 
+     * SQL: SELECT * FROM medicamentos WHERE id = ? AND usuario_id = ?
+     * 
+     * @return El medicamento, o vacío si no existe o es de otro usuario
+     */
+    Optional<Medicamento> findByIdAndUsuarioId(Long id, Long usuarioId);
+
+    /**
+     * ¿Existe el medicamento y pertenece al usuario? (sin cargar la entidad)
+     */
+    boolean existsByIdAndUsuarioId(Long id, Long usuarioId);
+
+    /**
+     * Variante en bloque: de los IDs pedidos, solo los que pertenecen al usuario
+     * 
+     * SQL: SELECT * FROM medicamentos WHERE id IN (...) AND usuario_id = ?
+     */
+    List<Medicamento> findByIdInAndUsuarioId(Collection<Long> ids, Long usuarioId);
+
+    /**
+     * Variante en bloque: cuántos de los IDs pedidos pertenecen al usuario
+     * (si coincide con ids.size(), el usuario es dueño de todos)
+     */
+    long countByIdInAndUsuarioId(Collection<Long> ids, Long usuarioId);
+
+    /**
+     * Elimina el medicamento solo si pertenece al usuario (un único DELETE)
+     * 
+     * @return Filas borradas: 0 si no existe o es de otro usuario
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Medicamento m WHERE m.id = :id AND m.usuario.id = :usuarioId")
+    int deleteByIdAndUsuarioId(@Param("id") Long id, @Param("usuarioId") Long usuarioId);
+
+    /**
+     * Medicamento por ID solo si está en la lista del gestor
+     * 
+     * SQL: SELECT * FROM medicamentos WHERE id = ? AND gestor_id = ?
+     * 
+     * Va por clave primaria: el coste no depende de cuántos medicamentos tenga el usuario.
+     */
+    Optional<Medicamento> findByIdAndGestorId(Long id, Long gestorId);
+
+    /**
+     * Elimina el medicamento solo si está en la lista del gestor (un único DELETE)
+     * 
+     * @return Filas borradas: 0 si no existe o es de otro gestor
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Medicamento m WHERE m.id = :id AND m.gestorId = :gestorId")
+    int deleteByIdAndGestorId(@Param("id") Long id, @Param("gestorId") Long gestorId);
+
+    /**
+     * ¿Tiene ya el gestor un medicamento con ese nombre?
+     * 
+     * SQL: SELECT ... FROM medicamentos WHERE gestor_id = ? AND nombre = ? (LIMIT 1)
+     * 
+     * Sustituye al recorrido de la lista en GestorMedicamentos.agregarMedicamento()
+     * al crear desde el API: usa los índices de nombre/gestor_id, sin cargar la lista.
+     */
+    boolean existsByGestorIdAndNombre(Long gestorId, String nombre);
 }
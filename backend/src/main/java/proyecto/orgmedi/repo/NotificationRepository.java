@@ -40,4 +40,14 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.usuario = :usuario AND n.read = false")
     long countUnreadByUsuario(@Param("usuario") Usuario usuario);
+
+    // Variantes por ID de usuario: no necesitan cargar antes la entidad Usuario
+    @Query("SELECT n FROM Notification n WHERE n.usuario.id = :usuarioId ORDER BY n.createdAt DESC")
+    List<Notification> findByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    @Query("SELECT n FROM Notification n WHERE n.usuario.id = :usuarioId AND n.read = false ORDER BY n.createdAt DESC")
+    List<Notification> findUnreadByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.usuario.id = :usuarioId AND n.read = false")
+    long countUnreadByUsuarioId(@Param("usuarioId") Long usuarioId);
 }
@@ -1,7 +1,13 @@
 package proyecto.orgmedi.repo;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import proyecto.orgmedi.dominio.Usuario;
+import proyecto.orgmedi.dto.auth.CredencialesUsuario;
+import proyecto.orgmedi.security.AuthenticatedUser;
 
 import java.util.Optional;
 
@@ -131,4 +137,72 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
      * @return true si ya existe, false si disponible
      */
     boolean existsByCorreo(String correo);
+
+    /**
+     * Verificar si un NOMBRE DE USUARIO ya existe (registro)
+     *
+     * Igual que existsByCorreo(): no carga la entidad, solo comprueba.
+     *
+     * @param usuario Nombre de usuario a verificar
+     * @return true si ya existe
+     */
+    boolean existsByUsuario(String usuario);
+
+    /**
+     * Buscar la IDENTIDAD LIGERA de un usuario por correo
+     *
+     * A diferencia de findByCorreo(), NO carga la entidad Usuario:
+     * es una proyección de 3 columnas.
+     * SQL aproximado:
+     * SELECT u.id, u.correo, g.id FROM usuario u LEFT JOIN gestor_medicamentos g ... WHERE u.correo = ?
+     *
+     * USO: CurrentUserResolver en un fallo de caché
+     *
+     * @param correo Email del usuario autenticado (subject del JWT)
+     * @return Optional con (id, correo, gestorId) si existe
+     */
+    @Query("SELECT new proyecto.orgmedi.security.AuthenticatedUser(u.id, u.correo, g.id) " +
+           "FROM Usuario u LEFT JOIN u.gestorMedicamentos g WHERE u.correo = :correo")
+    Optional<AuthenticatedUser> findAuthenticatedUserByCorreo(@Param("correo") String correo);
+
+    /**
+     * Buscar las CREDENCIALES de un usuario por nombre de usuario (login)
+     *
+     * Proyección (id, correo, contrasena, gestorId) en una sola consulta corta de
+     * solo lectura: no carga la entidad ni deja nada en el contexto de persistencia.
+     *
+     * @param usuario Nombre de usuario del login
+     * @return Optional con las credenciales si existe
+     */
+    @Query("SELECT new proyecto.orgmedi.dto.auth.CredencialesUsuario(u.id, u.correo, u.contrasena, g.id) " +
+           "FROM Usuario u LEFT JOIN u.gestorMedicamentos g WHERE u.usuario = :usuario")
+    Optional<CredencialesUsuario> findCredencialesByUsuario(@Param("usuario") String usuario);
+
+    /**
+     * Buscar las CREDENCIALES de un usuario por correo (cambio de contraseña)
+     *
+     * Misma proyección que findCredencialesByUsuario().
+     *
+     * @param correo Email del usuario
+     * @return Optional con las credenciales si existe
+     */
+    @Query("SELECT new proyecto.orgmedi.dto.auth.CredencialesUsuario(u.id, u.correo, u.contrasena, g.id) " +
+           "FROM Usuario u LEFT JOIN u.gestorMedicamentos g WHERE u.correo = :correo")
+    Optional<CredencialesUsuario> findCredencialesByCorreo(@Param("correo") String correo);
+
+    /**
+     * Sustituir el hash de la contraseña en su PROPIA transacción corta
+     *
+     * UPDATE condicional: solo se aplica si la contraseña guardada sigue siendo
+     * la que se verificó (si otro request la cambió entretanto, no la pisa).
+     *
+     * @param id ID del usuario
+     * @param actual Hash/contraseña que se leyó y verificó
+     * @param nueva Nuevo hash BCrypt
+     * @return Filas actualizadas (0 si la contraseña cambió entretanto)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Usuario u SET u.contrasena = :nueva WHERE u.id = :id AND u.contrasena = :actual")
+    int updateContrasena(@Param("id") Long id, @Param("actual") String actual, @Param("nueva") String nueva);
 }
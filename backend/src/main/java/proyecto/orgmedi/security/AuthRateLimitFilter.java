@@ -0,0 +1,77 @@
+package proyecto.orgmedi.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import proyecto.orgmedi.dto.ApiErrorResponse;
+import proyecto.orgmedi.error.TooManyRequestsException;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * AuthRateLimitFilter - LÍMITE POR IP en los endpoints de autenticación costosos
+ *
+ * QUÉ HACE:
+ * - Solo actúa en POST a login, register, rehash y change-password (los que hashean)
+ *   y a refresh y logout (cada uno guarda un jti consumido en TokenRevocationStore)
+ * - Consume un intento del cubo de la IP (AuthRateLimiter.checkIp)
+ * - Si está agotado responde 429 + Retry-After SIN leer el body, sin BD y sin BCrypt
+ *
+ * IP DEL CLIENTE:
+ * - request.getRemoteAddr(); detrás de un proxy la resuelve el contenedor a partir de
+ *   X-Forwarded-For (server.forward-headers-strategy=native), así no se confía en
+ *   cabeceras que cualquier cliente puede inventar
+ *
+ * El límite por cuenta (usuario/correo) necesita el body: lo aplica AuthController.
+ */
+@Component
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+    private static final Set<String> RUTAS_LIMITADAS = Set.of(
+            "/api/auth/login",
+            "/api/auth/register",
+            "/api/auth/rehash",
+            "/api/auth/change-password",
+            // Cada refresh/logout deja un jti consumido en TokenRevocationStore
+            "/api/auth/refresh",
+            "/api/auth/logout"
+    );
+
+    private final AuthRateLimiter authRateLimiter;
+    private final ObjectMapper objectMapper;
+
+    public AuthRateLimitFilter(AuthRateLimiter authRateLimiter, ObjectMapper objectMapper) {
+        this.authRateLimiter = authRateLimiter;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
+        return !"POST".equalsIgnoreCase(request.getMethod())
+                || !RUTAS_LIMITADAS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain chain) throws ServletException, IOException {
+        try {
+            authRateLimiter.checkIp(request.getRemoteAddr());
+        } catch (TooManyRequestsException e) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getWriter(), new ApiErrorResponse(e.getMessage(), "RATE_LIMITED"));
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,125 @@
+package proyecto.orgmedi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import proyecto.orgmedi.error.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * AuthRateLimiter - LÍMITE DE INTENTOS en los endpoints de autenticación
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - /api/auth/** es público y cada intento de login cuesta un BCrypt completo
+ * - Una ráfaga de credential stuffing podría saturar la CPU
+ *
+ * DOS LÍMITES INDEPENDIENTES (cubos GCRA, ver TokenBucket):
+ * - Por IP: lo aplica AuthRateLimitFilter antes de leer el body
+ * - Por cuenta (usuario/correo): lo aplica AuthController antes de tocar la BD o hashear
+ *
+ * MEMORIA ACOTADA:
+ * - Un cubo por clave en una caché Caffeine con tamaño máximo (security.rate-limit.max-keys)
+ * - Los cubos inactivos caducan: tras capacity·interval sin uso estarían llenos otra vez,
+ *   así que descartarlos no cambia el resultado
+ *
+ * CONFIGURACIÓN (application.properties):
+ * - security.rate-limit.enabled
+ * - security.rate-limit.ip.capacity / ip.per-minute
+ * - security.rate-limit.account.capacity / account.per-minute
+ *
+ * LIMITACIÓN: el estado es local a cada instancia.
+ */
+@Component
+public class AuthRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AuthRateLimiter.class);
+    private static final String MENSAJE = "Demasiados intentos. Inténtalo de nuevo más tarde";
+
+    private final boolean enabled;
+    private final Limit ipLimit;
+    private final Limit accountLimit;
+    private final LongSupplier clock;
+
+    @Autowired
+    public AuthRateLimiter(@Value("${security.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${security.rate-limit.ip.capacity:20}") int ipCapacity,
+                           @Value("${security.rate-limit.ip.per-minute:30}") int ipPerMinute,
+                           @Value("${security.rate-limit.account.capacity:5}") int accountCapacity,
+                           @Value("${security.rate-limit.account.per-minute:5}") int accountPerMinute,
+                           @Value("${security.rate-limit.max-keys:100000}") long maxKeys) {
+        this(enabled, ipCapacity, ipPerMinute, accountCapacity, accountPerMinute, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * Constructor con reloj inyectable (tests)
+     */
+    AuthRateLimiter(boolean enabled, int ipCapacity, int ipPerMinute, int accountCapacity, int accountPerMinute,
+                    long maxKeys, LongSupplier clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.ipLimit = new Limit(ipCapacity, ipPerMinute, maxKeys);
+        this.accountLimit = new Limit(accountCapacity, accountPerMinute, maxKeys);
+    }
+
+    /**
+     * checkIp - Consume un intento de la IP
+     *
+     * @throws TooManyRequestsException si la IP agotó su cubo
+     */
+    public void checkIp(String ip) {
+        check(ipLimit, ip, "ip");
+    }
+
+    /**
+     * checkAccount - Consume un intento de la cuenta (usuario o correo, sin distinguir mayúsculas)
+     *
+     * @throws TooManyRequestsException si la cuenta agotó su cubo
+     */
+    public void checkAccount(String account) {
+        if (account == null || account.isBlank()) {
+            return;
+        }
+        check(accountLimit, account.trim().toLowerCase(Locale.ROOT), "account");
+    }
+
+    private void check(Limit limit, String key, String kind) {
+        if (!enabled || key == null) {
+            return;
+        }
+        long waitNanos = limit.tryAcquire(key, clock.getAsLong());
+        if (waitNanos > 0) {
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            logger.warn("[AuthRateLimiter] Rate limit exceeded for {} (retry in {}s)", kind, retryAfter);
+            throw new TooManyRequestsException(MENSAJE, retryAfter);
+        }
+    }
+
+    /**
+     * Un tipo de límite: cubos por clave con expiración por inactividad
+     */
+    private static final class Limit {
+        private final int capacity;
+        private final long intervalNanos;
+        private final Cache<String, TokenBucket> buckets;
+
+        Limit(int capacity, int perMinute, long maxKeys) {
+            this.capacity = Math.max(1, capacity);
+            this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(Duration.ofNanos(intervalNanos * this.capacity))
+                    .build();
+        }
+
+        long tryAcquire(String key, long nowNanos) {
+            return buckets.get(key, k -> new TokenBucket(capacity, intervalNanos, nowNanos)).tryAcquire(nowNanos);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package proyecto.orgmedi.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.security.Principal;
+
+/**
+ * AuthenticatedUser - IDENTIDAD LIGERA del usuario que hace el request
+ *
+ * PROPÓSITO: Representar "quién llama" sin cargar la entidad Usuario completa
+ * (ni su GestorMedicamentos) desde la base de datos.
+ *
+ * CONTENIDO:
+ * - id: ID del Usuario en BD
+ * - correo: Email (subject del JWT)
+ * - gestorId: ID del GestorMedicamentos del usuario (puede ser null)
+ *
+ * USO:
+ * AuthenticatedUser actual = currentUserResolver.getCurrentUser();
+ * notificationService.getNotificationsByUser(actual.getId());
+ *
+ * ORIGEN:
+ * - Tokens con claims uid/gid: JwtRequestFilter lo instala directamente como
+ *   principal del SecurityContext (sin ninguna consulta)
+ * - Tokens antiguos (solo correo): CurrentUserResolver lo obtiene de su caché o de la BD
+ *
+ * NOTA: Es inmutable, por eso se puede compartir entre requests desde la caché
+ * de CurrentUserResolver sin riesgo.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class AuthenticatedUser implements Principal {
+    private final Long id;
+    private final String correo;
+    private final Long gestorId;
+
+    /**
+     * El nombre del principal es el correo (igual que con los tokens antiguos),
+     * así authentication.getName() sigue devolviendo el email
+     */
+    @Override
+    public String getName() {
+        return correo;
+    }
+}
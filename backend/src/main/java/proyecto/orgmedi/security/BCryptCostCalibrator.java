@@ -0,0 +1,98 @@
+package proyecto.orgmedi.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCryptCostCalibrator - ELIGE EL COSTE DE BCRYPT SEGÚN LA CPU DEL CONTENEDOR
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - El coste por defecto (10) es fijo, pero la CPU de cada instancia (Render, Docker) varía
+ * - En una máquina rápida el coste 10 se queda corto; en una lenta, 12 haría el login lentísimo
+ *
+ * CÓMO (al arrancar):
+ * 1. Calienta el JIT con unos hashes baratos
+ * 2. Mide cuánto tarda verificar una contraseña con costes min-cost, min-cost+1, ...
+ * 3. Elige el MAYOR coste cuya verificación tarda <= security.bcrypt.target-ms
+ *    (cada +1 de coste duplica el tiempo, así que se para en cuanto se pasa)
+ * - Nunca baja de security.bcrypt.min-cost aunque la máquina sea lenta
+ * - security.bcrypt.cost > 0 fija el coste y se salta la medición
+ *
+ * EXPOSICIÓN:
+ * - Gauge auth.bcrypt.cost (Actuator /actuator/metrics/auth.bcrypt.cost)
+ * - Log al arrancar con el coste elegido y el tiempo medido
+ *
+ * Los hashes guardados con un coste menor se actualizan solos tras un login correcto
+ * (BCryptPasswordEncoder.upgradeEncoding, ver AuthController.login).
+ */
+@Component
+public class BCryptCostCalibrator {
+    private static final Logger logger = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+    private static final String MUESTRA = "calibracion-bcrypt";
+
+    private final int cost;
+
+    public BCryptCostCalibrator(@Value("${security.bcrypt.cost:0}") int fixedCost,
+                                @Value("${security.bcrypt.target-ms:250}") long targetMs,
+                                @Value("${security.bcrypt.min-cost:10}") int minCost,
+                                @Value("${security.bcrypt.max-cost:14}") int maxCost,
+                                MeterRegistry meterRegistry) {
+        this.cost = fixedCost > 0 ? fixedCost : calibrate(targetMs, minCost, maxCost);
+        Gauge.builder("auth.bcrypt.cost", this, BCryptCostCalibrator::getCost)
+                .description("Coste (log2 rondas) de BCrypt elegido al arrancar")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Coste elegido para BCryptPasswordEncoder (entre 4 y 31)
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    static int calibrate(long targetMs, int minCost, int maxCost) {
+        int min = Math.max(4, Math.min(31, minCost));
+        int max = Math.max(min, Math.min(31, maxCost));
+
+        // Calentamiento: que la medición no incluya la compilación JIT
+        for (int i = 0; i < 3; i++) {
+            BCrypt.checkpw(MUESTRA, BCrypt.hashpw(MUESTRA, BCrypt.gensalt(4)));
+        }
+
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMs);
+        int chosen = min;
+        long chosenNanos = -1;
+        for (int candidate = min; candidate <= max; candidate++) {
+            long elapsedNanos = measureVerifyNanos(candidate);
+            if (candidate > min && elapsedNanos > targetNanos) {
+                break;
+            }
+            chosen = candidate;
+            chosenNanos = elapsedNanos;
+            if (elapsedNanos * 2 > targetNanos) {
+                break; // El siguiente coste (doble de tiempo) ya se pasaría
+            }
+        }
+        logger.info("[BCryptCostCalibrator] BCrypt cost {} selected ({} ms per verification, target {} ms)",
+                chosen, TimeUnit.NANOSECONDS.toMillis(chosenNanos), targetMs);
+        return chosen;
+    }
+
+    private static long measureVerifyNanos(int cost) {
+        String hash = BCrypt.hashpw(MUESTRA, BCrypt.gensalt(cost));
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 2; i++) {
+            long start = System.nanoTime();
+            BCrypt.checkpw(MUESTRA, hash);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
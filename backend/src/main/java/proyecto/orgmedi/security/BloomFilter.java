@@ -0,0 +1,86 @@
+package proyecto.orgmedi.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * BloomFilter - CONJUNTO PROBABILÍSTICO compacto y thread-safe
+ *
+ * QUÉ ES:
+ * - Un array de bits + k funciones hash
+ * - put(clave): pone a 1 los k bits de la clave
+ * - mightContain(clave): false → SEGURO que nunca se insertó
+ *                        true  → PROBABLEMENTE se insertó (falsos positivos ~fpp)
+ * - No admite borrados: para "olvidar" claves se reconstruye uno nuevo
+ *
+ * USO: TokenRevocationStore lo consulta antes que el conjunto exacto,
+ * así el caso habitual (token NO revocado) cuesta un sondeo de bits.
+ *
+ * IMPLEMENTACIÓN:
+ * - Bits en un AtomicLongArray (escrituras sin locks)
+ * - Un único hash de 64 bits partido en dos mitades (double hashing de Kirsch-Mitzenmacher)
+ */
+final class BloomFilter {
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * @param expectedInsertions: Claves que se espera insertar
+     * @param fpp: Probabilidad de falso positivo deseada (ej: 0.01 = 1%)
+     */
+    BloomFilter(int expectedInsertions, double fpp) {
+        int n = Math.max(1, expectedInsertions);
+        double p = Math.min(Math.max(fpp, 1e-9), 0.5);
+        // m = -n·ln(p) / ln(2)²  y  k = m/n · ln(2)
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.numBits = (long) words * 64;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+    }
+
+    void put(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long index = index(h1 + i * h2);
+            long mask = 1L << (index & 63);
+            bits.getAndAccumulate((int) (index >>> 6), mask, (current, bit) -> current | bit);
+        }
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            long index = index(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << (index & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(int combined) {
+        return (combined & 0x7fffffffL) % numBits;
+    }
+
+    /**
+     * FNV-1a de 64 bits sobre los caracteres + mezcla final de MurmurHash3 (fmix64)
+     */
+    private static long hash64(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
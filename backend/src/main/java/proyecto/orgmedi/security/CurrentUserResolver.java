@@ -0,0 +1,142 @@
+package proyecto.orgmedi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import proyecto.orgmedi.dominio.Usuario;
+import proyecto.orgmedi.error.UnauthorizedException;
+import proyecto.orgmedi.repo.UsuarioRepository;
+
+import java.time.Duration;
+
+/**
+ * CurrentUserResolver - RESUELVE EL USUARIO AUTENTICADO SIN CONSULTAR LA BD EN CADA REQUEST
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - SecurityUtil.getCurrentUser(usuarioRepository) ejecuta findByCorreo en cada request
+ * - Casi todos los endpoints lo llaman (a veces varias veces por request)
+ *
+ * TOKENS AUTOCONTENIDOS:
+ * Si el JWT lleva los claims uid/gid, JwtRequestFilter ya instala un
+ * AuthenticatedUser como principal y se devuelve tal cual (cero consultas).
+ * Las cachés de abajo solo se usan con tokens antiguos que traen solo el correo.
+ *
+ * DOS NIVELES DE CACHÉ:
+ * 1. Memo por request: el AuthenticatedUser se guarda como atributo del request,
+ *    así varias llamadas dentro del mismo request no repiten ningún trabajo
+ * 2. Caché acotada entre requests (Caffeine): correo → AuthenticatedUser
+ *    - Tamaño máximo: security.user-cache.max-size
+ *    - Expira tras security.user-cache.ttl-seconds
+ *
+ * Solo en un fallo de caché se consulta la BD, y con una proyección
+ * (id, correo, gestorId) en lugar de la entidad completa.
+ *
+ * INVALIDACIÓN:
+ * Quien modifique un usuario (actualizar, eliminar) o su
+ * gestor debe llamar a invalidate(correo) o invalidateById(id).
+ */
+@Component
+public class CurrentUserResolver {
+    private static final Logger logger = LoggerFactory.getLogger(CurrentUserResolver.class);
+
+    /**
+     * Nombre del atributo de request donde se memoriza el usuario resuelto
+     */
+    static final String REQUEST_ATTRIBUTE = CurrentUserResolver.class.getName() + ".USER";
+
+    private final UsuarioRepository usuarioRepository;
+    private final Cache<String, AuthenticatedUser> cache;
+
+    public CurrentUserResolver(UsuarioRepository usuarioRepository,
+                               @Value("${security.user-cache.max-size:10000}") long maxSize,
+                               @Value("${security.user-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.usuarioRepository = usuarioRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * getCurrentUser - OBTIENE LA IDENTIDAD DEL USUARIO AUTENTICADO
+     *
+     * @return AuthenticatedUser (id, correo, gestorId)
+     * @throws UnauthorizedException si no hay usuario autenticado o ya no existe en BD
+     */
+    public AuthenticatedUser getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser principal) {
+            return principal;
+        }
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            Object memo = attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (memo instanceof AuthenticatedUser user) {
+                return user;
+            }
+        }
+
+        String correo = SecurityUtil.getCurrentUserEmail();
+        AuthenticatedUser user = cache.get(correo, this::loadByCorreo);
+        if (user == null) {
+            throw new UnauthorizedException("Usuario no encontrado");
+        }
+
+        if (attributes != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+
+    /**
+     * getCurrentUsuarioReference - REFERENCIA JPA al Usuario autenticado
+     *
+     * Devuelve un proxy (getReferenceById) que NO ejecuta ninguna consulta
+     * mientras solo se use su ID, por ejemplo para asignar relaciones:
+     * registro.setUsuario(currentUserResolver.getCurrentUsuarioReference());
+     */
+    public Usuario getCurrentUsuarioReference() {
+        return usuarioRepository.getReferenceById(getCurrentUser().getId());
+    }
+
+    /**
+     * Elimina de la caché la entrada del usuario con ese correo
+     */
+    public void invalidate(String correo) {
+        if (correo != null) {
+            cache.invalidate(correo);
+        }
+    }
+
+    /**
+     * Elimina de la caché la entrada del usuario con ese ID
+     * (recorre la caché: solo se usa en escrituras, que son poco frecuentes)
+     */
+    public void invalidateById(Long usuarioId) {
+        if (usuarioId != null) {
+            cache.asMap().values().removeIf(user -> usuarioId.equals(user.getId()));
+        }
+    }
+
+    /**
+     * Vacía la caché completa (escrituras administrativas sobre gestores,
+     * donde no siempre se conoce el usuario afectado)
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private AuthenticatedUser loadByCorreo(String correo) {
+        logger.debug("[CurrentUserResolver] Cache miss, loading user for correo={}", correo);
+        return usuarioRepository.findAuthenticatedUserByCorreo(correo).orElse(null);
+    }
+}
@@ -1,5 +1,6 @@
 package proyecto.orgmedi.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,6 +15,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Optional;
 
 /**
  * JwtRequestFilter - FILTRO DE SEGURIDAD para validar JWT en cada request
@@ -39,12 +41,14 @@ import java.io.IOException;
  * 3. VALIDA EL JWT:
  *    - Busca header Authorization
  *    - Extrae token después de "Bearer "
- *    - Llama jwtUtil.validateToken(token)
+ *    - Llama jwtUtil.verify(token) (una sola verificación, cacheada)
  *    - Si expiró o tiene firma mala → log de warning
+ *    - Si es un refresh token o está revocado (TokenRevocationStore) → se ignora
  * 
  * 4. EXTRAE EL EMAIL:
- *    - Si válido → jwtUtil.extractCorreo(token)
+ *    - Si válido → subject de los Claims devueltos
  *    - Obtiene el email del usuario
+ *    - Si el token trae uid/gid → el principal es un AuthenticatedUser
  * 
  * 5. AUTENTICA EN CONTEXTO:
  *    - Crea UsernamePasswordAuthenticationToken con el email
@@ -82,9 +86,11 @@ public class JwtRequestFilter extends OncePerRequestFilter {
      * JwtUtil para validar y extraer tokens
      */
     private final JwtUtil jwtUtil;
+    private final TokenRevocationStore tokenRevocationStore;
     
-    public JwtRequestFilter(JwtUtil jwtUtil) {
+    public JwtRequestFilter(JwtUtil jwtUtil, TokenRevocationStore tokenRevocationStore) {
         this.jwtUtil = jwtUtil;
+        this.tokenRevocationStore = tokenRevocationStore;
     }
 
     /**
@@ -111,11 +117,11 @@ public class JwtRequestFilter extends OncePerRequestFilter {
      *    Extrae los 7 caracteres ("Bearer ") → jwt = substring(7)
      * 
      * 5. VALIDA EL TOKEN
-     *    jwtUtil.validateToken(jwt) → verifica firma y no expirado
+     *    jwtUtil.verify(jwt) → verifica firma y no expirado, devuelve Claims
      * 
      * 6. EXTRAE EL EMAIL
-     *    correo = jwtUtil.extractCorreo(jwt)
-     *    Si validación falló → no se ejecuta esta línea
+     *    correo = claims.getSubject()
+     *    Si validación falló → Optional vacío, no hay correo
      * 
      * 7. AUTENTICA EN EL CONTEXTO
      *    if (correo != null && SecurityContextHolder...)
@@ -146,6 +152,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         String correo = null;
+        AuthenticatedUser authenticatedUser = null;
         String jwt;
 
         logger.debug("[JwtRequestFilter] Processing request to: " + requestUri);
@@ -154,14 +161,19 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             jwt = authHeader.substring(7);
             logger.debug("[JwtRequestFilter] Token found, validating...");
-            // Validar token primero y luego extraer el subject
-            if (jwtUtil.validateToken(jwt)) {
-                try {
-                    correo = jwtUtil.extractCorreo(jwt);
-                    logger.debug("[JwtRequestFilter] ✓ Token valid, extracted correo: " + correo);
-                } catch (Exception e) {
-                    logger.error("[JwtRequestFilter] Error extracting correo from token: " + e.getMessage());
-                }
+            // Una sola verificación: valida firma/expiración y devuelve los claims
+            Optional<Claims> claims = jwtUtil.verify(jwt);
+            if (claims.isPresent() && JwtUtil.isRefreshToken(claims.get())) {
+                // Un refresh token solo sirve en /api/auth/refresh, nunca como access token
+                logger.warn("[JwtRequestFilter] Refresh token used as access token, rejected");
+            } else if (claims.isPresent() && tokenRevocationStore.isRevoked(claims.get())) {
+                logger.warn("[JwtRequestFilter] Token revoked (password change or logout)");
+            } else if (claims.isPresent()) {
+                correo = claims.get().getSubject();
+                // Tokens con uid/gid: identidad completa sin consultar la BD
+                // (borrar el usuario o cambiar su gestor revoca sus tokens en TokenRevocationStore)
+                authenticatedUser = JwtUtil.toAuthenticatedUser(claims.get());
+                logger.debug("[JwtRequestFilter] ✓ Token valid, extracted correo: " + correo);
             } else {
                 logger.warn("[JwtRequestFilter] Token validation failed");
             }
@@ -171,8 +183,10 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         if (correo != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             logger.info("[JwtRequestFilter] Setting authentication for correo: " + correo);
+            // Principal: AuthenticatedUser si el token trae los IDs, el correo (String) si es un token antiguo
+            Object principal = authenticatedUser != null ? authenticatedUser : correo;
             UsernamePasswordAuthenticationToken authToken =
-                    new UsernamePasswordAuthenticationToken(correo, null, null);
+                    new UsernamePasswordAuthenticationToken(principal, null, null);
             authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
             SecurityContextHolder.getContext().setAuthentication(authToken);
         }
@@ -1,8 +1,12 @@
 package proyecto.orgmedi.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.io.Decoders;
 import javax.crypto.SecretKey;
@@ -11,7 +15,13 @@ import org.springframework.stereotype.Component;
 import io.jsonwebtoken.io.DecodingException;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JwtUtil - Gestor de JWT (JSON Web Tokens) para autenticación
@@ -37,13 +47,24 @@ import java.util.Date;
  * 9. Request continúa hacia el controlador
  * 
  * SI JWT EXPIRA:
- * - JwtRequestFilter lo detecta en validateToken()
+ * - JwtRequestFilter lo detecta en verify()
  * - Retorna 401 Unauthorized
- * - Frontend debe pedir nuevo token (hacer login de nuevo)
+ * - Frontend pide un nuevo access token con su refresh token (POST /api/auth/refresh)
+ * - Si el refresh token también expiró o fue revocado → hacer login de nuevo
  * 
+ * RENDIMIENTO:
+ * - El parser (con la clave ya configurada) se construye UNA vez en el constructor
+ * - Los tokens ya verificados se guardan en una caché acotada:
+ *   SHA-256(token) → Claims, hasta el "exp" del propio token
+ * - Un mismo token enviado en requests sucesivos no repite ni la verificación
+ *   HMAC ni el parseo JSON del payload
+ * - JwtRequestFilter verifica una sola vez por request con verify()
+ *
  * CONFIGURACIÓN:
  * - jwt.secret: Clave secreta para firmar (en application.properties)
- * - jwt.expiration: Tiempo de expiración en milisegundos (default: 24 horas)
+ * - jwt.expiration: Duración del access token en milisegundos (default: 15 minutos)
+ * - jwt.refresh-expiration: Duración del refresh token en milisegundos (default: 14 días)
+ * - jwt.cache.max-size: Máximo de tokens verificados en caché (default: 10000)
  */
 @Component
 public class JwtUtil {
@@ -55,15 +76,54 @@ public class JwtUtil {
      * - Si la clave cambia, TODOS los tokens se vuelven inválidos
      */
     private final SecretKey key;
+
+    /**
+     * NOMBRES DE LOS CLAIMS PROPIOS
+     * - uid: ID del Usuario en BD
+     * - gid: ID de su GestorMedicamentos
+     * Van firmados, así que el backend puede fiarse de ellos sin consultar la BD
+     */
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_GESTOR_ID = "gid";
+
+    /**
+     * TIPO DE TOKEN (claim "typ")
+     * - Los refresh tokens llevan typ=refresh y un "jti" (ID único) para poder revocarlos
+     * - Los access tokens no llevan typ: así los emitidos antes siguen siendo válidos
+     */
+    public static final String CLAIM_TYPE = "typ";
+    public static final String TYPE_REFRESH = "refresh";
     
     /**
      * DURACIÓN DEL TOKEN en milisegundos
      * - Se inyecta desde application.properties (jwt.expiration)
-     * - Default: 86400000 ms = 24 horas
+     * - Default: 900000 ms = 15 minutos (access token de vida corta)
      * - Após este tiempo, el token expirado no se acepta
      */
     private final long expirationMs;
 
+    /**
+     * DURACIÓN DEL REFRESH TOKEN en milisegundos (jwt.refresh-expiration)
+     * - Default: 14 días
+     * - Con él se obtienen nuevos access tokens en POST /api/auth/refresh
+     */
+    private final long refreshExpirationMs;
+
+    /**
+     * PARSER REUTILIZABLE
+     * - Es inmutable y thread-safe: se construye una vez con la clave
+     * - Antes se creaba un Jwts.parser()...build() en cada llamada
+     */
+    private final JwtParser parser;
+
+    /**
+     * CACHÉ DE TOKENS VERIFICADOS
+     * - Clave: SHA-256 del token en Base64 (no se guarda el token en claro)
+     * - Valor: Claims ya verificados (inmutables)
+     * - Cada entrada expira en el instante "exp" del token
+     */
+    private final Cache<String, Claims> verifiedTokens;
+
     /**
      * CONSTRUCTOR - Inicializa la clave de firma
      * 
@@ -76,7 +136,9 @@ public class JwtUtil {
      * 3. Genera una SecretKey con HMAC-SHA para firmar
      */
     public JwtUtil(@Value("${jwt.secret:clave_secreta_demo_clave_mucho_mas_larga_0123456789}") String secret,
-                   @Value("${jwt.expiration:86400000}") long expirationMs) {
+                   @Value("${jwt.expiration:900000}") long expirationMs,
+                   @Value("${jwt.refresh-expiration:1209600000}") long refreshExpirationMs,
+                   @Value("${jwt.cache.max-size:10000}") long cacheMaxSize) {
         byte[] keyBytes;
         try {
             keyBytes = Decoders.BASE64.decode(secret);
@@ -85,6 +147,12 @@ public class JwtUtil {
         }
         this.key = Keys.hmacShaKeyFor(keyBytes);
         this.expirationMs = expirationMs;
+        this.refreshExpirationMs = refreshExpirationMs;
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
     }
 
     /**
@@ -115,17 +183,104 @@ public class JwtUtil {
      * SflKxwRJSMeKKF2QT4fwpMeJf36POk6yJV_adQssw5c
      */
     public String generateToken(String correo) {
+        return generateToken(correo, null, null);
+    }
+
+    /**
+     * generateToken - CREA un JWT AUTOCONTENIDO (correo + IDs)
+     *
+     * @param correo: EMAIL del usuario (subject)
+     * @param usuarioId: ID del usuario → claim "uid" (se omite si es null)
+     * @param gestorId: ID de su GestorMedicamentos → claim "gid" (se omite si es null)
+     *
+     * Con uid/gid en el token, JwtRequestFilter instala un AuthenticatedUser
+     * como principal y los controladores ya no traducen correo → Usuario → Gestor
+     * con consultas a la BD.
+     */
+    public String generateToken(String correo, Long usuarioId, Long gestorId) {
         Date now = new Date();
         Date exp = new Date(now.getTime() + expirationMs);
 
         return Jwts.builder()
                 .subject(correo)
+                .claim(CLAIM_USER_ID, usuarioId)
+                .claim(CLAIM_GESTOR_ID, gestorId)
                 .issuedAt(now)
                 .expiration(exp)
                 .signWith(key)
                 .compact();
     }
 
+    /**
+     * generateRefreshToken - CREA un REFRESH TOKEN de larga duración
+     *
+     * CONTENIDO: subject (correo), uid, gid, typ=refresh, jti (UUID), iat, exp
+     *
+     * - Solo se acepta en POST /api/auth/refresh y /logout (JwtRequestFilter lo rechaza)
+     * - Es de un solo uso: al refrescar se revoca su jti y se emite otro (rotación)
+     */
+    public String generateRefreshToken(String correo, Long usuarioId, Long gestorId) {
+        Date now = new Date();
+        Date exp = new Date(now.getTime() + refreshExpirationMs);
+
+        return Jwts.builder()
+                .subject(correo)
+                .claim(CLAIM_USER_ID, usuarioId)
+                .claim(CLAIM_GESTOR_ID, gestorId)
+                .claim(CLAIM_TYPE, TYPE_REFRESH)
+                .id(UUID.randomUUID().toString())
+                .issuedAt(now)
+                .expiration(exp)
+                .signWith(key)
+                .compact();
+    }
+
+    /**
+     * Duración de los access tokens en milisegundos (para "expiresIn" en las respuestas)
+     */
+    public long getExpirationMs() {
+        return expirationMs;
+    }
+
+    /**
+     * Duración máxima de cualquier token emitido (la del refresh token)
+     */
+    public long getRefreshExpirationMs() {
+        return refreshExpirationMs;
+    }
+
+    /**
+     * isRefreshToken - true si los Claims son de un refresh token (typ=refresh)
+     */
+    public static boolean isRefreshToken(Claims claims) {
+        return TYPE_REFRESH.equals(claims.get(CLAIM_TYPE));
+    }
+
+    /**
+     * getUsuarioId - Claim "uid" (null en tokens antiguos)
+     */
+    public static Long getUsuarioId(Claims claims) {
+        return asLong(claims.get(CLAIM_USER_ID));
+    }
+
+    /**
+     * toAuthenticatedUser - Construye la identidad a partir de Claims ya verificados
+     *
+     * @return AuthenticatedUser si el token lleva "uid"; null para tokens
+     *         emitidos antes de incluir los IDs (solo traen el correo)
+     */
+    public static AuthenticatedUser toAuthenticatedUser(Claims claims) {
+        Long usuarioId = asLong(claims.get(CLAIM_USER_ID));
+        if (usuarioId == null) {
+            return null;
+        }
+        return new AuthenticatedUser(usuarioId, claims.getSubject(), asLong(claims.get(CLAIM_GESTOR_ID)));
+    }
+
+    private static Long asLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
     /**
      * extractCorreo - EXTRAE el email del usuario desde un JWT
      * 
@@ -151,6 +306,23 @@ public class JwtUtil {
         return claims.getSubject();
     }
 
+    /**
+     * verify - VALIDA el token y devuelve sus Claims en UNA sola pasada
+     *
+     * @param token: JWT token a verificar
+     * @return: Optional con los Claims si es válido, vacío si es inválido o expiró
+     *
+     * Es lo que usa JwtRequestFilter: sustituye a la pareja
+     * validateToken() + extractCorreo(), que verificaba el token dos veces.
+     */
+    public Optional<Claims> verify(String token) {
+        try {
+            return Optional.of(getClaims(token));
+        } catch (JwtException | IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+    }
+
     /**
      * validateToken - VALIDA que un JWT sea válido
      * 
@@ -192,10 +364,9 @@ public class JwtUtil {
      * PROPÓSITO: Método privado que hace el trabajo pesado
      * 
      * PASOS:
-     * 1. Crea un parser de JWT
-     * 2. Verifica la firma con la clave secreta
-     * 3. Parse el token
-     * 4. Extrae el payload (Claims)
+     * 1. Busca el SHA-256 del token en la caché de tokens verificados
+     * 2. Si no está: verifica la firma con el parser reutilizable
+     * 3. Extrae el payload (Claims) y lo guarda en caché hasta su "exp"
      * 
      * EXCEPCIONES POSIBLES:
      * - JwtException: Token inválido, expirado, o firma falsa
@@ -204,16 +375,53 @@ public class JwtUtil {
      * Los llamadores (extractCorreo, validateToken) manejan estas excepciones
      */
     private Claims getClaims(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("Token vacío");
+        }
+        String digest = digest(token);
+        Claims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        verifiedTokens.put(digest, claims);
+        return claims;
+    }
+
+    /**
+     * digest - SHA-256 del token en Base64 (clave de la caché)
+     */
+    private static String digest(String token) {
         try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            // SHA-256 es obligatorio en toda JVM
+            throw new IllegalStateException(ex);
+        }
+    }
 
-            return Jwts.parser()
-                    .verifyWith(key)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
-        } catch (JwtException | IllegalArgumentException ex) {
+    /**
+     * UntilTokenExpiry - Cada entrada vive exactamente hasta el "exp" del token
+     * (los tokens sin "exp" se guardan como mucho jwt.expiration milisegundos)
+     */
+    private final class UntilTokenExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date exp = claims.getExpiration();
+            long remainingMs = exp != null ? exp.getTime() - System.currentTimeMillis() : expirationMs;
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
 
-            throw ex;
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
 }
@@ -0,0 +1,177 @@
+package proyecto.orgmedi.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import proyecto.orgmedi.error.ServiceUnavailableException;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PasswordHashingService - BCRYPT EN UN POOL DE HILOS DEDICADO Y ACOTADO
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - BCrypt cuesta ~100ms de CPU por operación (coste 10)
+ * - Si se ejecuta dentro de una transacción, la conexión JDBC queda retenida todo ese
+ *   tiempo: una ráfaga de logins agota el pool de Hikari y bloquea el resto de endpoints
+ * - Sin límite, una ráfaga también satura la CPU de todos los hilos de Tomcat
+ *
+ * CÓMO:
+ * - Los hashes se calculan en un ThreadPoolExecutor propio:
+ *   - security.hashing.threads hilos (0 = número de CPUs)
+ *   - cola de security.hashing.queue-capacity peticiones
+ * - El hilo del request espera el resultado SIN tener ninguna conexión abierta
+ * - Cola llena o espera > security.hashing.timeout-ms → 503 (ServiceUnavailableException)
+ * - encodeInBackground(): trabajo no urgente (actualizar hashes antiguos) sin esperar
+ *
+ * MÉTRICAS (Actuator /actuator/metrics, /actuator/prometheus):
+ * - auth.hash.queue.wait: tiempo esperando en la cola
+ * - auth.hash.duration:   tiempo de cálculo (tag op=matches|encode)
+ * - auth.hash.queue.size: peticiones en cola ahora mismo
+ */
+@Service
+public class PasswordHashingService {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final int queueCapacity;
+    private final Timer queueWait;
+    private final Timer matchesDuration;
+    private final Timer encodeDuration;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${security.hashing.threads:0}") int threads,
+                                  @Value("${security.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${security.hashing.timeout-ms:5000}") long timeoutMs) {
+        this.passwordEncoder = passwordEncoder;
+        this.timeoutMs = timeoutMs;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.queueWait = Timer.builder("auth.hash.queue.wait")
+                .description("Tiempo en cola antes de calcular un hash de contraseña")
+                .register(meterRegistry);
+        this.matchesDuration = Timer.builder("auth.hash.duration")
+                .description("Tiempo de cálculo de un hash de contraseña")
+                .tag("op", "matches")
+                .register(meterRegistry);
+        this.encodeDuration = Timer.builder("auth.hash.duration")
+                .description("Tiempo de cálculo de un hash de contraseña")
+                .tag("op", "encode")
+                .register(meterRegistry);
+        Gauge.builder("auth.hash.queue.size", executor, e -> e.getQueue().size())
+                .description("Peticiones de hash esperando en cola")
+                .register(meterRegistry);
+    }
+
+    /**
+     * matches - Comprueba la contraseña contra su hash en el pool de hashing
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword), matchesDuration);
+    }
+
+    /**
+     * encode - Calcula el hash de una contraseña en el pool de hashing
+     */
+    public String encode(String rawPassword) {
+        return run(() -> passwordEncoder.encode(rawPassword), encodeDuration);
+    }
+
+    /**
+     * needsUpgrade - ¿El hash se calculó con un coste menor que el actual?
+     * (ver BCryptCostCalibrator)
+     */
+    public boolean needsUpgrade(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * encodeInBackground - Calcula un hash SIN que nadie espere el resultado
+     *
+     * Para trabajo no urgente (actualizar hashes antiguos tras el login): solo se encola
+     * si la cola está por debajo de la mitad, así nunca quita sitio a los logins.
+     * Si no se encola, el futuro completa vacío y se reintentará en otro login.
+     */
+    public CompletableFuture<Optional<String>> encodeInBackground(String rawPassword) {
+        if (executor.getQueue().size() * 2 >= queueCapacity) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Optional.of(encodeDuration.recordCallable(() -> passwordEncoder.encode(rawPassword)));
+                } catch (Exception e) {
+                    throw new IllegalStateException("Error calculando el hash de la contraseña", e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+    }
+
+    private <T> T run(Callable<T> task, Timer duration) {
+        long enqueuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                return duration.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("[PasswordHashingService] Hashing queue full ({} pending)", executor.getQueue().size());
+            throw new ServiceUnavailableException("Servidor ocupado, inténtalo de nuevo en unos segundos", e);
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("[PasswordHashingService] Hashing timed out after {} ms", timeoutMs);
+            throw new ServiceUnavailableException("Servidor ocupado, inténtalo de nuevo en unos segundos", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Operación interrumpida", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Error calculando el hash de la contraseña", cause);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
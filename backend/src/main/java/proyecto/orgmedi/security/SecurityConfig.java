@@ -2,6 +2,7 @@ package proyecto.orgmedi.security;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
@@ -11,6 +12,7 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -86,9 +88,19 @@ public class SecurityConfig {
      *    .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class)
      *    - Ejecuta JwtRequestFilter ANTES que el filtro de usuario/contraseña
      *    - Permite autenticarse con JWT en lugar de usuario/contraseña
+     * 
+     * 6. AÑADE LÍMITE DE INTENTOS POR IP
+     *    .addFilterBefore(authRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
+     *    - Login/registro/cambio de contraseña: 429 antes de leer el body o hashear
+     * 
+     * 7. 401 SIN TOKEN VÁLIDO
+     *    .exceptionHandling(e -> e.authenticationEntryPoint(new HttpStatusEntryPoint(UNAUTHORIZED)))
+     *    - Sin formLogin/httpBasic, Spring Security respondería 403
+     *    - Token ausente, caducado o revocado (usuario eliminado) → 401 y el frontend pide login
      */
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, JwtRequestFilter jwtRequestFilter) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtRequestFilter jwtRequestFilter,
+                                           AuthRateLimitFilter authRateLimitFilter) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
@@ -99,6 +111,9 @@ public class SecurityConfig {
                 .requestMatchers("/actuator/health/**").permitAll()
                 .anyRequest().authenticated()
             )
+            .exceptionHandling(exceptions -> exceptions
+                .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+            .addFilterBefore(authRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
             .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
@@ -201,10 +216,14 @@ public class SecurityConfig {
      * VENTAJA DE BCRYPT:
      * - Incluso si alguien roba la BD, no puede obtener la contraseña
      * - Imposible hacer tabla arcoís (todos los hashes son diferentes)
+     * 
+     * COSTE:
+     * - Lo elige BCryptCostCalibrator al arrancar según la CPU de la máquina
+     * - Los hashes con coste menor se actualizan tras un login correcto
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(BCryptCostCalibrator bcryptCostCalibrator) {
+        return new BCryptPasswordEncoder(bcryptCostCalibrator.getCost());
     }
 }
 
@@ -60,6 +60,7 @@ public class SecurityUtil {
      *    - JwtRequestFilter almacena el correo como principal
      *    - new UsernamePasswordAuthenticationToken(correo, password, roles)
      *    - getPrincipal() devuelve el correo
+     *    - Con tokens nuevos (uid/gid) devuelve un AuthenticatedUser → se usa su correo
      * 
      * 4. Valida que principal sea un String (es el correo)
      *    if (principal instanceof String)
@@ -94,6 +95,10 @@ public class SecurityUtil {
         if (principal instanceof String) {
             return (String) principal;
         }
+        // Tokens con uid/gid: el principal es la identidad completa
+        if (principal instanceof AuthenticatedUser authenticatedUser) {
+            return authenticatedUser.getCorreo();
+        }
         
         throw new UnauthorizedException("No se pudo obtener el correo del usuario");
     }
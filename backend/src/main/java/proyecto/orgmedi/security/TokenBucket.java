@@ -0,0 +1,53 @@
+package proyecto.orgmedi.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TokenBucket - CUBO DE TOKENS SIN LOCKS (algoritmo GCRA)
+ *
+ * QUÉ ES:
+ * - Equivale a un cubo de "capacity" tokens que se rellena a 1 token cada "interval"
+ * - En vez de guardar tokens + última recarga, guarda un único número:
+ *   TAT (theoretical arrival time) = instante en que el cubo volvería a estar lleno
+ * - Un intento se permite si TAT + interval no se aleja más de capacity·interval del presente
+ *
+ * CONCURRENCIA:
+ * - Un solo AtomicLong actualizado con compareAndSet: sin locks ni synchronized
+ *
+ * USO: AuthRateLimiter guarda un TokenBucket por IP y otro por cuenta.
+ */
+final class TokenBucket {
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param capacity: Intentos seguidos permitidos con el cubo lleno
+     * @param intervalNanos: Tiempo para recuperar un intento
+     * @param nowNanos: Instante de creación (el cubo empieza lleno)
+     */
+    TokenBucket(int capacity, long intervalNanos, long nowNanos) {
+        this.intervalNanos = intervalNanos;
+        this.burstNanos = intervalNanos * Math.max(1, capacity);
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * tryAcquire - Consume un token si hay
+     *
+     * @return 0 si se permite; si no, nanosegundos hasta que haya un token
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long newTat = Math.max(tat, nowNanos) + intervalNanos;
+            long allowedAt = newTat - burstNanos;
+            if (allowedAt > nowNanos) {
+                return allowedAt - nowNanos;
+            }
+            if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                return 0L;
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package proyecto.orgmedi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * TokenRevocationStore - REVOCACIÓN DE TOKENS JWT EN MEMORIA
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - Un JWT es válido hasta su "exp" aunque el usuario cambie la contraseña
+ * - Los refresh tokens deben ser de un solo uso (rotación)
+ *
+ * QUÉ SE REVOCA:
+ * - Por USUARIO: "todos los tokens emitidos antes de T" (cambio de contraseña,
+ *   reutilización de un refresh token). Claves "u:{uid}" y "c:{correo}"
+ *   (la del correo cubre los tokens antiguos sin uid)
+ * - Por TOKEN: un refresh token concreto por su jti. Clave "j:{jti}"
+ *
+ * ESTRUCTURAS:
+ * 1. BloomFilter (de todas las claves): se consulta PRIMERO. Si dice "no está" (el caso
+ *    habitual), la comprobación termina con un sondeo de bits, sin BD ni locks
+ * 2. Conjuntos exactos (Caffeine), solo si el Bloom da positivo (revocado o falso positivo):
+ *    - revoked: "u:"/"c:" → instante de revocación (poco frecuentes)
+ *    - consumed: "j:" → "exp" del refresh token (uno por cada refresh y logout)
+ *
+ * CADUCIDAD:
+ * - Una entrada solo hace falta mientras pueda existir un token afectado: las de usuario
+ *   caducan tras jwt.refresh-expiration (la vida máxima de cualquier token) y cada jti
+ *   en el "exp" de su propio refresh token
+ * - El Bloom no admite borrados: se reconstruye desde los conjuntos exactos cuando
+ *   las inserciones superan su capacidad, descartando las claves ya caducadas
+ *
+ * TAMAÑO (cada conjunto tiene su límite; si se llena, Caffeine expulsa alguna clave):
+ * - revoked (security.revocation.max-entries, por defecto las inserciones esperadas del
+ *   Bloom): la revocación expulsada no se pierde, su instante pasa a ser un SUELO GLOBAL
+ *   y todo token emitido antes se trata como revocado. Es seguro, pero obliga a esos
+ *   usuarios a iniciar sesión de nuevo (se registra un aviso en el log)
+ * - consumed (security.revocation.max-consumed): un jti expulsado NO mueve el suelo (si
+ *   no, cada refresh con el conjunto lleno revocaría todos los tokens del servidor);
+ *   solo se deja de detectar la reutilización de ese refresh token ya rotado. Los
+ *   refresh y logout pasan por el límite por IP de AuthRateLimitFilter
+ *
+ * LIMITACIÓN: el estado es local a cada instancia. Con varias réplicas habría que
+ * compartirlo (por ejemplo, una tabla o un canal de eventos).
+ */
+@Component
+public class TokenRevocationStore {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationStore.class);
+
+    private final Cache<String, Long> revoked;
+    private final Cache<String, Long> consumed;
+    private final long maxTokenLifetimeMs;
+    /** Tokens emitidos antes de este instante: revocados (claves de usuario expulsadas por tamaño) */
+    private final AtomicLong overflowFloor = new AtomicLong();
+    private final int bloomCapacity;
+    private final double bloomFpp;
+    private final AtomicInteger insertionsSinceRebuild = new AtomicInteger();
+    private volatile int currentCapacity;
+
+    /**
+     * Las inserciones (poco frecuentes) toman el lock de lectura; la reconstrucción
+     * del Bloom toma el de escritura para que ninguna clave se pierda en el cambio.
+     * Las consultas no toman ningún lock.
+     */
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private volatile BloomFilter bloom;
+
+    public TokenRevocationStore(@Value("${jwt.refresh-expiration:1209600000}") long maxTokenLifetimeMs,
+                                @Value("${security.revocation.bloom-capacity:100000}") int bloomCapacity,
+                                @Value("${security.revocation.bloom-fpp:0.01}") double bloomFpp,
+                                @Value("${security.revocation.max-entries:0}") long maxEntries,
+                                @Value("${security.revocation.max-consumed:200000}") long maxConsumed) {
+        this.maxTokenLifetimeMs = maxTokenLifetimeMs;
+        this.revoked = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(maxTokenLifetimeMs))
+                .maximumSize(maxEntries > 0 ? maxEntries : bloomCapacity)
+                // En el hilo que inserta: el suelo ya está puesto cuando termina la inserción
+                .executor(Runnable::run)
+                .removalListener((String key, Long revokedAt, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE && revokedAt != null) {
+                        overflowFloor.accumulateAndGet(revokedAt, Math::max);
+                        logger.warn("[TokenRevocationStore] Revocation set full: tokens issued before {} are treated as revoked",
+                                Instant.ofEpochMilli(revokedAt));
+                    }
+                })
+                .build();
+        this.consumed = Caffeine.newBuilder()
+                .expireAfter(new UntilTokenExpiry())
+                .maximumSize(maxConsumed)
+                .executor(Runnable::run)
+                .removalListener((String key, Long expiresAt, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        logger.warn("[TokenRevocationStore] Consumed refresh tokens set full: reuse of {} no longer detected",
+                                key);
+                    }
+                })
+                .build();
+        this.bloomCapacity = bloomCapacity;
+        this.bloomFpp = bloomFpp;
+        this.currentCapacity = bloomCapacity;
+        this.bloom = new BloomFilter(bloomCapacity, bloomFpp);
+    }
+
+    /**
+     * revokeAllForUser - Invalida TODOS los tokens emitidos hasta ahora para el usuario
+     *
+     * Los tokens emitidos después (nuevo login, refresh) siguen funcionando.
+     */
+    public void revokeAllForUser(Long usuarioId, String correo) {
+        long now = System.currentTimeMillis();
+        if (usuarioId != null) {
+            add(userKey(usuarioId), now);
+        }
+        if (correo != null) {
+            add(correoKey(correo), now);
+        }
+        logger.info("[TokenRevocationStore] Revoked all tokens for usuarioId={}", usuarioId);
+    }
+
+    /**
+     * consume - Marca un refresh token (jti) como usado, de forma ATÓMICA
+     *
+     * La marca dura hasta el "exp" del token: después ya no lo acepta JwtUtil.verify
+     *
+     * @return true si era la primera vez; false si ya estaba usado/revocado
+     *         (dos refresh simultáneos con el mismo token: solo uno gana)
+     */
+    public boolean consume(Claims refreshClaims) {
+        String jti = refreshClaims.getId();
+        if (jti == null) {
+            return false;
+        }
+        Date expiration = refreshClaims.getExpiration();
+        long expiresAt = expiration != null ? expiration.getTime() : System.currentTimeMillis() + maxTokenLifetimeMs;
+        String key = tokenKey(jti);
+        rebuildLock.readLock().lock();
+        try {
+            if (consumed.asMap().putIfAbsent(key, expiresAt) != null) {
+                return false;
+            }
+            bloom.put(key);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        maybeRebuild();
+        return true;
+    }
+
+    /**
+     * isRevoked - ¿Está revocado este token?
+     *
+     * Comprueba la revocación por usuario (uid y correo) y, si tiene jti, la del token.
+     */
+    public boolean isRevoked(Claims claims) {
+        if (isRevokedForUser(claims)) {
+            return true;
+        }
+        String jti = claims.getId();
+        if (jti == null) {
+            return false;
+        }
+        String key = tokenKey(jti);
+        return bloom.mightContain(key) && consumed.getIfPresent(key) != null;
+    }
+
+    /**
+     * isRevokedForUser - ¿Se revocaron los tokens del usuario después de emitir este?
+     */
+    public boolean isRevokedForUser(Claims claims) {
+        Date issuedAt = claims.getIssuedAt();
+        long issuedAtMs = issuedAt != null ? issuedAt.getTime() : 0L;
+        if (issuedAtMs < floorSeconds(overflowFloor.get())) {
+            return true; // Su revocación pudo expulsarse del conjunto de usuarios lleno
+        }
+        Long usuarioId = JwtUtil.getUsuarioId(claims);
+        return (usuarioId != null && revokedAfter(userKey(usuarioId), issuedAtMs))
+                || (claims.getSubject() != null && revokedAfter(correoKey(claims.getSubject()), issuedAtMs));
+    }
+
+    private boolean revokedAfter(String key, long issuedAtMs) {
+        if (!bloom.mightContain(key)) {
+            return false; // Camino habitual: un sondeo de bits
+        }
+        Long revokedAt = revoked.getIfPresent(key);
+        return revokedAt != null && issuedAtMs < floorSeconds(revokedAt);
+    }
+
+    /** "iat" tiene precisión de segundos: se compara con el segundo de la revocación */
+    private static long floorSeconds(long revokedAtMs) {
+        return (revokedAtMs / 1000) * 1000;
+    }
+
+    private void add(String key, long revokedAt) {
+        rebuildLock.readLock().lock();
+        try {
+            revoked.put(key, revokedAt);
+            bloom.put(key);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        maybeRebuild();
+    }
+
+    /**
+     * Reconstruye el Bloom desde los conjuntos exactos cuando se ha llenado:
+     * elimina las claves caducadas y recupera la tasa de falsos positivos
+     */
+    private void maybeRebuild() {
+        if (insertionsSinceRebuild.incrementAndGet() <= currentCapacity) {
+            return;
+        }
+        rebuildLock.writeLock().lock();
+        try {
+            if (insertionsSinceRebuild.get() <= currentCapacity) {
+                return; // Otro hilo ya lo reconstruyó
+            }
+            revoked.cleanUp();
+            consumed.cleanUp();
+            int size = (int) Math.min(Integer.MAX_VALUE, revoked.estimatedSize() + consumed.estimatedSize());
+            int capacity = (int) Math.min(Integer.MAX_VALUE / 2, Math.max((long) bloomCapacity, size * 2L));
+            BloomFilter fresh = new BloomFilter(capacity, bloomFpp);
+            revoked.asMap().keySet().forEach(fresh::put);
+            consumed.asMap().keySet().forEach(fresh::put);
+            bloom = fresh;
+            currentCapacity = capacity;
+            insertionsSinceRebuild.set(size);
+            logger.info("[TokenRevocationStore] Bloom filter rebuilt with {} keys", size);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cada jti caduca en el "exp" de su refresh token (el valor guardado)
+     */
+    private static final class UntilTokenExpiry implements Expiry<String, Long> {
+        @Override
+        public long expireAfterCreate(String key, Long expiresAt, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiresAt - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Long expiresAt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, expiresAt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Long expiresAt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static String userKey(Long usuarioId) {
+        return "u:" + usuarioId;
+    }
+
+    private static String correoKey(String correo) {
+        return "c:" + correo;
+    }
+
+    private static String tokenKey(String jti) {
+        return "j:" + jti;
+    }
+}
@@ -1,12 +1,11 @@
 package proyecto.orgmedi.service;
 
 import proyecto.orgmedi.dominio.ConsumoRegistro;
-import proyecto.orgmedi.dominio.Usuario;
 import proyecto.orgmedi.dominio.Medicamento;
 import proyecto.orgmedi.dto.medicamento.ConsumoRegistroDTO;
 import proyecto.orgmedi.repo.ConsumoRegistroRepository;
-import proyecto.orgmedi.repo.UsuarioRepository;
-import proyecto.orgmedi.security.SecurityUtil;
+import proyecto.orgmedi.security.AuthenticatedUser;
+import proyecto.orgmedi.security.CurrentUserResolver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
@@ -25,19 +24,23 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
     private final ConsumoRegistroRepository consumoRegistroRepository;
     private final MedicamentoService medicamentoService;
     // private final UsuarioService usuarioService; // No se usa actualmente
-    private final UsuarioRepository usuarioRepository;
+    private final CurrentUserResolver currentUserResolver;
+    // Versión de los datos del usuario (ETags): toda escritura la incrementa
+    private final DataVersionService dataVersionService;
     
     @Autowired
     public ConsumoRegistroService(
         ConsumoRegistroRepository consumoRegistroRepository,
         MedicamentoService medicamentoService,
         UsuarioService usuarioService, // No se usa actualmente
-        UsuarioRepository usuarioRepository
+        CurrentUserResolver currentUserResolver,
+        DataVersionService dataVersionService
     ) {
         this.consumoRegistroRepository = consumoRegistroRepository;
         this.medicamentoService = medicamentoService;
         // this.usuarioService = usuarioService;
-        this.usuarioRepository = usuarioRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.dataVersionService = dataVersionService;
     }
     
     @Override
@@ -56,6 +59,29 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
             .orElseThrow(() -> new IllegalArgumentException("Registro de consumo no encontrado"));
     }
     
+    /**
+     * Busca un registro de consumo del usuario (vacío si no existe o es de otro usuario)
+     */
+    @Override
+    public Optional<ConsumoRegistro> findByIdAndUsuarioId(Long id, Long usuarioId) {
+        return consumoRegistroRepository.findByIdAndUsuarioId(id, usuarioId);
+    }
+    
+    /**
+     * Marca/desmarca un consumo del usuario con un único UPDATE
+     * (la condición de propietario va en el WHERE)
+     * 
+     * @return true si se actualizó, false si no existe o es de otro usuario
+     */
+    @Override
+    public boolean cambiarConsumido(Long consumoId, Long usuarioId, boolean consumido) {
+        boolean actualizado = consumoRegistroRepository.updateConsumidoByIdAndUsuarioId(consumoId, usuarioId, consumido) > 0;
+        if (actualizado) {
+            dataVersionService.bump(usuarioId);
+        }
+        return actualizado;
+    }
+    
     /**
      * Registra o actualiza el consumo de un medicamento en una fecha y hora específica
      * @param medicamentoId ID del medicamento
@@ -67,20 +93,16 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
     public ConsumoRegistroDTO registrarConsumo(Long medicamentoId, String fecha, String hora, Boolean consumido) {
         System.out.println("[ConsumoRegistroService] Iniciando registrarConsumo - medicamentoId: " + medicamentoId + ", fecha: " + fecha + ", hora: " + hora + ", consumido: " + consumido);
         
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        System.out.println("[ConsumoRegistroService] Usuario obtenido: " + usuario.getId() + " - " + usuario.getCorreo());
-        
-        Medicamento medicamento = medicamentoService.findById(medicamentoId)
-            .orElseThrow(() -> new IllegalArgumentException("Medicamento no encontrado: " + medicamentoId));
-        System.out.println("[ConsumoRegistroService] Medicamento obtenido: " + medicamento.getId() + " - " + medicamento.getNombre());
+        AuthenticatedUser actual = currentUserResolver.getCurrentUser();
+        System.out.println("[ConsumoRegistroService] Usuario obtenido: " + actual.getId() + " - " + actual.getCorreo());
         
         LocalDate fechaParsed = LocalDate.parse(fecha);
         LocalTime horaParsed = LocalTime.parse(hora);
         System.out.println("[ConsumoRegistroService] Fechas parseadas - fecha: " + fechaParsed + ", hora: " + horaParsed);
         
-        // Buscar registro existente
+        // Buscar registro existente por IDs (sin cargar antes Usuario ni Medicamento)
         Optional<ConsumoRegistro> existente = consumoRegistroRepository
-            .findByUsuarioAndMedicamentoAndFechaAndHora(usuario, medicamento, fechaParsed, horaParsed);
+            .findByUsuarioIdAndMedicamentoIdAndFechaAndHora(actual.getId(), medicamentoId, fechaParsed, horaParsed);
         
         ConsumoRegistro registro;
         if (existente.isPresent()) {
@@ -89,10 +111,15 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
             registro = existente.get();
             registro.setConsumido(consumido);
         } else {
-            // Crear nuevo registro
+            // Solo medicamentos de la lista del usuario: existencia y propiedad en una consulta
+            Medicamento medicamento = medicamentoService.findByIdAndGestorId(medicamentoId, actual.getGestorId())
+                .orElseThrow(() -> new IllegalArgumentException("Medicamento no encontrado: " + medicamentoId));
+            System.out.println("[ConsumoRegistroService] Medicamento obtenido: " + medicamento.getId() + " - " + medicamento.getNombre());
+            
+            // Crear nuevo registro (el usuario es una referencia JPA: no ejecuta ningún SELECT)
             System.out.println("[ConsumoRegistroService] Creando nuevo registro");
             registro = ConsumoRegistro.builder()
-                .usuario(usuario)
+                .usuario(currentUserResolver.getCurrentUsuarioReference())
                 .medicamento(medicamento)
                 .fecha(fechaParsed)
                 .hora(horaParsed)
@@ -102,6 +129,7 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
         
         System.out.println("[ConsumoRegistroService] Guardando registro: " + registro);
         consumoRegistroRepository.save(registro);
+        dataVersionService.bump(actual.getId());
         System.out.println("[ConsumoRegistroService] Registro guardado con ID: " + registro.getId());
         
         return toDTO(registro);
@@ -115,10 +143,7 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
      */
     @Override
     public List<ConsumoRegistroDTO> getConsumosPorDia(Long usuarioId, LocalDate fecha) {
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-            .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-        
-        return consumoRegistroRepository.findByUsuarioAndFecha(usuario, fecha)
+        return consumoRegistroRepository.findByUsuarioIdAndFecha(usuarioId, fecha)
             .stream()
             .map(this::toDTO)
             .collect(Collectors.toList());
@@ -128,12 +153,12 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
      * Obtiene todos los registros de consumo de un usuario para una fecha específica
      */
     public List<ConsumoRegistroDTO> obtenerConsumosDelDia(String fecha) {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
+        Long usuarioId = currentUserResolver.getCurrentUser().getId();
         
         LocalDate fechaParsed = LocalDate.parse(fecha);
         
         return consumoRegistroRepository
-            .findByUsuarioAndFecha(usuario, fechaParsed)
+            .findByUsuarioIdAndFecha(usuarioId, fechaParsed)
             .stream()
             .map(this::toDTO)
             .collect(Collectors.toList());
@@ -147,26 +172,20 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
      */
     @Override
     public List<ConsumoRegistro> getConsumosDelDia(Long usuarioId, LocalDate fecha) {
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-            .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-        
-        return consumoRegistroRepository.findByUsuarioAndFecha(usuario, fecha);
+        return consumoRegistroRepository.findByUsuarioIdAndFecha(usuarioId, fecha);
     }
     
     /**
      * Obtiene el estado de consumo para un medicamento en una fecha y hora específicas
      */
     public Optional<ConsumoRegistroDTO> obtenerConsumo(Long medicamentoId, String fecha, String hora) {
-        Usuario usuario = SecurityUtil.getCurrentUser(usuarioRepository);
-        
-        Medicamento medicamento = medicamentoService.findById(medicamentoId)
-            .orElseThrow(() -> new IllegalArgumentException("Medicamento no encontrado"));
+        Long usuarioId = currentUserResolver.getCurrentUser().getId();
         
         LocalDate fechaParsed = LocalDate.parse(fecha);
         LocalTime horaParsed = LocalTime.parse(hora);
         
         return consumoRegistroRepository
-            .findByUsuarioAndMedicamentoAndFechaAndHora(usuario, medicamento, fechaParsed, horaParsed)
+            .findByUsuarioIdAndMedicamentoIdAndFechaAndHora(usuarioId, medicamentoId, fechaParsed, horaParsed)
             .map(this::toDTO);
     }
     
@@ -180,6 +199,7 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
         
         consumo.setConsumido(true);
         consumoRegistroRepository.save(consumo);
+        dataVersionService.bump(usuarioIdDe(consumo));
     }
     
     /**
@@ -192,6 +212,7 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
         
         consumo.setConsumido(false);
         consumoRegistroRepository.save(consumo);
+        dataVersionService.bump(usuarioIdDe(consumo));
     }
     
     /**
@@ -199,7 +220,9 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
      */
     @Override
     public ConsumoRegistro createConsumo(ConsumoRegistro consumo) {
-        return consumoRegistroRepository.save(consumo);
+        ConsumoRegistro creado = consumoRegistroRepository.save(consumo);
+        dataVersionService.bump(usuarioIdDe(creado));
+        return creado;
     }
     
     /**
@@ -213,7 +236,9 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
         }
         
         consumo.setId(id);
-        return consumoRegistroRepository.save(consumo);
+        ConsumoRegistro actualizado = consumoRegistroRepository.save(consumo);
+        dataVersionService.bump(usuarioIdDe(actualizado));
+        return actualizado;
     }
     
     /**
@@ -221,10 +246,17 @@ public class ConsumoRegistroService implements IConsumoRegistroService {
      */
     @Override
     public void deleteConsumo(Long id) {
-        if (consumoRegistroRepository.findById(id).isEmpty()) {
-            throw new IllegalArgumentException("Registro de consumo no encontrado");
-        }
-        consumoRegistroRepository.deleteById(id);
+        ConsumoRegistro consumo = consumoRegistroRepository.findById(id)
+            .orElseThrow(() -> new IllegalArgumentException("Registro de consumo no encontrado"));
+        consumoRegistroRepository.delete(consumo);
+        dataVersionService.bump(usuarioIdDe(consumo));
+    }
+    
+    /**
+     * ID del usuario del registro (de la referencia JPA, sin cargar el Usuario)
+     */
+    private static Long usuarioIdDe(ConsumoRegistro consumo) {
+        return consumo.getUsuario() != null ? consumo.getUsuario().getId() : null;
     }
     
     /**
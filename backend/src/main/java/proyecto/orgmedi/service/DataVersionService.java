@@ -0,0 +1,99 @@
+package proyecto.orgmedi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DataVersionService - VERSIÓN DE LOS DATOS DE CADA USUARIO (para ETags)
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - El frontend vuelve a pedir la lista, el horario y los consumos aunque no haya cambiado nada
+ * - Con una versión por usuario, un GET con If-None-Match se responde 304 comparando
+ *   un número en memoria: sin consultas a la BD ni cálculo del horario
+ *
+ * CÓMO:
+ * - Cada usuario tiene una versión que SOLO crece
+ * - Toda escritura de sus datos (medicamentos, consumos, notificaciones) llama a bump()
+ * - ETag fuerte = "v" + versión (+ variante de la representación, si la hay)
+ *
+ * VALORES ÚNICOS (también tras reiniciar o expulsar una entrada):
+ * - Las versiones salen de un contador global que arranca en el instante de inicio
+ *   en microsegundos: una versión nueva nunca coincide con un ETag emitido antes
+ * - Un usuario expulsado de la caché (data-version.max-users) recibe una versión
+ *   nueva: como mucho, una respuesta 200 de más
+ *
+ * ORDEN RESPECTO A LA TRANSACCIÓN:
+ * - Dentro de una transacción, bump() se aplica DESPUÉS del commit. Si se aplicara
+ *   antes, un GET concurrente podría guardar datos viejos con la versión nueva
+ *
+ * LIMITACIÓN: el estado es local a cada instancia.
+ */
+@Service
+public class DataVersionService {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+    private final Cache<Long, Long> versions;
+
+    public DataVersionService(@Value("${data-version.max-users:100000}") long maxUsers) {
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .build();
+    }
+
+    /**
+     * currentVersion - Versión actual de los datos del usuario (una consulta a la caché)
+     */
+    public long currentVersion(Long usuarioId) {
+        return versions.get(usuarioId, id -> clock.incrementAndGet());
+    }
+
+    /**
+     * etag - ETag fuerte para los datos del usuario en su versión actual
+     */
+    public String etag(Long usuarioId) {
+        return "\"v" + Long.toString(currentVersion(usuarioId), 36) + "\"";
+    }
+
+    /**
+     * etag - ETag fuerte para una representación concreta (p. ej. otro formato del mismo recurso)
+     */
+    public String etag(Long usuarioId, String variante) {
+        return "\"v" + Long.toString(currentVersion(usuarioId), 36) + "-" + variante + "\"";
+    }
+
+    /**
+     * bump - Marca que los datos del usuario han cambiado
+     *
+     * Con una transacción activa se aplica tras el commit (si hace rollback no cambia nada).
+     */
+    public void bump(Long usuarioId) {
+        if (usuarioId == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.put(usuarioId, clock.incrementAndGet());
+                }
+            });
+        } else {
+            versions.put(usuarioId, clock.incrementAndGet());
+        }
+    }
+
+    /**
+     * bumpAll - Invalida las versiones de TODOS los usuarios
+     * (tras modificar la BD por fuera de la aplicación)
+     */
+    public void bumpAll() {
+        versions.invalidateAll();
+    }
+}
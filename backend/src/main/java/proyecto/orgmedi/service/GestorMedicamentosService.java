@@ -2,8 +2,11 @@ package proyecto.orgmedi.service;
 
 import proyecto.orgmedi.dominio.GestorMedicamentos;
 import proyecto.orgmedi.repo.GestorMedicamentosRepository;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.security.TokenRevocationStore;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -13,10 +16,22 @@ import proyecto.orgmedi.error.NotFoundException;
 @SuppressWarnings("null")
 public class GestorMedicamentosService {
     private final GestorMedicamentosRepository gestorMedicamentosRepository;
+    // La identidad cacheada incluye el gestorId: crear/borrar gestores la invalida
+    private final CurrentUserResolver currentUserResolver;
+    // Los tokens llevan el gid: al cambiar el gestor de un usuario se revocan los suyos
+    private final TokenRevocationStore tokenRevocationStore;
+    // GET /api/medicamentos y /por-fecha cuelgan del gestor: su ETag debe cambiar
+    private final DataVersionService dataVersionService;
 
     @Autowired
-    public GestorMedicamentosService(GestorMedicamentosRepository gestorMedicamentosRepository) {
+    public GestorMedicamentosService(GestorMedicamentosRepository gestorMedicamentosRepository,
+                                     CurrentUserResolver currentUserResolver,
+                                     TokenRevocationStore tokenRevocationStore,
+                                     DataVersionService dataVersionService) {
         this.gestorMedicamentosRepository = gestorMedicamentosRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.tokenRevocationStore = tokenRevocationStore;
+        this.dataVersionService = dataVersionService;
     }
 
     public List<GestorMedicamentos> findAll() {
@@ -27,29 +42,80 @@ public class GestorMedicamentosService {
         return gestorMedicamentosRepository.findById(id);
     }
 
+    /**
+     * Gestor con sus medicamentos ya cargados en una sola consulta (entity graph)
+     */
+    public Optional<GestorMedicamentos> findWithMedicamentosById(Long id) {
+        return gestorMedicamentosRepository.findWithMedicamentosById(id);
+    }
+
     public GestorMedicamentos getByIdOrThrow(Long id) {
         return gestorMedicamentosRepository.findById(id)
                 .orElseThrow(() -> new NotFoundException("Gestor no encontrado"));
     }
 
+    /**
+     * Crea un gestor con los medicamentos del body
+     * 
+     * La lista no escribe la columna gestor_id (la escribe Medicamento.gestorId, que no viene
+     * en el JSON): el id del gestor solo se conoce tras el INSERT, así que se asigna a los
+     * medicamentos ya guardados y el UPDATE sale al confirmar la transacción.
+     */
+    @Transactional
     public GestorMedicamentos createGestor(GestorMedicamentos gestor) {
         // Si fuera necesario comprobar unicidad por usuario, se podría hacer aquí
-        return gestorMedicamentosRepository.save(gestor);
+        GestorMedicamentos saved = gestorMedicamentosRepository.save(gestor);
+        asignarGestor(saved);
+        currentUserResolver.invalidateAll();
+        invalidarUsuario(saved);
+        return saved;
     }
 
+    /**
+     * Reemplaza un gestor y su lista de medicamentos (gestor_id de cada uno = id)
+     */
+    @Transactional
     public GestorMedicamentos updateGestor(Long id, GestorMedicamentos gestor) {
-        if (gestorMedicamentosRepository.findById(id).isEmpty()) {
-            throw new NotFoundException("Gestor no encontrado");
-        }
+        GestorMedicamentos anterior = gestorMedicamentosRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Gestor no encontrado"));
+        invalidarUsuario(anterior); // Antes del save: puede cambiar de usuario
         gestor.setId(id);
-        return gestorMedicamentosRepository.save(gestor);
+        asignarGestor(gestor);
+        GestorMedicamentos saved = gestorMedicamentosRepository.save(gestor);
+        currentUserResolver.invalidateAll();
+        invalidarUsuario(saved);
+        return saved;
     }
 
-    public void deleteByIdOrThrow(Long id) {
-        if (gestorMedicamentosRepository.findById(id).isEmpty()) {
-            throw new NotFoundException("Gestor no encontrado");
+    /**
+     * Rellena Medicamento.gestorId (@JsonIgnore, llega null desde el JSON) con el id del gestor
+     */
+    private static void asignarGestor(GestorMedicamentos gestor) {
+        if (gestor == null || gestor.getMedicamentos() == null) {
+            return;
         }
+        gestor.getMedicamentos().forEach(m -> m.setGestorId(gestor.getId()));
+    }
+
+    /**
+     * Invalida lo que depende del gestor del usuario:
+     * - Sus tokens: el claim gid ya no es válido (tendrá que volver a iniciar sesión)
+     * - La versión de sus datos: ETag y respuestas cacheadas de sus medicamentos
+     *   (bump() se aplica tras el commit)
+     */
+    private void invalidarUsuario(GestorMedicamentos gestor) {
+        if (gestor.getUsuario() != null && gestor.getUsuario().getId() != null) {
+            tokenRevocationStore.revokeAllForUser(gestor.getUsuario().getId(), null);
+            dataVersionService.bump(gestor.getUsuario().getId());
+        }
+    }
+
+    public void deleteByIdOrThrow(Long id) {
+        GestorMedicamentos gestor = gestorMedicamentosRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Gestor no encontrado"));
         gestorMedicamentosRepository.deleteById(id);
+        currentUserResolver.invalidateAll();
+        invalidarUsuario(gestor);
     }
 
     public GestorMedicamentos save(GestorMedicamentos gestor) {
@@ -57,6 +123,9 @@ public class GestorMedicamentosService {
     }
 
     public void deleteById(Long id) {
+        Optional<GestorMedicamentos> gestor = gestorMedicamentosRepository.findById(id);
         gestorMedicamentosRepository.deleteById(id);
+        currentUserResolver.invalidateAll();
+        gestor.ifPresent(this::invalidarUsuario);
     }
 }
@@ -19,6 +19,10 @@ public interface IConsumoRegistroService {
     
     ConsumoRegistro getByIdOrThrow(Long id);
     
+    Optional<ConsumoRegistro> findByIdAndUsuarioId(Long id, Long usuarioId);
+    
+    boolean cambiarConsumido(Long consumoId, Long usuarioId, boolean consumido);
+    
     ConsumoRegistro createConsumo(ConsumoRegistro consumo);
     
     ConsumoRegistro updateConsumo(Long id, ConsumoRegistro consumo);
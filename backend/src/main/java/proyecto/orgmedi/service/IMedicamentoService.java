@@ -6,6 +6,7 @@ import proyecto.orgmedi.dto.medicamento.MedicamentosPorFechaDTO;
 import proyecto.orgmedi.dto.medicamento.MedicamentosPorHoraDTO;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +22,16 @@ public interface IMedicamentoService {
     
     Medicamento getByIdOrThrow(Long id);
     
+    Optional<Medicamento> findByIdAndUsuarioId(Long id, Long usuarioId);
+    
+    boolean existsByIdAndUsuarioId(Long id, Long usuarioId);
+    
+    List<Medicamento> findByIdsAndUsuarioId(Collection<Long> ids, Long usuarioId);
+    
+    boolean deleteByIdAndUsuarioId(Long id, Long usuarioId);
+    
+    Medicamento save(Medicamento medicamento);
+    
     Medicamento createMedicamento(Medicamento medicamento);
     
     Medicamento updateMedicamento(Long id, Medicamento medicamento);
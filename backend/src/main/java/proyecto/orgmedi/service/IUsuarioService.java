@@ -15,6 +15,8 @@ public interface IUsuarioService {
     
     Optional<Usuario> findById(Long id);
     
+    boolean existsById(Long id);
+    
     Usuario getByIdOrThrow(Long id);
     
     Optional<Usuario> findByCorreo(String correo);
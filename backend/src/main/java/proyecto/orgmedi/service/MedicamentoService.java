@@ -4,11 +4,16 @@ import proyecto.orgmedi.dominio.Medicamento;
 import proyecto.orgmedi.dominio.ConsumoRegistro;
 import proyecto.orgmedi.repo.MedicamentoRepository;
 import proyecto.orgmedi.repo.ConsumoRegistroRepository;
+import proyecto.orgmedi.config.SecondLevelCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import proyecto.orgmedi.error.NotFoundException;
 import proyecto.orgmedi.error.BadRequestException;
+import proyecto.orgmedi.error.ConflictException;
+import com.fasterxml.jackson.databind.JsonNode;
 import proyecto.orgmedi.dto.medicamento.MedicamentoDTO;
+import proyecto.orgmedi.dto.medicamento.HorarioCompactoDTO;
+import proyecto.orgmedi.dto.medicamento.TomaCompactaDTO;
 import proyecto.orgmedi.dto.medicamento.MedicamentoConHoraDTO;
 import proyecto.orgmedi.dto.medicamento.MedicamentosPorHoraDTO;
 import proyecto.orgmedi.dto.medicamento.MedicamentosPorFechaDTO;
@@ -16,6 +21,7 @@ import proyecto.orgmedi.dto.medicamento.MedicamentosPorFechaDTO;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -61,11 +67,18 @@ public class MedicamentoService implements IMedicamentoService {
      */
     private final ConsumoRegistroRepository consumoRegistroRepository;
 
+    /**
+     * Caché de segundo nivel: invalidar la lista del gestor al crear un medicamento
+     */
+    private final SecondLevelCache secondLevelCache;
+
     @Autowired
     public MedicamentoService(MedicamentoRepository medicamentoRepository, 
-                             ConsumoRegistroRepository consumoRegistroRepository) {
+                             ConsumoRegistroRepository consumoRegistroRepository,
+                             SecondLevelCache secondLevelCache) {
         this.medicamentoRepository = medicamentoRepository;
         this.consumoRegistroRepository = consumoRegistroRepository;
+        this.secondLevelCache = secondLevelCache;
     }
 
     // ============ MÉTODOS CRUD BÁSICOS =============
@@ -92,6 +105,69 @@ public class MedicamentoService implements IMedicamentoService {
                 .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
     }
 
+    // ============ ACCESO CON PROPIETARIO =============
+    // Una sola consulta indexada comprueba existencia Y propiedad a la vez.
+    // "No existe" y "es de otro usuario" dan el mismo resultado.
+
+    /**
+     * Busca un medicamento del usuario (vacío si no existe o es de otro)
+     */
+    @Override
+    public Optional<Medicamento> findByIdAndUsuarioId(Long id, Long usuarioId) {
+        return medicamentoRepository.findByIdAndUsuarioId(id, usuarioId);
+    }
+
+    /**
+     * ¿El medicamento existe y es del usuario? (sin cargarlo)
+     */
+    @Override
+    public boolean existsByIdAndUsuarioId(Long id, Long usuarioId) {
+        return medicamentoRepository.existsByIdAndUsuarioId(id, usuarioId);
+    }
+
+    /**
+     * De los IDs pedidos, devuelve solo los medicamentos del usuario (una consulta IN)
+     */
+    @Override
+    public List<Medicamento> findByIdsAndUsuarioId(Collection<Long> ids, Long usuarioId) {
+        if (ids == null || ids.isEmpty()) {
+            return List.of();
+        }
+        return medicamentoRepository.findByIdInAndUsuarioId(ids, usuarioId);
+    }
+
+    /**
+     * Elimina el medicamento si es del usuario (un único DELETE)
+     * 
+     * RETORNO: true si se eliminó, false si no existe o es de otro usuario
+     */
+    @Override
+    public boolean deleteByIdAndUsuarioId(Long id, Long usuarioId) {
+        return medicamentoRepository.deleteByIdAndUsuarioId(id, usuarioId) > 0;
+    }
+
+    /**
+     * Busca un medicamento de la lista del gestor (vacío si no existe o es de otro gestor)
+     */
+    public Optional<Medicamento> findByIdAndGestorId(Long id, Long gestorId) {
+        if (gestorId == null) {
+            return Optional.empty();
+        }
+        return medicamentoRepository.findByIdAndGestorId(id, gestorId);
+    }
+
+    /**
+     * Elimina el medicamento si está en la lista del gestor (un único DELETE)
+     * 
+     * RETORNO: true si se eliminó, false si no existe o es de otro gestor
+     */
+    public boolean deleteByIdAndGestorId(Long id, Long gestorId) {
+        if (gestorId == null) {
+            return false;
+        }
+        return medicamentoRepository.deleteByIdAndGestorId(id, gestorId) > 0;
+    }
+
     /**
      * Crea un nuevo medicamento
      * 
@@ -124,14 +200,128 @@ public class MedicamentoService implements IMedicamentoService {
         return medicamentoRepository.save(m);
     }
 
+    /**
+     * Crea un medicamento en la lista de un gestor con UN solo INSERT
+     * 
+     * REQUISITOS: medicamento.gestorId y medicamento.usuario ya asignados
+     * (el usuario puede ser una referencia JPA, no hace falta cargarlo)
+     * 
+     * PROCESO:
+     * 1. Nombre repetido en el gestor → consulta indexada (existsByGestorIdAndNombre)
+     *    en lugar de recorrer la lista cargada
+     * 2. INSERT del medicamento con gestor_id: el gestor no se carga ni se guarda
+     * 3. Invalida la lista cacheada del gestor (la colección no se ha tocado,
+     *    así que Hibernate no lo hace solo)
+     * 
+     * EXCEPCIONES:
+     * - BadRequestException: nombre vacío
+     * - ConflictException: el gestor ya tiene un medicamento con ese nombre
+     */
+    public Medicamento createMedicamentoDeGestor(Medicamento medicamento) {
+        if (medicamento.getNombre() == null || medicamento.getNombre().isBlank()) {
+            throw new BadRequestException("Nombre inválido");
+        }
+        if (medicamentoRepository.existsByGestorIdAndNombre(medicamento.getGestorId(), medicamento.getNombre())) {
+            throw new ConflictException("Ya existe un medicamento con ese nombre");
+        }
+        medicamento.setId(null); // Siempre INSERT (con ID, save() haría merge y un SELECT previo)
+        Medicamento creado = medicamentoRepository.save(medicamento);
+        secondLevelCache.evictMedicamentosDeGestor(medicamento.getGestorId());
+        return creado;
+    }
+
+    /**
+     * Aplica un JSON Merge Patch (RFC 7396) a un medicamento cargado
+     * 
+     * SEMÁNTICA:
+     * - Campo ausente → no cambia
+     * - Campo con valor → se asigna
+     * - Campo a null → "borrar": todos los campos son obligatorios, así que es 400
+     * - "id" y campos desconocidos se ignoran (igual que al leer un MedicamentoDTO)
+     * 
+     * No guarda: solo modifica la entidad. Al guardarla, @DynamicUpdate genera un
+     * UPDATE solo con las columnas que han cambiado de valor (ninguno si no cambia nada).
+     * 
+     * EXCEPCIÓN: BadRequestException si el patch no es un objeto o un valor no es válido
+     */
+    public Medicamento aplicarMergePatch(Medicamento medicamento, JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            throw new BadRequestException("El cuerpo debe ser un objeto JSON (JSON Merge Patch)");
+        }
+        Iterator<Map.Entry<String, JsonNode>> campos = patch.fields();
+        while (campos.hasNext()) {
+            Map.Entry<String, JsonNode> entrada = campos.next();
+            String campo = entrada.getKey();
+            JsonNode valor = entrada.getValue();
+            if ("id".equals(campo)) {
+                continue; // El ID no se modifica
+            }
+            if (valor.isNull()) {
+                throw new BadRequestException("El campo '" + campo + "' es obligatorio y no se puede eliminar");
+            }
+            switch (campo) {
+                case "nombre" -> medicamento.setNombre(texto(campo, valor));
+                case "cantidadMg" -> medicamento.setCantidadMg(entero(campo, valor));
+                case "horaInicio" -> medicamento.setHoraInicio(texto(campo, valor));
+                case "fechaInicio" -> medicamento.setFechaInicio(fecha(campo, valor));
+                case "fechaFin" -> medicamento.setFechaFin(fecha(campo, valor));
+                case "color" -> medicamento.setColor(texto(campo, valor));
+                case "frecuencia" -> medicamento.setFrecuencia(entero(campo, valor));
+                case "consumed" -> medicamento.setConsumed(booleano(campo, valor));
+                default -> { } // Campo desconocido: se ignora
+            }
+        }
+        return medicamento;
+    }
+
+    private static String texto(String campo, JsonNode valor) {
+        if (!valor.isTextual() || valor.asText().isBlank()) {
+            throw new BadRequestException("El campo '" + campo + "' debe ser un texto no vacío");
+        }
+        return valor.asText();
+    }
+
+    private static Integer entero(String campo, JsonNode valor) {
+        if (valor.isIntegralNumber() && valor.canConvertToInt()) {
+            return valor.intValue();
+        }
+        if (valor.isTextual()) {
+            try {
+                return Integer.valueOf(valor.asText().trim());
+            } catch (NumberFormatException e) {
+                // Cae al error de abajo
+            }
+        }
+        throw new BadRequestException("El campo '" + campo + "' debe ser un número entero");
+    }
+
+    private static LocalDate fecha(String campo, JsonNode valor) {
+        try {
+            return LocalDate.parse(valor.asText());
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("El campo '" + campo + "' debe tener formato yyyy-MM-dd");
+        }
+    }
+
+    private static Boolean booleano(String campo, JsonNode valor) {
+        if (valor.isBoolean()) {
+            return valor.booleanValue();
+        }
+        if (valor.isTextual() && ("true".equals(valor.asText()) || "false".equals(valor.asText()))) {
+            return Boolean.valueOf(valor.asText());
+        }
+        throw new BadRequestException("El campo '" + campo + "' debe ser true o false");
+    }
+
     /**
      * Actualiza un medicamento existente
      */
     public Medicamento updateMedicamento(Long id, Medicamento medicamento) {
-        if (medicamentoRepository.findById(id).isEmpty()) {
-            throw new NotFoundException("Medicamento no encontrado");
-        }
+        Medicamento existente = medicamentoRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
         medicamento.setId(id);
+        // gestor_id lo escribe solo Medicamento.gestorId, que no viene en el JSON
+        medicamento.setGestorId(existente.getGestorId());
         return medicamentoRepository.save(medicamento);
     }
 
@@ -165,6 +355,7 @@ public class MedicamentoService implements IMedicamentoService {
         
         Medicamento m = fromDto(dto);
         m.setId(id);
+        m.setGestorId(medicamentoExistente.getGestorId()); // El DTO no lleva el gestor
         Medicamento medicamentoActualizado = medicamentoRepository.save(m);
         
         // Si cambió la planificación (frecuencia, horaInicio, fechaInicio, fechaFin),
@@ -249,6 +440,32 @@ public class MedicamentoService implements IMedicamentoService {
         return getMedicamentosPorFecha(medicamentos, fecha);
     }
 
+    /**
+     * Horario de un gestor para una fecha: solo carga los medicamentos vigentes ese día
+     * (una consulta, sin el gestor ni el usuario) y los agrupa por hora.
+     * 
+     * @param gestorId ID del gestor del usuario autenticado
+     * @param fecha Fecha para la que se agrupan los medicamentos
+     * @return MedicamentosPorFechaDTO con medicamentos agrupados por hora
+     */
+    public MedicamentosPorFechaDTO getMedicamentosPorFechaDeGestor(Long gestorId, LocalDate fecha) {
+        List<Medicamento> medicamentos = medicamentoRepository.findVigentesByGestorId(gestorId, fecha);
+        return getMedicamentosPorFecha(medicamentos, fecha);
+    }
+
+    /**
+     * Horario de un gestor para una fecha en formato compacto (ver HorarioCompactoDTO):
+     * misma consulta que getMedicamentosPorFechaDeGestor, cada medicamento una sola vez.
+     * 
+     * @param gestorId ID del gestor del usuario autenticado
+     * @param fecha Fecha del horario
+     * @return HorarioCompactoDTO con diccionario de medicamentos y tomas por minuto del día
+     */
+    public HorarioCompactoDTO getHorarioCompactoDeGestor(Long gestorId, LocalDate fecha) {
+        List<Medicamento> medicamentos = medicamentoRepository.findVigentesByGestorId(gestorId, fecha);
+        return getHorarioCompacto(medicamentos, fecha);
+    }
+
     /**
      * Obtiene todos los medicamentos de un usuario convertidos a DTO
      * 
@@ -294,6 +511,7 @@ public class MedicamentoService implements IMedicamentoService {
         return dto;
     }
 
+    @Override
     public Medicamento save(Medicamento medicamento) {
         return medicamentoRepository.save(medicamento);
     }
@@ -357,6 +575,58 @@ public class MedicamentoService implements IMedicamentoService {
                 .build();
     }
 
+    /**
+     * Horario compacto: mismas tomas que getMedicamentosPorFecha, pero cada medicamento
+     * va UNA vez en el diccionario y las tomas lo referencian por índice
+     * 
+     * @param medicamentos Lista de medicamentos a procesar
+     * @param fecha Fecha del horario
+     * @return HorarioCompactoDTO (tomas ordenadas por minuto del día)
+     */
+    public HorarioCompactoDTO getHorarioCompacto(List<Medicamento> medicamentos, LocalDate fecha) {
+        List<MedicamentoDTO> diccionario = new ArrayList<>();
+        Map<Integer, List<Integer>> indicesPorMinuto = new TreeMap<>();
+        int totalMedicamentos = 0;
+
+        for (Medicamento medicamento : medicamentos) {
+            if (!esMedicamentoValidoParaFecha(medicamento, fecha)) {
+                continue;
+            }
+            List<String> horasToma = calcularHorasToma(medicamento, fecha);
+            if (horasToma.isEmpty()) {
+                continue;
+            }
+
+            int indice = diccionario.size();
+            diccionario.add(toDto(medicamento));
+            for (String hora : horasToma) {
+                indicesPorMinuto.computeIfAbsent(minutoDelDia(hora), k -> new ArrayList<>()).add(indice);
+            }
+            totalMedicamentos += horasToma.size();
+        }
+
+        List<TomaCompactaDTO> tomas = new ArrayList<>(indicesPorMinuto.size());
+        indicesPorMinuto.forEach((minuto, indices) -> tomas.add(TomaCompactaDTO.builder()
+                .minuto(minuto)
+                .medicamentos(indices.stream().mapToInt(Integer::intValue).toArray())
+                .build()));
+
+        return HorarioCompactoDTO.builder()
+                .fecha(fecha)
+                .medicamentos(diccionario)
+                .tomas(tomas)
+                .totalMedicamentos(totalMedicamentos)
+                .build();
+    }
+
+    /**
+     * Minuto del día de una hora HH:mm ("08:30" → 510)
+     */
+    private static int minutoDelDia(String hora) {
+        int separador = hora.indexOf(':');
+        return Integer.parseInt(hora.substring(0, separador)) * 60 + Integer.parseInt(hora.substring(separador + 1));
+    }
+
     /**
      * Verifica si un medicamento es válido para una fecha específica
      * (respeta las fechas de inicio y fin)
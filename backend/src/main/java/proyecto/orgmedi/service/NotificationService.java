@@ -20,16 +20,15 @@ public class NotificationService {
     
     private final NotificationRepository notificationRepository;
     private final UsuarioRepository usuarioRepository;
+    // Versión de los datos del usuario (ETags): toda escritura la incrementa
+    private final DataVersionService dataVersionService;
     
     /**
      * Obtener todas las notificaciones del usuario autenticado
      */
     @Transactional(readOnly = true)
     public List<NotificationDTO> getNotificationsByUser(Long usuarioId) {
-        Usuario usuario = usuarioRepository.findById(usuarioId).orElse(null);
-        if (usuario == null) return List.of();
-        
-        return notificationRepository.findByUsuario(usuario).stream()
+        return notificationRepository.findByUsuarioId(usuarioId).stream()
          .map(this::convertToDTO)
          .collect(Collectors.toList());
     }
@@ -39,10 +38,7 @@ public class NotificationService {
      */
     @Transactional(readOnly = true)
     public List<NotificationDTO> getUnreadNotifications(Long usuarioId) {
-        Usuario usuario = usuarioRepository.findById(usuarioId).orElse(null);
-        if (usuario == null) return List.of();
-        
-        return notificationRepository.findUnreadByUsuario(usuario).stream()
+        return notificationRepository.findUnreadByUsuarioId(usuarioId).stream()
             .map(this::convertToDTO)
             .collect(Collectors.toList());
     }
@@ -52,10 +48,7 @@ public class NotificationService {
      */
     @Transactional(readOnly = true)
     public long countUnreadNotifications(Long usuarioId) {
-        Usuario usuario = usuarioRepository.findById(usuarioId).orElse(null);
-        if (usuario == null) return 0;
-        
-        return notificationRepository.countUnreadByUsuario(usuario);
+        return notificationRepository.countUnreadByUsuarioId(usuarioId);
     }
     
     /**
@@ -76,6 +69,7 @@ public class NotificationService {
         notification.setRead(false);
         
         Notification saved = notificationRepository.save(notification);
+        dataVersionService.bump(usuarioId);
         return convertToDTO(saved);
     }
     
@@ -89,6 +83,7 @@ public class NotificationService {
         
         notification.setRead(true);
         Notification saved = notificationRepository.save(notification);
+        dataVersionService.bump(usuarioIdDe(notification));
         return convertToDTO(saved);
     }
     
@@ -97,12 +92,10 @@ public class NotificationService {
      */
     @Transactional
     public void markAllAsRead(Long usuarioId) {
-        Usuario usuario = usuarioRepository.findById(usuarioId).orElse(null);
-        if (usuario == null) return;
-        
-        List<Notification> unread = notificationRepository.findUnreadByUsuario(usuario);
+        List<Notification> unread = notificationRepository.findUnreadByUsuarioId(usuarioId);
         unread.forEach(n -> n.setRead(true));
         notificationRepository.saveAll(unread);
+        dataVersionService.bump(usuarioId);
     }
     
     /**
@@ -110,7 +103,17 @@ public class NotificationService {
      */
     @Transactional
     public void deleteNotification(Long notificationId) {
-        notificationRepository.deleteById(notificationId);
+        notificationRepository.findById(notificationId).ifPresent(notification -> {
+            notificationRepository.delete(notification);
+            dataVersionService.bump(usuarioIdDe(notification));
+        });
+    }
+    
+    /**
+     * ID del usuario de la notificación (de la referencia JPA, sin cargar el Usuario)
+     */
+    private static Long usuarioIdDe(Notification notification) {
+        return notification.getUsuario() != null ? notification.getUsuario().getId() : null;
     }
     
     /**
@@ -2,6 +2,7 @@ package proyecto.orgmedi.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import proyecto.orgmedi.dominio.Medicamento;
 import proyecto.orgmedi.dominio.ConsumoRegistro;
 import proyecto.orgmedi.dominio.Notification;
@@ -16,6 +17,10 @@ import java.util.List;
  * Façade para operaciones de organización
  * Reduce el acoplamiento entre controladores y múltiples servicios
  * Cumple con Interface Segregation Principle e implementa Façade Pattern
+ * 
+ * PERMISOS: las operaciones sobre un medicamento/consumo concreto usan las consultas
+ * con propietario (...AndUsuarioId): existencia y propiedad en una sola consulta
+ * indexada. Si no existe o es de otro usuario → NotFoundException en ambos casos.
  */
 @Service
 public class OrganizationFacade {
@@ -24,17 +29,20 @@ public class OrganizationFacade {
     private final IUsuarioService usuarioService;
     private final IConsumoRegistroService consumoRegistroService;
     private final NotificationService notificationService;
+    private final DataVersionService dataVersionService;
     
     @Autowired
     public OrganizationFacade(
             IMedicamentoService medicamentoService,
             IUsuarioService usuarioService,
             IConsumoRegistroService consumoRegistroService,
-            NotificationService notificationService) {
+            NotificationService notificationService,
+            DataVersionService dataVersionService) {
         this.medicamentoService = medicamentoService;
         this.usuarioService = usuarioService;
         this.consumoRegistroService = consumoRegistroService;
         this.notificationService = notificationService;
+        this.dataVersionService = dataVersionService;
     }
     
     // ==================== MEDICAMENTOS ====================
@@ -61,6 +69,7 @@ public class OrganizationFacade {
     public Medicamento crearMedicamento(Medicamento medicamento, Long usuarioId) {
         validarUsuarioExiste(usuarioId);
         Medicamento created = medicamentoService.createMedicamento(medicamento);
+        dataVersionService.bump(usuarioId);
         notificationService.createNotification(
             usuarioId,
             "Medicamento creado",
@@ -71,23 +80,31 @@ public class OrganizationFacade {
     }
     
     /**
-     * Actualiza un medicamento
+     * Actualiza un medicamento del usuario
+     * 
+     * Una consulta (id + usuario_id) comprueba existencia y propiedad; dentro de la
+     * transacción el merge reutiliza la entidad ya cargada (sin un segundo SELECT).
      */
+    @Transactional
     public Medicamento actualizarMedicamento(Long medicamentoId, Medicamento medicamento, Long usuarioId) {
-        validarUsuarioExiste(usuarioId);
-        Medicamento existing = medicamentoService.getByIdOrThrow(medicamentoId);
-        validarPermiso(existing, usuarioId);
-        return medicamentoService.updateMedicamento(medicamentoId, medicamento);
+        Medicamento existing = medicamentoService.findByIdAndUsuarioId(medicamentoId, usuarioId)
+                .orElseThrow(() -> new NotFoundException("Medicamento no encontrado"));
+        medicamento.setId(medicamentoId);
+        medicamento.setUsuario(existing.getUsuario());
+        medicamento.setGestorId(existing.getGestorId()); // No viene en el JSON (@JsonIgnore)
+        Medicamento actualizado = medicamentoService.save(medicamento);
+        dataVersionService.bump(usuarioId); // Tras el commit de esta transacción
+        return actualizado;
     }
     
     /**
-     * Elimina un medicamento
+     * Elimina un medicamento del usuario (un único DELETE con la condición de propietario)
      */
     public void eliminarMedicamento(Long medicamentoId, Long usuarioId) {
-        validarUsuarioExiste(usuarioId);
-        Medicamento medicamento = medicamentoService.getByIdOrThrow(medicamentoId);
-        validarPermiso(medicamento, usuarioId);
-        medicamentoService.deleteMedicamento(medicamentoId);
+        if (!medicamentoService.deleteByIdAndUsuarioId(medicamentoId, usuarioId)) {
+            throw new NotFoundException("Medicamento no encontrado");
+        }
+        dataVersionService.bump(usuarioId);
     }
     
     // ==================== CONSUMOS ====================
@@ -104,10 +121,7 @@ public class OrganizationFacade {
      * Marca un consumo como realizado
      */
     public void marcarConsumido(Long consumoId, Long usuarioId) {
-        validarUsuarioExiste(usuarioId);
-        ConsumoRegistro consumo = consumoRegistroService.getByIdOrThrow(consumoId);
-        validarPermiso(consumo, usuarioId);
-        consumoRegistroService.marcarConsumido(consumoId);
+        cambiarConsumido(consumoId, usuarioId, true);
         notificationService.createNotification(
             usuarioId,
             "Medicamento consumido",
@@ -120,38 +134,29 @@ public class OrganizationFacade {
      * Desmarca un consumo
      */
     public void desmarcarConsumido(Long consumoId, Long usuarioId) {
-        validarUsuarioExiste(usuarioId);
-        ConsumoRegistro consumo = consumoRegistroService.getByIdOrThrow(consumoId);
-        validarPermiso(consumo, usuarioId);
-        consumoRegistroService.desmarcarConsumido(consumoId);
+        cambiarConsumido(consumoId, usuarioId, false);
     }
     
     // ==================== VALIDACIONES ====================
     
     /**
-     * Valida que el usuario existe
+     * Valida que el usuario existe (sin cargar la entidad)
      */
     private void validarUsuarioExiste(Long usuarioId) {
-        if (!usuarioService.findById(usuarioId).isPresent()) {
+        if (!usuarioService.existsById(usuarioId)) {
             throw new NotFoundException("Usuario no encontrado");
         }
     }
     
     /**
-     * Valida que el usuario tiene permiso sobre el medicamento
-     */
-    private void validarPermiso(Medicamento medicamento, Long usuarioId) {
-        if (!medicamento.getUsuario().getId().equals(usuarioId)) {
-            throw new IllegalArgumentException("Acceso denegado: No tienes permiso sobre este medicamento");
-        }
-    }
-    
-    /**
-     * Valida que el usuario tiene permiso sobre el consumo
+     * Cambia el estado de un consumo del usuario con un único UPDATE
+     * 
+     * PROPIEDAD: va en el WHERE de la misma sentencia. Si no existe o es de otro
+     * usuario no se actualiza ninguna fila → 404 (no se revela si el ID existe).
      */
-    private void validarPermiso(ConsumoRegistro consumo, Long usuarioId) {
-        if (!consumo.getMedicamento().getUsuario().getId().equals(usuarioId)) {
-            throw new IllegalArgumentException("Acceso denegado: No tienes permiso sobre este consumo");
+    private void cambiarConsumido(Long consumoId, Long usuarioId, boolean consumido) {
+        if (!consumoRegistroService.cambiarConsumido(consumoId, usuarioId, consumido)) {
+            throw new NotFoundException("Registro de consumo no encontrado");
         }
     }
 }
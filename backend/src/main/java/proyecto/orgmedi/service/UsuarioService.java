@@ -2,6 +2,8 @@ package proyecto.orgmedi.service;
 
 import proyecto.orgmedi.dominio.Usuario;
 import proyecto.orgmedi.repo.UsuarioRepository;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.security.TokenRevocationStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import proyecto.orgmedi.error.NotFoundException;
@@ -41,13 +43,35 @@ public class UsuarioService implements IUsuarioService {
      */
     private final UsuarioRepository usuarioRepository;
 
+    /**
+     * Caché de identidad del usuario autenticado: se invalida al modificar
+     * o eliminar un usuario para que ningún request vea datos obsoletos
+     */
+    private final CurrentUserResolver currentUserResolver;
+
+    /**
+     * Revocación de tokens: los JWT llevan uid/gid y no se consulta la BD,
+     * así que al eliminar un usuario se revocan sus tokens ya emitidos
+     */
+    private final TokenRevocationStore tokenRevocationStore;
+
+    /**
+     * Versión de los datos del usuario (ETags y respuestas cacheadas):
+     * al eliminarlo no debe quedar ningún 304 ni respuesta cacheada de sus datos
+     */
+    private final DataVersionService dataVersionService;
+
     /**
      * Constructor con inyección de dependencia
      * Spring automáticamente proporciona una instancia de UsuarioRepository
      */
     @Autowired
-    public UsuarioService(UsuarioRepository usuarioRepository) {
+    public UsuarioService(UsuarioRepository usuarioRepository, CurrentUserResolver currentUserResolver,
+                          TokenRevocationStore tokenRevocationStore, DataVersionService dataVersionService) {
         this.usuarioRepository = usuarioRepository;
+        this.currentUserResolver = currentUserResolver;
+        this.tokenRevocationStore = tokenRevocationStore;
+        this.dataVersionService = dataVersionService;
     }
 
     // ============ MÉTODOS DE BÚSQUEDA =============
@@ -76,6 +100,14 @@ public class UsuarioService implements IUsuarioService {
         return usuarioRepository.findById(id);
     }
 
+    /**
+     * ¿Existe un usuario con ese ID? (SELECT por clave primaria, sin cargar la entidad)
+     */
+    @Override
+    public boolean existsById(Long id) {
+        return usuarioRepository.existsById(id);
+    }
+
     /**
      * Busca un usuario por ID, pero LANZA EXCEPCIÓN si no existe
      * 
@@ -170,25 +202,37 @@ public class UsuarioService implements IUsuarioService {
      * 
      * NOTA: Solo actualiza usuarios, correo y contraseña si se proporcionan
      * Campos vacíos/null se ignoran (para evitar sobrescribir con valores basura)
+     * Si cambia el correo o la contraseña se revocan los tokens ya emitidos
      */
     public Usuario updateUsuario(Long id, Usuario usuario) {
         // Buscar usuario existente (lanza error si no existe)
         Usuario existing = usuarioRepository.findById(id)
             .orElseThrow(() -> new NotFoundException("Usuario no encontrado"));
+        String correoAnterior = existing.getCorreo();
+        boolean credencialesCambiadas = false;
         
         // Solo actualizar campos que NO estén vacíos (evita sobrescribir accidentalmente)
         if (usuario.getUsuario() != null && !usuario.getUsuario().isBlank()) {
             existing.setUsuario(usuario.getUsuario());
         }
         if (usuario.getCorreo() != null && !usuario.getCorreo().isBlank()) {
+            credencialesCambiadas |= !usuario.getCorreo().equals(correoAnterior);
             existing.setCorreo(usuario.getCorreo());
         }
         if (usuario.getContrasena() != null && !usuario.getContrasena().isBlank()) {
+            credencialesCambiadas |= !usuario.getContrasena().equals(existing.getContrasena());
             existing.setContrasena(usuario.getContrasena());
         }
         
         // Guardar cambios en BD
-        return usuarioRepository.save(existing);
+        Usuario saved = usuarioRepository.save(existing);
+        currentUserResolver.invalidateById(id);
+        // Nuevo correo o contraseña: los tokens emitidos con los anteriores dejan de valer
+        // (el subject es el correo anterior)
+        if (credencialesCambiadas) {
+            tokenRevocationStore.revokeAllForUser(id, correoAnterior);
+        }
+        return saved;
     }
 
     // ============ MÉTODOS DE ELIMINACIÓN =============
@@ -201,6 +245,9 @@ public class UsuarioService implements IUsuarioService {
      */
     public void deleteById(Long id) {
         usuarioRepository.deleteById(id);
+        currentUserResolver.invalidateById(id);
+        tokenRevocationStore.revokeAllForUser(id, null);
+        dataVersionService.bump(id);
     }
 
     /**
@@ -209,15 +256,18 @@ public class UsuarioService implements IUsuarioService {
      * PROCEDIMIENTO:
      * 1. Valida que existe usuario con ese ID
      * 2. Si existe, lo elimina
+     * 3. Revoca sus tokens (por uid y por correo, para los antiguos sin uid)
      * 
      * PARÁMETRO: id - ID del usuario a eliminar
      * EXCEPCIÓN: NotFoundException si no existe
      */
     public void deleteByIdOrThrow(Long id) {
-        if (usuarioRepository.findById(id).isEmpty()) {
-            throw new NotFoundException("Usuario no encontrado");
-        }
+        Usuario usuario = usuarioRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Usuario no encontrado"));
         usuarioRepository.deleteById(id);
+        currentUserResolver.invalidateById(id);
+        tokenRevocationStore.revokeAllForUser(id, usuario.getCorreo());
+        dataVersionService.bump(id);
     }
 
     // ============ MÉTODOS DE VALIDACIÓN =============
@@ -0,0 +1,54 @@
+package proyecto.orgmedi.service.ocr;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * ByteBufferImageInputStream - ImageInputStream que lee directamente de un ByteBuffer
+ *
+ * ImageIO.createImageInputStream(InputStream) envuelve el stream en una caché (en memoria
+ * o en un temporal) para poder retroceder: con una subida en disco eso volvería a copiar
+ * el archivo. Aquí el lector de ImageIO se mueve por el buffer (mapeado con
+ * UploadSpooler.Subida.contenido()) sin copias intermedias.
+ */
+final class ByteBufferImageInputStream extends ImageInputStreamImpl {
+    private final ByteBuffer buffer;
+
+    ByteBufferImageInputStream(ByteBuffer buffer) {
+        // slice(): índice 0 = posición actual; no se modifica el buffer del que llama
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= buffer.limit()) {
+            return -1;
+        }
+        return buffer.get((int) streamPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        long restantes = buffer.limit() - streamPos;
+        if (restantes <= 0) {
+            return -1;
+        }
+        int leidos = (int) Math.min(len, restantes);
+        buffer.get((int) streamPos, b, off, leidos);
+        streamPos += leidos;
+        return leidos;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+}
@@ -0,0 +1,261 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * LanguageDetector - IDIOMA DEL PROSPECTO (spa o eng) PARA NO RECONOCER CON spa+eng
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - Tesseract con "spa+eng" prueba los dos modelos en cada palabra dudosa: más lento que
+ *   uno solo y a veces peor (mezcla palabras de los dos idiomas)
+ *
+ * CÓMO (trigramas de caracteres, sin servicios externos):
+ * - Perfil de cada idioma de ocr.language-detection.languages: frecuencias de trigramas de
+ *   un texto de muestra (classpath:ocr/idiomas/<idioma>.txt), cargado al arrancar
+ * - OcrService reconoce con ocr.language las primeras ocr.language-detection.sample-regions
+ *   regiones (ese texto se usa tal cual, no se repite) y detect() puntúa sus trigramas con
+ *   cada perfil (log-probabilidad media con suavizado de Laplace)
+ * - Si el mejor idioma supera al segundo en al menos min-margin (y la muestra tiene
+ *   min-letters letras), el resto de regiones se reconoce solo con él; si no, es ambiguo
+ *   (texto corto, bilingüe o con mucho ruido) y se sigue con ocr.language
+ *
+ * AHORRO: no se puede medir lo que habría tardado spa+eng en las mismas regiones, así que
+ * se estima con el coste medio (media móvil, ms por megapíxel) de cada idioma:
+ * ahorro = (coste spa+eng − coste del idioma detectado) · megapíxeles reconocidos con él.
+ *
+ * MÉTRICAS: ocr.language.detected{language} (spa, eng o spa+eng = ambiguo),
+ * ocr.language.saved (ms ahorrados estimados por imagen),
+ * ocr.language.cost{language} (ms por megapíxel reconocido)
+ */
+@Slf4j
+@Component
+public class LanguageDetector {
+    private static final String PERFILES = "ocr/idiomas/";
+    private static final double PESO_MEDIA = 0.1;
+
+    private final String combinedLanguage;
+    private final int sampleRegions;
+    private final double minMargin;
+    private final int minLetters;
+    /** Log-probabilidad de cada trigrama por idioma, y la de un trigrama no visto */
+    private final Map<String, Map<String, Double>> perfiles = new LinkedHashMap<>();
+    private final Map<String, Double> noVisto = new HashMap<>();
+    private final Map<String, Counter> detectados = new HashMap<>();
+    private final Map<String, Coste> costes = new HashMap<>();
+    private final DistributionSummary ahorro;
+
+    /** Media móvil del coste de reconocimiento (ns por píxel = ms por megapíxel) */
+    private static final class Coste {
+        private double valor = Double.NaN;
+
+        synchronized void medir(double nsPorPixel) {
+            valor = Double.isNaN(valor) ? nsPorPixel : valor + PESO_MEDIA * (nsPorPixel - valor);
+        }
+
+        synchronized double valor() {
+            return valor;
+        }
+    }
+
+    public LanguageDetector(@Value("${ocr.language-detection.enabled:true}") boolean enabled,
+                            @Value("${ocr.language:spa+eng}") String combinedLanguage,
+                            @Value("${ocr.language-detection.languages:spa,eng}") List<String> languages,
+                            @Value("${ocr.language-detection.sample-regions:3}") int sampleRegions,
+                            @Value("${ocr.language-detection.min-margin:0.3}") double minMargin,
+                            @Value("${ocr.language-detection.min-letters:40}") int minLetters,
+                            MeterRegistry meterRegistry) {
+        this.combinedLanguage = combinedLanguage;
+        this.sampleRegions = Math.max(1, sampleRegions);
+        this.minMargin = minMargin;
+        this.minLetters = minLetters;
+        if (enabled) {
+            cargarPerfiles(languages);
+        }
+
+        List<String> idiomas = new ArrayList<>(perfiles.keySet());
+        idiomas.add(combinedLanguage);
+        for (String idioma : idiomas) {
+            detectados.put(idioma, Counter.builder("ocr.language.detected")
+                    .description("Imágenes por idioma detectado (ocr.language = ambiguo)")
+                    .tag("language", idioma)
+                    .register(meterRegistry));
+            Coste coste = new Coste();
+            costes.put(idioma, coste);
+            Gauge.builder("ocr.language.cost", coste, Coste::valor)
+                    .description("Coste medio de reconocimiento por idioma")
+                    .tag("language", idioma)
+                    .baseUnit("ms/megapixel")
+                    .register(meterRegistry);
+        }
+        this.ahorro = DistributionSummary.builder("ocr.language.saved")
+                .description("Tiempo de OCR ahorrado (estimado) por imagen al reconocer con un solo idioma")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    private void cargarPerfiles(List<String> languages) {
+        List<String> componentes = List.of(combinedLanguage.split("\\+"));
+        Map<String, Map<String, Integer>> cuentas = new LinkedHashMap<>();
+        for (String language : languages) {
+            String idioma = language.strip();
+            if (componentes.size() < 2 || !componentes.contains(idioma)) {
+                continue;
+            }
+            ClassPathResource muestra = new ClassPathResource(PERFILES + idioma + ".txt");
+            try (InputStream in = muestra.getInputStream()) {
+                StringBuilder texto = new StringBuilder();
+                for (String linea : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\\R")) {
+                    if (!linea.startsWith("#")) {
+                        texto.append(linea).append('\n');
+                    }
+                }
+                cuentas.put(idioma, contar(texto));
+            } catch (IOException e) {
+                log.warn("Sin texto de muestra para el idioma {} ({}): no se detecta", idioma, muestra.getPath());
+            }
+        }
+        if (cuentas.size() < 2) {
+            return;
+        }
+        Set<String> vocabulario = new HashSet<>();
+        cuentas.values().forEach(c -> vocabulario.addAll(c.keySet()));
+        cuentas.forEach((idioma, cuenta) -> {
+            double total = cuenta.values().stream().mapToInt(Integer::intValue).sum() + vocabulario.size();
+            Map<String, Double> perfil = new HashMap<>();
+            cuenta.forEach((trigrama, n) -> perfil.put(trigrama, Math.log((n + 1) / total)));
+            perfiles.put(idioma, perfil);
+            noVisto.put(idioma, Math.log(1 / total));
+        });
+        log.info("Detección de idioma: perfiles {} ({} trigramas)", perfiles.keySet(), vocabulario.size());
+    }
+
+    /**
+     * isEnabled - false si está desactivada o no hay perfil de al menos dos idiomas
+     */
+    public boolean isEnabled() {
+        return perfiles.size() >= 2;
+    }
+
+    public int getSampleRegions() {
+        return sampleRegions;
+    }
+
+    public String getCombinedLanguage() {
+        return combinedLanguage;
+    }
+
+    /**
+     * detect - Idioma del texto de muestra, u ocr.language si es ambiguo
+     */
+    public String detect(String muestra) {
+        String idioma = combinedLanguage;
+        Map<String, Double> puntuaciones = puntuaciones(muestra);
+        if (!puntuaciones.isEmpty()) {
+            List<Map.Entry<String, Double>> orden = new ArrayList<>(puntuaciones.entrySet());
+            orden.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+            if (orden.get(0).getValue() - orden.get(1).getValue() >= minMargin) {
+                idioma = orden.get(0).getKey();
+            }
+        }
+        Counter detectado = detectados.get(idioma);
+        if (detectado != null) {
+            detectado.increment();
+        }
+        return idioma;
+    }
+
+    /**
+     * puntuaciones - Log-probabilidad media por trigrama de cada idioma
+     * (vacío si está desactivada o la muestra tiene menos de min-letters letras)
+     */
+    Map<String, Double> puntuaciones(String muestra) {
+        if (!isEnabled() || muestra == null || letras(muestra) < minLetters) {
+            return Map.of();
+        }
+        Map<String, Integer> trigramas = contar(muestra);
+        int total = trigramas.values().stream().mapToInt(Integer::intValue).sum();
+        Map<String, Double> puntuaciones = new LinkedHashMap<>();
+        perfiles.forEach((idioma, perfil) -> {
+            double suma = 0;
+            for (Map.Entry<String, Integer> t : trigramas.entrySet()) {
+                suma += t.getValue() * perfil.getOrDefault(t.getKey(), noVisto.get(idioma));
+            }
+            puntuaciones.put(idioma, suma / total);
+        });
+        return puntuaciones;
+    }
+
+    /**
+     * medir - Coste de un reconocimiento con ese idioma (para estimar el ahorro)
+     */
+    public void medir(String idioma, long nanos, long pixeles) {
+        Coste coste = costes.get(idioma);
+        if (coste != null && pixeles > 0) {
+            coste.medir((double) nanos / pixeles);
+        }
+    }
+
+    /**
+     * registrarAhorro - Tiempo ahorrado (estimado) al reconocer esos píxeles con el idioma
+     * detectado en vez de con ocr.language; 0 si fue ambiguo
+     */
+    public void registrarAhorro(String idioma, long pixeles) {
+        double ahorrado = 0;
+        if (!combinedLanguage.equals(idioma) && costes.containsKey(idioma)) {
+            double diferencia = costes.get(combinedLanguage).valor() - costes.get(idioma).valor();
+            if (diferencia > 0) {
+                ahorrado = diferencia * pixeles / 1_000_000.0;
+            }
+        }
+        ahorro.record(ahorrado);
+    }
+
+    /** Trigramas del texto en minúsculas, solo letras, con un espacio antes y después de cada palabra */
+    private static Map<String, Integer> contar(CharSequence texto) {
+        Map<String, Integer> cuenta = new HashMap<>();
+        StringBuilder palabra = new StringBuilder(" ");
+        for (int i = 0; i <= texto.length(); i++) {
+            char c = i < texto.length() ? Character.toLowerCase(texto.charAt(i)) : ' ';
+            if (Character.isLetter(c)) {
+                palabra.append(c);
+                continue;
+            }
+            if (palabra.length() > 1) {
+                palabra.append(' ');
+                for (int j = 0; j + 3 <= palabra.length(); j++) {
+                    cuenta.merge(palabra.substring(j, j + 3), 1, Integer::sum);
+                }
+            }
+            palabra.setLength(1);
+        }
+        return cuenta;
+    }
+
+    private static int letras(String texto) {
+        int letras = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            if (Character.isLetter(texto.charAt(i))) {
+                letras++;
+            }
+        }
+        return letras;
+    }
+}
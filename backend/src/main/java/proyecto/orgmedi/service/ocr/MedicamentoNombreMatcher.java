@@ -0,0 +1,291 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MedicamentoNombreMatcher - CORRECCIÓN DEL NOMBRE CONTRA UN DICCIONARIO (SymSpell)
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - El nombre era la primera línea "válida" del texto (OcrTextLexer): con ruido de OCR
+ *   ("IBUPR0FEN0 600 mg", "Paracetamo1") se descartaba la línea buena y salía otra
+ *   (o ninguna), siempre con la misma confianza fija
+ *
+ * CÓMO (sin servicios externos, índice en memoria cargado al arrancar):
+ * - Diccionario ocr.nombres.dictionary (por defecto classpath:ocr/medicamentos.txt),
+ *   un nombre por línea; se compara sin mayúsculas ni tildes
+ * - Índice de borrado simétrico (SymSpell): para cada palabra del diccionario se guardan
+ *   todas las variantes con hasta max-distance letras borradas → lista de palabras.
+ *   Para buscar una palabra del OCR se generan sus propias variantes y solo se calcula la
+ *   distancia de edición real (Damerau-Levenshtein) con las palabras que comparten alguna:
+ *   unos pocos microsegundos por línea, sin recorrer el diccionario
+ * - Los nombres de varias palabras ("Ácido acetilsalicílico") se indexan por su palabra
+ *   más larga
+ * - Palabras de menos de 4 letras no se buscan y las de hasta 5 admiten 1 error como
+ *   máximo (si no, casi cualquier palabra corta se parece a algún nombre)
+ * - Se recorren las líneas en orden y gana la primera con alguna coincidencia
+ *   (el nombre va arriba; más abajo el prospecto nombra otros medicamentos)
+ *
+ * Confianza = 100 · (1 − distancia / longitud): 100 exacto, 90 con un error en 10 letras.
+ * Sin coincidencia (nombre fuera del diccionario) se deja el resultado de OcrTextLexer.
+ *
+ * MÉTRICAS: ocr.nombres.match{resultado=exacto|corregido|ninguno}, ocr.nombres.duration
+ */
+@Slf4j
+@Component
+public class MedicamentoNombreMatcher {
+    private static final int MIN_LETRAS = 4;
+    private static final int MAX_LETRAS_UN_ERROR = 5;
+
+    /** Nombre del diccionario con su confianza (0-100) y los errores corregidos */
+    public record Coincidencia(String nombre, double confianza, int distancia) {
+    }
+
+    private final boolean enabled;
+    private final int maxDistance;
+    /** Palabra normalizada indexada y, en la misma posición, el nombre tal como se muestra */
+    private final List<String> palabras = new ArrayList<>();
+    private final List<String> nombres = new ArrayList<>();
+    /** Variante con letras borradas → índices en palabras */
+    private final Map<String, int[]> borrados = new HashMap<>();
+    private final Counter exactos;
+    private final Counter corregidos;
+    private final Counter ninguno;
+    private final Timer duration;
+
+    public MedicamentoNombreMatcher(@Value("${ocr.nombres.enabled:true}") boolean enabled,
+                                    @Value("${ocr.nombres.dictionary:classpath:ocr/medicamentos.txt}") Resource dictionary,
+                                    @Value("${ocr.nombres.max-distance:2}") int maxDistance,
+                                    MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxDistance = Math.max(0, Math.min(maxDistance, 3));
+        this.exactos = Counter.builder("ocr.nombres.match").tag("resultado", "exacto")
+                .description("Nombres del OCR buscados en el diccionario").register(meterRegistry);
+        this.corregidos = Counter.builder("ocr.nombres.match").tag("resultado", "corregido")
+                .description("Nombres del OCR buscados en el diccionario").register(meterRegistry);
+        this.ninguno = Counter.builder("ocr.nombres.match").tag("resultado", "ninguno")
+                .description("Nombres del OCR buscados en el diccionario").register(meterRegistry);
+        this.duration = Timer.builder("ocr.nombres.duration")
+                .description("Tiempo de búsqueda del nombre en el diccionario")
+                .register(meterRegistry);
+        if (enabled) {
+            cargar(dictionary);
+        }
+    }
+
+    private void cargar(Resource dictionary) {
+        long start = System.nanoTime();
+        Map<String, List<Integer>> indice = new HashMap<>();
+        Set<String> cargadas = new HashSet<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(dictionary.getInputStream(), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                String nombre = linea.strip();
+                if (nombre.isEmpty() || nombre.startsWith("#")) {
+                    continue;
+                }
+                String palabra = palabraClave(nombre);
+                if (palabra.length() < MIN_LETRAS || !cargadas.add(palabra)) {
+                    continue;
+                }
+                int i = palabras.size();
+                palabras.add(palabra);
+                nombres.add(nombre);
+                for (String borrado : borrados(palabra, maxDistance)) {
+                    indice.computeIfAbsent(borrado, k -> new ArrayList<>(1)).add(i);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer el diccionario de medicamentos " + dictionary, e);
+        }
+        indice.forEach((borrado, indices) -> borrados.put(borrado,
+                indices.stream().mapToInt(Integer::intValue).toArray()));
+        log.info("Diccionario de medicamentos: {} nombres, {} variantes indexadas en {} ms", nombres.size(),
+                borrados.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * match - Primer nombre del diccionario que aparece (con hasta max-distance errores)
+     * en las líneas del texto, en orden; null si no aparece ninguno
+     */
+    public Coincidencia match(String texto) {
+        if (!enabled || texto == null || nombres.isEmpty()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Coincidencia coincidencia = null;
+        for (String linea : texto.split("\\R")) {
+            coincidencia = matchLinea(linea);
+            if (coincidencia != null) {
+                break;
+            }
+        }
+        duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (coincidencia == null) {
+            ninguno.increment();
+        } else if (coincidencia.distancia() == 0) {
+            exactos.increment();
+        } else {
+            corregidos.increment();
+        }
+        return coincidencia;
+    }
+
+    /**
+     * matchLinea - Mejor nombre para una línea: menor distancia y, a igualdad,
+     * la palabra más a la izquierda
+     */
+    Coincidencia matchLinea(String linea) {
+        Coincidencia mejor = null;
+        for (String palabra : normalizar(linea).split("[^a-z0-9]+")) {
+            if (palabra.length() < MIN_LETRAS || !contieneLetra(palabra)) {
+                continue;
+            }
+            Coincidencia candidata = buscar(palabra);
+            if (candidata != null && (mejor == null || candidata.distancia() < mejor.distancia())) {
+                mejor = candidata;
+                if (mejor.distancia() == 0) {
+                    break;
+                }
+            }
+        }
+        return mejor;
+    }
+
+    private Coincidencia buscar(String palabra) {
+        int permitida = palabra.length() <= MAX_LETRAS_UN_ERROR ? Math.min(1, maxDistance) : maxDistance;
+        int mejorIndice = -1;
+        int mejorDistancia = permitida + 1;
+        Set<Integer> vistos = new HashSet<>();
+        for (String borrado : borrados(palabra, permitida)) {
+            int[] indices = borrados.get(borrado);
+            if (indices == null) {
+                continue;
+            }
+            for (int i : indices) {
+                if (!vistos.add(i)) {
+                    continue;
+                }
+                String candidata = palabras.get(i);
+                if (Math.abs(candidata.length() - palabra.length()) > mejorDistancia) {
+                    continue;
+                }
+                // A igual distancia gana el primero del diccionario (el orden de los borrados no es fijo)
+                int distancia = distancia(palabra, candidata, mejorDistancia);
+                if (distancia < mejorDistancia || (distancia == mejorDistancia && i < mejorIndice)) {
+                    mejorDistancia = distancia;
+                    mejorIndice = i;
+                }
+            }
+        }
+        if (mejorIndice < 0) {
+            return null;
+        }
+        String encontrada = palabras.get(mejorIndice);
+        double confianza = 100.0 * (1 - (double) mejorDistancia / Math.max(encontrada.length(), palabra.length()));
+        return new Coincidencia(nombres.get(mejorIndice), Math.round(confianza * 10) / 10.0, mejorDistancia);
+    }
+
+    /** Todas las variantes de la palabra con hasta maxBorrados letras borradas (incluida ella) */
+    static Set<String> borrados(String palabra, int maxBorrados) {
+        Set<String> resultado = new HashSet<>();
+        resultado.add(palabra);
+        List<String> nivel = List.of(palabra);
+        for (int d = 0; d < maxBorrados; d++) {
+            List<String> siguiente = new ArrayList<>();
+            for (String p : nivel) {
+                for (int i = 0; i < p.length(); i++) {
+                    String borrado = p.substring(0, i) + p.substring(i + 1);
+                    if (resultado.add(borrado)) {
+                        siguiente.add(borrado);
+                    }
+                }
+            }
+            nivel = siguiente;
+        }
+        return resultado;
+    }
+
+    /**
+     * distancia - Damerau-Levenshtein (sustitución, inserción, borrado y transposición
+     * de letras contiguas); si supera max devuelve max + 1 sin terminar la tabla
+     */
+    static int distancia(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int[] anterior2 = new int[m + 1];
+        int[] anterior = new int[m + 1];
+        int[] actual = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            anterior[j] = j;
+        }
+        for (int i = 1; i <= n; i++) {
+            actual[0] = i;
+            int minimoFila = i;
+            for (int j = 1; j <= m; j++) {
+                int coste = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int valor = Math.min(Math.min(anterior[j] + 1, actual[j - 1] + 1), anterior[j - 1] + coste);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    valor = Math.min(valor, anterior2[j - 2] + 1);
+                }
+                actual[j] = valor;
+                minimoFila = Math.min(minimoFila, valor);
+            }
+            if (minimoFila > max) {
+                return max + 1;
+            }
+            int[] libre = anterior2;
+            anterior2 = anterior;
+            anterior = actual;
+            actual = libre;
+        }
+        return anterior[m];
+    }
+
+    /** Minúsculas y sin tildes ("Ácido" → "acido") */
+    static String normalizar(String texto) {
+        String sinTildes = Normalizer.normalize(texto, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return sinTildes.toLowerCase(Locale.ROOT);
+    }
+
+    /** Palabra por la que se indexa un nombre: la más larga (la más distintiva) */
+    private static String palabraClave(String nombre) {
+        String clave = "";
+        for (String palabra : normalizar(nombre).split("[^a-z0-9]+")) {
+            if (palabra.length() > clave.length()) {
+                clave = palabra;
+            }
+        }
+        return clave;
+    }
+
+    private static boolean contieneLetra(String palabra) {
+        for (int i = 0; i < palabra.length(); i++) {
+            if (Character.isLetter(palabra.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
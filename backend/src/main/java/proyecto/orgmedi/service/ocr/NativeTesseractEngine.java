@@ -0,0 +1,142 @@
+package proyecto.orgmedi.service.ocr;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TessAPI;
+import net.sourceforge.tess4j.util.ImageIOHelper;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NativeTesseractEngine - Motor Tesseract sobre la API C (TessBaseAPI) de tess4j
+ *
+ * POR QUÉ NO net.sourceforge.tess4j.Tesseract:
+ * - Tesseract.doOCR() crea e inicializa un TessBaseAPI en CADA llamada
+ *   (carga de los modelos spa+eng) y lo destruye al terminar
+ * - Aquí el TessBaseAPI se inicializa UNA vez en el constructor; cada recognize()
+ *   solo pasa la imagen, reconoce y limpia la página (TessBaseAPIClear)
+ *
+ * La imagen se entrega igual que en Tesseract.setImage(RenderedImage).
+ *
+ * MEMORIA NATIVA: se estima como el aumento de memoria residente del proceso
+ * (/proc/self/statm) durante la inicialización. Solo es una aproximación
+ * (0 fuera de Linux o si otro hilo reserva memoria a la vez).
+ */
+class NativeTesseractEngine implements TesseractEngine {
+    private static final long PAGE_SIZE = 4096;
+    private static final String WHITELIST = "tessedit_char_whitelist";
+
+    private final TessAPI api;
+    private final ITessAPI.TessBaseAPI handle;
+    private final long nativeBytes;
+    private boolean closed;
+
+    NativeTesseractEngine(String datapath, String language, Map<String, String> variables) {
+        long residentBefore = residentBytes();
+        this.api = TessAPI.INSTANCE;
+        this.handle = api.TessBaseAPICreate();
+        if (api.TessBaseAPIInit3(handle, datapath, language) != 0) {
+            api.TessBaseAPIDelete(handle);
+            throw new IllegalStateException("No se pudo inicializar Tesseract (datapath=" + datapath
+                    + ", idioma=" + language + ")");
+        }
+        variables.forEach((name, value) -> api.TessBaseAPISetVariable(handle, name, value));
+        long residentAfter = residentBytes();
+        this.nativeBytes = residentBefore > 0 && residentAfter > residentBefore ? residentAfter - residentBefore : 0;
+    }
+
+    @Override
+    public String recognize(BufferedImage image) {
+        setImage(image);
+        try {
+            return texto();
+        } finally {
+            api.TessBaseAPIClear(handle);
+        }
+    }
+
+    /**
+     * La imagen se entrega UNA vez y cada región se reconoce con TessBaseAPISetRectangle
+     * (sin volver a copiar la imagen), con PSM de línea o de bloque según la región
+     */
+    @Override
+    public List<String> recognize(BufferedImage image, List<TextRegion> regions, String whitelist) {
+        setImage(image);
+        int modoInicial = api.TessBaseAPIGetPageSegMode(handle);
+        if (whitelist != null) {
+            api.TessBaseAPISetVariable(handle, WHITELIST, whitelist);
+        }
+        try {
+            List<String> textos = new ArrayList<>(regions.size());
+            for (TextRegion region : regions) {
+                api.TessBaseAPISetPageSegMode(handle, region.linea()
+                        ? ITessAPI.TessPageSegMode.PSM_SINGLE_LINE
+                        : ITessAPI.TessPageSegMode.PSM_SINGLE_BLOCK);
+                api.TessBaseAPISetRectangle(handle, region.x(), region.y(), region.width(), region.height());
+                textos.add(texto());
+            }
+            return textos;
+        } finally {
+            // El motor vuelve al pool: se deja como estaba para el siguiente uso
+            api.TessBaseAPISetPageSegMode(handle, modoInicial);
+            if (whitelist != null) {
+                api.TessBaseAPISetVariable(handle, WHITELIST, "");
+            }
+            api.TessBaseAPIClear(handle);
+        }
+    }
+
+    private void setImage(BufferedImage image) {
+        ByteBuffer buffer = ImageIOHelper.getImageByteBuffer(image);
+        int bitsPerPixel = image.getRaster().getDataBuffer() instanceof DataBufferByte
+                ? image.getColorModel().getPixelSize()
+                : 8;
+        int bytesPerLine = (int) Math.ceil(image.getWidth() * bitsPerPixel / 8.0);
+
+        api.TessBaseAPISetImage(handle, buffer, image.getWidth(), image.getHeight(), bitsPerPixel / 8, bytesPerLine);
+    }
+
+    private String texto() {
+        Pointer text = api.TessBaseAPIGetUTF8Text(handle);
+        if (text == null) {
+            throw new IllegalStateException("Tesseract no devolvió texto");
+        }
+        try {
+            return text.getString(0, StandardCharsets.UTF_8.name());
+        } finally {
+            api.TessDeleteText(text);
+        }
+    }
+
+    @Override
+    public long nativeBytes() {
+        return nativeBytes;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            api.TessBaseAPIEnd(handle);
+            api.TessBaseAPIDelete(handle);
+        }
+    }
+
+    private static long residentBytes() {
+        try {
+            String[] statm = Files.readString(Path.of("/proc/self/statm")).trim().split("\\s+");
+            return Long.parseLong(statm[1]) * PAGE_SIZE;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+}
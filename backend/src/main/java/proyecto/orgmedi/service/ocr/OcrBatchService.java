@@ -0,0 +1,436 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import proyecto.orgmedi.dto.ocr.OcrPaginaDTO;
+import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+import proyecto.orgmedi.error.ApiException;
+import proyecto.orgmedi.error.BadRequestException;
+import proyecto.orgmedi.error.OcrProcessingException;
+import proyecto.orgmedi.error.TooManyRequestsException;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * OcrBatchService - OCR DE UN PROSPECTO DE VARIAS PÁGINAS EN PARALELO
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - Un prospecto ocupa varias fotos o un PDF de varias páginas; el frontend las subía
+ *   una a una y cada OCR esperaba al anterior
+ *
+ * CÓMO:
+ * - submit() acepta varias imágenes o UN PDF (hasta ocr.batch.max-pages páginas)
+ * - Cada página es una tarea: preprocesado (ImagePreprocessor) + OCR de sus regiones de texto
+ *   (OcrService.recognize) con un motor del TesseractPool. Con N motores, N páginas se
+ *   reconocen a la vez: un prospecto de 6 páginas tarda lo que la página más lenta, no la suma
+ * - PDF: una tarea renderiza las páginas en orden (ocr.batch.pdf-dpi, en grises) y encola
+ *   el OCR de cada una en cuanto está lista
+ * - Los archivos se reciben con UploadSpooler (los grandes, en un temporal mapeado en
+ *   memoria) y se borran al terminar el lote
+ * - Cada página terminada se notifica al Oyente (resultado parcial, en orden de llegada)
+ * - Al terminar todas, el texto se une EN ORDEN DE PÁGINA y se extraen los campos una vez
+ *   (una página fallida no impide el resultado con las demás)
+ *
+ * CONTRAPRESIÓN (429 + Retry-After):
+ * - No caben las páginas en la cola (ocr.batch.queue-capacity)
+ * - El usuario ya tiene ocr.batch.max-per-user lotes en proceso
+ *
+ * MÉTRICAS: ocr.batch.duration (de submit al resultado), ocr.batch.page.duration
+ */
+@Service
+public class OcrBatchService {
+    private static final Logger logger = LoggerFactory.getLogger(OcrBatchService.class);
+
+    private static final String PDF = "application/pdf";
+
+    /**
+     * Oyente - Recibe los resultados de un lote (desde los hilos del lote)
+     */
+    public interface Oyente {
+        /** Una página ha terminado (con texto o con error) */
+        void pagina(OcrPaginaDTO pagina);
+
+        /** Todas las páginas han terminado: campos extraídos del texto unido */
+        void resultado(OcrResponseDTO resultado);
+
+        /** El lote no ha podido dar resultado (ninguna página con texto) */
+        void error(ApiException error);
+    }
+
+    /**
+     * Lote - Lote en curso; cancelar() descarta las páginas que aún no han empezado
+     */
+    public static final class Lote {
+        private final AtomicBoolean cancelado = new AtomicBoolean();
+        private final int paginas;
+
+        Lote(int paginas) {
+            this.paginas = paginas;
+        }
+
+        public int getPaginas() {
+            return paginas;
+        }
+
+        public void cancelar() {
+            cancelado.set(true);
+        }
+
+        boolean isCancelado() {
+            return cancelado.get();
+        }
+    }
+
+    private final OcrService ocrService;
+    private final ImagePreprocessor imagePreprocessor;
+    private final UploadSpooler uploadSpooler;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<Long, Integer> activosPorUsuario = new ConcurrentHashMap<>();
+    private final int maxPages;
+    private final float pdfDpi;
+    private final int maxPerUser;
+    private final long retryAfterSeconds;
+    private final Timer batchDuration;
+    private final Timer pageDuration;
+
+    public OcrBatchService(OcrService ocrService,
+                           ImagePreprocessor imagePreprocessor,
+                           UploadSpooler uploadSpooler,
+                           MeterRegistry meterRegistry,
+                           @Value("${ocr.batch.workers:0}") int workers,
+                           @Value("${ocr.batch.queue-capacity:64}") int queueCapacity,
+                           @Value("${ocr.batch.max-pages:20}") int maxPages,
+                           @Value("${ocr.batch.pdf-dpi:200}") float pdfDpi,
+                           @Value("${ocr.batch.max-per-user:1}") int maxPerUser,
+                           @Value("${ocr.jobs.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.ocrService = ocrService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.uploadSpooler = uploadSpooler;
+        this.maxPages = Math.max(1, maxPages);
+        this.pdfDpi = pdfDpi;
+        this.maxPerUser = Math.max(1, maxPerUser);
+        this.retryAfterSeconds = retryAfterSeconds;
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ocr-batch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.batchDuration = Timer.builder("ocr.batch.duration")
+                .description("Tiempo total de un lote OCR de varias páginas")
+                .register(meterRegistry);
+        this.pageDuration = Timer.builder("ocr.batch.page.duration")
+                .description("Preprocesado + OCR de una página de un lote")
+                .register(meterRegistry);
+    }
+
+    /**
+     * submit - Valida el lote, lee los archivos y empieza el OCR de las páginas
+     *
+     * Los archivos se reciben aquí: el MultipartFile deja de existir al acabar el request.
+     *
+     * @throws BadRequestException si no hay archivos, mezcla PDF con otros, el PDF no se
+     *         puede leer o hay más de ocr.batch.max-pages páginas
+     * @throws proyecto.orgmedi.error.PayloadTooLargeException si un archivo supera ocr.upload.max-size
+     * @throws TooManyRequestsException si no caben las páginas en la cola o el usuario
+     *         ya tiene demasiados lotes
+     */
+    public Lote submit(Long usuarioId, List<MultipartFile> archivos, Oyente oyente) {
+        if (archivos == null || archivos.isEmpty()) {
+            throw new BadRequestException("No se ha enviado ningún archivo");
+        }
+        boolean esPdf = archivos.stream().anyMatch(OcrBatchService::isPdf);
+        if (esPdf && archivos.size() > 1) {
+            throw new BadRequestException("Envía un único PDF o varias imágenes, no ambos");
+        }
+        if (archivos.size() > maxPages) {
+            throw new BadRequestException("Como máximo " + maxPages + " páginas por lote");
+        }
+
+        if (!esPdf) {
+            archivos.forEach(ocrService::validateFile);
+        }
+        List<UploadSpooler.Subida> subidas = new ArrayList<>();
+        try {
+            for (MultipartFile archivo : archivos) {
+                subidas.add(uploadSpooler.recibir(archivo));
+            }
+            return submit(usuarioId, esPdf, subidas, oyente);
+        } catch (RuntimeException e) {
+            subidas.forEach(UploadSpooler.Subida::close);
+            throw e;
+        }
+    }
+
+    private Lote submit(Long usuarioId, boolean esPdf, List<UploadSpooler.Subida> subidas, Oyente oyente) {
+        int paginas = esPdf ? contarPaginas(subidas.get(0)) : subidas.size();
+        if (paginas == 0) {
+            throw new BadRequestException("El PDF no tiene páginas");
+        }
+        if (paginas > maxPages) {
+            throw new BadRequestException("Como máximo " + maxPages + " páginas por lote");
+        }
+        // Sin hueco para todas las páginas (+ la tarea que renderiza el PDF): mejor 429 ahora que un lote a medias
+        if (executor.getQueue().remainingCapacity() < paginas + (esPdf ? 1 : 0)) {
+            throw new TooManyRequestsException("Servidor ocupado, inténtalo de nuevo en unos segundos", retryAfterSeconds);
+        }
+        if (!reservar(usuarioId)) {
+            throw new TooManyRequestsException("Ya tienes " + maxPerUser
+                    + " lotes en proceso, espera a que terminen", retryAfterSeconds);
+        }
+
+        Lote lote = new Lote(paginas);
+        Ejecucion ejecucion = new Ejecucion(lote, usuarioId, subidas, oyente);
+        if (esPdf) {
+            if (!encolar(() -> renderizarPdf(ejecucion, subidas.get(0)))) {
+                for (int i = 0; i < paginas; i++) {
+                    ejecucion.paginaFallida(i, new TooManyRequestsException("Servidor ocupado", retryAfterSeconds), 0);
+                }
+            }
+        } else {
+            for (int i = 0; i < paginas; i++) {
+                int indice = i;
+                UploadSpooler.Subida subida = subidas.get(i);
+                encolarPagina(ejecucion, indice, () -> imagePreprocessor.preprocess(subida.contenido()));
+            }
+        }
+        return lote;
+    }
+
+    /** Preparación de una página (decodificar/renderizar + preprocesado); null si no es legible */
+    private interface Imagen {
+        BufferedImage obtener() throws IOException;
+    }
+
+    private void renderizarPdf(Ejecucion ejecucion, UploadSpooler.Subida pdf) {
+        try (PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(pdf.contenido()))) {
+            PDFRenderer renderer = new PDFRenderer(document);
+            for (int i = 0; i < ejecucion.total; i++) {
+                if (ejecucion.lote.isCancelado()) {
+                    ejecucion.paginaFallida(i, new OcrProcessingException("Lote cancelado"), 0);
+                    continue;
+                }
+                long start = System.nanoTime();
+                try {
+                    BufferedImage pagina = renderer.renderImageWithDPI(i, pdfDpi, ImageType.GRAY);
+                    encolarPagina(ejecucion, i, () -> imagePreprocessor.preprocess(pagina));
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("[OcrBatchService] Could not render PDF page {}: {}", i + 1, e.toString());
+                    ejecucion.paginaFallida(i, new OcrProcessingException("No se pudo leer la página del PDF"),
+                            System.nanoTime() - start);
+                }
+            }
+        } catch (IOException e) {
+            // Ya se abrió en submit(): no debería ocurrir
+            for (int i = 0; i < ejecucion.total; i++) {
+                ejecucion.paginaFallida(i, new OcrProcessingException("No se pudo leer el PDF"), 0);
+            }
+        }
+    }
+
+    private void encolarPagina(Ejecucion ejecucion, int indice, Imagen imagen) {
+        boolean encolada = encolar(() -> {
+            if (ejecucion.lote.isCancelado()) {
+                ejecucion.paginaFallida(indice, new OcrProcessingException("Lote cancelado"), 0);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                BufferedImage preparada = imagen.obtener();
+                if (preparada == null) {
+                    throw new BadRequestException("No se pudo leer la imagen");
+                }
+                ejecucion.paginaReconocida(indice, ocrService.recognize(preparada), System.nanoTime() - start);
+            } catch (ApiException e) {
+                ejecucion.paginaFallida(indice, e, System.nanoTime() - start);
+            } catch (IOException | RuntimeException e) {
+                logger.error("[OcrBatchService] Page {} failed", indice + 1, e);
+                ejecucion.paginaFallida(indice, new OcrProcessingException("Error procesando la página"),
+                        System.nanoTime() - start);
+            }
+        });
+        if (!encolada) {
+            ejecucion.paginaFallida(indice, new TooManyRequestsException("Servidor ocupado", retryAfterSeconds), 0);
+        }
+    }
+
+    private boolean encolar(Runnable tarea) {
+        try {
+            executor.execute(tarea);
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.warn("[OcrBatchService] OCR batch queue full ({} pending)", executor.getQueue().size());
+            return false;
+        }
+    }
+
+    /**
+     * Ejecucion - Estado compartido de un lote: textos por página y páginas pendientes
+     */
+    private final class Ejecucion {
+        final Lote lote;
+        final Long usuarioId;
+        final List<UploadSpooler.Subida> subidas;
+        final Oyente oyente;
+        final int total;
+        final AtomicReferenceArray<String> textos;
+        final AtomicInteger pendientes;
+        final long inicio = System.nanoTime();
+
+        Ejecucion(Lote lote, Long usuarioId, List<UploadSpooler.Subida> subidas, Oyente oyente) {
+            this.lote = lote;
+            this.usuarioId = usuarioId;
+            this.subidas = subidas;
+            this.oyente = oyente;
+            this.total = lote.getPaginas();
+            this.textos = new AtomicReferenceArray<>(total);
+            this.pendientes = new AtomicInteger(total);
+        }
+
+        void paginaReconocida(int indice, String texto, long nanos) {
+            textos.set(indice, texto);
+            pageDuration.record(nanos, TimeUnit.NANOSECONDS);
+            notificar(OcrPaginaDTO.builder()
+                    .pagina(indice + 1)
+                    .total(total)
+                    .texto(texto)
+                    .duracionMs(TimeUnit.NANOSECONDS.toMillis(nanos))
+                    .build());
+        }
+
+        void paginaFallida(int indice, ApiException error, long nanos) {
+            notificar(OcrPaginaDTO.builder()
+                    .pagina(indice + 1)
+                    .total(total)
+                    .error(error.getMessage())
+                    .errorStatus(error.getStatus().value())
+                    .duracionMs(TimeUnit.NANOSECONDS.toMillis(nanos))
+                    .build());
+        }
+
+        private void notificar(OcrPaginaDTO pagina) {
+            try {
+                if (!lote.isCancelado()) {
+                    oyente.pagina(pagina);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("[OcrBatchService] Listener failed, cancelling batch: {}", e.toString());
+                lote.cancelar();
+            }
+            if (pendientes.decrementAndGet() == 0) {
+                terminar();
+            }
+        }
+
+        /** Última página: une el texto en orden y extrae los campos una sola vez */
+        private void terminar() {
+            subidas.forEach(UploadSpooler.Subida::close);
+            liberar(usuarioId);
+            batchDuration.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            if (lote.isCancelado()) {
+                return;
+            }
+            StringBuilder texto = new StringBuilder();
+            for (int i = 0; i < total; i++) {
+                String pagina = textos.get(i);
+                if (pagina != null && !pagina.isBlank()) {
+                    texto.append(pagina).append('\n');
+                }
+            }
+            OcrResponseDTO resultado;
+            try {
+                if (texto.isEmpty()) {
+                    throw new OcrProcessingException("No se pudo extraer texto de ninguna página");
+                }
+                resultado = ocrService.extractFields(texto.toString());
+            } catch (ApiException e) {
+                avisar(() -> oyente.error(e));
+                return;
+            } catch (RuntimeException e) {
+                logger.error("[OcrBatchService] Field extraction failed", e);
+                avisar(() -> oyente.error(new OcrProcessingException("Error procesando el texto")));
+                return;
+            }
+            avisar(() -> oyente.resultado(resultado));
+        }
+
+        private void avisar(Runnable aviso) {
+            try {
+                aviso.run();
+            } catch (RuntimeException e) {
+                logger.warn("[OcrBatchService] Could not deliver batch result: {}", e.toString());
+            }
+        }
+    }
+
+    private static boolean isPdf(MultipartFile archivo) {
+        String contentType = archivo.getContentType();
+        String nombre = archivo.getOriginalFilename();
+        return (contentType != null && contentType.startsWith(PDF))
+                || (nombre != null && nombre.toLowerCase().endsWith(".pdf"));
+    }
+
+    private static int contarPaginas(UploadSpooler.Subida pdf) {
+        try (PDDocument document = Loader.loadPDF(new RandomAccessReadBuffer(pdf.contenido()))) {
+            return document.getNumberOfPages();
+        } catch (IOException e) {
+            throw new BadRequestException("El PDF no se puede leer (¿dañado o protegido con contraseña?)");
+        }
+    }
+
+    private boolean reservar(Long usuarioId) {
+        boolean[] reservado = {false};
+        activosPorUsuario.compute(usuarioId, (id, activos) -> {
+            int actuales = activos == null ? 0 : activos;
+            if (actuales >= maxPerUser) {
+                return activos;
+            }
+            reservado[0] = true;
+            return actuales + 1;
+        });
+        return reservado[0];
+    }
+
+    private void liberar(Long usuarioId) {
+        activosPorUsuario.computeIfPresent(usuarioId, (id, activos) -> activos <= 1 ? null : activos - 1);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("[OcrBatchService] OCR workers still running after shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
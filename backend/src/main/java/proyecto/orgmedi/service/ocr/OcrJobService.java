@@ -0,0 +1,269 @@
+package proyecto.orgmedi.service.ocr;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import proyecto.orgmedi.dto.ocr.OcrJobDTO;
+import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+import proyecto.orgmedi.error.ApiException;
+import proyecto.orgmedi.error.TooManyRequestsException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OcrJobService - OCR ASÍNCRONO: cola acotada + trabajadores + consulta del resultado
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - Un OCR tarda segundos; hecho en el hilo de Tomcat, unas pocas subidas a la vez
+ *   dejan sin hilos al resto de la API
+ *
+ * CÓMO:
+ * - submit(): valida el archivo, lo recibe con UploadSpooler (en memoria si es pequeño,
+ *   si no en un temporal) y encola el trabajo → devuelve el ID al momento
+ * - ocr.jobs.workers hilos (0 = número de CPUs, igual que TesseractPool) procesan la cola
+ *   con OcrService.processImage
+ * - find(): estado y resultado del trabajo (solo para su propietario)
+ *
+ * CONTRAPRESIÓN (429 + Retry-After, TooManyRequestsException):
+ * - Cola llena (ocr.jobs.queue-capacity trabajos esperando)
+ * - El usuario ya tiene ocr.jobs.max-per-user trabajos pendientes o en proceso
+ *
+ * CADUCIDAD:
+ * - Un trabajo se olvida ocr.jobs.ttl después de su último cambio de estado
+ *   (el cliente tiene ese tiempo para recoger el resultado)
+ * - Como mucho ocr.jobs.max-stored trabajos guardados (la imagen solo existe
+ *   mientras el trabajo está en la cola o en proceso: al terminar se borra el temporal)
+ *
+ * MÉTRICAS: ocr.jobs.queue.size, ocr.jobs.queue.wait, ocr.jobs.rejected{reason=queue|user}
+ *
+ * LIMITACIÓN: los trabajos viven en memoria de cada instancia.
+ */
+@Service
+public class OcrJobService {
+    private static final Logger logger = LoggerFactory.getLogger(OcrJobService.class);
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String PROCESANDO = "PROCESANDO";
+    public static final String COMPLETADO = "COMPLETADO";
+    public static final String ERROR = "ERROR";
+
+    /**
+     * Estado de un trabajo. Lo escribe el hilo trabajador y lo leen los GET (volatile):
+     * el estado se escribe el último, así COMPLETADO/ERROR ya trae sus datos.
+     */
+    private static final class OcrJob {
+        final String id = UUID.randomUUID().toString();
+        final Long usuarioId;
+        final Instant creadoEn = Instant.now();
+        volatile String estado = PENDIENTE;
+        volatile OcrResponseDTO resultado;
+        volatile String error;
+        volatile Integer errorStatus;
+        volatile Instant finalizadoEn;
+
+        OcrJob(Long usuarioId) {
+            this.usuarioId = usuarioId;
+        }
+
+        OcrJobDTO toDto() {
+            return OcrJobDTO.builder()
+                    .id(id)
+                    .estado(estado)
+                    .resultado(resultado)
+                    .error(error)
+                    .errorStatus(errorStatus)
+                    .creadoEn(creadoEn)
+                    .finalizadoEn(finalizadoEn)
+                    .build();
+        }
+    }
+
+    private final OcrService ocrService;
+    private final UploadSpooler uploadSpooler;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, OcrJob> jobs;
+    private final ConcurrentHashMap<Long, Integer> activosPorUsuario = new ConcurrentHashMap<>();
+    private final int maxPerUser;
+    private final long retryAfterSeconds;
+    private final Timer queueWait;
+    private final Counter rejectedQueue;
+    private final Counter rejectedUser;
+
+    public OcrJobService(OcrService ocrService,
+                         UploadSpooler uploadSpooler,
+                         MeterRegistry meterRegistry,
+                         @Value("${ocr.jobs.workers:0}") int workers,
+                         @Value("${ocr.jobs.queue-capacity:32}") int queueCapacity,
+                         @Value("${ocr.jobs.max-per-user:2}") int maxPerUser,
+                         @Value("${ocr.jobs.ttl:PT10M}") Duration ttl,
+                         @Value("${ocr.jobs.max-stored:10000}") long maxStored,
+                         @Value("${ocr.jobs.retry-after-seconds:5}") long retryAfterSeconds) {
+        this.ocrService = ocrService;
+        this.uploadSpooler = uploadSpooler;
+        this.maxPerUser = Math.max(1, maxPerUser);
+        this.retryAfterSeconds = retryAfterSeconds;
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ocr-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxStored)
+                .build();
+
+        this.queueWait = Timer.builder("ocr.jobs.queue.wait")
+                .description("Tiempo en cola antes de empezar un trabajo OCR")
+                .register(meterRegistry);
+        this.rejectedQueue = Counter.builder("ocr.jobs.rejected")
+                .description("Trabajos OCR rechazados con 429")
+                .tag("reason", "queue")
+                .register(meterRegistry);
+        this.rejectedUser = Counter.builder("ocr.jobs.rejected")
+                .description("Trabajos OCR rechazados con 429")
+                .tag("reason", "user")
+                .register(meterRegistry);
+        Gauge.builder("ocr.jobs.queue.size", executor, e -> e.getQueue().size())
+                .description("Trabajos OCR esperando en cola")
+                .register(meterRegistry);
+    }
+
+    /**
+     * submit - Encola el OCR de una imagen y devuelve el trabajo en estado PENDIENTE
+     *
+     * @throws proyecto.orgmedi.error.BadRequestException si el archivo no es una imagen válida
+     * @throws proyecto.orgmedi.error.PayloadTooLargeException si supera ocr.upload.max-size
+     * @throws TooManyRequestsException si la cola está llena o el usuario tiene demasiados trabajos
+     */
+    public OcrJobDTO submit(Long usuarioId, MultipartFile file) {
+        ocrService.validateFile(file);
+        if (!reservar(usuarioId)) {
+            rejectedUser.increment();
+            throw new TooManyRequestsException("Ya tienes " + maxPerUser
+                    + " imágenes en proceso, espera a que terminen", retryAfterSeconds);
+        }
+
+        UploadSpooler.Subida subida;
+        try {
+            subida = uploadSpooler.recibir(file);
+        } catch (RuntimeException e) {
+            liberar(usuarioId);
+            throw e;
+        }
+
+        OcrJob job = new OcrJob(usuarioId);
+        jobs.put(job.id, job);
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                queueWait.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+                run(job, subida);
+            });
+        } catch (RejectedExecutionException e) {
+            subida.close();
+            jobs.invalidate(job.id);
+            liberar(usuarioId);
+            rejectedQueue.increment();
+            logger.warn("[OcrJobService] OCR queue full ({} pending)", executor.getQueue().size());
+            throw new TooManyRequestsException("Servidor ocupado, inténtalo de nuevo en unos segundos", retryAfterSeconds);
+        }
+        return job.toDto();
+    }
+
+    /**
+     * find - Estado del trabajo; vacío si no existe, ha caducado o es de otro usuario
+     */
+    public Optional<OcrJobDTO> find(String jobId, Long usuarioId) {
+        OcrJob job = jobs.getIfPresent(jobId);
+        if (job == null || !job.usuarioId.equals(usuarioId)) {
+            return Optional.empty();
+        }
+        return Optional.of(job.toDto());
+    }
+
+    private void run(OcrJob job, UploadSpooler.Subida subida) {
+        job.estado = PROCESANDO;
+        try {
+            OcrResponseDTO resultado;
+            try (subida) {
+                // El temporal se borra antes de marcar el trabajo como terminado
+                resultado = ocrService.processImage(subida);
+            }
+            job.resultado = resultado;
+            job.finalizadoEn = Instant.now();
+            job.estado = COMPLETADO;
+        } catch (ApiException e) {
+            fallar(job, e.getMessage(), e.getStatus().value());
+        } catch (RuntimeException e) {
+            logger.error("[OcrJobService] Job {} failed", job.id, e);
+            fallar(job, "Error procesando imagen", 500);
+        } finally {
+            liberar(job.usuarioId);
+            // Reinicia la caducidad: el cliente tiene ocr.jobs.ttl para recoger el resultado
+            jobs.asMap().replace(job.id, job);
+        }
+    }
+
+    private static void fallar(OcrJob job, String mensaje, int status) {
+        job.error = mensaje;
+        job.errorStatus = status;
+        job.finalizadoEn = Instant.now();
+        job.estado = ERROR;
+    }
+
+    private boolean reservar(Long usuarioId) {
+        boolean[] reservado = {false};
+        activosPorUsuario.compute(usuarioId, (id, activos) -> {
+            int actuales = activos == null ? 0 : activos;
+            if (actuales >= maxPerUser) {
+                return activos;
+            }
+            reservado[0] = true;
+            return actuales + 1;
+        });
+        return reservado[0];
+    }
+
+    private void liberar(Long usuarioId) {
+        activosPorUsuario.computeIfPresent(usuarioId, (id, activos) -> activos <= 1 ? null : activos - 1);
+    }
+
+    /**
+     * Interrumpe los trabajos en curso y espera a que terminen: cada uno cierra su Subida
+     * (y borra su temporal del spool) antes de que se apague el contexto
+     */
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warn("[OcrJobService] OCR workers still running after shutdown");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package proyecto.orgmedi.service.ocr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * OcrResultCache - RESULTADOS OCR POR CONTENIDO DE LA IMAGEN (SHA-256)
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - Mientras corrige el formulario, el usuario vuelve a subir la MISMA foto del prospecto
+ * - Cada subida repetía el OCR completo (segundos de CPU) para obtener el mismo texto
+ *
+ * CÓMO:
+ * - Clave = SHA-256 de los bytes subidos (UploadSpooler lo calcula mientras lee el archivo)
+ *   precedido de la configuración que cambia el resultado (idioma, preprocesado, regiones,
+ *   corrección del nombre, detección de idioma):
+ *   con otra configuración las claves son otras y las entradas viejas no se usan
+ * - Memoria: Caffeine con ocr.result-cache.max-entries entradas
+ * - Disco (opcional, ocr.result-cache.dir): un JSON por resultado (<sha256>.json) que
+ *   sobrevive a reinicios. Se escribe en un temporal y se renombra (nunca hay un JSON a medias)
+ *   y se borran los más antiguos por encima de ocr.result-cache.max-disk-entries
+ * - Solo se guardan OCR correctos: un error se vuelve a intentar en la siguiente subida
+ *
+ * Los OcrResponseDTO devueltos se comparten entre peticiones: no modificarlos.
+ *
+ * MÉTRICAS: cache.gets{cache=ocr-results,result=hit|miss} (memoria),
+ * ocr.result.cache.disk{result=hit|miss} (disco, tras un fallo en memoria)
+ */
+@Component
+public class OcrResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(OcrResultCache.class);
+
+    private static final String EXTENSION = ".json";
+    private static final int ESCRITURAS_ENTRE_PODAS = 100;
+
+    private final ObjectMapper objectMapper;
+    private final byte[] contexto;
+    private final Cache<String, OcrResponseDTO> cache;
+    private final Path dir;
+    private final int maxDiskEntries;
+    private final AtomicInteger escriturasSinPodar = new AtomicInteger();
+    private final Counter diskHits;
+    private final Counter diskMisses;
+
+    public OcrResultCache(ObjectMapper objectMapper,
+                          @Value("${ocr.result-cache.max-entries:500}") long maxEntries,
+                          @Value("${ocr.result-cache.dir:}") String dir,
+                          @Value("${ocr.result-cache.max-disk-entries:10000}") int maxDiskEntries,
+                          @Value("${ocr.language:spa+eng}") String language,
+                          @Value("${ocr.preprocess.enabled:true}") boolean preprocess,
+                          @Value("${ocr.preprocess.max-long-side:2000}") int maxLongSide,
+                          @Value("${ocr.preprocess.deskew:true}") boolean deskew,
+                          @Value("${ocr.regions.enabled:true}") boolean regions,
+                          @Value("${ocr.nombres.enabled:true}") boolean nombres,
+                          @Value("${ocr.language-detection.enabled:true}") boolean languageDetection,
+                          MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.contexto = String.join("|", language, String.valueOf(preprocess), String.valueOf(maxLongSide),
+                String.valueOf(deskew), String.valueOf(regions), String.valueOf(nombres),
+                String.valueOf(languageDetection), "\n").getBytes(StandardCharsets.UTF_8);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        this.dir = dir == null || dir.isBlank() ? null : Path.of(dir);
+        this.maxDiskEntries = maxDiskEntries;
+        this.diskHits = Counter.builder("ocr.result.cache.disk")
+                .description("Resultados OCR leídos del disco tras un fallo en memoria")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.diskMisses = Counter.builder("ocr.result.cache.disk")
+                .description("Resultados OCR leídos del disco tras un fallo en memoria")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "ocr-results");
+
+        if (this.dir != null) {
+            try {
+                Files.createDirectories(this.dir);
+                podar();
+            } catch (IOException e) {
+                logger.warn("[OcrResultCache] Disk store {} not usable: {}", this.dir, e.toString());
+            }
+        }
+    }
+
+    /**
+     * newDigest - SHA-256 ya iniciado con la configuración del OCR; añadirle los bytes
+     * de la imagen (de una vez o según se leen) y pasar el resultado a key()
+     */
+    public MessageDigest newDigest() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contexto);
+            return digest;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * key - Clave (hex) de un digest creado con newDigest()
+     */
+    public static String key(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * key - Clave de una imagen completa en memoria
+     */
+    public String key(byte[] contenido) {
+        MessageDigest digest = newDigest();
+        digest.update(contenido);
+        return key(digest);
+    }
+
+    /**
+     * get - Resultado guardado para la clave (memoria y, si no está, disco), o null
+     */
+    public OcrResponseDTO get(String key) {
+        OcrResponseDTO resultado = cache.getIfPresent(key);
+        if (resultado != null || dir == null) {
+            return resultado;
+        }
+        Path file = dir.resolve(key + EXTENSION);
+        try {
+            resultado = objectMapper.readValue(file.toFile(), OcrResponseDTO.class);
+        } catch (IOException e) {
+            // No existe o está dañado (p. ej. de otra versión del DTO): como si no estuviera
+            diskMisses.increment();
+            return null;
+        }
+        diskHits.increment();
+        cache.put(key, resultado);
+        try {
+            // La poda borra por antigüedad: un acierto cuenta como uso reciente
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // Solo afecta al orden de borrado
+        }
+        return resultado;
+    }
+
+    /**
+     * put - Guarda un OCR correcto en memoria y, si está configurado, en disco
+     * (un fallo del disco solo se registra: el OCR ya se hizo y se devuelve igual)
+     */
+    public void put(String key, OcrResponseDTO resultado) {
+        cache.put(key, resultado);
+        if (dir == null) {
+            return;
+        }
+        Path file = dir.resolve(key + EXTENSION);
+        try {
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            try {
+                objectMapper.writeValue(tmp.toFile(), resultado);
+                try {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            logger.warn("[OcrResultCache] Could not store OCR result on disk: {}", e.toString());
+            return;
+        }
+        if (escriturasSinPodar.incrementAndGet() >= ESCRITURAS_ENTRE_PODAS) {
+            escriturasSinPodar.set(0);
+            podar();
+        }
+    }
+
+    /**
+     * podar - Borra los JSON menos usados por encima de ocr.result-cache.max-disk-entries
+     * (y temporales huérfanos de una escritura interrumpida)
+     */
+    void podar() {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(dir)) {
+            files = stream.toList();
+        } catch (IOException e) {
+            logger.warn("[OcrResultCache] Could not list disk store: {}", e.toString());
+            return;
+        }
+        List<Path> resultados = files.stream()
+                .filter(path -> path.getFileName().toString().endsWith(EXTENSION))
+                .sorted(Comparator.comparing(OcrResultCache::lastModified).reversed())
+                .toList();
+        Stream.concat(
+                files.stream().filter(path -> path.getFileName().toString().endsWith(".tmp")),
+                resultados.stream().skip(maxDiskEntries)
+        ).forEach(path -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                logger.warn("[OcrResultCache] Could not delete {}: {}", path, e.toString());
+            }
+        });
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
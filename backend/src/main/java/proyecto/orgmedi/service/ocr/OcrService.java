@@ -1,18 +1,19 @@
 package proyecto.orgmedi.service.ocr;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.sourceforge.tess4j.Tesseract;
-import net.sourceforge.tess4j.TesseractException;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import proyecto.orgmedi.dto.ocr.ExtractedFieldDTO;
 import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+import proyecto.orgmedi.error.ApiException;
+import proyecto.orgmedi.error.BadRequestException;
 import proyecto.orgmedi.error.OcrProcessingException;
+import proyecto.orgmedi.error.PayloadTooLargeException;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.*;
 
@@ -21,10 +22,19 @@ import java.util.*;
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class OcrService {
 
-    @Value("${ocr.tessdata-path:}")
-    private String tessdataPath;
+    /** Caracteres de una dosis o una fecha: "600 mg", "15/01/2024", "2,5mg" */
+    static final String WHITELIST_NUMERICA = "0123456789/-.,:mgMG";
+
+    private final TesseractPool tesseractPool;
+    private final ImagePreprocessor imagePreprocessor;
+    private final OcrResultCache ocrResultCache;
+    private final UploadSpooler uploadSpooler;
+    private final TextRegionDetector textRegionDetector;
+    private final MedicamentoNombreMatcher medicamentoNombreMatcher;
+    private final LanguageDetector languageDetector;
 
     /**
      * Procesa una imagen y extrae datos de medicamentos
@@ -32,14 +42,39 @@ public class OcrService {
      * @return OcrResponseDTO con datos extraídos y confianza
      */
     public OcrResponseDTO processImage(MultipartFile file) {
-        log.info("Iniciando procesamiento OCR para archivo: {}", file.getOriginalFilename());
+        // Validar archivo
+        validateFile(file);
 
-        try {
-            // Validar archivo
-            validateFile(file);
+        // Una sola lectura: tamaño (413), SHA-256 de OcrResultCache y copia en memoria o en disco
+        try (UploadSpooler.Subida subida = uploadSpooler.recibir(file)) {
+            return processImage(subida);
+        }
+    }
 
+    /**
+     * Procesa una imagen ya validada y recibida (UploadSpooler) y extrae datos de medicamentos
+     * 
+     * Lo usa OcrJobService: el MultipartFile deja de existir al terminar el request,
+     * así que el trabajo en segundo plano recibe la Subida (que cierra él al terminar).
+     * 
+     * Devuelve el resultado guardado si esta misma imagen ya se procesó;
+     * si no, hace el OCR y guarda el resultado (solo si fue correcto)
+     * 
+     * @param subida Imagen recibida
+     * @return OcrResponseDTO con datos extraídos y confianza
+     */
+    public OcrResponseDTO processImage(UploadSpooler.Subida subida) {
+        String nombreArchivo = subida.getNombreArchivo();
+        OcrResponseDTO guardado = ocrResultCache.get(subida.getClave());
+        if (guardado != null) {
+            log.info("Resultado OCR reutilizado para archivo: {} (imagen ya procesada)", nombreArchivo);
+            return guardado;
+        }
+        log.info("Iniciando procesamiento OCR para archivo: {}", nombreArchivo);
+
+        try {
             // Obtener texto de la imagen
-            String rawText = extractTextFromImage(file);
+            String rawText = extractTextFromImage(subida.contenido());
             log.debug("Texto OCR extraído: {}", rawText);
 
             if (rawText == null || rawText.trim().isEmpty()) {
@@ -47,9 +82,11 @@ public class OcrService {
             }
 
             // Procesar texto y extraer campos
-            return parseAndExtractFields(rawText);
+            OcrResponseDTO resultado = parseAndExtractFields(rawText);
+            ocrResultCache.put(subida.getClave(), resultado);
+            return resultado;
 
-        } catch (OcrProcessingException e) {
+        } catch (ApiException e) {
             throw e;
         } catch (Exception e) {
             log.error("Error procesando OCR", e);
@@ -57,37 +94,124 @@ public class OcrService {
         }
     }
 
+    /**
+     * Extrae los campos de un texto ya reconocido (p. ej. el de varias páginas unidas en orden)
+     * @param rawText Texto OCR
+     * @return OcrResponseDTO con datos extraídos y confianza
+     */
+    public OcrResponseDTO extractFields(String rawText) {
+        if (rawText == null || rawText.trim().isEmpty()) {
+            throw new OcrProcessingException("No se pudo extraer texto de la imagen");
+        }
+        return parseAndExtractFields(rawText);
+    }
+
     /**
      * Extrae texto de la imagen usando Tesseract OCR
+     * (motor ya inicializado del TesseractPool: spa+eng, user_defined_dpi=300)
+     * sobre la imagen reducida, en grises y binarizada por ImagePreprocessor,
+     * solo en sus regiones con texto
      */
-    private String extractTextFromImage(MultipartFile file) throws IOException, TesseractException {
-        BufferedImage bufferedImage = ImageIO.read(file.getInputStream());
+    private String extractTextFromImage(ByteBuffer contenido) throws IOException {
+        BufferedImage bufferedImage = imagePreprocessor.preprocess(contenido);
         if (bufferedImage == null) {
             throw new OcrProcessingException("No se pudo leer la imagen");
         }
 
-        Tesseract tesseract = new Tesseract();
+        return recognize(bufferedImage);
+    }
 
-        // Configurar ruta de tessdata si está disponible
-        if (tessdataPath != null && !tessdataPath.isEmpty()) {
-            tesseract.setDatapath(tessdataPath);
+    /**
+     * Reconoce el texto de una imagen ya preprocesada
+     * 
+     * Solo se pasan a Tesseract las regiones con texto (TextRegionDetector), en orden de lectura;
+     * sin regiones claras se reconoce la página entera. Las regiones que salen casi solo con
+     * cifras (dosis, fechas) se repiten con WHITELIST_NUMERICA: así un 0 no se lee como "O"
+     * ni un 1 como "l", que es lo que hacía fallar las regex de cantidad y fecha.
+     * 
+     * Con detección de idioma (LanguageDetector) las primeras regiones se reconocen con
+     * ocr.language (spa+eng) y, según su texto, el resto solo con spa o solo con eng
+     * (un modelo en vez de dos); si el idioma es dudoso se sigue con spa+eng.
+     * 
+     * @param imagen Imagen preparada por ImagePreprocessor
+     * @return Texto reconocido (una región por línea o bloque)
+     */
+    public String recognize(BufferedImage imagen) {
+        List<TextRegion> regiones = textRegionDetector.detect(imagen);
+        if (regiones.isEmpty()) {
+            return tesseractPool.recognize(imagen);
+        }
+        String idioma = tesseractPool.getLanguage();
+        List<String> textos = new ArrayList<>(regiones.size());
+        int muestra = languageDetector.getSampleRegions();
+        if (languageDetector.isEnabled() && regiones.size() > muestra) {
+            textos.addAll(reconocer(idioma, imagen, regiones.subList(0, muestra)));
+            String detectado = languageDetector.detect(String.join("\n", textos));
+            if (tesseractPool.supports(detectado)) {
+                idioma = detectado;
+            }
+            List<TextRegion> resto = regiones.subList(muestra, regiones.size());
+            textos.addAll(reconocer(idioma, imagen, resto));
+            languageDetector.registrarAhorro(idioma, area(resto));
+        } else {
+            textos.addAll(reconocer(idioma, imagen, regiones));
         }
 
-        // Configurar idioma español + inglés para mejor reconocimiento
-        tesseract.setLanguage("spa+eng");
+        List<Integer> numericas = new ArrayList<>();
+        for (int i = 0; i < textos.size(); i++) {
+            if (esNumerica(textos.get(i))) {
+                numericas.add(i);
+            }
+        }
+        if (!numericas.isEmpty()) {
+            List<String> repaso = tesseractPool.recognize(idioma, imagen,
+                    numericas.stream().map(regiones::get).toList(), WHITELIST_NUMERICA);
+            for (int k = 0; k < numericas.size(); k++) {
+                if (!repaso.get(k).isBlank()) {
+                    textos.set(numericas.get(k), repaso.get(k));
+                }
+            }
+        }
 
-        // Mejorar la calidad de OCR
-        setupTessVariable(tesseract);
+        StringBuilder texto = new StringBuilder();
+        for (String region : textos) {
+            if (!region.isBlank()) {
+                texto.append(region.strip()).append('\n');
+            }
+        }
+        return texto.toString();
+    }
 
-        return tesseract.doOCR(bufferedImage);
+    /**
+     * Reconoce las regiones con un motor de ese idioma y anota su coste para LanguageDetector
+     */
+    private List<String> reconocer(String idioma, BufferedImage imagen, List<TextRegion> regiones) {
+        long start = System.nanoTime();
+        List<String> textos = tesseractPool.recognize(idioma, imagen, regiones, null);
+        languageDetector.medir(idioma, System.nanoTime() - start, area(regiones));
+        return textos;
+    }
+
+    private static long area(List<TextRegion> regiones) {
+        return regiones.stream().mapToLong(TextRegion::area).sum();
     }
 
     /**
-     * Configura variables de Tesseract (usando método deprecated)
+     * Región de dosis o fecha: al menos el 60% de sus caracteres (sin espacios) son cifras
      */
-    @SuppressWarnings("deprecation")
-    private void setupTessVariable(Tesseract tesseract) {
-        tesseract.setTessVariable("user_defined_dpi", "300");
+    private static boolean esNumerica(String texto) {
+        int digitos = 0;
+        int total = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                total++;
+                if (c >= '0' && c <= '9') {
+                    digitos++;
+                }
+            }
+        }
+        return total > 0 && digitos * 10 >= total * 6;
     }
 
     /**
@@ -100,10 +224,19 @@ public class OcrService {
         Map<String, Double> confidenceMap = new HashMap<>();
         List<ExtractedFieldDTO> problemFields = new ArrayList<>();
 
-        // Extraer nombre del medicamento
-        String nombre = extractNombre(rawText);
+        // Una sola pasada sobre el texto: todos los campos salen de sus tokens
+        OcrTextLexer.Resultado tokens = OcrTextLexer.tokenize(rawText);
+
+        // Extraer nombre del medicamento: corregido contra el diccionario si aparece en él
+        // (la confianza baja con los errores corregidos); si no, la primera línea válida
+        String nombre = tokens.nombre();
+        Double nombreConfidence = tokens.nombreConfidence();
+        MedicamentoNombreMatcher.Coincidencia coincidencia = medicamentoNombreMatcher.match(rawText);
+        if (coincidencia != null) {
+            nombre = coincidencia.nombre();
+            nombreConfidence = coincidencia.confianza();
+        }
         response.setNombre(nombre);
-        Double nombreConfidence = nombre != null ? 100.0 : calculateNombreConfidence(rawText);
         confidenceMap.put("nombre", nombreConfidence);
         if (nombreConfidence < 80) {
             problemFields.add(ExtractedFieldDTO.builder()
@@ -115,9 +248,9 @@ public class OcrService {
         }
 
         // Extraer cantidad en mg
-        Integer cantidadMg = OcrValidationUtil.extractCantidadMg(rawText);
+        Integer cantidadMg = tokens.cantidadMg();
         response.setCantidadMg(cantidadMg);
-        Double cantidadConfidence = OcrValidationUtil.calculateCantidadConfidence(rawText);
+        Double cantidadConfidence = tokens.cantidadConfidence();
         confidenceMap.put("cantidadMg", cantidadConfidence);
         if (cantidadConfidence < 80) {
             problemFields.add(ExtractedFieldDTO.builder()
@@ -129,9 +262,9 @@ public class OcrService {
         }
 
         // Extraer fechas
-        LocalDate fechaInicio = OcrValidationUtil.extractFecha(rawText);
+        LocalDate fechaInicio = tokens.fechaInicio();
         response.setFechaInicio(fechaInicio != null ? fechaInicio.toString() : null);
-        Double fechaInicioConfidence = OcrValidationUtil.calculateFechaConfidence(rawText);
+        Double fechaInicioConfidence = tokens.fechaInicioConfidence();
         confidenceMap.put("fechaInicio", fechaInicioConfidence);
         if (fechaInicioConfidence < 80) {
             problemFields.add(ExtractedFieldDTO.builder()
@@ -143,9 +276,9 @@ public class OcrService {
         }
 
         // Para fecha fin, buscar una fecha posterior a la inicial
-        LocalDate fechaFin = extractFechaFin(rawText, fechaInicio);
+        LocalDate fechaFin = tokens.fechaFin();
         response.setFechaFin(fechaFin != null ? fechaFin.toString() : null);
-        Double fechaFinConfidence = fechaFin != null ? 100.0 : 0.0;
+        Double fechaFinConfidence = tokens.fechaFinConfidence();
         confidenceMap.put("fechaFin", fechaFinConfidence);
         if (fechaFinConfidence < 80) {
             problemFields.add(ExtractedFieldDTO.builder()
@@ -157,9 +290,9 @@ public class OcrService {
         }
 
         // Extraer color
-        String color = OcrValidationUtil.extractColor(rawText);
+        String color = tokens.color();
         response.setColor(color);
-        Double colorConfidence = OcrValidationUtil.calculateColorConfidence(rawText);
+        Double colorConfidence = tokens.colorConfidence();
         confidenceMap.put("color", colorConfidence);
         if (colorConfidence < 80) {
             problemFields.add(ExtractedFieldDTO.builder()
@@ -171,9 +304,9 @@ public class OcrService {
         }
 
         // Extraer frecuencia
-        Integer frecuencia = OcrValidationUtil.extractFrecuencia(rawText);
+        Integer frecuencia = tokens.frecuencia();
         response.setFrecuencia(frecuencia);
-        Double frecuenciaConfidence = OcrValidationUtil.calculateFrecuenciaConfidence(rawText);
+        Double frecuenciaConfidence = tokens.frecuenciaConfidence();
         confidenceMap.put("frecuencia", frecuenciaConfidence);
         if (frecuenciaConfidence < 80) {
             problemFields.add(ExtractedFieldDTO.builder()
@@ -191,55 +324,6 @@ public class OcrService {
         return response;
     }
 
-    /**
-     * Extrae el nombre del medicamento (usualmente está al principio o en título)
-     */
-    private String extractNombre(String text) {
-        // Buscar en la primera línea o en líneas que no contengan números
-        String[] lines = text.split("\n");
-        for (String line : lines) {
-            String cleaned = line.trim();
-            if (!cleaned.isEmpty() && !cleaned.matches(".*\\d+.*")) {
-                // Si la línea no contiene números, probablemente sea el nombre
-                if (OcrValidationUtil.isValidNombre(cleaned) && cleaned.length() >= 3) {
-                    return cleaned;
-                }
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Calcula confianza para nombre (entre 0 y 100)
-     */
-    private Double calculateNombreConfidence(String text) {
-        String nombre = extractNombre(text);
-        if (nombre != null && OcrValidationUtil.isValidNombre(nombre)) {
-            return 100.0;
-        }
-        return 30.0; // Baja confianza si no se puede extraer
-    }
-
-    /**
-     * Extrae la fecha fin (usualmente una fecha posterior en el texto)
-     */
-    private LocalDate extractFechaFin(String text, LocalDate fechaInicio) {
-        // Buscar todas las fechas en el texto
-        String[] parts = text.split("[\\s\\n]+");
-        LocalDate lastDate = null;
-
-        for (String part : parts) {
-            LocalDate date = OcrValidationUtil.extractFecha(part);
-            if (date != null) {
-                if (fechaInicio == null || date.isAfter(fechaInicio)) {
-                    lastDate = date;
-                }
-            }
-        }
-
-        return lastDate;
-    }
-
     /**
      * Calcula confianza general basada en el promedio de confianzas
      */
@@ -254,21 +338,22 @@ public class OcrService {
     }
 
     /**
-     * Valida que el archivo sea una imagen válida
+     * Valida que el archivo sea una imagen válida (error del cliente → 400; demasiado grande → 413)
      */
-    private void validateFile(MultipartFile file) {
+    public void validateFile(MultipartFile file) {
         if (file.isEmpty()) {
-            throw new OcrProcessingException("El archivo está vacío");
+            throw new BadRequestException("El archivo está vacío");
         }
 
         String contentType = file.getContentType();
         if (contentType == null || !isValidImageType(contentType)) {
-            throw new OcrProcessingException("El archivo debe ser una imagen válida (PNG, JPG, GIF)");
+            throw new BadRequestException("El archivo debe ser una imagen válida (PNG, JPG, GIF)");
         }
 
-        long maxSize = 10 * 1024 * 1024; // 10MB
+        // El tamaño real se vuelve a comprobar al leer el archivo (UploadSpooler)
+        long maxSize = uploadSpooler.getMaxSize();
         if (file.getSize() > maxSize) {
-            throw new OcrProcessingException("El archivo excede el tamaño máximo de 10MB");
+            throw new PayloadTooLargeException("El archivo excede el tamaño máximo de " + maxSize / (1024 * 1024) + "MB");
         }
     }
 
@@ -0,0 +1,313 @@
+package proyecto.orgmedi.service.ocr;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * OcrTextLexer - ANÁLISIS DEL TEXTO OCR EN UNA SOLA PASADA
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - parseAndExtractFields recorría el texto una vez por regex: nombre (dos veces),
+ *   extraer + confianza de cada campo, y otra vez palabra a palabra para la fecha de fin
+ *
+ * CÓMO:
+ * - Un único recorrido de izquierda a derecha clasifica tokens: NOMBRE (línea candidata),
+ *   CANTIDAD_MG, FRECUENCIA, FECHA (la primera de cada palabra) y COLOR; además anota si
+ *   hay algún dígito (las confianzas de respaldo: 50% / 30%)
+ * - Los campos y sus confianzas se derivan de la lista de tokens (Resultado)
+ *
+ * MISMA SEMÁNTICA QUE LAS REGEX DE OcrValidationUtil (Java 21):
+ * - \b y \w son ASCII: [a-zA-Z0-9_]; \d es [0-9]; \s es [ \t\n\x0B\f\r]
+ * - "Primera coincidencia" = la más a la izquierda, como Matcher.find()
+ * - Una fecha inválida (32/13/2024) sigue siendo la primera coincidencia: la fecha
+ *   de inicio queda a null, igual que extractFecha
+ * La equivalencia se comprueba contra las regex sobre un corpus en OcrTextLexerTest.
+ */
+public final class OcrTextLexer {
+
+    /**
+     * Tipo - Clase de token reconocido
+     */
+    public enum Tipo {
+        NOMBRE, CANTIDAD_MG, FRECUENCIA, FECHA, COLOR
+    }
+
+    /**
+     * Token - Fragmento clasificado: texto original y valor interpretado
+     * (String, Integer o LocalDate; null en una FECHA con día o mes imposibles)
+     */
+    public record Token(Tipo tipo, int inicio, String texto, Object valor) {
+    }
+
+    private static final String[] UNIDADES_MG = {"mg", "mgr", "miligramo", "miligramos"};
+    private static final String[] UNIDADES_FRECUENCIA = {"vece", "veces", "cada", "dosis", "toma", "tomas"};
+    private static final String[] COLORES = {"rojo", "azul", "verde", "blanco", "negro", "amarillo", "rosa",
+            "naranja", "morado", "gris", "marrón", "beige"};
+    private static final String LETRAS_NOMBRE = "áéíóúñÁÉÍÓÚÑ-";
+
+    private OcrTextLexer() {
+    }
+
+    /**
+     * tokenize - Recorre el texto una vez y devuelve los tokens en orden de aparición
+     */
+    public static Resultado tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        boolean hayDigitos = false;
+        boolean fechaEnPalabra = false;
+
+        // Línea actual (candidata a nombre): se valida carácter a carácter como
+        // isValidNombre(line.trim()) sin volver a recorrerla
+        int primero = -1;
+        int ultimo = -1;
+        boolean lineaInvalida = false;
+        boolean controlPendiente = false;
+
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : '\n';
+            if (c == '\n') {
+                if (primero >= 0 && !lineaInvalida && ultimo - primero + 1 >= 3) {
+                    tokens.add(new Token(Tipo.NOMBRE, primero, text.substring(primero, ultimo + 1),
+                            text.substring(primero, ultimo + 1)));
+                }
+                primero = -1;
+                ultimo = -1;
+                lineaInvalida = false;
+                controlPendiente = false;
+                fechaEnPalabra = false;
+                continue;
+            }
+
+            if (c > ' ') {
+                if (primero < 0) {
+                    primero = i;
+                }
+                ultimo = i;
+                if (controlPendiente || !esLetraDeNombre(c)) {
+                    lineaInvalida = true;
+                }
+            } else if (primero >= 0 && !esEspacio(c)) {
+                // Un carácter de control solo invalida la línea si no queda al final (trim)
+                controlPendiente = true;
+            }
+
+            if (esEspacio(c)) {
+                fechaEnPalabra = false;
+                continue;
+            }
+            boolean limite = i == 0 || !esPalabra(text.charAt(i - 1));
+            if (esDigito(c)) {
+                hayDigitos = true;
+                if (!fechaEnPalabra) {
+                    Token fecha = fecha(text, i);
+                    if (fecha != null) {
+                        tokens.add(fecha);
+                        fechaEnPalabra = true;
+                    }
+                }
+                if (limite) {
+                    numeroConUnidad(text, i, 5, UNIDADES_MG, Tipo.CANTIDAD_MG, tokens);
+                    numeroConUnidad(text, i, 3, UNIDADES_FRECUENCIA, Tipo.FRECUENCIA, tokens);
+                }
+            } else if (esPalabra(c) && (i == 0 || !esPalabra(Character.toLowerCase(text.charAt(i - 1))))) {
+                color(text, i, tokens);
+            }
+        }
+        return new Resultado(List.copyOf(tokens), hayDigitos);
+    }
+
+    /**
+     * (\d{1,2})[/-](\d{1,2})[/-](\d{2,4}) empezando en i; valor null si la fecha no existe
+     */
+    private static Token fecha(String text, int i) {
+        int n = text.length();
+        int finDia = i + (i + 1 < n && esDigito(text.charAt(i + 1)) ? 2 : 1);
+        if (finDia >= n || !esSeparadorFecha(text.charAt(finDia)) || finDia + 1 >= n
+                || !esDigito(text.charAt(finDia + 1))) {
+            return null;
+        }
+        int inicioMes = finDia + 1;
+        int finMes = inicioMes + (inicioMes + 1 < n && esDigito(text.charAt(inicioMes + 1)) ? 2 : 1);
+        if (finMes >= n || !esSeparadorFecha(text.charAt(finMes))) {
+            return null;
+        }
+        int inicioAnio = finMes + 1;
+        int finAnio = inicioAnio;
+        while (finAnio < n && finAnio - inicioAnio < 4 && esDigito(text.charAt(finAnio))) {
+            finAnio++;
+        }
+        if (finAnio - inicioAnio < 2) {
+            return null;
+        }
+
+        int dia = Integer.parseInt(text, i, finDia, 10);
+        int mes = Integer.parseInt(text, inicioMes, finMes, 10);
+        int anio = Integer.parseInt(text, inicioAnio, finAnio, 10);
+        if (anio < 100) {
+            anio = anio < 50 ? anio + 2000 : anio + 1900;
+        }
+        LocalDate valor = null;
+        if (dia >= 1 && dia <= 31 && mes >= 1 && mes <= 12) {
+            try {
+                valor = LocalDate.of(anio, mes, dia);
+            } catch (RuntimeException e) {
+                // 30/02, 31/04...: coincide con el patrón pero no es una fecha
+            }
+        }
+        return new Token(Tipo.FECHA, i, text.substring(i, finAnio), valor);
+    }
+
+    /**
+     * \b(\d{1,maxDigitos})\s*(?:unidades)\b empezando en i (ya en un límite de palabra):
+     * el número debe ser la secuencia entera de dígitos y la unidad la palabra entera
+     */
+    private static void numeroConUnidad(String text, int i, int maxDigitos, String[] unidades, Tipo tipo,
+                                        List<Token> tokens) {
+        int n = text.length();
+        int finNumero = i;
+        while (finNumero < n && esDigito(text.charAt(finNumero))) {
+            finNumero++;
+        }
+        if (finNumero - i > maxDigitos) {
+            return;
+        }
+        int inicioUnidad = finNumero;
+        while (inicioUnidad < n && esEspacio(text.charAt(inicioUnidad))) {
+            inicioUnidad++;
+        }
+        int finUnidad = inicioUnidad;
+        while (finUnidad < n && esPalabra(text.charAt(finUnidad))) {
+            finUnidad++;
+        }
+        for (String unidad : unidades) {
+            if (unidad.length() == finUnidad - inicioUnidad
+                    && text.regionMatches(true, inicioUnidad, unidad, 0, unidad.length())) {
+                tokens.add(new Token(tipo, i, text.substring(i, finUnidad),
+                        Integer.parseInt(text, i, finNumero, 10)));
+                return;
+            }
+        }
+    }
+
+    /**
+     * \b(colores)\b empezando en i sobre el texto en minúsculas, como extractColor
+     * (minúsculas carácter a carácter: no reproduce el caso turco de String.toLowerCase)
+     */
+    private static void color(String text, int i, List<Token> tokens) {
+        int n = text.length();
+        for (String color : COLORES) {
+            int fin = i + color.length();
+            if (fin > n || (fin < n && esPalabra(Character.toLowerCase(text.charAt(fin))))) {
+                continue;
+            }
+            boolean igual = true;
+            for (int k = 0; k < color.length() && igual; k++) {
+                igual = Character.toLowerCase(text.charAt(i + k)) == color.charAt(k);
+            }
+            if (igual) {
+                tokens.add(new Token(Tipo.COLOR, i, text.substring(i, fin), color));
+                return;
+            }
+        }
+    }
+
+    private static boolean esDigito(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean esPalabra(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || esDigito(c) || c == '_';
+    }
+
+    private static boolean esEspacio(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean esSeparadorFecha(char c) {
+        return c == '/' || c == '-';
+    }
+
+    private static boolean esLetraDeNombre(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || LETRAS_NOMBRE.indexOf(c) >= 0;
+    }
+
+    /**
+     * Resultado - Tokens del texto y campos derivados (mismas confianzas que OcrValidationUtil)
+     */
+    public record Resultado(List<Token> tokens, boolean hayDigitos) {
+
+        private Object primero(Tipo tipo) {
+            for (Token token : tokens) {
+                if (token.tipo() == tipo) {
+                    return token.valor();
+                }
+            }
+            return null;
+        }
+
+        private boolean contiene(Tipo tipo) {
+            return tokens.stream().anyMatch(token -> token.tipo() == tipo);
+        }
+
+        /** Primera línea que es un nombre válido */
+        public String nombre() {
+            return (String) primero(Tipo.NOMBRE);
+        }
+
+        public Double nombreConfidence() {
+            return contiene(Tipo.NOMBRE) ? 100.0 : 30.0;
+        }
+
+        public Integer cantidadMg() {
+            return (Integer) primero(Tipo.CANTIDAD_MG);
+        }
+
+        public Double cantidadConfidence() {
+            return contiene(Tipo.CANTIDAD_MG) ? 100.0 : hayDigitos ? 50.0 : 0.0;
+        }
+
+        /** Primera fecha del texto (null si no hay o si esa primera no es una fecha real) */
+        public LocalDate fechaInicio() {
+            return (LocalDate) primero(Tipo.FECHA);
+        }
+
+        public Double fechaInicioConfidence() {
+            return fechaInicio() != null ? 100.0 : hayDigitos ? 30.0 : 0.0;
+        }
+
+        /** Última fecha válida (la primera de su palabra) posterior a la de inicio */
+        public LocalDate fechaFin() {
+            LocalDate inicio = fechaInicio();
+            LocalDate fin = null;
+            for (Token token : tokens) {
+                if (token.tipo() == Tipo.FECHA && token.valor() instanceof LocalDate fecha
+                        && (inicio == null || fecha.isAfter(inicio))) {
+                    fin = fecha;
+                }
+            }
+            return fin;
+        }
+
+        public Double fechaFinConfidence() {
+            return fechaFin() != null ? 100.0 : 0.0;
+        }
+
+        public String color() {
+            return (String) primero(Tipo.COLOR);
+        }
+
+        public Double colorConfidence() {
+            return contiene(Tipo.COLOR) ? 100.0 : 0.0;
+        }
+
+        public Integer frecuencia() {
+            return (Integer) primero(Tipo.FRECUENCIA);
+        }
+
+        public Double frecuenciaConfidence() {
+            return contiene(Tipo.FRECUENCIA) ? 100.0 : hayDigitos ? 50.0 : 0.0;
+        }
+    }
+}
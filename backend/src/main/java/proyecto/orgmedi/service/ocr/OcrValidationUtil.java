@@ -16,6 +16,7 @@ public class OcrValidationUtil {
     private static final Pattern FECHA_PATTERN = Pattern.compile("(\\d{1,2})[/-](\\d{1,2})[/-](\\d{2,4})");
     private static final Pattern COLORES_PATTERN = Pattern.compile("\\b(rojo|azul|verde|blanco|negro|amarillo|rosa|naranja|morado|gris|marrón|beige)\\b", Pattern.CASE_INSENSITIVE);
     private static final Pattern FRECUENCIA_PATTERN = Pattern.compile("\\b(\\d{1,3})\\s*(?:veces?|cada|dosis|tomas?)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DIGITO_PATTERN = Pattern.compile("\\d");
 
     /**
      * Valida que un nombre sea válido (solo letras, espacios y guiones)
@@ -56,7 +57,7 @@ public class OcrValidationUtil {
             return 100.0;
         }
         // Buscar números sueltos como fallback
-        if (Pattern.compile("\\d{1,5}").matcher(text).find()) {
+        if (DIGITO_PATTERN.matcher(text).find()) {
             return 50.0;
         }
         return 0.0;
@@ -103,7 +104,7 @@ public class OcrValidationUtil {
             return 100.0;
         }
         // Si contiene números pero no es fecha válida
-        if (Pattern.compile("\\d").matcher(text).find()) {
+        if (DIGITO_PATTERN.matcher(text).find()) {
             return 30.0;
         }
         return 0.0;
@@ -161,7 +162,7 @@ public class OcrValidationUtil {
             return 100.0;
         }
         // Buscar números sueltos como fallback
-        if (Pattern.compile("\\d{1,3}").matcher(text).find()) {
+        if (DIGITO_PATTERN.matcher(text).find()) {
             return 50.0;
         }
         return 0.0;
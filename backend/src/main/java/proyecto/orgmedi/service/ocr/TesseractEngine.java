@@ -0,0 +1,47 @@
+package proyecto.orgmedi.service.ocr;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TesseractEngine - Un motor OCR ya inicializado (idioma y modelos cargados)
+ *
+ * NO es thread-safe: solo lo usa el hilo que lo ha sacado de TesseractPool
+ * hasta que lo devuelve.
+ */
+public interface TesseractEngine extends AutoCloseable {
+
+    /**
+     * recognize - Texto reconocido en la imagen (UTF-8)
+     *
+     * Cualquier excepción marca el motor como dañado: el pool lo cierra y crea otro.
+     */
+    String recognize(BufferedImage image);
+
+    /**
+     * recognize - Texto de cada región de la imagen, en el mismo orden que las regiones
+     *
+     * @param whitelist caracteres permitidos (tessedit_char_whitelist), o null para todos
+     */
+    default List<String> recognize(BufferedImage image, List<TextRegion> regions, String whitelist) {
+        List<String> textos = new ArrayList<>(regions.size());
+        for (TextRegion region : regions) {
+            textos.add(recognize(image.getSubimage(region.x(), region.y(), region.width(), region.height())));
+        }
+        return textos;
+    }
+
+    /**
+     * nativeBytes - Memoria nativa estimada que ocupa el motor (0 si no se conoce)
+     */
+    default long nativeBytes() {
+        return 0;
+    }
+
+    /**
+     * close - Libera la memoria nativa del motor
+     */
+    @Override
+    void close();
+}
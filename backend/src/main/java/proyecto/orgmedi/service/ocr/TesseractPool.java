@@ -0,0 +1,337 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import proyecto.orgmedi.error.ServiceUnavailableException;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * TesseractPool - POOL DE MOTORES TESSERACT YA INICIALIZADOS
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - Crear un Tesseract por petición reinicializa el motor nativo y recarga los
+ *   modelos de idioma (spa+eng) en CADA OCR: cientos de ms antes de reconocer nada
+ *
+ * CÓMO:
+ * - ocr.pool.size motores (0 = número de CPUs), cada uno inicializado una sola vez
+ * - Un grupo de motores por idioma: ocr.language (spa+eng) y, si está activa la detección
+ *   de idioma (ver LanguageDetector), cada idioma de ocr.language-detection.languages por
+ *   separado. El de ocr.language tiene hasta ocr.pool.size motores; los de un solo idioma,
+ *   hasta ocr.language-detection.pool-size
+ * - Al arrancar (ApplicationReadyEvent) se crean en segundo plano los de ocr.language
+ *   (ocr.pool.warm-up); los de un solo idioma, la primera vez que se piden. Cada motor
+ *   mantiene cargado su modelo en memoria nativa: así solo ocupan memoria los idiomas
+ *   que de verdad se detectan (ocr.pool.native.bytes)
+ * - recognize(): saca un motor del idioma pedido, reconoce y lo devuelve.
+ *   Un motor solo lo usa un hilo a la vez
+ * - Si no queda ninguno libre en ocr.pool.checkout-timeout-ms → 503 (ServiceUnavailableException)
+ * - Un motor que lanza una excepción se cierra y se sustituye por uno nuevo
+ *   en el siguiente uso (su estado nativo ya no es fiable)
+ * - Si no se puede crear un motor (falta libtesseract o tessdata) → 503 sin bloquear
+ *
+ * MÉTRICAS (/actuator/prometheus):
+ * - ocr.pool.checkout.wait{language}: espera hasta conseguir un motor
+ * - ocr.recognition.duration{language}: tiempo de reconocimiento
+ * - ocr.pool.engines{state=idle|total,language}: motores libres / creados
+ * - ocr.pool.native.bytes: memoria nativa estimada de los motores vivos
+ * - ocr.pool.evictions{language}: motores descartados por error
+ */
+@Component
+public class TesseractPool {
+    private static final Logger logger = LoggerFactory.getLogger(TesseractPool.class);
+
+    private final Function<String, TesseractEngine> engineFactory;
+    private final String language;
+    private final long checkoutTimeoutMs;
+    private final boolean warmUp;
+    /** Grupos por idioma; el primero es el de ocr.language */
+    private final Map<String, Motores> motores = new LinkedHashMap<>();
+    private final AtomicLong nativeBytes = new AtomicLong();
+
+    /**
+     * Motores de un idioma: libres, creados (para no pasar de size) y sus métricas
+     */
+    private static final class Motores {
+        final String language;
+        final int size;
+        final BlockingQueue<TesseractEngine> idle;
+        final AtomicInteger created = new AtomicInteger();
+        final Timer checkoutWait;
+        final Timer recognitionDuration;
+        final Counter evictions;
+
+        Motores(String language, int size, MeterRegistry meterRegistry) {
+            this.language = language;
+            this.size = size;
+            this.idle = new ArrayBlockingQueue<>(size);
+            this.checkoutWait = Timer.builder("ocr.pool.checkout.wait")
+                    .description("Espera hasta conseguir un motor Tesseract libre")
+                    .tag("language", language)
+                    .register(meterRegistry);
+            this.recognitionDuration = Timer.builder("ocr.recognition.duration")
+                    .description("Tiempo de reconocimiento OCR de una imagen")
+                    .tag("language", language)
+                    .register(meterRegistry);
+            this.evictions = Counter.builder("ocr.pool.evictions")
+                    .description("Motores Tesseract descartados tras un error")
+                    .tag("language", language)
+                    .register(meterRegistry);
+            Gauge.builder("ocr.pool.engines", idle, BlockingQueue::size)
+                    .description("Motores Tesseract libres")
+                    .tag("state", "idle")
+                    .tag("language", language)
+                    .register(meterRegistry);
+            Gauge.builder("ocr.pool.engines", created, AtomicInteger::get)
+                    .description("Motores Tesseract creados")
+                    .tag("state", "total")
+                    .tag("language", language)
+                    .register(meterRegistry);
+        }
+    }
+
+    @Autowired
+    public TesseractPool(@Value("${ocr.tessdata-path:}") String tessdataPath,
+                         @Value("${ocr.language:spa+eng}") String language,
+                         @Value("${ocr.language-detection.enabled:true}") boolean languageDetection,
+                         @Value("${ocr.language-detection.languages:spa,eng}") List<String> detectedLanguages,
+                         @Value("${ocr.language-detection.pool-size:0}") int languageSize,
+                         @Value("${ocr.pool.size:0}") int size,
+                         @Value("${ocr.pool.checkout-timeout-ms:10000}") long checkoutTimeoutMs,
+                         @Value("${ocr.pool.warm-up:true}") boolean warmUp,
+                         MeterRegistry meterRegistry) {
+        this(idioma -> new NativeTesseractEngine(resolveDatapath(tessdataPath), idioma,
+                        Map.of("user_defined_dpi", "300")),
+                language, languageDetection ? detectedLanguages : List.of(), languageSize,
+                size, checkoutTimeoutMs, warmUp, meterRegistry);
+    }
+
+    TesseractPool(Supplier<TesseractEngine> engineFactory, int size, long checkoutTimeoutMs, boolean warmUp,
+                  MeterRegistry meterRegistry) {
+        this(idioma -> engineFactory.get(), "spa+eng", List.of(), 0, size, checkoutTimeoutMs, warmUp, meterRegistry);
+    }
+
+    /**
+     * @param otherLanguages idiomas que se reconocen por separado; solo se usan los que
+     *                       forman parte de language ("spa" y "eng" de "spa+eng")
+     * @param languageSize   motores como máximo de cada uno de esos idiomas (0 = size)
+     */
+    TesseractPool(Function<String, TesseractEngine> engineFactory, String language, List<String> otherLanguages,
+                  int languageSize, int size, long checkoutTimeoutMs, boolean warmUp, MeterRegistry meterRegistry) {
+        this.engineFactory = engineFactory;
+        this.language = language;
+        int tamano = size > 0 ? size : Runtime.getRuntime().availableProcessors();
+        int tamanoIdioma = languageSize > 0 ? languageSize : tamano;
+        this.checkoutTimeoutMs = checkoutTimeoutMs;
+        this.warmUp = warmUp;
+
+        motores.put(language, new Motores(language, tamano, meterRegistry));
+        List<String> componentes = List.of(language.split("\\+"));
+        for (String idioma : otherLanguages) {
+            String limpio = idioma.strip();
+            if (componentes.size() > 1 && componentes.contains(limpio)) {
+                motores.computeIfAbsent(limpio, l -> new Motores(l, tamanoIdioma, meterRegistry));
+            }
+        }
+        Gauge.builder("ocr.pool.native.bytes", nativeBytes, AtomicLong::get)
+                .description("Memoria nativa estimada de los motores Tesseract")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * getLanguage - Idioma por defecto (ocr.language, p. ej. "spa+eng")
+     */
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * supports - true si hay motores propios para ese idioma
+     */
+    public boolean supports(String idioma) {
+        return motores.containsKey(idioma);
+    }
+
+    /**
+     * recognize - Reconoce el texto de la imagen con un motor del pool
+     *
+     * @throws ServiceUnavailableException si no hay motor libre a tiempo o no se puede crear
+     */
+    public String recognize(BufferedImage image) {
+        return conMotor(language, engine -> engine.recognize(image));
+    }
+
+    /**
+     * recognize - Reconoce solo las regiones indicadas (TextRegionDetector), con un único motor
+     *
+     * @param whitelist caracteres permitidos, o null para todos
+     * @throws ServiceUnavailableException si no hay motor libre a tiempo o no se puede crear
+     */
+    public List<String> recognize(BufferedImage image, List<TextRegion> regions, String whitelist) {
+        return recognize(language, image, regions, whitelist);
+    }
+
+    /**
+     * recognize - Igual, con un motor de ese idioma (el de por defecto si no hay motores para él)
+     */
+    public List<String> recognize(String idioma, BufferedImage image, List<TextRegion> regions, String whitelist) {
+        return conMotor(idioma, engine -> engine.recognize(image, regions, whitelist));
+    }
+
+    private <T> T conMotor(String idioma, Function<TesseractEngine, T> reconocimiento) {
+        Motores grupo = motores.getOrDefault(idioma, motores.get(language));
+        TesseractEngine engine = checkout(grupo);
+        boolean healthy = false;
+        try {
+            long start = System.nanoTime();
+            T resultado = reconocimiento.apply(engine);
+            grupo.recognitionDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            healthy = true;
+            return resultado;
+        } finally {
+            if (healthy) {
+                grupo.idle.offer(engine);
+            } else {
+                evict(grupo, engine);
+            }
+        }
+    }
+
+    /**
+     * warmUpOnStartup - Crea los motores de ocr.language al arrancar, sin retrasar el arranque
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (!warmUp) {
+            return;
+        }
+        Thread thread = new Thread(this::fill, "ocr-pool-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * fill - Crea motores de ocr.language hasta llegar a ocr.pool.size (uno detrás de otro:
+     * así la estimación de memoria nativa de cada uno no se mezcla con la de los demás).
+     * Los de un solo idioma no se crean aquí, sino en el primer checkout que los pide
+     */
+    void fill() {
+        long start = System.nanoTime();
+        Motores grupo = motores.get(language);
+        while (reserveSlot(grupo)) {
+            TesseractEngine engine = createOrRelease(grupo);
+            if (engine == null) {
+                return;
+            }
+            grupo.idle.offer(engine);
+        }
+        logger.info("[TesseractPool] {} {} engines ready in {} ms ({} MB native, estimated)",
+                grupo.created.get(), language, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                nativeBytes.get() / (1024 * 1024));
+    }
+
+    private TesseractEngine checkout(Motores grupo) {
+        long start = System.nanoTime();
+        try {
+            TesseractEngine engine = grupo.idle.poll();
+            if (engine != null) {
+                return engine;
+            }
+            // Sin motores libres: crear uno si aún no se ha llegado al tamaño del grupo
+            if (reserveSlot(grupo)) {
+                engine = createOrRelease(grupo);
+                if (engine == null) {
+                    throw new ServiceUnavailableException("El reconocimiento de texto no está disponible");
+                }
+                return engine;
+            }
+            engine = grupo.idle.poll(checkoutTimeoutMs, TimeUnit.MILLISECONDS);
+            if (engine == null) {
+                logger.warn("[TesseractPool] No {} engine free after {} ms ({} in use)", grupo.language,
+                        checkoutTimeoutMs, grupo.created.get());
+                throw new ServiceUnavailableException("Servidor ocupado, inténtalo de nuevo en unos segundos");
+            }
+            return engine;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Operación interrumpida", e);
+        } finally {
+            grupo.checkoutWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean reserveSlot(Motores grupo) {
+        int current;
+        do {
+            current = grupo.created.get();
+            if (current >= grupo.size) {
+                return false;
+            }
+        } while (!grupo.created.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Crea un motor para un hueco ya reservado; si falla, libera el hueco y devuelve null
+     */
+    private TesseractEngine createOrRelease(Motores grupo) {
+        try {
+            TesseractEngine engine = engineFactory.apply(grupo.language);
+            nativeBytes.addAndGet(engine.nativeBytes());
+            return engine;
+        } catch (RuntimeException | LinkageError e) {
+            grupo.created.decrementAndGet();
+            logger.error("[TesseractPool] Could not create Tesseract engine ({}): {}", grupo.language, e.toString());
+            return null;
+        }
+    }
+
+    private void evict(Motores grupo, TesseractEngine engine) {
+        grupo.evictions.increment();
+        nativeBytes.addAndGet(-engine.nativeBytes());
+        grupo.created.decrementAndGet();
+        try {
+            engine.close();
+        } catch (RuntimeException e) {
+            logger.warn("[TesseractPool] Error closing evicted engine: {}", e.toString());
+        }
+    }
+
+    private static String resolveDatapath(String tessdataPath) {
+        if (tessdataPath != null && !tessdataPath.isBlank()) {
+            return tessdataPath;
+        }
+        // Igual que net.sourceforge.tess4j.Tesseract: TESSDATA_PREFIX o el directorio actual
+        String prefix = System.getenv("TESSDATA_PREFIX");
+        return prefix != null ? prefix : "./";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        List<TesseractEngine> engines = new ArrayList<>();
+        motores.values().forEach(grupo -> grupo.idle.drainTo(engines));
+        engines.forEach(TesseractEngine::close);
+    }
+}
@@ -0,0 +1,14 @@
+package proyecto.orgmedi.service.ocr;
+
+/**
+ * TextRegion - Rectángulo de la imagen con texto (ver TextRegionDetector)
+ *
+ * @param linea true si es una sola línea de texto (Tesseract PSM_SINGLE_LINE);
+ *              false si es un bloque de varias líneas (PSM_SINGLE_BLOCK)
+ */
+public record TextRegion(int x, int y, int width, int height, boolean linea) {
+
+    public long area() {
+        return (long) width * height;
+    }
+}
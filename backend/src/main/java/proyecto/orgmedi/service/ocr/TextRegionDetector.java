@@ -0,0 +1,383 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TextRegionDetector - ZONAS CON TEXTO DE LA FOTO (Tesseract solo lee esas)
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - En la foto de un prospecto casi todo es fondo, logotipos, dibujos o marcos de tabla;
+ *   Tesseract analizaba la página entera y el ruido de esas zonas acababa en el texto
+ *   (peores confianzas en OcrValidationUtil)
+ *
+ * CÓMO (Java puro, lineal en píxeles, sobre la imagen binarizada de ImagePreprocessor):
+ * 1. Componentes conexas de la tinta (8-vecindad, union-find en dos pasadas)
+ * 2. Altura típica de letra = mediana de la altura de las componentes
+ * 3. Fuera lo que no es texto: componentes mucho más altas o anchas que una letra
+ *    (logotipos, fotos, líneas y marcos de tabla)
+ * 4. RLSA (run-length smoothing): se rellenan los huecos horizontales < 1 letra y
+ *    verticales < 1 letra, se hace AND y otra pasada horizontal → las palabras de un
+ *    párrafo forman una mancha; un hueco mayor (otra columna, otro párrafo) las separa
+ * 5. Componentes conexas de las manchas = regiones (con un margen), en orden de lectura
+ *    (de arriba abajo y de izquierda a derecha)
+ * Una región de altura ~1 letra es una LÍNEA (PSM_SINGLE_LINE); si no, un BLOQUE.
+ *
+ * Si no hay texto claro (imagen en color sin preprocesar, ninguna componente con
+ * tamaño de letra) o salen más de ocr.regions.max-regions regiones, devuelve una lista
+ * vacía y se reconoce la página entera como antes.
+ *
+ * MÉTRICAS: ocr.regions.duration, ocr.regions.count,
+ * ocr.regions.coverage (fracción de la página que se pasa a Tesseract; 1 = página entera)
+ */
+@Component
+public class TextRegionDetector {
+    private static final int UMBRAL_TINTA = 128;
+
+    private final boolean enabled;
+    private final int maxRegions;
+    private final Timer duration;
+    private final DistributionSummary count;
+    private final DistributionSummary coverage;
+
+    public TextRegionDetector(@Value("${ocr.regions.enabled:true}") boolean enabled,
+                              @Value("${ocr.regions.max-regions:60}") int maxRegions,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxRegions = Math.max(1, maxRegions);
+        this.duration = Timer.builder("ocr.regions.duration")
+                .description("Tiempo de detección de regiones de texto")
+                .register(meterRegistry);
+        this.count = DistributionSummary.builder("ocr.regions.count")
+                .description("Regiones de texto por imagen")
+                .register(meterRegistry);
+        this.coverage = DistributionSummary.builder("ocr.regions.coverage")
+                .description("Fracción de la imagen que se pasa a Tesseract")
+                .register(meterRegistry);
+    }
+
+    /**
+     * detect - Regiones con texto en orden de lectura; vacía = reconocer la página entera
+     */
+    public List<TextRegion> detect(BufferedImage image) {
+        if (!enabled) {
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<TextRegion> regiones = detect(image, maxRegions);
+        duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        long area = (long) image.getWidth() * image.getHeight();
+        long reconocida = regiones.isEmpty() ? area : regiones.stream().mapToLong(TextRegion::area).sum();
+        count.record(regiones.size());
+        coverage.record(Math.min(1.0, reconocida / (double) area));
+        return regiones;
+    }
+
+    static List<TextRegion> detect(BufferedImage image, int maxRegions) {
+        if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return List.of();
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int stride = image.getRaster().getSampleModel() instanceof ComponentSampleModel model
+                ? model.getScanlineStride()
+                : width;
+
+        byte[] tinta = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if ((pixels[y * stride + x] & 0xFF) < UMBRAL_TINTA) {
+                    tinta[y * width + x] = 1;
+                }
+            }
+        }
+
+        Componentes glifos = Componentes.de(tinta, width, height);
+        int letra = alturaTipica(glifos, height);
+        if (letra == 0) {
+            return List.of();
+        }
+
+        // Fuera logotipos, fotos y líneas de tabla: nada de eso tiene tamaño de letra
+        boolean[] descartar = new boolean[glifos.size()];
+        boolean alguna = false;
+        for (int c = 0; c < glifos.size(); c++) {
+            if (glifos.alto(c) > 3 * letra || glifos.ancho(c) > 8 * letra) {
+                descartar[c] = true;
+                alguna = true;
+            }
+        }
+        if (alguna) {
+            for (int i = 0; i < tinta.length; i++) {
+                if (tinta[i] == 1 && descartar[glifos.indice(i)]) {
+                    tinta[i] = 0;
+                }
+            }
+        }
+
+        byte[] horizontal = Arrays.copyOf(tinta, tinta.length);
+        rlsaHorizontal(horizontal, width, height, letra);
+        rlsaVertical(tinta, width, height, letra);
+        for (int i = 0; i < tinta.length; i++) {
+            tinta[i] &= horizontal[i];
+        }
+        // El AND deja sueltas las letras de una línea aislada: se vuelven a unir en horizontal
+        rlsaHorizontal(tinta, width, height, letra);
+
+        Componentes manchas = Componentes.de(tinta, width, height);
+        int margen = Math.max(2, letra / 3);
+        List<int[]> cajas = new ArrayList<>();
+        for (int c = 0; c < manchas.size(); c++) {
+            if (manchas.alto(c) < letra / 2) {
+                continue; // motas y signos sueltos
+            }
+            cajas.add(new int[]{
+                    Math.max(0, manchas.x0(c) - margen),
+                    Math.max(0, manchas.y0(c) - margen),
+                    Math.min(width - 1, manchas.x1(c) + margen),
+                    Math.min(height - 1, manchas.y1(c) + margen)});
+        }
+        unirSolapadas(cajas);
+        if (cajas.isEmpty() || cajas.size() > maxRegions) {
+            return List.of();
+        }
+
+        cajas.sort(Comparator.<int[]>comparingInt(c -> c[1]).thenComparingInt(c -> c[0]));
+        List<TextRegion> regiones = new ArrayList<>(cajas.size());
+        for (int[] c : cajas) {
+            int alto = c[3] - c[1] + 1;
+            regiones.add(new TextRegion(c[0], c[1], c[2] - c[0] + 1, alto, alto - 2 * margen <= letra * 8 / 5));
+        }
+        return regiones;
+    }
+
+    /**
+     * alturaTipica - Mediana de la altura de las componentes que pueden ser letras
+     * (entre 6px y 1/8 de la imagen); 0 si no hay ninguna
+     */
+    private static int alturaTipica(Componentes glifos, int height) {
+        int[] alturas = new int[glifos.size()];
+        int n = 0;
+        for (int c = 0; c < glifos.size(); c++) {
+            int alto = glifos.alto(c);
+            if (alto >= 6 && alto <= height / 8) {
+                alturas[n++] = alto;
+            }
+        }
+        if (n == 0) {
+            return 0;
+        }
+        Arrays.sort(alturas, 0, n);
+        return alturas[n / 2];
+    }
+
+    /** Rellena los huecos de fondo de menos de "hueco" píxeles entre dos píxeles de tinta de la misma fila */
+    static void rlsaHorizontal(byte[] mascara, int width, int height, int hueco) {
+        for (int y = 0; y < height; y++) {
+            int fila = y * width;
+            int ultima = -1;
+            for (int x = 0; x < width; x++) {
+                if (mascara[fila + x] == 1) {
+                    if (ultima >= 0 && x - ultima - 1 < hueco) {
+                        Arrays.fill(mascara, fila + ultima + 1, fila + x, (byte) 1);
+                    }
+                    ultima = x;
+                }
+            }
+        }
+    }
+
+    /** Igual que rlsaHorizontal, por columnas */
+    static void rlsaVertical(byte[] mascara, int width, int height, int hueco) {
+        for (int x = 0; x < width; x++) {
+            int ultima = -1;
+            for (int y = 0; y < height; y++) {
+                if (mascara[y * width + x] == 1) {
+                    if (ultima >= 0 && y - ultima - 1 < hueco) {
+                        for (int k = ultima + 1; k < y; k++) {
+                            mascara[k * width + x] = 1;
+                        }
+                    }
+                    ultima = y;
+                }
+            }
+        }
+    }
+
+    /** Une las cajas que se solapan (el margen puede hacer que dos regiones vecinas se pisen) */
+    private static void unirSolapadas(List<int[]> cajas) {
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int i = 0; i < cajas.size() && !cambio; i++) {
+                for (int j = i + 1; j < cajas.size(); j++) {
+                    int[] a = cajas.get(i);
+                    int[] b = cajas.get(j);
+                    if (a[0] <= b[2] && b[0] <= a[2] && a[1] <= b[3] && b[1] <= a[3]) {
+                        a[0] = Math.min(a[0], b[0]);
+                        a[1] = Math.min(a[1], b[1]);
+                        a[2] = Math.max(a[2], b[2]);
+                        a[3] = Math.max(a[3], b[3]);
+                        cajas.remove(j);
+                        cambio = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Componentes - Componentes conexas (8-vecindad) de una máscara 0/1 con su caja
+     */
+    static final class Componentes {
+        private final int[] etiquetas;  // Por píxel: índice de componente + 1 (0 = fondo)
+        private final int[] cajas;      // x0, y0, x1, y1 de cada componente
+
+        private Componentes(int[] etiquetas, int[] cajas) {
+            this.etiquetas = etiquetas;
+            this.cajas = cajas;
+        }
+
+        static Componentes de(byte[] mascara, int width, int height) {
+            int[] etiquetas = new int[width * height];
+            int[] padre = new int[256];
+            int siguiente = 1;
+
+            // 1ª pasada: etiqueta provisional y equivalencias con los vecinos ya vistos (O, NO, N, NE)
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int i = y * width + x;
+                    if (mascara[i] == 0) {
+                        continue;
+                    }
+                    int etiqueta = 0;
+                    if (x > 0) {
+                        etiqueta = unir(padre, etiqueta, etiquetas[i - 1]);
+                    }
+                    if (y > 0) {
+                        int arriba = i - width;
+                        if (x > 0) {
+                            etiqueta = unir(padre, etiqueta, etiquetas[arriba - 1]);
+                        }
+                        etiqueta = unir(padre, etiqueta, etiquetas[arriba]);
+                        if (x < width - 1) {
+                            etiqueta = unir(padre, etiqueta, etiquetas[arriba + 1]);
+                        }
+                    }
+                    if (etiqueta == 0) {
+                        if (siguiente == padre.length) {
+                            padre = Arrays.copyOf(padre, padre.length * 2);
+                        }
+                        padre[siguiente] = siguiente;
+                        etiqueta = siguiente++;
+                    }
+                    etiquetas[i] = etiqueta;
+                }
+            }
+
+            // 2ª pasada: raíz → índice compacto, y caja de cada componente
+            int[] indice = new int[siguiente];
+            int[] cajas = new int[64];
+            int total = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int i = y * width + x;
+                    if (etiquetas[i] == 0) {
+                        continue;
+                    }
+                    int raiz = raiz(padre, etiquetas[i]);
+                    if (indice[raiz] == 0) {
+                        if (4 * total + 4 > cajas.length) {
+                            cajas = Arrays.copyOf(cajas, cajas.length * 2);
+                        }
+                        cajas[4 * total] = x;
+                        cajas[4 * total + 1] = y;
+                        cajas[4 * total + 2] = x;
+                        cajas[4 * total + 3] = y;
+                        indice[raiz] = ++total;
+                    }
+                    int c = indice[raiz] - 1;
+                    etiquetas[i] = c + 1;
+                    cajas[4 * c] = Math.min(cajas[4 * c], x);
+                    cajas[4 * c + 2] = Math.max(cajas[4 * c + 2], x);
+                    cajas[4 * c + 3] = y;
+                }
+            }
+            return new Componentes(etiquetas, Arrays.copyOf(cajas, 4 * total));
+        }
+
+        /** Une la etiqueta actual con la del vecino (0 = sin etiqueta) y devuelve la raíz común */
+        private static int unir(int[] padre, int etiqueta, int vecino) {
+            if (vecino == 0) {
+                return etiqueta;
+            }
+            int b = raiz(padre, vecino);
+            if (etiqueta == 0) {
+                return b;
+            }
+            int a = raiz(padre, etiqueta);
+            if (a == b) {
+                return a;
+            }
+            // La raíz es siempre la etiqueta menor
+            padre[Math.max(a, b)] = Math.min(a, b);
+            return Math.min(a, b);
+        }
+
+        private static int raiz(int[] padre, int etiqueta) {
+            while (padre[etiqueta] != etiqueta) {
+                padre[etiqueta] = padre[padre[etiqueta]];
+                etiqueta = padre[etiqueta];
+            }
+            return etiqueta;
+        }
+
+        int size() {
+            return cajas.length / 4;
+        }
+
+        /** Componente del píxel i (solo para píxeles de la máscara) */
+        int indice(int i) {
+            return etiquetas[i] - 1;
+        }
+
+        int x0(int c) {
+            return cajas[4 * c];
+        }
+
+        int y0(int c) {
+            return cajas[4 * c + 1];
+        }
+
+        int x1(int c) {
+            return cajas[4 * c + 2];
+        }
+
+        int y1(int c) {
+            return cajas[4 * c + 3];
+        }
+
+        int ancho(int c) {
+            return x1(c) - x0(c) + 1;
+        }
+
+        int alto(int c) {
+            return y1(c) - y0(c) + 1;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import proyecto.orgmedi.error.BadRequestException;
+import proyecto.orgmedi.error.OcrProcessingException;
+import proyecto.orgmedi.error.PayloadTooLargeException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * UploadSpooler - RECEPCIÓN DE ARCHIVOS OCR SIN CARGARLOS EN EL HEAP
+ *
+ * QUÉ PROBLEMA RESUELVE:
+ * - OcrService, OcrJobService y OcrBatchService copiaban cada subida entera a un byte[]
+ *   (hasta 10MB) y la retenían mientras el OCR esperaba en cola: con varias subidas a la
+ *   vez el heap crecía con el número de peticiones
+ *
+ * CÓMO:
+ * - Cuando llega aquí el contenedor ya ha recibido la parte entera (y ha cortado con 413
+ *   las que pasan de spring.servlet.multipart.max-file-size): el tamaño se comprueba con
+ *   getSize() contra ocr.upload.max-size, sin leer nada
+ * - Hasta ocr.upload.memory-threshold: se copia a un byte[] (Tomcat también la tenía en memoria)
+ * - Por encima: transferTo() MUEVE el temporal de Tomcat (file-size-threshold) a ocr.upload.dir
+ *   (vacío = java.io.tmpdir); el temporal tiene que sobrevivir a la petición porque el OCR de
+ *   OcrJobService/OcrBatchService termina después. Si están en sistemas de archivos distintos
+ *   el contenedor lo copia
+ * - El SHA-256 de OcrResultCache se calcula sobre el archivo mapeado (FileChannel.map)
+ * - Subida.contenido() devuelve un ByteBuffer: el byte[] envuelto o ese mismo mapeo,
+ *   que el decodificador lee sin copiarlo al heap
+ * - close() borra el temporal: quien recibe la Subida la cierra al terminar el OCR
+ *
+ * Heap por subida: como mucho memory-threshold; el resto lo gestiona el sistema
+ * operativo (caché de páginas del archivo mapeado).
+ *
+ * MÉTRICAS: ocr.upload.size{storage=memory|disk} (bytes de cada subida aceptada)
+ */
+@Component
+public class UploadSpooler {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSpooler.class);
+
+    /**
+     * Subida - Archivo recibido: en memoria o en un temporal, con su clave de OcrResultCache
+     */
+    public static final class Subida implements AutoCloseable {
+        private final String nombreArchivo;
+        private final String contentType;
+        private final long tamano;
+        private final String clave;
+        private final byte[] memoria;
+        private final Path archivo;
+        private final ByteBuffer mapeado;
+
+        Subida(String nombreArchivo, String contentType, long tamano, String clave, byte[] memoria,
+               Path archivo, ByteBuffer mapeado) {
+            this.nombreArchivo = nombreArchivo;
+            this.contentType = contentType;
+            this.tamano = tamano;
+            this.clave = clave;
+            this.memoria = memoria;
+            this.archivo = archivo;
+            this.mapeado = mapeado;
+        }
+
+        public String getNombreArchivo() {
+            return nombreArchivo;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getTamano() {
+            return tamano;
+        }
+
+        /** SHA-256 del contenido (OcrResultCache.key) */
+        public String getClave() {
+            return clave;
+        }
+
+        /** true si el contenido está en un temporal (y no en el heap) */
+        public boolean isEnDisco() {
+            return archivo != null;
+        }
+
+        /**
+         * contenido - Bytes de la subida como buffer de solo lectura (posición 0).
+         * Cada llamada devuelve una vista independiente: se puede leer desde varios hilos
+         */
+        public ByteBuffer contenido() throws IOException {
+            if (memoria != null) {
+                return ByteBuffer.wrap(memoria).asReadOnlyBuffer();
+            }
+            return mapeado.duplicate();
+        }
+
+        /** Borra el temporal (en Linux el mapeo sigue siendo legible hasta que se libera) */
+        @Override
+        public void close() {
+            if (archivo != null) {
+                borrar(archivo);
+            }
+        }
+    }
+
+    private final OcrResultCache ocrResultCache;
+    private final long maxSize;
+    private final long memoryThreshold;
+    private final Path dir;
+    private final DistributionSummary memorySize;
+    private final DistributionSummary diskSize;
+
+    public UploadSpooler(OcrResultCache ocrResultCache,
+                         @Value("${ocr.upload.max-size:10MB}") DataSize maxSize,
+                         @Value("${ocr.upload.memory-threshold:256KB}") DataSize memoryThreshold,
+                         @Value("${ocr.upload.dir:}") String dir,
+                         MeterRegistry meterRegistry) {
+        this.ocrResultCache = ocrResultCache;
+        this.maxSize = maxSize.toBytes();
+        this.memoryThreshold = Math.min(memoryThreshold.toBytes(), this.maxSize);
+        this.dir = dir == null || dir.isBlank() ? Path.of(System.getProperty("java.io.tmpdir")) : Path.of(dir);
+        this.memorySize = sizeSummary(meterRegistry, "memory");
+        this.diskSize = sizeSummary(meterRegistry, "disk");
+        try {
+            Files.createDirectories(this.dir);
+        } catch (IOException e) {
+            logger.warn("[UploadSpooler] Spool directory {} not usable: {}", this.dir, e.toString());
+        }
+    }
+
+    private static DistributionSummary sizeSummary(MeterRegistry meterRegistry, String storage) {
+        return DistributionSummary.builder("ocr.upload.size")
+                .description("Tamaño de las subidas OCR aceptadas")
+                .baseUnit("bytes")
+                .tag("storage", storage)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Tamaño máximo de una subida en bytes (ocr.upload.max-size)
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * recibir - Deja el archivo en memoria o en un temporal propio y calcula su SHA-256
+     *
+     * @throws PayloadTooLargeException si supera ocr.upload.max-size
+     * @throws BadRequestException si está vacío
+     */
+    public Subida recibir(MultipartFile file) {
+        long tamano = file.getSize();
+        if (tamano > maxSize) {
+            throw demasiadoGrande();
+        }
+        if (tamano == 0) {
+            throw new BadRequestException("El archivo está vacío");
+        }
+        MessageDigest digest = ocrResultCache.newDigest();
+        if (tamano <= memoryThreshold) {
+            byte[] memoria;
+            try {
+                memoria = file.getBytes();
+            } catch (IOException e) {
+                throw new OcrProcessingException("No se pudo leer el archivo", e);
+            }
+            digest.update(memoria);
+            memorySize.record(memoria.length);
+            return new Subida(file.getOriginalFilename(), file.getContentType(), memoria.length,
+                    OcrResultCache.key(digest), memoria, null, null);
+        }
+
+        Path temporal = null;
+        try {
+            temporal = Files.createTempFile(dir, "ocr-upload-", ".tmp");
+            // transferTo(File), no transferTo(Path): con File Tomcat renombra su temporal
+            file.transferTo(temporal.toFile());
+            ByteBuffer mapeado;
+            try (FileChannel channel = FileChannel.open(temporal, StandardOpenOption.READ)) {
+                tamano = channel.size();
+                if (tamano > maxSize) {
+                    throw demasiadoGrande();
+                }
+                // El mapeo sigue siendo válido al cerrar el canal
+                mapeado = channel.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+            }
+            digest.update(mapeado.duplicate());
+            diskSize.record(tamano);
+            return new Subida(file.getOriginalFilename(), file.getContentType(), tamano,
+                    OcrResultCache.key(digest), null, temporal, mapeado);
+        } catch (IOException e) {
+            borrar(temporal);
+            throw new OcrProcessingException("No se pudo leer el archivo", e);
+        } catch (RuntimeException e) {
+            borrar(temporal);
+            throw e;
+        }
+    }
+
+    private PayloadTooLargeException demasiadoGrande() {
+        return new PayloadTooLargeException("El archivo excede el tamaño máximo de " + DataSize.ofBytes(maxSize).toMegabytes() + "MB");
+    }
+
+    private static void borrar(Path temporal) {
+        if (temporal == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(temporal);
+        } catch (IOException e) {
+            logger.warn("[UploadSpooler] Could not delete spool file {}: {}", temporal, e.toString());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package proyecto.orgmedi.config;
+
+import org.junit.jupiter.api.Test;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import proyecto.orgmedi.dto.medicamento.MedicamentoConHoraDTO;
+import proyecto.orgmedi.dto.medicamento.MedicamentosPorFechaDTO;
+import proyecto.orgmedi.dto.medicamento.MedicamentosPorHoraDTO;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseByteCacheTest {
+
+    private final ResponseByteCache cache = new ResponseByteCache(
+            Jackson2ObjectMapperBuilder.json().build(),
+            new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor().build()),
+            1 << 20, 4096, 64, Duration.ofMinutes(10));
+
+    @Test
+    void get_sameKey_serializesOnce() {
+        AtomicInteger llamadas = new AtomicInteger();
+        ResponseByteCache.Clave clave = new ResponseByteCache.Clave(1L, "por-fecha", "2025-01-05", ResponseByteCache.Formato.JSON, "\"v1\"");
+
+        ResponseByteCache.Cuerpo primero = cache.get(clave, () -> "hola-" + llamadas.incrementAndGet());
+        ResponseByteCache.Cuerpo segundo = cache.get(clave, () -> "hola-" + llamadas.incrementAndGet());
+
+        assertSame(primero, segundo);
+        assertEquals(1, llamadas.get());
+    }
+
+    @Test
+    void get_newVersion_isADifferentEntry() {
+        cache.get(new ResponseByteCache.Clave(1L, "por-fecha", "2025-01-05", ResponseByteCache.Formato.JSON, "\"v1\""), () -> "viejo");
+        ResponseByteCache.Cuerpo nuevo = cache.get(
+                new ResponseByteCache.Clave(1L, "por-fecha", "2025-01-05", ResponseByteCache.Formato.JSON, "\"v2\""), () -> "nuevo");
+
+        assertEquals("\"nuevo\"", new String(nuevo.bytes()));
+    }
+
+    @Test
+    void get_entryAboveLimit_isServedButNotStored() {
+        AtomicInteger llamadas = new AtomicInteger();
+        ResponseByteCache.Clave clave = new ResponseByteCache.Clave(1L, "consumos", "2025-01-05", ResponseByteCache.Formato.JSON, "\"v1\"");
+
+        cache.get(clave, () -> { llamadas.incrementAndGet(); return "x".repeat(10_000); });
+        cache.get(clave, () -> { llamadas.incrementAndGet(); return "x".repeat(10_000); });
+
+        assertEquals(2, llamadas.get());
+    }
+
+    @Test
+    void write_gzipAccepted_sendsCompressedBytes() throws Exception {
+        String texto = "a".repeat(500);
+        ResponseByteCache.Cuerpo cuerpo = cache.get(
+                new ResponseByteCache.Clave(1L, "por-fecha", "2025-01-05", ResponseByteCache.Formato.JSON, "\"v1\""), () -> texto);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/medicamentos/por-fecha");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        cache.write(cuerpo, "\"v1\"", new ServletWebRequest(request, response));
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("\"v1\"", response.getHeader("ETag"));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals("\"" + texto + "\"", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void aceptaGzip_respectsQZero() {
+        assertTrue(ResponseByteCache.aceptaGzip("gzip"));
+        assertTrue(ResponseByteCache.aceptaGzip("br;q=1.0, gzip;q=0.8"));
+        assertTrue(ResponseByteCache.aceptaGzip("*"));
+        assertFalse(ResponseByteCache.aceptaGzip("gzip;q=0"));
+        assertFalse(ResponseByteCache.aceptaGzip("identity"));
+        assertFalse(ResponseByteCache.aceptaGzip(null));
+    }
+
+    @Test
+    void negociar_prefersCborOnlyWhenAsked() {
+        assertEquals(ResponseByteCache.Formato.CBOR, ResponseByteCache.negociar("application/cbor"));
+        assertEquals(ResponseByteCache.Formato.CBOR, ResponseByteCache.negociar("application/cbor, application/json;q=0.5"));
+        assertEquals(ResponseByteCache.Formato.JSON, ResponseByteCache.negociar("application/json, application/cbor"));
+        assertEquals(ResponseByteCache.Formato.JSON, ResponseByteCache.negociar("*/*"));
+        assertEquals(ResponseByteCache.Formato.JSON, ResponseByteCache.negociar(null));
+        assertEquals(ResponseByteCache.Formato.JSON, ResponseByteCache.negociar("no es un media type"));
+    }
+
+    @Test
+    void cbor_sameScheduleInFewerBytes() throws Exception {
+        List<MedicamentosPorHoraDTO> grupos = new ArrayList<>();
+        for (int hora = 0; hora < 24; hora++) {
+            String hhmm = String.format("%02d:00", hora);
+            grupos.add(MedicamentosPorHoraDTO.builder().hora(hhmm).medicamentos(List.of(
+                    MedicamentoConHoraDTO.builder().id(1L).nombre("Amoxicilina").cantidadMg(500).horaInicio("00:00")
+                            .fechaInicio(LocalDate.parse("2025-01-01")).fechaFin(LocalDate.parse("2025-01-10"))
+                            .color("#FF5733").frecuencia(1).consumed(false).displayTime(hhmm).build())).build());
+        }
+        MedicamentosPorFechaDTO horario = MedicamentosPorFechaDTO.builder()
+                .fecha(LocalDate.parse("2025-01-05")).gruposPorHora(grupos).totalMedicamentos(24).build();
+
+        ResponseByteCache.Cuerpo json = cache.get(new ResponseByteCache.Clave(
+                1L, "por-fecha", "2025-01-05", ResponseByteCache.Formato.JSON, "\"v1\""), () -> horario);
+        ResponseByteCache.Cuerpo cbor = cache.get(new ResponseByteCache.Clave(
+                1L, "por-fecha", "2025-01-05", ResponseByteCache.Formato.CBOR, "\"v1-cbor\""), () -> horario);
+
+        assertTrue(cbor.bytes().length < json.bytes().length);
+        assertEquals(Jackson2ObjectMapperBuilder.json().build().readTree(json.bytes()),
+                new CBORMapper().readTree(cbor.bytes()));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cache.write(cbor, "\"v1-cbor\"", new ServletWebRequest(new MockHttpServletRequest(), response));
+        assertEquals("application/cbor", response.getContentType());
+    }
+}
@@ -4,7 +4,10 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import proyecto.orgmedi.repo.UsuarioRepository;
+import proyecto.orgmedi.security.AuthRateLimiter;
 import proyecto.orgmedi.security.JwtUtil;
+import proyecto.orgmedi.security.PasswordHashingService;
+import proyecto.orgmedi.security.TokenRevocationStore;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 @WebMvcTest(AuthController.class)
@@ -13,6 +16,12 @@ public class AuthControllerIntegrationTest {
     @MockBean
     private UsuarioRepository usuarioRepository;
     @MockBean
+    private TokenRevocationStore tokenRevocationStore;
+    @MockBean
+    private AuthRateLimiter authRateLimiter;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+    @MockBean
     private JwtUtil jwtUtil;
     @MockBean
     private PasswordEncoder passwordEncoder;
@@ -11,10 +11,13 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.beans.factory.annotation.Autowired;
 import proyecto.orgmedi.dto.auth.AuthRequest;
-import proyecto.orgmedi.dominio.Usuario;
+import proyecto.orgmedi.dto.auth.CredencialesUsuario;
 import proyecto.orgmedi.repo.UsuarioRepository;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import proyecto.orgmedi.security.AuthRateLimiter;
 import proyecto.orgmedi.security.JwtUtil;
+import proyecto.orgmedi.security.PasswordHashingService;
+import proyecto.orgmedi.security.TokenRevocationStore;
 
 import java.util.Optional;
 
@@ -30,6 +33,12 @@ public class AuthControllerRehashTest {
     @MockBean
     private UsuarioRepository usuarioRepository;
     @MockBean
+    private TokenRevocationStore tokenRevocationStore;
+    @MockBean
+    private AuthRateLimiter authRateLimiter;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
+    @MockBean
     private PasswordEncoder passwordEncoder;
     @Autowired
     private ObjectMapper objectMapper;
@@ -52,14 +61,14 @@ public class AuthControllerRehashTest {
         AuthRequest request = new AuthRequest();
         request.setUsuario("testuser");
         request.setContrasena("oldpass");
-        Usuario usuario = Usuario.builder().usuario("testuser").correo("test@mail.com").contrasena("oldpass").build();
-        when(usuarioRepository.findByUsuario("testuser")).thenReturn(Optional.of(usuario));
-        when(passwordEncoder.encode("oldpass")).thenReturn("hashedoldpass");
-        Usuario usuarioHasheado = Usuario.builder().correo("test@mail.com").contrasena("hashedoldpass").build();
-        when(usuarioRepository.save(any(Usuario.class))).thenReturn(usuarioHasheado);
+        CredencialesUsuario credenciales = new CredencialesUsuario(1L, "test@mail.com", "oldpass", null);
+        when(usuarioRepository.findCredencialesByUsuario("testuser")).thenReturn(Optional.of(credenciales));
+        when(passwordHashingService.encode("oldpass")).thenReturn("hashedoldpass");
+        when(usuarioRepository.updateContrasena(1L, "oldpass", "hashedoldpass")).thenReturn(1);
         mockMvc.perform(post("/api/auth/rehash")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isOk());
+        verify(usuarioRepository).updateContrasena(1L, "oldpass", "hashedoldpass");
     }
 }
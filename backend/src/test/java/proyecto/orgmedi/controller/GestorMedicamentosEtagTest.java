@@ -0,0 +1,130 @@
+package proyecto.orgmedi.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import proyecto.orgmedi.config.ResponseByteCache;
+import proyecto.orgmedi.dominio.GestorMedicamentos;
+import proyecto.orgmedi.dominio.Usuario;
+import proyecto.orgmedi.repo.GestorMedicamentosRepository;
+import proyecto.orgmedi.repo.MedicamentoRepository;
+import proyecto.orgmedi.repo.UsuarioRepository;
+import proyecto.orgmedi.security.AuthenticatedUser;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.security.TokenRevocationStore;
+import proyecto.orgmedi.service.ConsumoRegistroService;
+import proyecto.orgmedi.service.DataVersionService;
+import proyecto.orgmedi.service.GestorMedicamentosService;
+import proyecto.orgmedi.service.MedicamentoService;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/medicamentos cuelga del gestor del usuario: tras un PUT /api/gestores el GET
+ * condicional con el ETag anterior debe devolver 200, no 304.
+ * bump() se aplica tras el commit, así que cada petición va en su propia transacción
+ * y los datos se borran al terminar
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import({GestorMedicamentosService.class, DataVersionService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class GestorMedicamentosEtagTest {
+
+    @Autowired
+    private GestorMedicamentosService gestorMedicamentosService;
+    @Autowired
+    private DataVersionService dataVersionService;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private GestorMedicamentosRepository gestorMedicamentosRepository;
+    @Autowired
+    private MedicamentoRepository medicamentoRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @MockBean
+    private CurrentUserResolver currentUserResolver;
+    @MockBean
+    private TokenRevocationStore tokenRevocationStore;
+
+    private TransactionTemplate tx;
+    private MockMvc mockMvc;
+    private Long usuarioId;
+    private Long gestorId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            Usuario usuario = usuarioRepository.save(
+                    Usuario.builder().correo("etag@mail.com").usuario("etag").contrasena("secreta").build());
+            GestorMedicamentos gestor = new GestorMedicamentos();
+            gestor.setUsuario(usuario);
+            usuarioId = usuario.getId();
+            gestorId = gestorMedicamentosRepository.save(gestor).getId();
+        });
+        when(currentUserResolver.getCurrentUser()).thenReturn(new AuthenticatedUser(usuarioId, "etag@mail.com", gestorId));
+
+        ResponseByteCache responseByteCache = new ResponseByteCache(
+                Jackson2ObjectMapperBuilder.json().build(),
+                new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor().build()),
+                1 << 20, 1 << 16, 1024, Duration.ofMinutes(10));
+        MedicamentoController medicamentoController = new MedicamentoController(
+                mock(MedicamentoService.class), gestorMedicamentosService, currentUserResolver,
+                mock(ConsumoRegistroService.class), dataVersionService, responseByteCache);
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new GestorMedicamentosController(gestorMedicamentosService), medicamentoController).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tx.executeWithoutResult(status -> {
+            medicamentoRepository.deleteAll();
+            gestorMedicamentosRepository.deleteAll();
+            usuarioRepository.deleteAll();
+        });
+    }
+
+    @Test
+    void putGestor_invalidaElEtagDeSusMedicamentos() throws Exception {
+        String etag = mockMvc.perform(get("/api/medicamentos"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        mockMvc.perform(get("/api/medicamentos").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // Solo importa el commit (la respuesta serializa la entidad entera, sin sesión abierta)
+        mockMvc.perform(put("/api/gestores/{id}", gestorId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"usuario\": {\"id\": %d}, \"medicamentos\": []}".formatted(usuarioId)));
+
+        String nuevo = mockMvc.perform(get("/api/medicamentos").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, nuevo);
+    }
+}
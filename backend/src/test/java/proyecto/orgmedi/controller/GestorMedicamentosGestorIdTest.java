@@ -0,0 +1,106 @@
+package proyecto.orgmedi.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import proyecto.orgmedi.dominio.GestorMedicamentos;
+import proyecto.orgmedi.dominio.Usuario;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.security.TokenRevocationStore;
+import proyecto.orgmedi.service.DataVersionService;
+import proyecto.orgmedi.service.GestorMedicamentosService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * La lista GestorMedicamentos.medicamentos no escribe gestor_id (lo escribe Medicamento.gestorId,
+ * que no viene en el JSON): los medicamentos enviados en PUT/POST /api/gestores deben
+ * quedar con el gestor_id del gestor
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import({GestorMedicamentosService.class, DataVersionService.class})
+class GestorMedicamentosGestorIdTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private GestorMedicamentosService gestorMedicamentosService;
+    @MockBean
+    private CurrentUserResolver currentUserResolver;
+    @MockBean
+    private TokenRevocationStore tokenRevocationStore;
+
+    private MockMvc mockMvc;
+    private Long usuarioId;
+    private Long gestorId;
+    private Long usuarioSinGestorId;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new GestorMedicamentosController(gestorMedicamentosService)).build();
+
+        Usuario usuario = Usuario.builder().correo("gestor@mail.com").usuario("gestor").contrasena("secreta").build();
+        usuarioId = entityManager.persistAndGetId(usuario, Long.class);
+        GestorMedicamentos gestor = new GestorMedicamentos();
+        gestor.setUsuario(usuario);
+        gestorId = entityManager.persistAndGetId(gestor, Long.class);
+
+        usuarioSinGestorId = entityManager.persistAndGetId(
+                Usuario.builder().correo("nuevo@mail.com").usuario("nuevo").contrasena("secreta").build(), Long.class);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static String gestorJson(Long usuarioId, String nombreMedicamento) {
+        return """
+                {"usuario": {"id": %d},
+                 "medicamentos": [{"nombre": "%s", "cantidadMg": 500, "horaInicio": "08:00",
+                                   "fechaInicio": "2025-01-01", "fechaFin": "2025-01-10", "color": "rojo",
+                                   "frecuencia": 8, "usuario": {"id": %d}}]}
+                """.formatted(usuarioId, nombreMedicamento, usuarioId);
+    }
+
+    private Object gestorIdDe(String nombreMedicamento) {
+        entityManager.flush();
+        return entityManager.getEntityManager()
+                .createNativeQuery("select gestor_id from medicamentos where nombre = ?1")
+                .setParameter(1, nombreMedicamento)
+                .getSingleResult();
+    }
+
+    @Test
+    void put_medicamentoDelBody_quedaConElGestorId() throws Exception {
+        // Solo importa lo que queda en la BD (la respuesta serializa la entidad entera)
+        mockMvc.perform(put("/api/gestores/{id}", gestorId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(gestorJson(usuarioId, "Paracetamol")));
+
+        assertEquals(gestorId, ((Number) gestorIdDe("Paracetamol")).longValue());
+    }
+
+    @Test
+    void post_medicamentoDelBody_quedaConElIdDelGestorNuevo() throws Exception {
+        mockMvc.perform(post("/api/gestores")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(gestorJson(usuarioSinGestorId, "Ibuprofeno")));
+
+        Object gestorNuevo = entityManager.getEntityManager()
+                .createNativeQuery("select id from gestor_medicamentos where usuario_id = ?1")
+                .setParameter(1, usuarioSinGestorId)
+                .getSingleResult();
+        assertNotNull(gestorIdDe("Ibuprofeno"));
+        assertEquals(((Number) gestorNuevo).longValue(), ((Number) gestorIdDe("Ibuprofeno")).longValue());
+    }
+}
@@ -1,24 +1,62 @@
 package proyecto.orgmedi.controller;
 
+import proyecto.orgmedi.config.ResponseByteCache;
 import proyecto.orgmedi.dominio.Medicamento;
+import proyecto.orgmedi.dto.medicamento.MedicamentosPorFechaDTO;
+import proyecto.orgmedi.security.AuthenticatedUser;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.service.ConsumoRegistroService;
+import proyecto.orgmedi.service.DataVersionService;
+import proyecto.orgmedi.service.GestorMedicamentosService;
 import proyecto.orgmedi.service.MedicamentoService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
 
 @ExtendWith(MockitoExtension.class)
 class MedicamentoControllerTest {
     @Mock
     private MedicamentoService medicamentoService;
+    @Mock
+    private GestorMedicamentosService gestorMedicamentosService;
+    @Mock
+    private CurrentUserResolver currentUserResolver;
+    @Mock
+    private ConsumoRegistroService consumoRegistroService;
+    @Mock
+    private DataVersionService dataVersionService;
+    @Spy
+    private ResponseByteCache responseByteCache = new ResponseByteCache(
+        Jackson2ObjectMapperBuilder.json().build(),
+        new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.cbor().build()),
+        1 << 20, 1 << 16, 1024, Duration.ofMinutes(10));
     @InjectMocks
     private MedicamentoController medicamentoController;
 
+    @BeforeEach
+    void setUp() {
+        when(currentUserResolver.getCurrentUser()).thenReturn(new AuthenticatedUser(7L, "test@mail.com", 3L));
+    }
+
     @Test
     void getMedicamentoById_returnsMedicamento() {
         Medicamento m = Medicamento.builder()
@@ -31,9 +69,62 @@ class MedicamentoControllerTest {
             .color("blanco")
             .frecuencia(2)
             .build();
-        when(medicamentoService.getByIdOrThrow(1L)).thenReturn(m);
+        when(medicamentoService.findByIdAndGestorId(1L, 3L)).thenReturn(Optional.of(m));
         ResponseEntity<Medicamento> response = medicamentoController.getMedicamentoById(1L);
         assertThat(response.getStatusCode().value()).isEqualTo(200);
         assertThat(response.getBody()).isEqualTo(m);
+        verifyNoInteractions(gestorMedicamentosService);
+    }
+
+    @Test
+    void getMedicamentoById_otherUsersMedicamento_returns404() {
+        when(medicamentoService.findByIdAndGestorId(2L, 3L)).thenReturn(Optional.empty());
+        ResponseEntity<Medicamento> response = medicamentoController.getMedicamentoById(2L);
+        assertThat(response.getStatusCode().value()).isEqualTo(404);
+    }
+
+    @Test
+    void deleteMedicamento_usesSingleOwnershipScopedDelete() {
+        when(medicamentoService.deleteByIdAndGestorId(1L, 3L)).thenReturn(true);
+        when(medicamentoService.deleteByIdAndGestorId(2L, 3L)).thenReturn(false);
+
+        assertThat(medicamentoController.deleteMedicamento(1L).getStatusCode().value()).isEqualTo(204);
+        assertThat(medicamentoController.deleteMedicamento(2L).getStatusCode().value()).isEqualTo(404);
+        verifyNoInteractions(gestorMedicamentosService);
+        verify(dataVersionService).bump(7L);
+    }
+
+    @Test
+    void getAllMedicamentos_matchingEtag_returns304WithoutQuerying() {
+        when(dataVersionService.etag(7L)).thenReturn("\"v1\"");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/medicamentos");
+        request.addHeader("If-None-Match", "\"v1\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertThat(medicamentoController.getAllMedicamentos(new ServletWebRequest(request, response))).isNull();
+        assertThat(response.getStatus()).isEqualTo(304);
+        verifyNoInteractions(gestorMedicamentosService, medicamentoService);
+    }
+
+    @Test
+    void getMedicamentosPorFecha_staleEtag_writesCachedBytesWithNewEtag() throws Exception {
+        when(dataVersionService.etag(7L)).thenReturn("\"v2\"");
+        when(medicamentoService.getMedicamentosPorFechaDeGestor(3L, LocalDate.parse("2025-01-05")))
+            .thenReturn(MedicamentosPorFechaDTO.builder().fecha(LocalDate.parse("2025-01-05")).gruposPorHora(List.of()).totalMedicamentos(0).build());
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/medicamentos/por-fecha");
+            request.addHeader("If-None-Match", "\"v1\"");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            assertThat(medicamentoController.getMedicamentosPorFecha(
+                "2025-01-05", null, new ServletWebRequest(request, response))).isNull();
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(response.getHeader("ETag")).isEqualTo("\"v2\"");
+            assertThat(response.getContentAsString())
+                .isEqualTo("{\"fecha\":\"2025-01-05\",\"gruposPorHora\":[],\"totalMedicamentos\":0}");
+        }
+        // La segunda petición sale de la caché de bytes: el horario se calcula una sola vez
+        verify(medicamentoService, times(1)).getMedicamentosPorFechaDeGestor(3L, LocalDate.parse("2025-01-05"));
     }
 }
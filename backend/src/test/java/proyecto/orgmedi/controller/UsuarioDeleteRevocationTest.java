@@ -0,0 +1,82 @@
+package proyecto.orgmedi.controller;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import proyecto.orgmedi.dominio.Usuario;
+import proyecto.orgmedi.repo.UsuarioRepository;
+import proyecto.orgmedi.security.AuthRateLimiter;
+import proyecto.orgmedi.security.CurrentUserResolver;
+import proyecto.orgmedi.security.JwtRequestFilter;
+import proyecto.orgmedi.security.JwtUtil;
+import proyecto.orgmedi.security.SecurityConfig;
+import proyecto.orgmedi.security.TokenRevocationStore;
+import proyecto.orgmedi.service.DataVersionService;
+import proyecto.orgmedi.service.UsuarioService;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * El filtro confía en los claims uid/gid sin consultar la BD: al eliminar un usuario
+ * sus tokens ya emitidos deben dejar de valer (401)
+ */
+@WebMvcTest(controllers = UsuarioController.class, properties = "jwt.secret=" + UsuarioDeleteRevocationTest.SECRET)
+@Import({SecurityConfig.class, JwtRequestFilter.class, JwtUtil.class, TokenRevocationStore.class, UsuarioService.class,
+        DataVersionService.class})
+class UsuarioDeleteRevocationTest {
+    static final String SECRET = "b3JnbWVkaS1wcnVlYmFzLXJldm9jYWNpb24tand0LTAxMjM0NTY3ODk=";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private UsuarioRepository usuarioRepository;
+    @MockBean
+    private CurrentUserResolver currentUserResolver;
+    @MockBean
+    private AuthRateLimiter authRateLimiter;
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+
+    /**
+     * Token de acceso con uid emitido hace un minuto ("iat" tiene precisión de segundos:
+     * uno del mismo segundo que la revocación seguiría valiendo)
+     */
+    private static String tokenEmitidoHaceUnMinuto(String correo, Long usuarioId) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .subject(correo)
+                .claim(JwtUtil.CLAIM_USER_ID, usuarioId)
+                .issuedAt(new Date(now - 60_000))
+                .expiration(new Date(now + 600_000))
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)))
+                .compact();
+    }
+
+    @Test
+    void deleteUsuario_suTokenDejaDeValer() throws Exception {
+        Usuario usuario = Usuario.builder().id(7L).correo("borrar@mail.com").usuario("borrar").build();
+        when(usuarioRepository.findById(7L)).thenReturn(Optional.of(usuario));
+        String token = tokenEmitidoHaceUnMinuto("borrar@mail.com", 7L);
+
+        mockMvc.perform(get("/api/usuarios/7").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/usuarios/7").header("Authorization", "Bearer " + token))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/usuarios/7").header("Authorization", "Bearer " + token))
+                .andExpect(status().isUnauthorized());
+    }
+}
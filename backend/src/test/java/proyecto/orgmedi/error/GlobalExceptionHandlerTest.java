@@ -13,7 +13,9 @@ import proyecto.orgmedi.service.UsuarioService;
 import org.springframework.http.MediaType;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
+import proyecto.orgmedi.security.AuthRateLimiter;
 import proyecto.orgmedi.security.JwtUtil;
+import proyecto.orgmedi.security.TokenRevocationStore;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import static org.mockito.Mockito.when;
@@ -39,6 +41,10 @@ public class GlobalExceptionHandlerTest {
 
     @MockBean
     private UsuarioService usuarioService;
+    @MockBean
+    private TokenRevocationStore tokenRevocationStore;
+    @MockBean
+    private AuthRateLimiter authRateLimiter;
 
     @Test
     void notFoundIsMappedToJson() throws Exception {
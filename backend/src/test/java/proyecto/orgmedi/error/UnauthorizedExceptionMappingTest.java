@@ -8,7 +8,10 @@ import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import proyecto.orgmedi.controller.AuthController;
 import proyecto.orgmedi.repo.UsuarioRepository;
+import proyecto.orgmedi.security.AuthRateLimiter;
 import proyecto.orgmedi.security.JwtUtil;
+import proyecto.orgmedi.security.PasswordHashingService;
+import proyecto.orgmedi.security.TokenRevocationStore;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.web.servlet.MockMvc;
@@ -40,6 +43,12 @@ public class UnauthorizedExceptionMappingTest {
 
     @MockBean
     private UsuarioRepository usuarioRepository;
+    @MockBean
+    private TokenRevocationStore tokenRevocationStore;
+    @MockBean
+    private AuthRateLimiter authRateLimiter;
+    @MockBean
+    private PasswordHashingService passwordHashingService;
 
     @Test
     void unauthorizedMappedToJson() throws Exception {
@@ -0,0 +1,156 @@
+package proyecto.orgmedi.repo;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import proyecto.orgmedi.dominio.GestorMedicamentos;
+import proyecto.orgmedi.dominio.Medicamento;
+import proyecto.orgmedi.dominio.Usuario;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comprueba que cada caso de uso carga exactamente lo que necesita (número de sentencias SQL)
+ * y que las consultas con propietario no cargan la lista de medicamentos
+ * (la caché de segundo nivel de application.properties también está activa aquí;
+ * los aciertos entre transacciones se comprueban en SecondLevelCacheTest)
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class FetchPlanTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private GestorMedicamentosRepository gestorMedicamentosRepository;
+    @Autowired
+    private MedicamentoRepository medicamentoRepository;
+
+    private Statistics statistics;
+    private Long usuarioId;
+    private Long gestorId;
+    private Long medicamentoId;
+
+    @BeforeEach
+    void setUp() {
+        Usuario usuario = Usuario.builder().correo("plan@mail.com").usuario("plan").contrasena("secreta").build();
+        usuarioId = entityManager.persistAndGetId(usuario, Long.class);
+
+        GestorMedicamentos gestor = new GestorMedicamentos();
+        gestor.setUsuario(usuario);
+        gestorId = entityManager.persistAndGetId(gestor, Long.class);
+        medicamentoId = entityManager.persistAndGetId(
+                medicamento("Paracetamol", "2025-01-01", "2025-01-10", usuario, gestorId), Long.class);
+        entityManager.persist(medicamento("Ibuprofeno", "2025-02-01", "2025-02-10", usuario, gestorId));
+        entityManager.flush();
+
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void auth_projectionsUseOneStatementAndNoEntities() {
+        assertTrue(usuarioRepository.findCredencialesByUsuario("plan").isPresent());
+        assertEquals(gestorId, usuarioRepository.findAuthenticatedUserByCorreo("plan@mail.com").orElseThrow().getGestorId());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void findByCorreo_doesNotLoadGestor() {
+        Usuario usuario = usuarioRepository.findByCorreo("plan@mail.com").orElseThrow();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertFalse(Hibernate.isPropertyInitialized(usuario, "gestorMedicamentos"));
+    }
+
+    @Test
+    void list_loadsGestorAndMedicamentosInOneStatement() {
+        GestorMedicamentos gestor = gestorMedicamentosRepository.findWithMedicamentosById(gestorId).orElseThrow();
+
+        assertEquals(2, gestor.getMedicamentos().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void schedule_loadsOnlyMedicamentosValidForDate() {
+        List<Medicamento> vigentes = medicamentoRepository.findVigentesByGestorId(gestorId, LocalDate.parse("2025-01-05"));
+
+        assertEquals(List.of("Paracetamol"), vigentes.stream().map(Medicamento::getNombre).toList());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void ownership_checkedInOneStatementWithoutLoadingTheList() {
+        assertTrue(medicamentoRepository.findByIdAndGestorId(medicamentoId, gestorId).isPresent());
+        assertTrue(medicamentoRepository.findByIdAndGestorId(medicamentoId, gestorId + 1).isEmpty());
+        assertTrue(medicamentoRepository.findByIdAndUsuarioId(medicamentoId, usuarioId).isPresent());
+        assertFalse(medicamentoRepository.existsByIdAndUsuarioId(medicamentoId, usuarioId + 1));
+
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void ownership_deleteOnlyRemovesOwnRow() {
+        assertEquals(0, medicamentoRepository.deleteByIdAndGestorId(medicamentoId, gestorId + 1));
+        assertEquals(0, medicamentoRepository.deleteByIdAndUsuarioId(medicamentoId, usuarioId + 1));
+        assertEquals(1, medicamentoRepository.deleteByIdAndGestorId(medicamentoId, gestorId));
+        assertEquals(1, medicamentoRepository.count());
+    }
+
+    @Test
+    void create_isSingleInsert() {
+        Medicamento nuevo = medicamento("Omeprazol", "2025-03-01", "2025-03-10",
+                entityManager.getEntityManager().getReference(Usuario.class, usuarioId), gestorId);
+
+        assertFalse(medicamentoRepository.existsByGestorIdAndNombre(gestorId, "Omeprazol"));
+        medicamentoRepository.save(nuevo);
+        entityManager.flush();
+
+        assertEquals(2, statistics.getPrepareStatementCount()); // exists + INSERT
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertTrue(medicamentoRepository.existsByGestorIdAndNombre(gestorId, "Omeprazol"));
+    }
+
+    @Test
+    void update_isSingleRowUpdate() {
+        Medicamento medicamento = medicamentoRepository.findByIdAndGestorId(medicamentoId, gestorId).orElseThrow();
+        medicamento.setConsumed(true);
+        entityManager.flush();
+
+        assertEquals(2, statistics.getPrepareStatementCount()); // SELECT + UPDATE
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    private static Medicamento medicamento(String nombre, String inicio, String fin, Usuario usuario, Long gestorId) {
+        return Medicamento.builder()
+                .nombre(nombre)
+                .cantidadMg(500)
+                .horaInicio("08:00")
+                .fechaInicio(LocalDate.parse(inicio))
+                .fechaFin(LocalDate.parse(fin))
+                .color("Blanco")
+                .frecuencia(2)
+                .usuario(usuario)
+                .gestorId(gestorId)
+                .build();
+    }
+}
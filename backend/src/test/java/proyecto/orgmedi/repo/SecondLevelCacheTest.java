@@ -0,0 +1,98 @@
+package proyecto.orgmedi.repo;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import proyecto.orgmedi.config.SecondLevelCache;
+import proyecto.orgmedi.dominio.Medicamento;
+import proyecto.orgmedi.dominio.Usuario;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Caché de segundo nivel entre transacciones: cada búsqueda va en su propia transacción
+ * (dentro de la transacción de @DataJpaTest responde la caché de primer nivel y el
+ * INSERT sin confirmar deja la entrada bloqueada), así que los datos se confirman y se
+ * borran al terminar
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SecondLevelCacheTest {
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+    @Autowired
+    private MedicamentoRepository medicamentoRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private Statistics statistics;
+    private Long medicamentoId;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        medicamentoId = tx.execute(status -> {
+            Usuario usuario = usuarioRepository.save(
+                    Usuario.builder().correo("cache@mail.com").usuario("cache").contrasena("secreta").build());
+            return medicamentoRepository.save(Medicamento.builder()
+                    .nombre("Paracetamol")
+                    .cantidadMg(500)
+                    .horaInicio("08:00")
+                    .fechaInicio(LocalDate.parse("2025-01-01"))
+                    .fechaFin(LocalDate.parse("2025-01-10"))
+                    .color("Blanco")
+                    .frecuencia(2)
+                    .usuario(usuario)
+                    .build()).getId();
+        });
+
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        statistics = sessionFactory.getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tx.executeWithoutResult(status -> {
+            medicamentoRepository.deleteAll();
+            usuarioRepository.deleteAll();
+        });
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
+    private String buscarNombre() {
+        return tx.execute(status -> medicamentoRepository.findById(medicamentoId).orElseThrow().getNombre());
+    }
+
+    @Test
+    void servesRepeatedLookupsById() {
+        assertEquals("Paracetamol", buscarNombre()); // Fallo: SELECT y se guarda en la región
+        long sentencias = statistics.getPrepareStatementCount();
+
+        assertEquals("Paracetamol", buscarNombre());
+
+        assertEquals(sentencias, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getDomainDataRegionStatistics(SecondLevelCache.REGION_MEDICAMENTOS).getHitCount());
+        assertEquals(1, statistics.getDomainDataRegionStatistics(SecondLevelCache.REGION_MEDICAMENTOS).getMissCount());
+    }
+}
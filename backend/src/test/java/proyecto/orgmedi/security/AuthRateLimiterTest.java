@@ -0,0 +1,60 @@
+package proyecto.orgmedi.security;
+
+import org.junit.jupiter.api.Test;
+import proyecto.orgmedi.error.TooManyRequestsException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(0L);
+
+    private AuthRateLimiter limiter(int accountCapacity, int accountPerMinute) {
+        return new AuthRateLimiter(true, 100, 100, accountCapacity, accountPerMinute, 1000, now::get);
+    }
+
+    @Test
+    void checkAccount_allowsBurstThenThrottles() {
+        AuthRateLimiter limiter = limiter(3, 6);
+
+        for (int i = 0; i < 3; i++) {
+            limiter.checkAccount("juan");
+        }
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class, () -> limiter.checkAccount("juan"));
+        assertEquals(10, ex.getRetryAfterSeconds()); // 6/min → un intento cada 10s
+    }
+
+    @Test
+    void checkAccount_refillsOverTime() {
+        AuthRateLimiter limiter = limiter(1, 6);
+
+        limiter.checkAccount("juan");
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAccount("juan"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        assertDoesNotThrow(() -> limiter.checkAccount("juan"));
+    }
+
+    @Test
+    void checkAccount_keysAreIndependentAndCaseInsensitive() {
+        AuthRateLimiter limiter = limiter(1, 1);
+
+        limiter.checkAccount("Juan");
+        assertThrows(TooManyRequestsException.class, () -> limiter.checkAccount(" juan "));
+        assertDoesNotThrow(() -> limiter.checkAccount("maria"));
+        assertDoesNotThrow(() -> limiter.checkIp("10.0.0.1"));
+    }
+
+    @Test
+    void disabled_neverThrottles() {
+        AuthRateLimiter limiter = new AuthRateLimiter(false, 1, 1, 1, 1, 1000, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.checkAccount("juan");
+            limiter.checkIp("10.0.0.1");
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package proyecto.orgmedi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BCryptCostCalibratorTest {
+
+    @Test
+    void fixedCost_skipsCalibrationAndIsExposed() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BCryptCostCalibrator calibrator = new BCryptCostCalibrator(12, 250, 10, 14, registry);
+
+        assertEquals(12, calibrator.getCost());
+        assertEquals(12.0, registry.get("auth.bcrypt.cost").gauge().value());
+    }
+
+    @Test
+    void calibrate_staysWithinBounds() {
+        // Objetivo inalcanzable: se queda en el mínimo
+        assertEquals(4, BCryptCostCalibrator.calibrate(0, 4, 6));
+        // Objetivo muy holgado: llega al máximo
+        assertEquals(6, BCryptCostCalibrator.calibrate(60_000, 4, 6));
+    }
+}
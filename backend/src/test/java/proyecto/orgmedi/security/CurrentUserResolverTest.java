@@ -0,0 +1,100 @@
+package proyecto.orgmedi.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import proyecto.orgmedi.error.UnauthorizedException;
+import proyecto.orgmedi.repo.UsuarioRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CurrentUserResolverTest {
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    private CurrentUserResolver resolver;
+
+    @BeforeEach
+    void setup() {
+        resolver = new CurrentUserResolver(usuarioRepository, 100, 600);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("test@mail.com", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void getCurrentUser_cachesAcrossRequests() {
+        when(usuarioRepository.findAuthenticatedUserByCorreo("test@mail.com"))
+                .thenReturn(Optional.of(new AuthenticatedUser(1L, "test@mail.com", 7L)));
+
+        AuthenticatedUser first = resolver.getCurrentUser();
+        AuthenticatedUser second = resolver.getCurrentUser();
+
+        assertEquals(1L, first.getId());
+        assertEquals(7L, first.getGestorId());
+        assertSame(first, second);
+        verify(usuarioRepository, times(1)).findAuthenticatedUserByCorreo("test@mail.com");
+    }
+
+    @Test
+    void getCurrentUser_memoizesWithinRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        when(usuarioRepository.findAuthenticatedUserByCorreo("test@mail.com"))
+                .thenReturn(Optional.of(new AuthenticatedUser(1L, "test@mail.com", null)));
+
+        AuthenticatedUser first = resolver.getCurrentUser();
+        resolver.invalidateAll();
+        AuthenticatedUser second = resolver.getCurrentUser();
+
+        assertSame(first, second);
+        verify(usuarioRepository, times(1)).findAuthenticatedUserByCorreo("test@mail.com");
+    }
+
+    @Test
+    void invalidateById_forcesReload() {
+        when(usuarioRepository.findAuthenticatedUserByCorreo("test@mail.com"))
+                .thenReturn(Optional.of(new AuthenticatedUser(1L, "test@mail.com", null)))
+                .thenReturn(Optional.of(new AuthenticatedUser(1L, "test@mail.com", 9L)));
+
+        assertNull(resolver.getCurrentUser().getGestorId());
+        resolver.invalidateById(1L);
+        assertEquals(9L, resolver.getCurrentUser().getGestorId());
+    }
+
+    @Test
+    void getCurrentUser_throwsWhenUserMissing() {
+        when(usuarioRepository.findAuthenticatedUserByCorreo("test@mail.com")).thenReturn(Optional.empty());
+
+        assertThrows(UnauthorizedException.class, () -> resolver.getCurrentUser());
+    }
+
+    @Test
+    void getCurrentUser_usesTokenPrincipalWithoutRepository() {
+        AuthenticatedUser principal = new AuthenticatedUser(2L, "test@mail.com", 3L);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+
+        assertSame(principal, resolver.getCurrentUser());
+        assertEquals("test@mail.com", SecurityUtil.getCurrentUserEmail());
+        verifyNoInteractions(usuarioRepository);
+    }
+}
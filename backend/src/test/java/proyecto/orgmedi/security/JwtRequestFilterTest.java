@@ -9,9 +9,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import java.io.IOException;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -24,11 +27,14 @@ public class JwtRequestFilterTest {
     @Mock
     private JwtUtil jwtUtil;
 
+    @Mock
+    private TokenRevocationStore tokenRevocationStore;
+
     private JwtRequestFilter filter;
 
     @BeforeEach
     void setup() {
-        filter = new JwtRequestFilter(jwtUtil);
+        filter = new JwtRequestFilter(jwtUtil, tokenRevocationStore);
         SecurityContextHolder.clearContext();
     }
 
@@ -47,8 +53,8 @@ public class JwtRequestFilterTest {
         String token = "token123";
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtil.validateToken(token)).thenReturn(true);
-        when(jwtUtil.extractCorreo(token)).thenReturn("user@example.com");
+        Claims claims = Jwts.claims().subject("user@example.com").build();
+        when(jwtUtil.verify(token)).thenReturn(Optional.of(claims));
 
         filter.doFilterInternal(request, response, chain);
 
@@ -56,6 +62,80 @@ public class JwtRequestFilterTest {
         assertNotNull(auth, "Authentication should be set in SecurityContext");
         assertEquals("user@example.com", auth.getPrincipal());
 
+        verify(jwtUtil, times(1)).verify(token);
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void doFilter_installsAuthenticatedUser_whenTokenHasIds() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = mock(FilterChain.class);
+
+        request.addHeader("Authorization", "Bearer ids");
+        Claims claims = Jwts.claims().subject("user@example.com")
+                .add(JwtUtil.CLAIM_USER_ID, 3).add(JwtUtil.CLAIM_GESTOR_ID, 4).build();
+        when(jwtUtil.verify("ids")).thenReturn(Optional.of(claims));
+
+        filter.doFilterInternal(request, response, chain);
+
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        AuthenticatedUser user = assertInstanceOf(AuthenticatedUser.class, auth.getPrincipal());
+        assertEquals(3L, user.getId());
+        assertEquals(4L, user.getGestorId());
+        assertEquals("user@example.com", auth.getName());
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void doFilter_noAuthentication_whenTokenInvalid() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = mock(FilterChain.class);
+
+        request.addHeader("Authorization", "Bearer bad");
+        when(jwtUtil.verify("bad")).thenReturn(Optional.empty());
+
+        filter.doFilterInternal(request, response, chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void doFilter_noAuthentication_whenTokenRevoked() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = mock(FilterChain.class);
+
+        request.addHeader("Authorization", "Bearer revoked");
+        Claims claims = Jwts.claims().subject("user@example.com").build();
+        when(jwtUtil.verify("revoked")).thenReturn(Optional.of(claims));
+        when(tokenRevocationStore.isRevoked(claims)).thenReturn(true);
+
+        filter.doFilterInternal(request, response, chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(chain).doFilter(request, response);
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void doFilter_noAuthentication_whenRefreshTokenUsedAsAccessToken() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = mock(FilterChain.class);
+
+        request.addHeader("Authorization", "Bearer refresh");
+        Claims claims = Jwts.claims().subject("user@example.com")
+                .add(JwtUtil.CLAIM_TYPE, JwtUtil.TYPE_REFRESH).build();
+        when(jwtUtil.verify("refresh")).thenReturn(Optional.of(claims));
+
+        filter.doFilterInternal(request, response, chain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(chain).doFilter(request, response);
     }
 
@@ -1,16 +1,14 @@
 package proyecto.orgmedi.security;
 
 import org.junit.jupiter.api.Test;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
 public class JwtUtilTest {
+    private static final String SECRET = "clave_secreta_demo_clave_mucho_mas_larga_0123456789";
 
-    @Autowired
-    private JwtUtil jwtUtil;
+    // Access token de 15 min, refresh de 14 días (valores por defecto de application.properties)
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 900_000L, 1_209_600_000L, 100);
 
     @Test
     void generateAndValidateToken() {
@@ -22,5 +20,61 @@ public class JwtUtilTest {
         String extracted = jwtUtil.extractCorreo(token);
         assertEquals(correo, extracted);
     }
-}
 
+    @Test
+    void verify_returnsSameClaimsForRepeatedToken() {
+        String token = jwtUtil.generateToken("cache@ejemplo.com");
+
+        var first = jwtUtil.verify(token);
+        var second = jwtUtil.verify(token);
+
+        assertTrue(first.isPresent());
+        assertEquals("cache@ejemplo.com", first.get().getSubject());
+        // La segunda verificación sale de la caché: mismos Claims
+        assertSame(first.get(), second.get());
+    }
+
+    @Test
+    void verify_rejectsTamperedAndExpiredTokens() {
+        String token = jwtUtil.generateToken("usuario@ejemplo.com");
+        int sig = token.lastIndexOf('.') + 1;
+        char replacement = token.charAt(sig) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, sig) + replacement + token.substring(sig + 1);
+        assertTrue(jwtUtil.verify(tampered).isEmpty());
+        assertFalse(jwtUtil.validateToken(tampered));
+
+        JwtUtil shortLived = new JwtUtil(SECRET, -1000L, 60000L, 100);
+        String expired = shortLived.generateToken("usuario@ejemplo.com");
+        assertTrue(shortLived.verify(expired).isEmpty());
+        assertTrue(shortLived.verify(null).isEmpty());
+    }
+
+    @Test
+    void generateToken_withIds_isSelfContained() {
+        String token = jwtUtil.generateToken("ids@ejemplo.com", 5L, 8L);
+
+        AuthenticatedUser user = JwtUtil.toAuthenticatedUser(jwtUtil.verify(token).orElseThrow());
+        assertNotNull(user);
+        assertEquals(5L, user.getId());
+        assertEquals(8L, user.getGestorId());
+        assertEquals("ids@ejemplo.com", user.getName());
+
+        // Tokens antiguos (solo correo) siguen siendo válidos, pero sin identidad completa
+        String legacy = jwtUtil.generateToken("ids@ejemplo.com");
+        assertNull(JwtUtil.toAuthenticatedUser(jwtUtil.verify(legacy).orElseThrow()));
+    }
+
+    @Test
+    void generateRefreshToken_isTypedAndUnique() {
+        String first = jwtUtil.generateRefreshToken("refresh@ejemplo.com", 5L, 8L);
+        String second = jwtUtil.generateRefreshToken("refresh@ejemplo.com", 5L, 8L);
+
+        var claims = jwtUtil.verify(first).orElseThrow();
+        assertTrue(JwtUtil.isRefreshToken(claims));
+        assertEquals(5L, JwtUtil.getUsuarioId(claims));
+        assertNotNull(claims.getId());
+        assertNotEquals(claims.getId(), jwtUtil.verify(second).orElseThrow().getId());
+
+        assertFalse(JwtUtil.isRefreshToken(jwtUtil.verify(jwtUtil.generateToken("refresh@ejemplo.com")).orElseThrow()));
+    }
+}
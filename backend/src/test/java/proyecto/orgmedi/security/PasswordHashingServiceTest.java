@@ -0,0 +1,77 @@
+package proyecto.orgmedi.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import proyecto.orgmedi.error.ServiceUnavailableException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class PasswordHashingServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void matchesAndEncode_recordMetrics() {
+        service = new PasswordHashingService(new BCryptPasswordEncoder(4), meterRegistry, 1, 4, 5000);
+
+        String hash = service.encode("secreta");
+        assertTrue(service.matches("secreta", hash));
+        assertFalse(service.matches("otra", hash));
+
+        assertEquals(3, meterRegistry.get("auth.hash.queue.wait").timer().count());
+        assertEquals(2, meterRegistry.get("auth.hash.duration").tag("op", "matches").timer().count());
+        assertEquals(1, meterRegistry.get("auth.hash.duration").tag("op", "encode").timer().count());
+    }
+
+    @Test
+    void fullQueue_throwsServiceUnavailable() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder slowEncoder = mock(PasswordEncoder.class);
+        when(slowEncoder.matches(anyString(), anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return true;
+        });
+        service = new PasswordHashingService(slowEncoder, meterRegistry, 1, 1, 5000);
+
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            callers.submit(() -> service.matches("a", "hash")); // ocupa el único hilo
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            callers.submit(() -> service.matches("b", "hash")); // ocupa la cola
+            waitForQueued(1);
+
+            assertThrows(ServiceUnavailableException.class, () -> service.matches("c", "hash"));
+        } finally {
+            release.countDown();
+            callers.shutdown();
+            callers.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private void waitForQueued(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("auth.hash.queue.size").gauge().value() < expected
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
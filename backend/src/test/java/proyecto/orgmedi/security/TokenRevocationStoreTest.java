@@ -0,0 +1,108 @@
+package proyecto.orgmedi.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenRevocationStoreTest {
+
+    private static Claims claims(Long uid, String correo, String jti, long issuedAtMs) {
+        return Jwts.claims()
+                .subject(correo)
+                .add(JwtUtil.CLAIM_USER_ID, uid)
+                .id(jti)
+                .issuedAt(new Date(issuedAtMs))
+                .expiration(new Date(issuedAtMs + 60_000L))
+                .build();
+    }
+
+    /** Refresh token del usuario 1 con ese jti, emitido ahora */
+    private static Claims refresh(String jti) {
+        return claims(1L, "a@mail.com", jti, System.currentTimeMillis());
+    }
+
+    @Test
+    void revokeAllForUser_revokesOnlyTokensIssuedBefore() {
+        TokenRevocationStore store = new TokenRevocationStore(60_000L, 100, 0.01, 0, 1000);
+        long before = System.currentTimeMillis() - 5_000L;
+
+        assertFalse(store.isRevoked(claims(1L, "a@mail.com", null, before)));
+        store.revokeAllForUser(1L, "a@mail.com");
+
+        assertTrue(store.isRevoked(claims(1L, "a@mail.com", null, before)));
+        // Token antiguo sin uid: se revoca por correo
+        assertTrue(store.isRevoked(claims(null, "a@mail.com", null, before)));
+        // Tokens emitidos después siguen siendo válidos
+        assertFalse(store.isRevoked(claims(1L, "a@mail.com", null, System.currentTimeMillis() + 2_000L)));
+        // Otros usuarios no se ven afectados
+        assertFalse(store.isRevoked(claims(2L, "b@mail.com", null, before)));
+    }
+
+    @Test
+    void consume_isSingleUse() {
+        TokenRevocationStore store = new TokenRevocationStore(60_000L, 100, 0.01, 0, 1000);
+        long now = System.currentTimeMillis();
+
+        assertFalse(store.isRevoked(claims(1L, "a@mail.com", "jti-1", now)));
+        assertTrue(store.consume(refresh("jti-1")));
+        assertFalse(store.consume(refresh("jti-1")));
+        assertTrue(store.isRevoked(claims(1L, "a@mail.com", "jti-1", now)));
+        assertFalse(store.isRevokedForUser(claims(1L, "a@mail.com", "jti-1", now)));
+    }
+
+    @Test
+    void bloomRebuild_keepsEveryRevokedKey() {
+        // Capacidad mínima para forzar varias reconstrucciones del Bloom
+        TokenRevocationStore store = new TokenRevocationStore(60_000L, 4, 0.01, 1000, 1000);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(store.consume(refresh("jti-" + i)));
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            assertTrue(store.isRevoked(claims(1L, "a@mail.com", "jti-" + i, now)), "jti-" + i);
+        }
+        assertFalse(store.isRevoked(claims(1L, "a@mail.com", "otro", now)));
+    }
+
+    @Test
+    void overflow_tokensIssuedBeforeEvictedRevocation_areRevoked() {
+        TokenRevocationStore store = new TokenRevocationStore(60_000L, 100, 0.01, 2, 1000);
+        long before = System.currentTimeMillis() - 5_000L;
+        for (long uid = 10; uid < 20; uid++) {
+            store.revokeAllForUser(uid, null);
+        }
+
+        // Alguna revocación ya no cabe: lo emitido antes de ella se trata como revocado
+        assertTrue(store.isRevoked(claims(2L, "b@mail.com", null, before)));
+        // Los tokens emitidos después siguen siendo válidos
+        assertFalse(store.isRevoked(claims(2L, "b@mail.com", null, System.currentTimeMillis() + 2_000L)));
+    }
+
+    @Test
+    void consumedSetFull_doesNotRevokeOtherTokens() {
+        TokenRevocationStore store = new TokenRevocationStore(60_000L, 100, 0.01, 100, 2);
+        long issuedAt = System.currentTimeMillis() - 5_000L;
+        for (int i = 0; i < 50; i++) {
+            assertTrue(store.consume(refresh("jti-" + i)));
+        }
+
+        // Otro usuario con un token emitido antes de llenarse el conjunto sigue entrando
+        assertFalse(store.isRevoked(claims(2L, "b@mail.com", null, issuedAt)));
+        assertFalse(store.isRevokedForUser(claims(2L, "b@mail.com", "otro", issuedAt)));
+        assertTrue(store.consume(claims(2L, "b@mail.com", "otro", issuedAt)));
+    }
+
+    @Test
+    void consume_entryLastsUntilTokenExpiry() {
+        TokenRevocationStore store = new TokenRevocationStore(60_000L, 100, 0.01, 0, 1000);
+        // Refresh token que caducó hace un minuto: la marca no hace falta y no se guarda
+        Claims caducado = claims(1L, "a@mail.com", "viejo", System.currentTimeMillis() - 120_000L);
+
+        assertTrue(store.consume(caducado));
+        assertTrue(store.consume(caducado));
+    }
+}
@@ -0,0 +1,63 @@
+package proyecto.orgmedi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataVersionServiceTest {
+
+    private final DataVersionService dataVersionService = new DataVersionService(1000);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void etag_isStableUntilBump() {
+        String etag = dataVersionService.etag(1L);
+
+        assertEquals(etag, dataVersionService.etag(1L));
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+
+        dataVersionService.bump(1L);
+        assertNotEquals(etag, dataVersionService.etag(1L));
+    }
+
+    @Test
+    void bump_isPerUserAndMonotonic() {
+        long otroUsuario = dataVersionService.currentVersion(2L);
+        long antes = dataVersionService.currentVersion(1L);
+
+        dataVersionService.bump(1L);
+
+        assertTrue(dataVersionService.currentVersion(1L) > antes);
+        assertEquals(otroUsuario, dataVersionService.currentVersion(2L));
+    }
+
+    @Test
+    void bumpAll_givesEveryUserANewVersion() {
+        long antes = dataVersionService.currentVersion(1L);
+
+        dataVersionService.bumpAll();
+
+        assertTrue(dataVersionService.currentVersion(1L) > antes);
+    }
+
+    @Test
+    void bump_insideTransaction_appliesAfterCommitOnly() {
+        long antes = dataVersionService.currentVersion(1L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        dataVersionService.bump(1L);
+        assertEquals(antes, dataVersionService.currentVersion(1L));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertTrue(dataVersionService.currentVersion(1L) > antes);
+    }
+}
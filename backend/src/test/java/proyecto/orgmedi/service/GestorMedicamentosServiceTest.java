@@ -6,6 +6,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import proyecto.orgmedi.dominio.GestorMedicamentos;
+import proyecto.orgmedi.dominio.Usuario;
 import proyecto.orgmedi.error.NotFoundException;
 
 import java.util.Optional;
@@ -19,6 +20,15 @@ public class GestorMedicamentosServiceTest {
     @Mock
     private proyecto.orgmedi.repo.GestorMedicamentosRepository gestorRepo;
 
+    @Mock
+    private proyecto.orgmedi.security.CurrentUserResolver currentUserResolver;
+
+    @Mock
+    private proyecto.orgmedi.security.TokenRevocationStore tokenRevocationStore;
+
+    @Mock
+    private DataVersionService dataVersionService;
+
     @InjectMocks
     private GestorMedicamentosService gestorService;
 
@@ -32,10 +42,15 @@ public class GestorMedicamentosServiceTest {
     void deleteByIdOrThrow_success() {
         GestorMedicamentos g = new GestorMedicamentos();
         g.setId(5L);
+        Usuario u = new Usuario();
+        u.setId(8L);
+        g.setUsuario(u);
         when(gestorRepo.findById(5L)).thenReturn(Optional.of(g));
 
         assertDoesNotThrow(() -> gestorService.deleteByIdOrThrow(5L));
         verify(gestorRepo).deleteById(5L);
+        verify(tokenRevocationStore).revokeAllForUser(8L, null); // Su token lleva gid=5
+        verify(dataVersionService).bump(8L);
     }
 }
 
@@ -6,11 +6,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import proyecto.orgmedi.dominio.Medicamento;
+import proyecto.orgmedi.dto.medicamento.HorarioCompactoDTO;
 import proyecto.orgmedi.dto.medicamento.MedicamentoDTO;
+import proyecto.orgmedi.dto.medicamento.MedicamentosPorFechaDTO;
 import proyecto.orgmedi.error.BadRequestException;
+import proyecto.orgmedi.error.ConflictException;
 import proyecto.orgmedi.error.NotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -22,6 +27,9 @@ public class MedicamentoServiceTest {
     @Mock
     private proyecto.orgmedi.repo.MedicamentoRepository medicamentoRepository;
 
+    @Mock
+    private proyecto.orgmedi.config.SecondLevelCache secondLevelCache;
+
     @InjectMocks
     private MedicamentoService medicamentoService;
 
@@ -80,4 +88,82 @@ public class MedicamentoServiceTest {
         assertDoesNotThrow(() -> medicamentoService.deleteByIdOrThrow(1L));
         verify(medicamentoRepository).deleteById(1L);
     }
+
+    @Test
+    void createMedicamentoDeGestor_duplicateNameInGestor_conflictWithoutInsert() {
+        Medicamento m = Medicamento.builder().id(99L).nombre("Paracetamol").gestorId(3L).build();
+        when(medicamentoRepository.existsByGestorIdAndNombre(3L, "Paracetamol")).thenReturn(true);
+
+        assertThrows(ConflictException.class, () -> medicamentoService.createMedicamentoDeGestor(m));
+        verify(medicamentoRepository, never()).save(any());
+    }
+
+    @Test
+    void createMedicamentoDeGestor_insertsWithoutId() {
+        Medicamento m = Medicamento.builder().id(99L).nombre("Paracetamol").gestorId(3L).build();
+        when(medicamentoRepository.existsByGestorIdAndNombre(3L, "Paracetamol")).thenReturn(false);
+        when(medicamentoRepository.save(m)).thenReturn(m);
+
+        medicamentoService.createMedicamentoDeGestor(m);
+        assertNull(m.getId());
+        verify(secondLevelCache).evictMedicamentosDeGestor(3L);
+    }
+
+    @Test
+    void aplicarMergePatch_onlyChangesPresentFields() throws Exception {
+        Medicamento m = Medicamento.builder()
+                .nombre("Paracetamol").cantidadMg(500).horaInicio("08:00")
+                .fechaInicio(LocalDate.parse("2025-01-01")).fechaFin(LocalDate.parse("2025-01-10"))
+                .color("Blanco").frecuencia(8).build();
+
+        medicamentoService.aplicarMergePatch(m, new ObjectMapper().readTree(
+                "{\"frecuencia\": 12, \"fechaFin\": \"2025-01-20\", \"consumed\": true, \"id\": 5}"));
+
+        assertEquals(12, m.getFrecuencia());
+        assertEquals(LocalDate.parse("2025-01-20"), m.getFechaFin());
+        assertTrue(m.getConsumed());
+        assertEquals("Paracetamol", m.getNombre());
+        assertEquals(500, m.getCantidadMg());
+        assertNull(m.getId());
+    }
+
+    @Test
+    void aplicarMergePatch_nullOrInvalidValue_badRequest() throws Exception {
+        Medicamento m = Medicamento.builder().nombre("Paracetamol").frecuencia(8).build();
+        ObjectMapper mapper = new ObjectMapper();
+
+        assertThrows(BadRequestException.class,
+                () -> medicamentoService.aplicarMergePatch(m, mapper.readTree("{\"nombre\": null}")));
+        assertThrows(BadRequestException.class,
+                () -> medicamentoService.aplicarMergePatch(m, mapper.readTree("{\"frecuencia\": \"cada 8h\"}")));
+        assertThrows(BadRequestException.class,
+                () -> medicamentoService.aplicarMergePatch(m, mapper.readTree("[1, 2]")));
+        assertEquals("Paracetamol", m.getNombre());
+        assertEquals(8, m.getFrecuencia());
+    }
+
+    @Test
+    void getHorarioCompacto_listsEachMedicamentoOnceWithSameTomas() {
+        LocalDate fecha = LocalDate.parse("2025-01-05");
+        Medicamento cadaHora = Medicamento.builder().id(1L).nombre("A").horaInicio("00:30")
+                .fechaInicio(LocalDate.parse("2025-01-01")).fechaFin(LocalDate.parse("2025-01-10")).frecuencia(1).build();
+        Medicamento unaVez = Medicamento.builder().id(2L).nombre("B").horaInicio("08:30")
+                .fechaInicio(LocalDate.parse("2025-01-01")).fechaFin(LocalDate.parse("2025-01-10")).frecuencia(24).build();
+        Medicamento terminado = Medicamento.builder().id(3L).nombre("C").horaInicio("08:00")
+                .fechaInicio(LocalDate.parse("2024-12-01")).fechaFin(LocalDate.parse("2024-12-31")).frecuencia(8).build();
+        List<Medicamento> medicamentos = List.of(cadaHora, unaVez, terminado);
+
+        HorarioCompactoDTO compacto = medicamentoService.getHorarioCompacto(medicamentos, fecha);
+        MedicamentosPorFechaDTO completo = medicamentoService.getMedicamentosPorFecha(medicamentos, fecha);
+
+        assertEquals(List.of(1L, 2L), compacto.getMedicamentos().stream().map(MedicamentoDTO::getId).toList());
+        assertEquals(completo.getTotalMedicamentos(), compacto.getTotalMedicamentos());
+        assertEquals(24, compacto.getTomas().size());
+        assertEquals(30, compacto.getTomas().get(0).getMinuto());
+        assertArrayEquals(new int[]{0, 1}, compacto.getTomas().get(8).getMedicamentos());
+        assertEquals(510, compacto.getTomas().get(8).getMinuto());
+        assertEquals(completo.getGruposPorHora().stream().map(g -> g.getHora()).toList(),
+                compacto.getTomas().stream()
+                        .map(t -> String.format("%02d:%02d", t.getMinuto() / 60, t.getMinuto() % 60)).toList());
+    }
 }
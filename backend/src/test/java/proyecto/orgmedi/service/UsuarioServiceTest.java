@@ -20,6 +20,15 @@ public class UsuarioServiceTest {
     @Mock
     private proyecto.orgmedi.repo.UsuarioRepository usuarioRepository;
 
+    @Mock
+    private proyecto.orgmedi.security.CurrentUserResolver currentUserResolver;
+
+    @Mock
+    private proyecto.orgmedi.security.TokenRevocationStore tokenRevocationStore;
+
+    @Mock
+    private DataVersionService dataVersionService;
+
     @InjectMocks
     private UsuarioService usuarioService;
 
@@ -70,9 +79,46 @@ public class UsuarioServiceTest {
     void deleteByIdOrThrow_success() {
         Usuario u = new Usuario();
         u.setId(3L);
+        u.setCorreo("borrado@example.com");
         when(usuarioRepository.findById(3L)).thenReturn(Optional.of(u));
 
         assertDoesNotThrow(() -> usuarioService.deleteByIdOrThrow(3L));
         verify(usuarioRepository).deleteById(3L);
+        verify(currentUserResolver).invalidateById(3L);
+        verify(tokenRevocationStore).revokeAllForUser(3L, "borrado@example.com");
+        verify(dataVersionService).bump(3L);
+    }
+
+    @Test
+    void updateUsuario_cambioDeCorreo_revocaTokens() {
+        Usuario u = Usuario.builder().id(4L).correo("viejo@example.com").usuario("ana").contrasena("hash").build();
+        when(usuarioRepository.findById(4L)).thenReturn(Optional.of(u));
+        when(usuarioRepository.save(u)).thenReturn(u);
+
+        usuarioService.updateUsuario(4L, Usuario.builder().correo("nuevo@example.com").build());
+
+        verify(tokenRevocationStore).revokeAllForUser(4L, "viejo@example.com");
+    }
+
+    @Test
+    void updateUsuario_cambioDeContrasena_revocaTokens() {
+        Usuario u = Usuario.builder().id(4L).correo("ana@example.com").usuario("ana").contrasena("hash").build();
+        when(usuarioRepository.findById(4L)).thenReturn(Optional.of(u));
+        when(usuarioRepository.save(u)).thenReturn(u);
+
+        usuarioService.updateUsuario(4L, Usuario.builder().contrasena("otroHash").build());
+
+        verify(tokenRevocationStore).revokeAllForUser(4L, "ana@example.com");
+    }
+
+    @Test
+    void updateUsuario_soloNombre_noRevocaTokens() {
+        Usuario u = Usuario.builder().id(4L).correo("ana@example.com").usuario("ana").contrasena("hash").build();
+        when(usuarioRepository.findById(4L)).thenReturn(Optional.of(u));
+        when(usuarioRepository.save(u)).thenReturn(u);
+
+        usuarioService.updateUsuario(4L, Usuario.builder().usuario("ana2").correo("ana@example.com").build());
+
+        verifyNoInteractions(tokenRevocationStore);
     }
 }
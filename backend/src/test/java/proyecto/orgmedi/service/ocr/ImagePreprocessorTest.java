@@ -0,0 +1,112 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagePreprocessorTest {
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /** Líneas horizontales negras sobre blanco, giradas grados en sentido horario */
+    private static BufferedImage lineas(int width, int height, double grados) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+        g.rotate(Math.toRadians(grados), width / 2.0, height / 2.0);
+        g.setColor(Color.BLACK);
+        for (int y = 40; y < height - 40; y += 24) {
+            g.fillRect(40, y, width - 80, 4);
+        }
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    void preprocess_reduceElLadoLargoYDevuelveSoloBlancoYNegro() throws IOException {
+        BufferedImage foto = new BufferedImage(4000, 1000, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = foto.createGraphics();
+        g.setColor(new Color(200, 180, 160));
+        g.fillRect(0, 0, 4000, 1000);
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(400, 400, 3000, 40);
+        g.dispose();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ImagePreprocessor preprocessor = new ImagePreprocessor(true, 2000, false, 5, registry);
+
+        BufferedImage resultado = preprocessor.preprocess(png(foto));
+
+        assertEquals(2000, resultado.getWidth());
+        assertEquals(500, resultado.getHeight());
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, resultado.getType());
+        for (byte pixel : ((DataBufferByte) resultado.getRaster().getDataBuffer()).getData()) {
+            assertTrue(pixel == 0 || (pixel & 0xFF) == 255);
+        }
+        assertEquals(0, resultado.getRaster().getSample(1000, 210, 0));
+        assertEquals(255, resultado.getRaster().getSample(1000, 100, 0));
+        assertEquals(1, registry.get("ocr.preprocess.duration").tag("stage", "binarize").timer().count());
+        assertEquals(0, registry.get("ocr.preprocess.duration").tag("stage", "deskew").timer().count());
+    }
+
+    @Test
+    void binarize_usaUmbralLocal_conFondoDegradado() {
+        // Fondo que pasa de 250 a 90: un umbral global se comería la mitad oscura
+        BufferedImage gray = new BufferedImage(400, 100, BufferedImage.TYPE_BYTE_GRAY);
+        for (int x = 0; x < 400; x++) {
+            int fondo = 250 - x * 160 / 400;
+            for (int y = 0; y < 100; y++) {
+                boolean texto = y >= 45 && y < 55 && x % 40 < 10;
+                gray.getRaster().setSample(x, y, 0, texto ? fondo / 2 : fondo);
+            }
+        }
+
+        BufferedImage binary = ImagePreprocessor.binarize(gray);
+
+        assertEquals(255, binary.getRaster().getSample(375, 20, 0));
+        assertEquals(0, binary.getRaster().getSample(365, 50, 0));
+        assertEquals(255, binary.getRaster().getSample(25, 20, 0));
+        assertEquals(0, binary.getRaster().getSample(5, 50, 0));
+    }
+
+    @Test
+    void deskew_detectaYCorrigeLaInclinacion() {
+        BufferedImage torcida = lineas(600, 400, 3);
+
+        assertEquals(3.0, ImagePreprocessor.estimateSkew(torcida, 5), 0.5);
+        BufferedImage derecha = ImagePreprocessor.deskew(torcida, 5);
+        assertEquals(0.0, ImagePreprocessor.estimateSkew(derecha, 5), 0.5);
+        assertEquals(0.0, ImagePreprocessor.estimateSkew(lineas(600, 400, 0), 5));
+    }
+
+    @Test
+    void preprocess_devuelveNull_siNoEsUnaImagen() throws IOException {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(true, 2000, true, 5, new SimpleMeterRegistry());
+
+        assertNull(preprocessor.preprocess("no es una imagen".getBytes()));
+    }
+
+    @Test
+    void preprocess_desactivado_devuelveLaImagenOriginal() throws IOException {
+        BufferedImage foto = new BufferedImage(3000, 100, BufferedImage.TYPE_INT_RGB);
+        ImagePreprocessor preprocessor = new ImagePreprocessor(false, 2000, true, 5, new SimpleMeterRegistry());
+
+        BufferedImage resultado = preprocessor.preprocess(png(foto));
+
+        assertEquals(3000, resultado.getWidth());
+        assertNotEquals(BufferedImage.TYPE_BYTE_GRAY, resultado.getType());
+    }
+}
@@ -0,0 +1,65 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LanguageDetectorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final LanguageDetector detector = new LanguageDetector(true, "spa+eng", List.of("spa", "eng"), 3, 0.3,
+            40, registry);
+
+    @Test
+    void prospectoEnEspanol_spa() {
+        assertEquals("spa", detector.detect("IBUPROFENO CINFA 600 mg\nComprimidos recubiertos con película EFG\n"
+                + "Lea todo el prospecto detenidamente"));
+        assertEquals("spa", detector.detect("Omeprazol 20 mg cápsulas duras gastrorresistentes"));
+    }
+
+    @Test
+    void prospectoEnIngles_eng() {
+        assertEquals("eng", detector.detect("PARACETAMOL 1 g tablets\nRead all of this leaflet carefully before "
+                + "you start"));
+        assertEquals("eng", detector.detect("Amoxicillin 500mg capsules keep out of reach of children"));
+    }
+
+    @Test
+    void muestraCortaOBilingue_ambiguo() {
+        assertEquals("spa+eng", detector.detect("Ibuprofen 400 mg film-coated tablets"), "Menos de 40 letras");
+        assertEquals("spa+eng", detector.detect("Pr0spect0: inf0rmaci6n para el usuari0 lbuprofeno Kern Pharma"));
+        assertEquals("spa+eng", detector.detect(""));
+        assertEquals(3.0, registry.get("ocr.language.detected").tag("language", "spa+eng").counter().count());
+    }
+
+    @Test
+    void desactivado_oUnSoloIdioma_noDetecta() {
+        LanguageDetector desactivado = new LanguageDetector(false, "spa+eng", List.of("spa", "eng"), 3, 0.3, 40,
+                new SimpleMeterRegistry());
+        LanguageDetector soloSpa = new LanguageDetector(true, "spa", List.of("spa", "eng"), 3, 0.3, 40,
+                new SimpleMeterRegistry());
+        String texto = "Lea todo el prospecto detenidamente antes de empezar a tomar el medicamento";
+
+        assertFalse(desactivado.isEnabled());
+        assertEquals("spa+eng", desactivado.detect(texto));
+        assertFalse(soloSpa.isEnabled());
+        assertTrue(detector.isEnabled());
+    }
+
+    @Test
+    void ahorro_seEstimaConElCosteDeCadaIdioma() {
+        // spa+eng: 2 ms por megapíxel; spa: 0,5 ms por megapíxel
+        detector.medir("spa+eng", 2_000_000, 1_000_000);
+        detector.medir("spa", 500_000, 1_000_000);
+
+        detector.registrarAhorro("spa", 2_000_000);
+        detector.registrarAhorro("spa+eng", 2_000_000);
+
+        assertEquals(2, registry.get("ocr.language.saved").summary().count());
+        assertEquals(3.0, registry.get("ocr.language.saved").summary().totalAmount(), 1e-9);
+        assertEquals(0.5, registry.get("ocr.language.cost").tag("language", "spa").gauge().value(), 1e-9);
+    }
+}
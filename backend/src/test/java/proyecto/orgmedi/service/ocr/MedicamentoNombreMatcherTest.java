@@ -0,0 +1,119 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MedicamentoNombreMatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MedicamentoNombreMatcher matcher = new MedicamentoNombreMatcher(true,
+            new ClassPathResource("ocr/medicamentos.txt"), 2, registry);
+
+    private static MedicamentoNombreMatcher matcher(String diccionario) {
+        return new MedicamentoNombreMatcher(true,
+                new ByteArrayResource(diccionario.getBytes(StandardCharsets.UTF_8)), 2, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void exacto_sinMayusculasNiTildes() {
+        MedicamentoNombreMatcher.Coincidencia c = matcher.match("IBUPROFENO 600 mg\ncomprimidos recubiertos");
+
+        assertEquals("Ibuprofeno", c.nombre());
+        assertEquals(0, c.distancia());
+        assertEquals(100.0, c.confianza());
+        assertEquals("Losartán", matcher.match("losartan 50 mg").nombre());
+    }
+
+    @Test
+    void ruidoDeOcr_seCorrige_conMenosConfianza() {
+        MedicamentoNombreMatcher.Coincidencia cero = matcher.match("IBUPR0FEN0 600 mg");
+        assertEquals("Ibuprofeno", cero.nombre());
+        assertEquals(2, cero.distancia());
+        assertEquals(80.0, cero.confianza());
+
+        MedicamentoNombreMatcher.Coincidencia uno = matcher.match("Paracetamo1 1 g");
+        assertEquals("Paracetamol", uno.nombre());
+        assertEquals(1, uno.distancia());
+        assertTrue(uno.confianza() > cero.confianza());
+
+        // Letra perdida y letras transpuestas
+        assertEquals("Amoxicilina", matcher.match("Amoxicilna 500 mg").nombre());
+        assertEquals("Omeprazol", matcher.match("Omepraozl 20 mg").nombre());
+    }
+
+    @Test
+    void nombreDeVariasPalabras_porSuPalabraMasLarga() {
+        assertEquals("Ácido acetilsalicílico", matcher.match("ACIDO ACETILSALICILICO 100 mg").nombre());
+    }
+
+    @Test
+    void primeraLineaConNombre_gana() {
+        String prospecto = """
+                Prospecto: información para el usuario
+                Enantyum 25 mg comprimidos
+                No tome este medicamento junto con ibuprofeno
+                """;
+
+        assertEquals("Enantyum", matcher.match(prospecto).nombre());
+    }
+
+    @Test
+    void sinCoincidencia_null() {
+        assertNull(matcher.match("Prospecto: información para el usuario\nLea todo el prospecto detenidamente"));
+        assertNull(matcher.match("comprimidos recubiertos con película vía oral"));
+        assertNull(matcher.match(""));
+        assertNull(matcher.match(null));
+    }
+
+    @Test
+    void palabrasCortas_unErrorComoMaximo() {
+        MedicamentoNombreMatcher corto = matcher("Adiro\nTramadol\n");
+
+        assertEquals("Adiro", corto.match("ADIR0 100").nombre());
+        assertNull(corto.match("AD1R0 100"));
+        assertNull(corto.match("ADI 100"), "Menos de 4 letras no se busca");
+        assertEquals("Tramadol", corto.match("TRAMAD0I 50 mg").nombre());
+    }
+
+    @Test
+    void aIgualDistancia_ganaElPrimeroDelDiccionario() {
+        MedicamentoNombreMatcher m = matcher("# comentario\nAbcdefg\nAbcdefh\n");
+
+        assertEquals("Abcdefg", m.match("abcdefx").nombre());
+    }
+
+    @Test
+    void desactivado_null() {
+        MedicamentoNombreMatcher desactivado = new MedicamentoNombreMatcher(false,
+                new ClassPathResource("no-existe.txt"), 2, new SimpleMeterRegistry());
+
+        assertNull(desactivado.match("Ibuprofeno 600 mg"));
+    }
+
+    @Test
+    void distancia_damerauLevenshtein() {
+        assertEquals(0, MedicamentoNombreMatcher.distancia("abc", "abc", 2));
+        assertEquals(1, MedicamentoNombreMatcher.distancia("abc", "acb", 2));
+        assertEquals(2, MedicamentoNombreMatcher.distancia("abcd", "xbcy", 2));
+        // Por encima del máximo se corta: max + 1
+        assertEquals(3, MedicamentoNombreMatcher.distancia("abcdef", "uvwxyz", 2));
+    }
+
+    @Test
+    void metricas_porResultado() {
+        matcher.match("Ibuprofeno 600 mg");
+        matcher.match("Paracetamo1");
+        matcher.match("sin nombre");
+
+        assertEquals(1.0, registry.get("ocr.nombres.match").tag("resultado", "exacto").counter().count());
+        assertEquals(1.0, registry.get("ocr.nombres.match").tag("resultado", "corregido").counter().count());
+        assertEquals(1.0, registry.get("ocr.nombres.match").tag("resultado", "ninguno").counter().count());
+        assertEquals(3, registry.get("ocr.nombres.duration").timer().count());
+    }
+}
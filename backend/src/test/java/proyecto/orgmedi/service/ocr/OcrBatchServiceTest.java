@@ -0,0 +1,225 @@
+package proyecto.orgmedi.service.ocr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import proyecto.orgmedi.dto.ocr.OcrPaginaDTO;
+import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+import proyecto.orgmedi.error.ApiException;
+import proyecto.orgmedi.error.BadRequestException;
+import proyecto.orgmedi.error.TooManyRequestsException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OcrBatchServiceTest {
+
+    /** Recoge los eventos del lote y avisa al terminar */
+    private static class Recogedor implements OcrBatchService.Oyente {
+        final List<OcrPaginaDTO> paginas = new CopyOnWriteArrayList<>();
+        final CountDownLatch fin = new CountDownLatch(1);
+        volatile OcrResponseDTO resultado;
+        volatile ApiException error;
+
+        @Override
+        public void pagina(OcrPaginaDTO pagina) {
+            paginas.add(pagina);
+        }
+
+        @Override
+        public void resultado(OcrResponseDTO resultado) {
+            this.resultado = resultado;
+            fin.countDown();
+        }
+
+        @Override
+        public void error(ApiException error) {
+            this.error = error;
+            fin.countDown();
+        }
+
+        void esperar() throws InterruptedException {
+            assertTrue(fin.await(10, TimeUnit.SECONDS), "El lote no terminó");
+        }
+    }
+
+    private OcrService ocrService;
+    private OcrBatchService service;
+
+    @TempDir
+    Path spoolDir;
+
+    @BeforeEach
+    void setUp() {
+        ocrService = mock(OcrService.class);
+        when(ocrService.extractFields(anyString()))
+                .thenAnswer(inv -> OcrResponseDTO.builder().rawText(inv.getArgument(0)).build());
+        ImagePreprocessor preprocessor = new ImagePreprocessor(false, 2000, false, 5, new SimpleMeterRegistry());
+        OcrResultCache cache = new OcrResultCache(new ObjectMapper(), 10, "", 10, "spa+eng", true, 2000, true, true,
+                true, true, new SimpleMeterRegistry());
+        // Umbral de 100 bytes: las páginas van a temporales en spoolDir
+        UploadSpooler spooler = new UploadSpooler(cache, DataSize.ofMegabytes(10), DataSize.ofBytes(100),
+                spoolDir.toString(), new SimpleMeterRegistry());
+        service = new OcrBatchService(ocrService, preprocessor, spooler, new SimpleMeterRegistry(),
+                4, 16, 5, 20, 1, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static MockMultipartFile imagen(int ancho) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(ancho, 10, BufferedImage.TYPE_BYTE_GRAY), "png", out);
+        return new MockMultipartFile("files", "pagina" + ancho + ".png", "image/png", out.toByteArray());
+    }
+
+    private static MockMultipartFile pdf(int paginas) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 0; i < paginas; i++) {
+                // Páginas de distinto ancho para saber cuál es cuál al reconocerlas
+                document.addPage(new PDPage(new PDRectangle(72 * (i + 1), 72)));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            document.save(out);
+            return new MockMultipartFile("files", "prospecto.pdf", "application/pdf", out.toByteArray());
+        }
+    }
+
+    @Test
+    void imagenes_unenElTextoEnOrdenDePagina_aunqueTerminenDesordenadas() throws Exception {
+        when(ocrService.recognize(any())).thenAnswer(inv -> {
+            BufferedImage image = inv.getArgument(0);
+            if (image.getWidth() == 10) {
+                Thread.sleep(200); // La primera página es la última en terminar
+            }
+            return "texto " + image.getWidth();
+        });
+        Recogedor recogedor = new Recogedor();
+
+        OcrBatchService.Lote lote = service.submit(1L, List.of(imagen(10), imagen(20), imagen(30)), recogedor);
+        recogedor.esperar();
+
+        assertEquals(3, lote.getPaginas());
+        assertEquals(3, recogedor.paginas.size());
+        assertEquals(1, recogedor.paginas.get(2).getPagina());
+        assertEquals("texto 10\ntexto 20\ntexto 30\n", recogedor.resultado.getRawText());
+    }
+
+    @Test
+    void pdf_reconoceCadaPagina() throws Exception {
+        when(ocrService.recognize(any())).thenAnswer(inv -> "ancho " + ((BufferedImage) inv.getArgument(0)).getWidth());
+        Recogedor recogedor = new Recogedor();
+
+        service.submit(1L, List.of(pdf(2)), recogedor);
+        recogedor.esperar();
+
+        List<OcrPaginaDTO> paginas = recogedor.paginas.stream()
+                .sorted(Comparator.comparingInt(OcrPaginaDTO::getPagina))
+                .toList();
+        assertEquals(2, paginas.size());
+        assertEquals(2, paginas.get(0).getTotal());
+        // 72pt = 1 pulgada → 20 px a 20 dpi
+        assertEquals("ancho 20", paginas.get(0).getTexto());
+        assertEquals("ancho 40", paginas.get(1).getTexto());
+        assertEquals("ancho 20\nancho 40\n", recogedor.resultado.getRawText());
+        try (var ficheros = Files.list(spoolDir)) {
+            assertEquals(0, ficheros.count(), "El PDF temporal se borra al terminar el lote");
+        }
+    }
+
+    @Test
+    void paginaFallida_seNotifica_yElResultadoUsaLasDemas() throws Exception {
+        when(ocrService.recognize(any())).thenAnswer(inv -> {
+            BufferedImage image = inv.getArgument(0);
+            if (image.getWidth() == 20) {
+                throw new IllegalStateException("fallo nativo");
+            }
+            return "texto " + image.getWidth();
+        });
+        Recogedor recogedor = new Recogedor();
+
+        service.submit(1L, List.of(imagen(10), imagen(20)), recogedor);
+        recogedor.esperar();
+
+        OcrPaginaDTO fallida = recogedor.paginas.stream().filter(p -> p.getPagina() == 2).findFirst().orElseThrow();
+        assertNull(fallida.getTexto());
+        assertEquals(500, fallida.getErrorStatus());
+        assertEquals("texto 10\n", recogedor.resultado.getRawText());
+    }
+
+    @Test
+    void todasFallidas_terminaConError() throws Exception {
+        when(ocrService.recognize(any())).thenReturn("   ");
+        Recogedor recogedor = new Recogedor();
+
+        service.submit(1L, List.of(imagen(10)), recogedor);
+        recogedor.esperar();
+
+        assertNull(recogedor.resultado);
+        assertNotNull(recogedor.error);
+    }
+
+    @Test
+    void validacion_pdfConImagenes_demasiadasPaginas_pdfIlegible() throws Exception {
+        Recogedor recogedor = new Recogedor();
+
+        assertThrows(BadRequestException.class, () -> service.submit(1L, List.of(pdf(1), imagen(10)), recogedor));
+        assertThrows(BadRequestException.class, () -> service.submit(1L, List.of(pdf(6)), recogedor));
+        List<MultipartFile> seis = List.of(imagen(1), imagen(2), imagen(3), imagen(4), imagen(5), imagen(6));
+        assertThrows(BadRequestException.class, () -> service.submit(1L, seis, recogedor));
+        MockMultipartFile roto = new MockMultipartFile("files", "roto.pdf", "application/pdf", "no es un pdf".getBytes());
+        assertThrows(BadRequestException.class, () -> service.submit(1L, List.of(roto), recogedor));
+        assertThrows(BadRequestException.class, () -> service.submit(1L, List.of(), recogedor));
+    }
+
+    @Test
+    void unLotePorUsuario_elSegundoEs429() throws Exception {
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        when(ocrService.recognize(any())).thenAnswer(inv -> {
+            bloqueo.await(5, TimeUnit.SECONDS);
+            return "texto";
+        });
+        Recogedor primero = new Recogedor();
+        service.submit(1L, List.of(imagen(10)), primero);
+
+        assertThrows(TooManyRequestsException.class, () -> service.submit(1L, List.of(imagen(10)), new Recogedor()));
+        // Otro usuario sí puede
+        Recogedor otro = new Recogedor();
+        service.submit(2L, List.of(imagen(10)), otro);
+
+        bloqueo.countDown();
+        primero.esperar();
+        otro.esperar();
+        // Terminado el primero, el usuario puede enviar otro lote
+        Recogedor segundo = new Recogedor();
+        service.submit(1L, List.of(imagen(10)), segundo);
+        segundo.esperar();
+        assertNotNull(segundo.resultado);
+    }
+}
@@ -0,0 +1,169 @@
+package proyecto.orgmedi.service.ocr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import proyecto.orgmedi.dto.ocr.OcrJobDTO;
+import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+import proyecto.orgmedi.error.OcrProcessingException;
+import proyecto.orgmedi.error.TooManyRequestsException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OcrJobServiceTest {
+
+    private final OcrService ocrService = mock(OcrService.class);
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    private OcrJobService service;
+
+    @TempDir
+    Path spoolDir;
+
+    private OcrJobService service(int workers, int queueCapacity, int maxPerUser) {
+        OcrResultCache cache = new OcrResultCache(new ObjectMapper(), 10, "", 10, "spa+eng", true, 2000, true, true,
+                true, true, new SimpleMeterRegistry());
+        UploadSpooler spooler = new UploadSpooler(cache, DataSize.ofMegabytes(10), DataSize.ofBytes(2),
+                spoolDir.toString(), new SimpleMeterRegistry());
+        service = new OcrJobService(ocrService, spooler, new SimpleMeterRegistry(), workers, queueCapacity, maxPerUser,
+                Duration.ofMinutes(10), 100, 5);
+        return service;
+    }
+
+    /** Los trabajos en curso terminan (y borran su temporal) antes de que JUnit borre spoolDir */
+    @AfterEach
+    void tearDown() {
+        liberar.countDown();
+        service.shutdown();
+    }
+
+    private static MockMultipartFile imagen() {
+        return new MockMultipartFile("image", "prospecto.png", "image/png", new byte[]{1, 2, 3});
+    }
+
+    private OcrJobDTO esperarFin(OcrJobService service, String id, Long usuarioId) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < limite) {
+            OcrJobDTO job = service.find(id, usuarioId).orElseThrow();
+            if (OcrJobService.COMPLETADO.equals(job.getEstado()) || OcrJobService.ERROR.equals(job.getEstado())) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("El trabajo no terminó");
+    }
+
+    private long ficherosEnSpool() throws IOException {
+        try (var ficheros = Files.list(spoolDir)) {
+            return ficheros.count();
+        }
+    }
+
+    @Test
+    void submit_returnsImmediatelyAndResultCanBePolled() throws Exception {
+        OcrResponseDTO resultado = OcrResponseDTO.builder().nombre("Ibuprofeno").build();
+        when(ocrService.processImage(any(UploadSpooler.Subida.class))).thenReturn(resultado);
+        OcrJobService service = service(1, 4, 2);
+
+        OcrJobDTO job = service.submit(7L, imagen());
+
+        assertNotNull(job.getId());
+        OcrJobDTO terminado = esperarFin(service, job.getId(), 7L);
+        assertEquals(OcrJobService.COMPLETADO, terminado.getEstado());
+        assertEquals("Ibuprofeno", terminado.getResultado().getNombre());
+        assertNotNull(terminado.getFinalizadoEn());
+    }
+
+    @Test
+    void submit_spooledUpload_isDeletedWhenJobEnds() throws Exception {
+        when(ocrService.processImage(any(UploadSpooler.Subida.class))).thenAnswer(inv -> {
+            UploadSpooler.Subida subida = inv.getArgument(0);
+            assertTrue(subida.isEnDisco()); // 3 bytes > umbral de 2: va a un temporal
+            return new OcrResponseDTO();
+        });
+        OcrJobService service = service(1, 4, 2);
+
+        esperarFin(service, service.submit(7L, imagen()).getId(), 7L);
+
+        assertEquals(0, ficherosEnSpool());
+    }
+
+    @Test
+    void find_otherUsersJob_isEmpty() {
+        OcrJobService service = service(1, 4, 2);
+
+        OcrJobDTO job = service.submit(7L, imagen());
+
+        assertTrue(service.find(job.getId(), 8L).isEmpty());
+        assertTrue(service.find("no-existe", 7L).isEmpty());
+    }
+
+    @Test
+    void submit_failingOcr_jobEndsInErrorWithStatus() throws Exception {
+        when(ocrService.processImage(any(UploadSpooler.Subida.class)))
+                .thenThrow(new OcrProcessingException("No se pudo extraer texto de la imagen"));
+        OcrJobService service = service(1, 4, 2);
+
+        OcrJobDTO terminado = esperarFin(service, service.submit(7L, imagen()).getId(), 7L);
+
+        assertEquals(OcrJobService.ERROR, terminado.getEstado());
+        assertEquals(500, terminado.getErrorStatus());
+    }
+
+    @Test
+    void submit_perUserCap_rejectsWith429() throws Exception {
+        when(ocrService.processImage(any(UploadSpooler.Subida.class))).thenAnswer(inv -> {
+            liberar.await(5, TimeUnit.SECONDS);
+            return new OcrResponseDTO();
+        });
+        OcrJobService service = service(2, 4, 1);
+
+        OcrJobDTO primero = service.submit(7L, imagen());
+        assertThrows(TooManyRequestsException.class, () -> service.submit(7L, imagen()));
+        service.submit(8L, imagen()); // otro usuario no se ve afectado
+
+        liberar.countDown();
+        esperarFin(service, primero.getId(), 7L);
+        assertNotNull(service.submit(7L, imagen()).getId());
+    }
+
+    @Test
+    void submit_queueFull_rejectsWith429() throws Exception {
+        when(ocrService.processImage(any(UploadSpooler.Subida.class))).thenAnswer(inv -> {
+            liberar.await(5, TimeUnit.SECONDS);
+            return new OcrResponseDTO();
+        });
+        OcrJobService service = service(1, 1, 10);
+
+        // Usuario → trabajo aceptado
+        Map<Long, String> aceptados = new LinkedHashMap<>();
+        aceptados.put(1L, service.submit(1L, imagen()).getId());
+        // El primero puede estar aún en la cola o ya en el trabajador: como mucho caben 2
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class, () -> {
+            aceptados.put(2L, service.submit(2L, imagen()).getId());
+            aceptados.put(3L, service.submit(3L, imagen()).getId());
+        });
+        assertEquals(5, e.getRetryAfterSeconds());
+
+        liberar.countDown();
+        for (Map.Entry<Long, String> job : aceptados.entrySet()) {
+            esperarFin(service, job.getValue(), job.getKey());
+        }
+        assertEquals(0, ficherosEnSpool());
+    }
+}
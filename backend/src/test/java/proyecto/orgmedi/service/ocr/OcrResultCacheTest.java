@@ -0,0 +1,105 @@
+package proyecto.orgmedi.service.ocr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import proyecto.orgmedi.dto.ocr.OcrResponseDTO;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OcrResultCacheTest {
+
+    private static final byte[] IMAGEN = "bytes de una foto".getBytes();
+
+    @TempDir
+    Path dir;
+
+    private OcrResultCache cache(String dir, String language, int maxDiskEntries) {
+        return new OcrResultCache(new ObjectMapper(), 100, dir, maxDiskEntries, language, true, 2000, true, true,
+                true, true, new SimpleMeterRegistry());
+    }
+
+    private static OcrResponseDTO resultado(String nombre) {
+        return OcrResponseDTO.builder()
+                .nombre(nombre)
+                .cantidadMg(500)
+                .confidenceByField(Map.of("nombre", 90.0))
+                .overallConfidence(90.0)
+                .rawText("Paracetamol 500 mg")
+                .build();
+    }
+
+    @Test
+    void key_esLaMismaLeyendoPorPartesQueConLosBytesEnMemoria() throws IOException {
+        OcrResultCache cache = cache("", "spa+eng", 10);
+        try (DigestInputStream in = new DigestInputStream(new ByteArrayInputStream(IMAGEN), cache.newDigest())) {
+            in.readAllBytes();
+            assertEquals(cache.key(IMAGEN), OcrResultCache.key(in.getMessageDigest()));
+        }
+        assertEquals(64, cache.key(IMAGEN).length());
+    }
+
+    @Test
+    void key_cambiaConLaConfiguracionDelOcr() {
+        assertNotEquals(cache("", "spa+eng", 10).key(IMAGEN), cache("", "eng", 10).key(IMAGEN));
+    }
+
+    @Test
+    void getYPut_enMemoria() {
+        OcrResultCache cache = cache("", "spa+eng", 10);
+        String key = cache.key(IMAGEN);
+
+        assertNull(cache.get(key));
+        OcrResponseDTO guardado = resultado("Paracetamol");
+        cache.put(key, guardado);
+
+        assertSame(guardado, cache.get(key));
+    }
+
+    @Test
+    void disco_sobreviveAUnReinicio() {
+        OcrResultCache antes = cache(dir.toString(), "spa+eng", 10);
+        String key = antes.key(IMAGEN);
+        antes.put(key, resultado("Paracetamol"));
+
+        OcrResponseDTO leido = cache(dir.toString(), "spa+eng", 10).get(key);
+
+        assertNotNull(leido);
+        assertEquals("Paracetamol", leido.getNombre());
+        assertEquals(500, leido.getCantidadMg());
+        assertEquals(90.0, leido.getConfidenceByField().get("nombre"));
+    }
+
+    @Test
+    void disco_ficheroDanadoCuentaComoFallo() throws IOException {
+        OcrResultCache cache = cache(dir.toString(), "spa+eng", 10);
+        String key = cache.key(IMAGEN);
+        Files.writeString(dir.resolve(key + ".json"), "{no es json");
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void podar_dejaComoMucho_maxDiskEntries_yBorraTemporales() throws IOException {
+        OcrResultCache cache = cache(dir.toString(), "spa+eng", 3);
+        for (int i = 0; i < 5; i++) {
+            cache.put(cache.key(("imagen " + i).getBytes()), resultado("M" + i));
+        }
+        Files.writeString(dir.resolve("huerfano.tmp"), "");
+
+        cache.podar();
+
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(3, files.count());
+        }
+    }
+}
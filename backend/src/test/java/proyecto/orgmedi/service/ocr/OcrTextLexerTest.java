@@ -0,0 +1,167 @@
+package proyecto.orgmedi.service.ocr;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de OcrTextLexer: mismos campos y confianzas que el análisis con regex
+ */
+@DisplayName("OcrTextLexer Tests")
+class OcrTextLexerTest {
+
+    private static final String PROSPECTO = """
+            IBUPROFENO CINFA
+            Ibuprofeno 600 mg comprimidos recubiertos
+            Tomar 3 veces al día
+            Inicio: 15/01/2024   Fin: 30/01/2024
+            Comprimido de color blanco, forma oblonga
+            Lote 12345 Cad. 05/2027
+            """;
+
+    private static final String[] PIEZAS = {
+            "Paracetamol", "Ibuprofeno", "Ácido Acetilsalicílico", "Omeprazol-Cinfa", "AMOXICILINA",
+            "500 mg", "500mg", "1000 miligramos", "20 MGR", "123456 mg", "x40mg", "40 mgs", "2.5mg", "_30mg",
+            "3 veces", "2 vece", "1 toma", "cada 8 horas", "8 tomas", "1000 veces", "2 Dosis", "12 cada",
+            "15/01/2024", "15-01-24", "1/2/99", "31/02/2024", "32/13/2024", "123/4/2024", "05/2027",
+            "15/01/2024-20/02/2024", "2024/01/15", "1/1/1", "07/03/2025",
+            "rojo", "AZUL", "Marrón", "marrones", "verdes", "blanco_", "gris", "beige", "rosa", "naranja",
+            "Lote 987", "Cad.", "comprimidos", "al día", "tomar", "con agua", "\t", "",
+    };
+    private static final String[] SEPARADORES = {" ", "  ", "\n", "\r\n", ", ", ". ", " - ", "\n\n", ": "};
+
+    /** Análisis anterior: regex de OcrValidationUtil, línea a línea para el nombre y palabra a palabra para la fecha fin */
+    private record Campos(String nombre, Double nombreConfidence, Integer cantidadMg, Double cantidadConfidence,
+                          LocalDate fechaInicio, Double fechaInicioConfidence, LocalDate fechaFin,
+                          Double fechaFinConfidence, String color, Double colorConfidence, Integer frecuencia,
+                          Double frecuenciaConfidence) {
+    }
+
+    private static Campos conRegex(String text) {
+        String nombre = null;
+        for (String line : text.split("\n")) {
+            String cleaned = line.trim();
+            if (!cleaned.isEmpty() && !cleaned.matches(".*\\d+.*")
+                    && OcrValidationUtil.isValidNombre(cleaned) && cleaned.length() >= 3) {
+                nombre = cleaned;
+                break;
+            }
+        }
+        LocalDate fechaInicio = OcrValidationUtil.extractFecha(text);
+        LocalDate fechaFin = null;
+        for (String part : text.split("[\\s\\n]+")) {
+            LocalDate date = OcrValidationUtil.extractFecha(part);
+            if (date != null && (fechaInicio == null || date.isAfter(fechaInicio))) {
+                fechaFin = date;
+            }
+        }
+        return new Campos(nombre, nombre != null ? 100.0 : 30.0,
+                OcrValidationUtil.extractCantidadMg(text), OcrValidationUtil.calculateCantidadConfidence(text),
+                fechaInicio, OcrValidationUtil.calculateFechaConfidence(text),
+                fechaFin, fechaFin != null ? 100.0 : 0.0,
+                OcrValidationUtil.extractColor(text), OcrValidationUtil.calculateColorConfidence(text),
+                OcrValidationUtil.extractFrecuencia(text), OcrValidationUtil.calculateFrecuenciaConfidence(text));
+    }
+
+    private static Campos conLexer(String text) {
+        OcrTextLexer.Resultado r = OcrTextLexer.tokenize(text);
+        return new Campos(r.nombre(), r.nombreConfidence(), r.cantidadMg(), r.cantidadConfidence(),
+                r.fechaInicio(), r.fechaInicioConfidence(), r.fechaFin(), r.fechaFinConfidence(),
+                r.color(), r.colorConfidence(), r.frecuencia(), r.frecuenciaConfidence());
+    }
+
+    /** Textos tipo OCR: piezas con y sin coincidencia unidas por separadores, con semilla fija */
+    private static List<String> corpus(int tamano) {
+        Random random = new Random(42);
+        List<String> corpus = new ArrayList<>(Arrays.asList(PROSPECTO, "", "   ", "sin datos", "Ab\n12"));
+        while (corpus.size() < tamano) {
+            StringBuilder text = new StringBuilder();
+            int piezas = 1 + random.nextInt(25);
+            for (int i = 0; i < piezas; i++) {
+                text.append(PIEZAS[random.nextInt(PIEZAS.length)]);
+                text.append(SEPARADORES[random.nextInt(SEPARADORES.length)]);
+            }
+            corpus.add(text.toString());
+        }
+        return corpus;
+    }
+
+    @Test
+    @DisplayName("Extraer todos los campos de un prospecto")
+    void testProspecto() {
+        OcrTextLexer.Resultado r = OcrTextLexer.tokenize(PROSPECTO);
+
+        assertEquals("IBUPROFENO CINFA", r.nombre());
+        assertEquals(600, r.cantidadMg());
+        assertEquals(3, r.frecuencia());
+        assertEquals(LocalDate.of(2024, 1, 15), r.fechaInicio());
+        assertEquals(LocalDate.of(2024, 1, 30), r.fechaFin());
+        assertEquals("blanco", r.color());
+        assertEquals(100.0, r.cantidadConfidence());
+    }
+
+    @Test
+    @DisplayName("Fecha inicial imposible: queda a null como con la regex")
+    void testFechaInicialInvalida() {
+        OcrTextLexer.Resultado r = OcrTextLexer.tokenize("Caduca 31/02/2024 o 15/03/2024");
+
+        assertNull(r.fechaInicio());
+        assertEquals(30.0, r.fechaInicioConfidence());
+        assertEquals(LocalDate.of(2024, 3, 15), r.fechaFin());
+    }
+
+    @Test
+    @DisplayName("Mismos campos y confianzas que las regex en todo el corpus")
+    void testEquivalenteARegex() {
+        for (String text : corpus(5000)) {
+            assertEquals(conRegex(text), conLexer(text), () -> "Texto: " + text.replace("\n", "\\n"));
+        }
+    }
+
+    /** Mejor de varias rondas (la menos afectada por GC y otros procesos), en nanosegundos */
+    private static long mejorTiempo(List<String> corpus, Function<String, Campos> analisis) {
+        long mejor = Long.MAX_VALUE;
+        for (int ronda = 0; ronda < 10; ronda++) {
+            long inicio = System.nanoTime();
+            for (String text : corpus) {
+                if (analisis.apply(text) == null) {
+                    throw new IllegalStateException();
+                }
+            }
+            mejor = Math.min(mejor, System.nanoTime() - inicio);
+        }
+        return mejor;
+    }
+
+    /**
+     * Comparativa de tiempos lexer vs regex: fuera de la ejecución normal
+     * (mvn test -Pperf -Dtest=OcrTextLexerTest)
+     */
+    @Test
+    @Tag("perf")
+    @DisplayName("El lexer es más rápido que las regex sobre el corpus")
+    void testComparativaTiempos() {
+        List<String> corpus = corpus(5000);
+        // Calentamiento del JIT para ambos caminos
+        for (int i = 0; i < 5; i++) {
+            corpus.forEach(OcrTextLexerTest::conRegex);
+            corpus.forEach(OcrTextLexerTest::conLexer);
+        }
+
+        long regexNanos = mejorTiempo(corpus, OcrTextLexerTest::conRegex);
+        long lexerNanos = mejorTiempo(corpus, OcrTextLexerTest::conLexer);
+
+        System.out.printf("[OcrTextLexer] %d textos - regex: %.1f ms, lexer: %.1f ms (x%.1f)%n", corpus.size(),
+                regexNanos / 1e6, lexerNanos / 1e6, (double) regexNanos / lexerNanos);
+        assertTrue(lexerNanos < regexNanos, "El lexer debería ser más rápido que las regex");
+    }
+}
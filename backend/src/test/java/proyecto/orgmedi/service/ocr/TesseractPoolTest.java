@@ -0,0 +1,169 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import proyecto.orgmedi.error.ServiceUnavailableException;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TesseractPoolTest {
+
+    private static final BufferedImage IMAGEN = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+
+    /** Motor falso: devuelve su número, falla si se le pide, y cuenta cierres */
+    private static class FakeEngine implements TesseractEngine {
+        final int numero;
+        volatile boolean fallar;
+        volatile boolean cerrado;
+        volatile CountDownLatch bloqueo;
+
+        FakeEngine(int numero) {
+            this.numero = numero;
+        }
+
+        @Override
+        public String recognize(BufferedImage image) {
+            if (bloqueo != null) {
+                try {
+                    bloqueo.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (fallar) {
+                throw new IllegalStateException("fallo nativo");
+            }
+            return "motor-" + numero;
+        }
+
+        @Override
+        public long nativeBytes() {
+            return 100;
+        }
+
+        @Override
+        public void close() {
+            cerrado = true;
+        }
+    }
+
+    private final List<FakeEngine> creados = new ArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private TesseractPool pool(int size, long timeoutMs) {
+        return new TesseractPool(() -> {
+            FakeEngine engine = new FakeEngine(creados.size() + 1);
+            creados.add(engine);
+            return engine;
+        }, size, timeoutMs, false, registry);
+    }
+
+    @Test
+    void recognize_reusesInitializedEngine() {
+        TesseractPool pool = pool(2, 100);
+
+        assertEquals("motor-1", pool.recognize(IMAGEN));
+        assertEquals("motor-1", pool.recognize(IMAGEN));
+        assertEquals(1, creados.size());
+    }
+
+    @Test
+    void fill_createsAllEnginesAndAccountsNativeMemory() {
+        TesseractPool pool = pool(3, 100);
+
+        pool.fill();
+
+        assertEquals(3, creados.size());
+        assertEquals(300.0, registry.get("ocr.pool.native.bytes").gauge().value());
+        assertEquals(3.0, registry.get("ocr.pool.engines").tag("state", "idle").gauge().value());
+    }
+
+    @Test
+    void recognize_failingEngineIsEvictedAndReplaced() {
+        TesseractPool pool = pool(1, 100);
+        pool.fill();
+        creados.get(0).fallar = true;
+
+        assertThrows(IllegalStateException.class, () -> pool.recognize(IMAGEN));
+        assertTrue(creados.get(0).cerrado);
+        assertEquals(1.0, registry.get("ocr.pool.evictions").counter().count());
+
+        assertEquals("motor-2", pool.recognize(IMAGEN));
+        assertEquals(100.0, registry.get("ocr.pool.native.bytes").gauge().value());
+    }
+
+    @Test
+    void recognize_noFreeEngineWithinTimeout_serviceUnavailable() throws Exception {
+        TesseractPool pool = pool(1, 50);
+        pool.fill();
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        creados.get(0).bloqueo = bloqueo;
+        Thread ocupado = new Thread(() -> pool.recognize(IMAGEN));
+        ocupado.start();
+        while (registry.get("ocr.pool.engines").tag("state", "idle").gauge().value() > 0) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(ServiceUnavailableException.class, () -> pool.recognize(IMAGEN));
+
+        bloqueo.countDown();
+        ocupado.join();
+    }
+
+    @Test
+    void recognize_engineOfRequestedLanguage_orDefaultIfNotPooled() {
+        List<String> idiomas = new ArrayList<>();
+        TesseractPool pool = new TesseractPool(idioma -> {
+            idiomas.add(idioma);
+            return new FakeEngine(idiomas.size());
+        }, "spa+eng", List.of("spa", "eng", "fra"), 1, 2, 100, false, registry);
+        List<TextRegion> region = List.of(new TextRegion(0, 0, 1, 1, true));
+
+        assertEquals(List.of("motor-1"), pool.recognize("spa", IMAGEN, region, null));
+        assertEquals(List.of("motor-1"), pool.recognize("spa", IMAGEN, region, null));
+        assertEquals(List.of("motor-2"), pool.recognize("fra", IMAGEN, region, null));
+        assertEquals(List.of("spa", "spa+eng"), idiomas);
+        assertTrue(pool.supports("eng"));
+        assertFalse(pool.supports("fra"));
+    }
+
+    @Test
+    void fill_onlyDefaultLanguage_singleLanguageEnginesCreatedOnFirstUse() {
+        List<String> idiomas = new ArrayList<>();
+        TesseractPool pool = new TesseractPool(idioma -> {
+            idiomas.add(idioma);
+            return new FakeEngine(idiomas.size());
+        }, "spa+eng", List.of("spa", "eng"), 1, 3, 100, false, registry);
+
+        pool.fill();
+
+        assertEquals(List.of("spa+eng", "spa+eng", "spa+eng"), idiomas);
+        assertEquals(0.0, engines("spa"));
+        assertEquals(0.0, engines("eng"));
+
+        pool.recognize("eng", IMAGEN, List.of(new TextRegion(0, 0, 1, 1, true)), null);
+        assertEquals(1.0, engines("eng"));
+        assertEquals(0.0, engines("spa"));
+    }
+
+    private double engines(String idioma) {
+        return registry.get("ocr.pool.engines").tag("state", "total").tag("language", idioma).gauge().value();
+    }
+
+    @Test
+    void recognize_engineCannotBeCreated_serviceUnavailableAndSlotReleased() {
+        TesseractPool pool = new TesseractPool(() -> {
+            throw new UnsatisfiedLinkError("libtesseract");
+        }, 1, 50, false, registry);
+
+        assertThrows(ServiceUnavailableException.class, () -> pool.recognize(IMAGEN));
+        assertThrows(ServiceUnavailableException.class, () -> pool.recognize(IMAGEN));
+        assertEquals(0.0, registry.get("ocr.pool.engines").tag("state", "total").gauge().value());
+    }
+}
@@ -0,0 +1,134 @@
+package proyecto.orgmedi.service.ocr;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextRegionDetectorTest {
+
+    private static final int LETRA = 20;
+
+    /** Página en blanco (como la deja ImagePreprocessor: 0 = tinta, 255 = fondo) */
+    private static BufferedImage pagina(int ancho, int alto) {
+        BufferedImage image = new BufferedImage(ancho, alto, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, ancho, alto);
+        g.dispose();
+        return image;
+    }
+
+    /** Una línea de "texto": letras de 12x20 con 4px entre letras y 12px entre palabras */
+    private static void linea(BufferedImage image, int x, int y, int... letrasPorPalabra) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        for (int letras : letrasPorPalabra) {
+            for (int i = 0; i < letras; i++) {
+                g.fillRect(x, y, 12, LETRA);
+                x += 16;
+            }
+            x += 12;
+        }
+        g.dispose();
+    }
+
+    private static void rectangulo(BufferedImage image, int x, int y, int ancho, int alto) {
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(x, y, ancho, alto);
+        g.dispose();
+    }
+
+    private static boolean contiene(TextRegion region, int x, int y) {
+        return x >= region.x() && x < region.x() + region.width() && y >= region.y() && y < region.y() + region.height();
+    }
+
+    @Test
+    void parrafoYLineaSuelta_sinLogoNiLineaDeTabla() {
+        BufferedImage image = pagina(1000, 800);
+        // Párrafo de 3 líneas (interlineado de 8px)
+        linea(image, 50, 50, 5, 3, 6);
+        linea(image, 50, 78, 4, 4);
+        linea(image, 50, 106, 6, 2, 3);
+        // Dosis sola, lejos del párrafo
+        linea(image, 50, 400, 3, 2);
+        // Logotipo y línea de una tabla: no son texto
+        rectangulo(image, 700, 50, 250, 250);
+        rectangulo(image, 20, 600, 960, 3);
+
+        List<TextRegion> regiones = TextRegionDetector.detect(image, 60);
+
+        assertEquals(2, regiones.size());
+        TextRegion parrafo = regiones.get(0);
+        TextRegion dosis = regiones.get(1);
+        assertFalse(parrafo.linea());
+        assertTrue(dosis.linea());
+        assertTrue(contiene(parrafo, 50, 50) && contiene(parrafo, 50, 125));
+        assertTrue(contiene(dosis, 50, 400) && contiene(dosis, 120, 419));
+        assertTrue(regiones.stream().noneMatch(r -> contiene(r, 800, 150)), "El logotipo no es una región");
+        assertTrue(regiones.stream().noneMatch(r -> contiene(r, 900, 601)), "La línea de tabla no es una región");
+        // Mucho menos área que la página entera
+        long area = regiones.stream().mapToLong(TextRegion::area).sum();
+        assertTrue(area < 1000 * 800 / 5);
+    }
+
+    @Test
+    void ordenDeLectura_deArribaAbajo() {
+        BufferedImage image = pagina(800, 600);
+        linea(image, 400, 300, 4);
+        linea(image, 60, 40, 4);
+        linea(image, 60, 500, 4);
+
+        List<TextRegion> regiones = TextRegionDetector.detect(image, 60);
+
+        assertEquals(3, regiones.size());
+        assertTrue(regiones.get(0).y() < regiones.get(1).y() && regiones.get(1).y() < regiones.get(2).y());
+    }
+
+    @Test
+    void sinTexto_oDemasiadasRegiones_oEnColor_paginaEntera() {
+        assertTrue(TextRegionDetector.detect(pagina(400, 300), 60).isEmpty());
+
+        BufferedImage muchas = pagina(1000, 1000);
+        for (int y = 20; y < 950; y += 100) {
+            for (int x = 20; x < 950; x += 200) {
+                linea(muchas, x, y, 2);
+            }
+        }
+        assertFalse(TextRegionDetector.detect(muchas, 60).isEmpty());
+        assertTrue(TextRegionDetector.detect(muchas, 10).isEmpty());
+
+        assertTrue(TextRegionDetector.detect(new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB), 60).isEmpty());
+    }
+
+    @Test
+    void desactivado_noDetecta() {
+        BufferedImage image = pagina(600, 200);
+        linea(image, 50, 50, 4, 4);
+
+        assertTrue(new TextRegionDetector(false, 60, new SimpleMeterRegistry()).detect(image).isEmpty());
+        assertEquals(1, new TextRegionDetector(true, 60, new SimpleMeterRegistry()).detect(image).size());
+    }
+
+    @Test
+    void componentes_8vecindad() {
+        // Dos píxeles en diagonal son la misma componente; uno separado es otra
+        byte[] mascara = {
+                1, 0, 0, 0,
+                0, 1, 0, 1,
+                0, 0, 0, 1,
+        };
+
+        TextRegionDetector.Componentes componentes = TextRegionDetector.Componentes.de(mascara, 4, 3);
+
+        assertEquals(2, componentes.size());
+        assertEquals(2, componentes.ancho(componentes.indice(0)));
+        assertEquals(2, componentes.alto(componentes.indice(7)));
+    }
+}
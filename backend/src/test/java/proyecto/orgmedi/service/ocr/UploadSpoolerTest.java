@@ -0,0 +1,150 @@
+package proyecto.orgmedi.service.ocr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import proyecto.orgmedi.error.BadRequestException;
+import proyecto.orgmedi.error.PayloadTooLargeException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadSpoolerTest {
+
+    @TempDir
+    Path dir;
+
+    private final OcrResultCache cache = new OcrResultCache(new ObjectMapper(), 10, "", 10, "spa+eng", true, 2000,
+            true, true, true, true, new SimpleMeterRegistry());
+
+    private UploadSpooler spooler(long maxSize, long memoryThreshold) {
+        return new UploadSpooler(cache, DataSize.ofBytes(maxSize), DataSize.ofBytes(memoryThreshold), dir.toString(),
+                new SimpleMeterRegistry());
+    }
+
+    private static byte[] bytes(int tamano) {
+        byte[] bytes = new byte[tamano];
+        new Random(7).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] leer(ByteBuffer buffer) {
+        byte[] copia = new byte[buffer.remaining()];
+        buffer.get(copia);
+        return copia;
+    }
+
+    private long temporales() throws IOException {
+        try (var ficheros = Files.list(dir)) {
+            return ficheros.count();
+        }
+    }
+
+    @Test
+    void pequena_quedaEnMemoria() throws IOException {
+        byte[] contenido = bytes(100);
+
+        try (UploadSpooler.Subida subida = spooler(1000, 200).recibir(
+                new MockMultipartFile("image", "foto.png", "image/png", contenido))) {
+            assertFalse(subida.isEnDisco());
+            assertEquals(100, subida.getTamano());
+            assertArrayEquals(contenido, leer(subida.contenido()));
+            assertEquals(cache.key(contenido), subida.getClave());
+        }
+        assertEquals(0, temporales());
+    }
+
+    @Test
+    void grande_vaADisco_seMapea_yseBorraAlCerrar() throws IOException {
+        byte[] contenido = bytes(200_000);
+
+        UploadSpooler.Subida subida = spooler(1_000_000, 1000).recibir(
+                new MockMultipartFile("image", "foto.png", "image/png", contenido));
+
+        assertTrue(subida.isEnDisco());
+        assertEquals(1, temporales());
+        assertArrayEquals(contenido, leer(subida.contenido()));
+        // Cada llamada es una vista nueva desde el principio
+        assertArrayEquals(contenido, leer(subida.contenido()));
+        assertEquals(cache.key(contenido), subida.getClave());
+
+        subida.close();
+        assertEquals(0, temporales());
+    }
+
+    @Test
+    void grande_seMueveElTemporalDelContenedor_sinCopiarlo() throws IOException {
+        byte[] contenido = bytes(50_000);
+        Path delContenedor = Files.write(Files.createTempFile("part-", ".tmp"), contenido);
+        AtomicLong lecturas = new AtomicLong();
+        // Como StandardMultipartFile sobre una parte en disco: transferTo(File) la renombra
+        MockMultipartFile parte = new MockMultipartFile("image", "foto.png", "image/png", contenido) {
+            @Override
+            public InputStream getInputStream() throws IOException {
+                lecturas.incrementAndGet();
+                return super.getInputStream();
+            }
+
+            @Override
+            public void transferTo(File dest) throws IOException {
+                Files.move(delContenedor, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        };
+
+        try (UploadSpooler.Subida subida = spooler(1_000_000, 1000).recibir(parte)) {
+            assertTrue(subida.isEnDisco());
+            assertFalse(Files.exists(delContenedor));
+            assertEquals(0, lecturas.get(), "Ni se copia ni se relee el archivo del contenedor");
+            assertArrayEquals(contenido, leer(subida.contenido()));
+            assertEquals(cache.key(contenido), subida.getClave());
+        }
+        assertEquals(0, temporales());
+    }
+
+    @Test
+    void tamanoDeclaradoMayor_413SinLeer() {
+        MockMultipartFile grande = new MockMultipartFile("image", "foto.png", "image/png", bytes(2000));
+
+        assertThrows(PayloadTooLargeException.class, () -> spooler(1000, 100).recibir(grande));
+    }
+
+    @Test
+    void vacio_400() {
+        MockMultipartFile vacio = new MockMultipartFile("image", "foto.png", "image/png", new byte[0]);
+
+        assertThrows(BadRequestException.class, () -> spooler(1000, 100).recibir(vacio));
+    }
+
+    @Test
+    void imagenEnDisco_seDecodificaDesdeElBufferMapeado() throws IOException {
+        BufferedImage foto = new BufferedImage(300, 120, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(foto, "png", png);
+
+        try (UploadSpooler.Subida subida = spooler(1_000_000, 10).recibir(
+                new MockMultipartFile("image", "foto.png", "image/png", png.toByteArray()))) {
+            BufferedImage decodificada = ImagePreprocessor.decode(subida.contenido(), 2000);
+
+            assertNotNull(decodificada);
+            assertEquals(300, decodificada.getWidth());
+            assertEquals(120, decodificada.getHeight());
+            // Submuestreo igual que desde memoria
+            assertEquals(150, ImagePreprocessor.decode(subida.contenido(), 150).getWidth());
+        }
+    }
+}
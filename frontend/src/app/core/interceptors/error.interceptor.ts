@@ -14,6 +14,7 @@
  * CÓDIGOS DE ERROR Y ACCIONES:
  * - 0 / ENOTFOUND: Sin conexión con servidor
  * - 401: No autenticado o token expirado → logout + redirige al home
+ *        (salvo si hay refresh token: el authInterceptor renueva y reintenta)
  * - 403: Sin permisos para la acción
  * - 404: Recurso no encontrado
  * - 409: Conflicto / Recurso duplicado
@@ -36,6 +37,16 @@ export const errorInterceptor: HttpInterceptorFn = (req, next) => {
 
   return next(req).pipe(
     catchError((error: HttpErrorResponse) => {
+      // 0. TOKEN CADUCADO CON REFRESH DISPONIBLE
+      // El authInterceptor lo renovará y reintentará la petición: sin toast ni logout
+      const canRefresh = error.status === 401
+        && !req.url.includes('/auth/')
+        && !req.context.get(RETRIED_AFTER_REFRESH)
+        && !!authService.getRefreshToken();
+      if (canRefresh) {
+        return throwError(() => error);
+      }
+
       // Variable para almacenar el mensaje que se mostrará al usuario
       let message = '❌ Error inesperado. Inténtalo de nuevo más tarde.';
 
@@ -94,3 +105,4 @@ import { Router } from '@angular/router';
 import { catchError, throwError } from 'rxjs';
 import { ToastService } from '../../shared/toast.service';
 import { AuthService } from '../services/auth/auth.service';
+import { RETRIED_AFTER_REFRESH } from './auth.interceptor';
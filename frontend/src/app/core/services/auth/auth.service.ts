@@ -1,6 +1,6 @@
 import { Injectable, inject } from '@angular/core';
 import { BehaviorSubject, Observable, throwError, of } from 'rxjs';
-import { tap, catchError, map } from 'rxjs/operators';
+import { tap, catchError, map, finalize, shareReplay } from 'rxjs/operators';
 import { ApiService } from '../data/api.service';
 
 export interface AuthUser {
@@ -16,6 +16,8 @@ export interface AuthRequest {
 
 export interface AuthResponse {
   token: string;
+  refreshToken?: string;
+  expiresIn?: number;
 }
 
 export interface ChangePasswordRequest {
@@ -33,6 +35,9 @@ export class AuthService {
   private api = inject(ApiService);
   private readonly baseUrl = 'auth';
   private isLoggedInSubject = new BehaviorSubject<boolean>(this.checkStoredAuth());
+  // Refresh en curso: las peticiones que reciben 401 a la vez comparten el mismo
+  // (el backend rechaza reutilizar un refresh token y cerraría todas las sesiones)
+  private refreshInFlight$: Observable<string> | null = null;
   private currentUserSubject = new BehaviorSubject<AuthUser | null>(this.getStoredUser());
 
   // Observables públicas para suscribirse a cambios
@@ -72,6 +77,46 @@ export class AuthService {
     }
   }
 
+  /**
+   * Obtener el refresh token guardado en localStorage
+   */
+  getRefreshToken(): string | null {
+    if (typeof window === 'undefined') return null;
+    return localStorage.getItem('refreshToken');
+  }
+
+  /**
+   * Guardar el par de tokens devuelto por login/register/refresh/change-password
+   * El access token dura pocos minutos; el refresh token sirve para renovarlo
+   */
+  private storeTokens(response: AuthResponse): void {
+    this.setToken(response.token);
+    if (typeof window !== 'undefined' && response.refreshToken) {
+      localStorage.setItem('refreshToken', response.refreshToken);
+    }
+  }
+
+  /**
+   * Renovar el access token con el refresh token (POST /auth/refresh)
+   * El backend ROTA el refresh token: cada uno solo sirve una vez
+   * Si ya hay un refresh en curso, se devuelve ese mismo observable
+   */
+  refreshAccessToken(): Observable<string> {
+    const refreshToken = this.getRefreshToken();
+    if (!refreshToken) {
+      return throwError(() => new Error('No refresh token'));
+    }
+    if (!this.refreshInFlight$) {
+      this.refreshInFlight$ = this.api.post<AuthResponse>(`${this.baseUrl}/refresh`, { refreshToken }).pipe(
+        tap((response) => this.storeTokens(response)),
+        map((response) => response.token),
+        finalize(() => this.refreshInFlight$ = null),
+        shareReplay(1)
+      );
+    }
+    return this.refreshInFlight$;
+  }
+
   /**
    * Realizar login en el backend
    * Envía usuario/contraseña y recibe JWT en la respuesta
@@ -99,7 +144,7 @@ export class AuthService {
         if (!token) {
           throw new Error('Invalid login response: missing token. Response: ' + JSON.stringify(response));
         }
-        this.setToken(token);
+        this.storeTokens(response);
         const user: AuthUser = {
           id: 1,
           name: username,
@@ -155,7 +200,7 @@ export class AuthService {
           console.error('[AuthService] ❌ No se encontró token en la respuesta:', response);
           throw new Error('La respuesta del servidor no contiene token. Response: ' + JSON.stringify(response));
         }
-        this.setToken(token);
+        this.storeTokens(response);
         
         const user: AuthUser = {
           id: 1,
@@ -182,6 +227,12 @@ export class AuthService {
   logout(): void {
     // Limpiar todos los datos de autenticación del localStorage
     if (typeof window !== 'undefined') {
+      // Invalidar el refresh token en el servidor (sin esperar la respuesta)
+      const refreshToken = this.getRefreshToken();
+      if (refreshToken) {
+        this.api.post<void>(`${this.baseUrl}/logout`, { refreshToken }).subscribe({ error: () => {} });
+      }
+      localStorage.removeItem('refreshToken');
       localStorage.removeItem('authToken');
       localStorage.removeItem('isLoggedIn');
       localStorage.removeItem('currentUser');
@@ -310,6 +361,10 @@ export class AuthService {
 
     return this.api.post<any>(`${this.baseUrl}/change-password`, request).pipe(
       tap((response) => {
+        // El cambio revoca los tokens anteriores: guardar el nuevo par
+        if (response?.token) {
+          this.storeTokens(response);
+        }
       }),
       map(() => true),
       catchError(err => {